@@ -0,0 +1,173 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+import edu.byu.nlp.classify.util.VectorHashing;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+
+/**
+ * Caches the results of another classifier for repeated (exact-duplicate) feature vectors.
+ * 
+ * <p>Vectors are keyed by their {@code VectorHashing.hash64} content hash; a key also holds a
+ * copy of the vector's entries, which are compared on a hash match, so a hash collision can
+ * never return another vector's label. The caches are bounded by maximumSize entries each
+ * and evict the least recently used entries first (Guava's {@code CacheBuilder}); hit and
+ * miss counts are available from {@link #stats}.
+ * 
+ * <p>The wrapped classifier must be deterministic: a cached vector is not reclassified.
+ * Concurrent misses on the same vector may both call the wrapped classifier.
+ */
+public class CachingClassifier implements Classifier {
+
+  private final Classifier delegate;
+  private final Cache<Key, Integer> labels;
+  private final Cache<NBestKey, List<Integer>> nBests;
+
+  public CachingClassifier(Classifier delegate, long maximumSize) {
+    Preconditions.checkNotNull(delegate);
+    Preconditions.checkArgument(maximumSize > 0, "maximumSize must be positive");
+    this.delegate = delegate;
+    this.labels = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+    this.nBests = CacheBuilder.newBuilder().maximumSize(maximumSize).recordStats().build();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int classify(SparseFeatureVector s) {
+    Key key = Key.of(s);
+    Integer label = labels.getIfPresent(key);
+    if (label == null) {
+      label = delegate.classify(s);
+      labels.put(key, label);
+    }
+    return label;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+    NBestKey key = new NBestKey(Key.of(s), n);
+    List<Integer> nBest = nBests.getIfPresent(key);
+    if (nBest == null) {
+      // immutable, since the same list is returned to every caller
+      nBest = ImmutableList.copyOf(delegate.classifyNBest(n, s));
+      nBests.put(key, nBest);
+    }
+    return nBest;
+  }
+
+  public Classifier getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * The combined statistics of the classify and classifyNBest caches.
+   */
+  public CacheStats stats() {
+    return labels.stats().plus(nBests.stats());
+  }
+
+  /**
+   * Drops all cached results (e.g., if the wrapped classifier's model changed).
+   */
+  public void invalidateAll() {
+    labels.invalidateAll();
+    nBests.invalidateAll();
+  }
+
+  /**
+   * The entries of a vector and their content hash.
+   */
+  private static class Key implements EntryVisitor {
+    private int[] indices = new int[8];
+    private double[] values = new double[8];
+    private int size;
+    private long hash;
+
+    static Key of(SparseFeatureVector vector) {
+      Key key = new Key();
+      vector.visitSparseEntries(key);
+      key.indices = Arrays.copyOf(key.indices, key.size);
+      key.values = Arrays.copyOf(key.values, key.size);
+      key.hash = VectorHashing.hash64(key.indices, key.values, key.size);
+      return key;
+    }
+
+    @Override
+    public void visitEntry(int index, double value) {
+      if (size == indices.length) {
+        indices = Arrays.copyOf(indices, 2 * size);
+        values = Arrays.copyOf(values, 2 * size);
+      }
+      indices[size] = index;
+      // so that -0.0 and 0.0 are equal, as in the hash
+      values[size++] = value + 0.0;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (hash ^ (hash >>> 32));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      // Arrays.equals compares doubles bitwise, matching the hash
+      return hash == other.hash && Arrays.equals(indices, other.indices) && Arrays.equals(values, other.values);
+    }
+  }
+
+  private static class NBestKey {
+    private final Key key;
+    private final int n;
+
+    NBestKey(Key key, int n) {
+      this.key = key;
+      this.n = n;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * key.hashCode() + n;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof NBestKey)) {
+        return false;
+      }
+      NBestKey other = (NBestKey) obj;
+      return n == other.n && key.equals(other.key);
+    }
+  }
+
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+
+/**
+ * A {@code WeightMatrix} backed by a single array in which the weights of each class are
+ * contiguous (see {@link WeightLayout#CLASS_MAJOR}).
+ */
+public class ClassMajorWeightMatrix implements MutableWeightMatrix {
+
+  private final int numClasses;
+  private final int numFeatures;
+  private final double[] weights;
+
+  public ClassMajorWeightMatrix(int numClasses, int numFeatures) {
+    this.numClasses = numClasses;
+    this.numFeatures = numFeatures;
+    this.weights = new double[FeatureMajorWeightMatrix.checkedSize(numClasses, numFeatures)];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WeightLayout getLayout() {
+    return WeightLayout.CLASS_MAJOR;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumFeatures() {
+    return numFeatures;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double get(int classIndex, int feature) {
+    return weights[index(classIndex, feature)];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void set(int classIndex, int feature, double value) {
+    weights[index(classIndex, feature)] = value;
+  }
+
+  private int index(int classIndex, int feature) {
+    Preconditions.checkElementIndex(classIndex, numClasses);
+    Preconditions.checkElementIndex(feature, numFeatures);
+    return classIndex * numFeatures + feature;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void fill(double value) {
+    Arrays.fill(weights, value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addToClass(int classIndex, SparseFeatureVector vector, final double scale) {
+    Preconditions.checkElementIndex(classIndex, numClasses);
+    // a larger feature would silently update the next class's weights
+    Preconditions.checkArgument(vector.length() <= numFeatures, "The input vector is longer than the number of features");
+    final int offset = classIndex * numFeatures;
+    vector.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int feature, double value) {
+        weights[offset + feature] += scale * value;
+      }
+    });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addScoresTo(SparseFeatureVector vector, final double[] scores) {
+    Preconditions.checkArgument(vector.length() <= numFeatures, "The input vector is longer than the number of features");
+    vector.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int feature, double value) {
+        for (int k = 0, i = feature; k < numClasses; k++, i += numFeatures) {
+          scores[k] += weights[i] * value;
+        }
+      }
+    });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void normalizeClasses() {
+    for (int offset = 0; offset < weights.length; offset += numFeatures) {
+      double sum = 0;
+      for (int i = offset; i < offset + numFeatures; i++) {
+        sum += weights[i];
+      }
+      for (int i = offset; i < offset + numFeatures; i++) {
+        weights[i] /= sum;
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void logToSelf() {
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = Math.log(weights[i]);
+    }
+  }
+
+  /**
+   * Returns a transposed copy.
+   */
+  @Override
+  public double[] toFeatureMajorArray() {
+    double[] featureMajor = new double[weights.length];
+    for (int k = 0; k < numClasses; k++) {
+      for (int f = 0; f < numFeatures; f++) {
+        featureMajor[f * numClasses + k] = weights[k * numFeatures + f];
+      }
+    }
+    return featureMajor;
+  }
+
+}
@@ -0,0 +1,276 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+
+/**
+ * Computes the same top-1 / top-n classes as a {@code LinearClassifier}, but without
+ * necessarily computing every class's full score, which pays off for very large label sets.
+ * 
+ * <p>The active features of a document are processed in descending order of how much they
+ * can change the ranking (x_f times the spread between the largest and smallest weight of
+ * feature f). After each feature, the remaining features can add at most U and at least L
+ * to any class's score, where U and L follow from precomputed per-feature maximum and
+ * minimum weights. A class whose partial score plus U is below the n'th best partial score
+ * plus L can no longer reach the top n and is dropped, so later features only update the
+ * surviving classes. For the top class, scoring stops as soon as a single class survives;
+ * for n > 1, once only n classes survive their order is decided by their remaining exact
+ * updates, which touch only those n classes.
+ * 
+ * <p>This is exact: the result equals the wrapped classifier's up to the order of ties.
+ * 
+ * <p>{@link #getLastNumEvaluated} is the average number of classes updated per active
+ * feature of the last document (numClasses for exhaustive scoring).
+ */
+public class EarlyExitLinearClassifier implements SelectiveClassifier {
+
+  private final double[] bias;
+  private final WeightMatrix weights;
+  // the backing array when the weights are feature-major, so the inner loop avoids get()
+  private final double[] featureMajorWeights;
+  private final int numClasses;
+  private final int numFeatures;
+  private final double[] maxWeights;
+  private final double[] minWeights;
+  private final ThreadLocal<Scratch> scratch;
+
+  public EarlyExitLinearClassifier(LinearClassifier classifier) {
+    this(classifier.getBias(), classifier.getWeightMatrix());
+  }
+
+  public EarlyExitLinearClassifier(double[] bias, WeightMatrix weights) {
+    Preconditions.checkNotNull(bias);
+    Preconditions.checkNotNull(weights);
+    Preconditions.checkArgument(weights.getNumClasses() == bias.length,
+        "There is a mismatch in the number of classes (%s) and the number of classes of the weights (%s)",
+        bias.length, weights.getNumClasses());
+    this.bias = bias;
+    this.weights = weights;
+    this.featureMajorWeights = (weights.getLayout() == WeightLayout.FEATURE_MAJOR) ? weights.toFeatureMajorArray() : null;
+    this.numClasses = bias.length;
+    this.numFeatures = weights.getNumFeatures();
+    this.maxWeights = new double[numFeatures];
+    this.minWeights = new double[numFeatures];
+    for (int f = 0; f < numFeatures; f++) {
+      double max = Double.NEGATIVE_INFINITY;
+      double min = Double.POSITIVE_INFINITY;
+      for (int k = 0; k < numClasses; k++) {
+        double w = weight(k, f);
+        max = Math.max(max, w);
+        min = Math.min(min, w);
+      }
+      maxWeights[f] = max;
+      minWeights[f] = min;
+    }
+    this.scratch = new ThreadLocal<Scratch>() {
+      @Override
+      protected Scratch initialValue() {
+        return new Scratch();
+      }
+    };
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getLastNumEvaluated() {
+    return scratch.get().numEvaluated;
+  }
+
+  private double weight(int classIndex, int feature) {
+    return (featureMajorWeights != null) ? featureMajorWeights[feature * numClasses + classIndex]
+        : weights.get(classIndex, feature);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int classify(SparseFeatureVector s) {
+    return topClasses(1, s)[0];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+    Preconditions.checkArgument(n > 0, "n must be positive");
+    List<Integer> nBest = Lists.newArrayList();
+    for (int k : topClasses(Math.min(n, numClasses), s)) {
+      nBest.add(k);
+    }
+    return nBest;
+  }
+
+  /**
+   * The n highest scoring classes in descending order of score.
+   */
+  private int[] topClasses(int n, SparseFeatureVector s) {
+    Preconditions.checkArgument(s.length() <= numFeatures, "The input vector is longer than the number of features");
+    Scratch sc = scratch.get();
+    sc.load(s);
+
+    // upper[i] (lower[i]): the most (least) the features from position i on can add
+    int m = sc.numEntries;
+    double[] upper = sc.upper;
+    double[] lower = sc.lower;
+    upper[m] = 0;
+    lower[m] = 0;
+    for (int i = m - 1; i >= 0; i--) {
+      int f = sc.features[sc.order[i]];
+      double v = sc.values[sc.order[i]];
+      upper[i] = upper[i + 1] + Math.max(v * maxWeights[f], v * minWeights[f]);
+      lower[i] = lower[i + 1] + Math.min(v * maxWeights[f], v * minWeights[f]);
+    }
+
+    double[] partial = sc.partial;
+    int[] alive = sc.alive;
+    System.arraycopy(bias, 0, partial, 0, numClasses);
+    int numAlive = numClasses;
+    for (int k = 0; k < numClasses; k++) {
+      alive[k] = k;
+    }
+    long numUpdates = 0;
+    for (int i = 0; i < m; i++) {
+      int f = sc.features[sc.order[i]];
+      double v = sc.values[sc.order[i]];
+      numUpdates += numAlive;
+      for (int a = 0; a < numAlive; a++) {
+        int k = alive[a];
+        partial[k] += v * weight(k, f);
+      }
+      if (numAlive > n) {
+        double threshold = nthLargest(n, partial, alive, numAlive, sc.top) + lower[i + 1];
+        int kept = 0;
+        for (int a = 0; a < numAlive; a++) {
+          int k = alive[a];
+          // written so that NaN bounds keep the class
+          if (!(partial[k] + upper[i + 1] < threshold)) {
+            alive[kept++] = k;
+          }
+        }
+        numAlive = kept;
+        if (numAlive == 1 && n == 1) {
+          // only the winner's identity is needed, not its score
+          break;
+        }
+      }
+    }
+
+    // a document without features is decided by the bias of every class
+    sc.numEvaluated = (m == 0) ? numClasses : (int) ((numUpdates + m - 1) / m);
+
+    // selection of the n best survivors (lowest class index first among ties)
+    int[] top = new int[n];
+    for (int j = 0; j < n; j++) {
+      int best = j;
+      for (int a = j + 1; a < numAlive; a++) {
+        int k = alive[a];
+        if (partial[k] > partial[alive[best]] || partial[k] == partial[alive[best]] && k < alive[best]) {
+          best = a;
+        }
+      }
+      int tmp = alive[j];
+      alive[j] = alive[best];
+      alive[best] = tmp;
+      top[j] = alive[j];
+    }
+    return top;
+  }
+
+  /**
+   * The n'th largest partial score among the alive classes; top is scratch space of length
+   * at least n.
+   */
+  private static double nthLargest(int n, double[] partial, int[] alive, int numAlive, double[] top) {
+    if (n == 1) {
+      double max = Double.NEGATIVE_INFINITY;
+      for (int a = 0; a < numAlive; a++) {
+        max = Math.max(max, partial[alive[a]]);
+      }
+      return max;
+    }
+    // top[0..n) holds the n largest seen so far in descending order
+    Arrays.fill(top, 0, n, Double.NEGATIVE_INFINITY);
+    for (int a = 0; a < numAlive; a++) {
+      double p = partial[alive[a]];
+      if (p > top[n - 1]) {
+        int j = n - 1;
+        for (; j > 0 && top[j - 1] < p; j--) {
+          top[j] = top[j - 1];
+        }
+        top[j] = p;
+      }
+    }
+    return top[n - 1];
+  }
+
+  /**
+   * Per-thread buffers, grown as needed.
+   */
+  private class Scratch implements EntryVisitor {
+    private final double[] partial = new double[numClasses];
+    private final int[] alive = new int[numClasses];
+    private final double[] top = new double[numClasses];
+    private int[] features = new int[16];
+    private double[] values = new double[16];
+    // the sort keys and the resulting order of the entries
+    private long[] keys = new long[16];
+    private int[] order = new int[16];
+    private double[] upper = new double[17];
+    private double[] lower = new double[17];
+    private int numEntries;
+    private int numEvaluated;
+
+    void load(SparseFeatureVector s) {
+      numEntries = 0;
+      s.visitSparseEntries(this);
+      // A primitive sort of (descending impact, entry) packed into longs. Impacts are
+      // rounded to float; that only changes the processing order, which affects how early
+      // classes are dropped but not the result.
+      Arrays.sort(keys, 0, numEntries);
+      for (int i = 0; i < numEntries; i++) {
+        order[i] = (int) keys[i];
+      }
+    }
+
+    @Override
+    public void visitEntry(int feature, double value) {
+      if (numEntries == features.length) {
+        int size = 2 * features.length;
+        features = Arrays.copyOf(features, size);
+        values = Arrays.copyOf(values, size);
+        keys = Arrays.copyOf(keys, size);
+        order = Arrays.copyOf(order, size);
+        upper = Arrays.copyOf(upper, size + 1);
+        lower = Arrays.copyOf(lower, size + 1);
+      }
+      features[numEntries] = feature;
+      values[numEntries] = value;
+      // the impact is non-negative or NaN, so its float bits order like the impact itself
+      // (adding 0 turns -0 into +0)
+      float impact = (float) (Math.abs(value) * (maxWeights[feature] - minWeights[feature])) + 0.0f;
+      long descending = Integer.MAX_VALUE - Float.floatToIntBits(impact);
+      keys[numEntries] = (descending << 32) | numEntries;
+      ++numEntries;
+    }
+  }
+
+}
@@ -0,0 +1,138 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.Arrays;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Maps an unbounded feature space onto a fixed number (2^numBits) of buckets (the
+ * "hashing trick"), so that model size does not depend on the size of the vocabulary
+ * and features never seen during training can still be scored.
+ *
+ * Optionally, each feature is also hashed to a sign (+1/-1) so that collisions cancel
+ * out in expectation. Signed hashing only makes sense for discriminative models
+ * (e.g., maxent); count-based models like naive bayes require unsigned hashing.
+ */
+public class FeatureHasher {
+
+  public static final int DEFAULT_SEED = 0;
+  public static final int MAX_BITS = 30;
+
+  private final int numBits;
+  private final int mask;
+  private final boolean signed;
+  private final HashFunction hashFunction;
+
+  public FeatureHasher(int numBits, boolean signed) {
+    this(numBits, signed, DEFAULT_SEED);
+  }
+
+  public FeatureHasher(int numBits, boolean signed, int seed) {
+    Preconditions.checkArgument(1 <= numBits && numBits <= MAX_BITS,
+        "numBits must be between 1 and %s (was %s)", MAX_BITS, numBits);
+    this.numBits = numBits;
+    this.mask = (1 << numBits) - 1;
+    this.signed = signed;
+    this.hashFunction = Hashing.murmur3_32(seed);
+  }
+
+  public int getNumBits() { return numBits; }
+  public int getNumBuckets() { return mask + 1; }
+  public boolean isSigned() { return signed; }
+
+  /**
+   * The bucket of a feature that has already been indexed.
+   */
+  public int bucketOf(int featureIndex) {
+    return hashFunction.hashInt(featureIndex).asInt() & mask;
+  }
+
+  /**
+   * The bucket of a raw (unindexed) feature, for callers that build feature vectors directly
+   * from tokens without an index.
+   */
+  public int bucketOf(CharSequence feature) {
+    return hashFunction.hashString(feature, Charsets.UTF_8).asInt() & mask;
+  }
+
+  /**
+   * +1 or -1 (always +1 if this hasher is not signed). Uses the high bit of the hash, which is
+   * never part of the bucket.
+   */
+  public double signOf(int featureIndex) {
+    if (!signed) {
+      return 1.0;
+    }
+    return (hashFunction.hashInt(featureIndex).asInt() < 0) ? -1.0 : 1.0;
+  }
+
+  /**
+   * Returns a vector in the hashed space. Features that collide are summed.
+   */
+  public SparseFeatureVector hash(SparseFeatureVector features) {
+    // collect (bucket, signed value) pairs
+    final int[] size = new int[1];
+    features.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int index, double value) {
+        ++size[0];
+      }
+    });
+    final int[] buckets = new int[size[0]];
+    final double[] values = new double[size[0]];
+    final int[] next = new int[1];
+    features.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int index, double value) {
+        int hash = hashFunction.hashInt(index).asInt();
+        buckets[next[0]] = hash & mask;
+        values[next[0]] = (signed && hash < 0) ? -value : value;
+        ++next[0];
+      }
+    });
+
+    // sort and merge collisions
+    int[] indices = buckets.clone();
+    Arrays.sort(indices);
+    int numUnique = 0;
+    for (int i = 0; i < indices.length; i++) {
+      if (i == 0 || indices[i] != indices[i - 1]) {
+        indices[numUnique++] = indices[i];
+      }
+    }
+    indices = Arrays.copyOf(indices, numUnique);
+    double[] merged = new double[numUnique];
+    for (int i = 0; i < buckets.length; i++) {
+      merged[Arrays.binarySearch(indices, buckets[i])] += values[i];
+    }
+    return new BasicSparseFeatureVector(indices, merged);
+  }
+
+  @Override
+  public String toString() {
+    return "FeatureHasher [numBits=" + numBits + ", signed=" + signed + "]";
+  }
+
+}
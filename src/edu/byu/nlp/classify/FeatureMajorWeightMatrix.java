@@ -0,0 +1,146 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+import edu.byu.nlp.util.ColumnMajorMatrices;
+import edu.byu.nlp.util.DoubleArrays;
+
+/**
+ * A {@code WeightMatrix} backed by a single array in which the weights of all classes for
+ * a feature are contiguous (see {@link WeightLayout#FEATURE_MAJOR}). In the terminology of
+ * {@code ColumnMajorMatrices} this is a column-major matrix with one row per class.
+ */
+public class FeatureMajorWeightMatrix implements MutableWeightMatrix {
+
+  private final int numClasses;
+  private final int numFeatures;
+  private final double[] weights;
+
+  public FeatureMajorWeightMatrix(int numClasses, int numFeatures) {
+    this(numClasses, new double[checkedSize(numClasses, numFeatures)]);
+  }
+
+  /**
+   * Wraps (without copying) weights, whose entry (k, f) is at f * numClasses + k.
+   */
+  public FeatureMajorWeightMatrix(int numClasses, double[] weights) {
+    Preconditions.checkArgument(numClasses > 0, "there must be at least one class");
+    Preconditions.checkArgument(weights.length % numClasses == 0,
+        "There is a mismatch in the number of classes (%s) and the number of weights (%s)",
+        numClasses, weights.length);
+    this.numClasses = numClasses;
+    this.numFeatures = weights.length / numClasses;
+    this.weights = weights;
+  }
+
+  static int checkedSize(int numClasses, int numFeatures) {
+    Preconditions.checkArgument(numClasses > 0 && numFeatures >= 0);
+    Preconditions.checkArgument((long) numClasses * numFeatures <= Integer.MAX_VALUE,
+        "%s classes x %s features do not fit in an array", numClasses, numFeatures);
+    return numClasses * numFeatures;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WeightLayout getLayout() {
+    return WeightLayout.FEATURE_MAJOR;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumFeatures() {
+    return numFeatures;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double get(int classIndex, int feature) {
+    return weights[index(classIndex, feature)];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void set(int classIndex, int feature, double value) {
+    weights[index(classIndex, feature)] = value;
+  }
+
+  private int index(int classIndex, int feature) {
+    Preconditions.checkElementIndex(classIndex, numClasses);
+    Preconditions.checkElementIndex(feature, numFeatures);
+    return feature * numClasses + classIndex;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void fill(double value) {
+    Arrays.fill(weights, value);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addToClass(int classIndex, SparseFeatureVector vector, double scale) {
+    if (scale == 1.0) {
+      vector.addToRow(weights, classIndex, numClasses);
+    } else {
+      vector.scaleAndAddToRow(weights, classIndex, numClasses, scale);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addScoresTo(SparseFeatureVector vector, final double[] scores) {
+    // each feature's class weights are contiguous, so every entry is one dense axpy
+    vector.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int feature, double value) {
+        ScoringKernels.axpy(value, weights, feature * numClasses, scores, numClasses);
+      }
+    });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void normalizeClasses() {
+    ColumnMajorMatrices.normalizeRows(weights, numClasses);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void logToSelf() {
+    DoubleArrays.logToSelf(weights);
+  }
+
+  /**
+   * Returns the backing array.
+   */
+  @Override
+  public double[] toFeatureMajorArray() {
+    return weights;
+  }
+
+}
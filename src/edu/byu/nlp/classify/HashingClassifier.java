@@ -0,0 +1,53 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+
+/**
+ * Wraps a classifier that was trained in a hashed feature space (see {@code FeatureHasher})
+ * so that it can be applied to feature vectors in the original (unbounded) space.
+ */
+public class HashingClassifier implements Classifier {
+
+  private final Classifier delegate;
+  private final FeatureHasher hasher;
+
+  public HashingClassifier(Classifier delegate, FeatureHasher hasher) {
+    this.delegate = Preconditions.checkNotNull(delegate);
+    this.hasher = Preconditions.checkNotNull(hasher);
+  }
+
+  public Classifier getDelegate() { return delegate; }
+  public FeatureHasher getHasher() { return hasher; }
+
+  /** {@inheritDoc} */
+  @Override
+  public int classify(SparseFeatureVector s) {
+    return delegate.classify(hasher.hash(s));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+    return delegate.classifyNBest(n, hasher.hash(s));
+  }
+
+}
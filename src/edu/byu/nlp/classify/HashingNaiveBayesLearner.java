@@ -0,0 +1,72 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.util.Nullable;
+
+/**
+ * Naive bayes trained in a hashed feature space, so the size of the model is fixed
+ * (numClasses * 2^numBits weights) no matter how many distinct features the data has.
+ * Models too large for an array are counted in {@link WeightLayout#OFF_HEAP} memory.
+ * The returned classifier hashes its input, so it accepts feature indices that were
+ * never seen during training.
+ */
+public class HashingNaiveBayesLearner implements ClassifierLearner {
+
+  private final double classAlpha;
+  private final double featureAlpha;
+  private final FeatureHasher hasher;
+  // null chooses based on the size of the model
+  private final WeightLayout layout;
+
+  public HashingNaiveBayesLearner(FeatureHasher hasher) {
+    this(1.0, 1.0, hasher);
+  }
+
+  public HashingNaiveBayesLearner(double classAlpha, double featureAlpha, FeatureHasher hasher) {
+    this(classAlpha, featureAlpha, hasher, null);
+  }
+
+  /**
+   * @param layout a mutable layout for the counts (see {@code NaiveBayesCounts}), or null
+   *     for FEATURE_MAJOR if numClasses * numBuckets fits in an array and OFF_HEAP otherwise
+   */
+  public HashingNaiveBayesLearner(double classAlpha, double featureAlpha, FeatureHasher hasher,
+      @Nullable WeightLayout layout) {
+    Preconditions.checkArgument(classAlpha >= 0 && featureAlpha >= 0, "smoothing must be non-negative");
+    Preconditions.checkArgument(!hasher.isSigned(), "naive bayes requires unsigned feature hashing");
+    Preconditions.checkArgument(layout == null || layout.isMutable(), "cannot count in %s weights", layout);
+    this.classAlpha = classAlpha;
+    this.featureAlpha = featureAlpha;
+    this.hasher = hasher;
+    this.layout = layout;
+  }
+
+  /**
+   * The counts are allocated (and, for an array layout, their size validated) before the
+   * pass over the data.
+   */
+  @Override
+  public HashingProbabilisticClassifier learnFrom(Dataset data) {
+    NaiveBayesClassifier classifier =
+        NaiveBayesCounts.fromDataset(data, hasher, layout).classifier(classAlpha, featureAlpha);
+    return new HashingProbabilisticClassifier(classifier, hasher);
+  }
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.stats.CategoricalDistribution;
+
+/**
+ * A {@code HashingClassifier} for probabilistic classifiers.
+ */
+public class HashingProbabilisticClassifier extends HashingClassifier implements ProbabilisticClassifier {
+
+  private final ProbabilisticClassifier delegate;
+
+  public HashingProbabilisticClassifier(ProbabilisticClassifier delegate, FeatureHasher hasher) {
+    super(delegate, hasher);
+    this.delegate = delegate;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public ProbabilisticClassifier getDelegate() { return delegate; }
+
+  /** {@inheritDoc} */
+  @Override
+  public CategoricalDistribution given(SparseFeatureVector condition) {
+    return delegate.given(getHasher().hash(condition));
+  }
+
+}
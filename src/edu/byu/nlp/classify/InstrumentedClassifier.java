@@ -0,0 +1,175 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import edu.byu.nlp.classify.util.LogHistogram;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+
+/**
+ * Wraps a {@code Classifier} and records, for every call, its latency (in nanoseconds, per
+ * operation), the number of features of the document and the number of classes scored.
+ * Recording is lock-free (see {@code LogHistogram}), so the wrapper can stay enabled in
+ * production; {@link #snapshot} returns the current distributions.
+ * 
+ * <p>The number of classes scored is numClasses for a {@code LinearClassifier} (and its
+ * subclasses), which score every class, and what a {@code SelectiveClassifier} reports
+ * (e.g., the classes an {@code EarlyExitLinearClassifier} updated per feature, or the nodes
+ * a {@code LabelTreeClassifier} evaluated); it is not recorded for other classifiers. Only
+ * the latency is recorded for calls that throw.
+ */
+public class InstrumentedClassifier implements Classifier {
+
+  public enum Operation { CLASSIFY, CLASSIFY_N_BEST, GIVEN }
+
+  private final Classifier delegate;
+  private final EnumMap<Operation, LogHistogram> latencies;
+  private final LogHistogram featuresPerDocument = new LogHistogram();
+  private final LogHistogram classesScored = new LogHistogram();
+  private final int classesPerCall;
+
+  public InstrumentedClassifier(Classifier delegate) {
+    this.delegate = Preconditions.checkNotNull(delegate);
+    this.latencies = Maps.newEnumMap(Operation.class);
+    for (Operation operation : Operation.values()) {
+      latencies.put(operation, new LogHistogram());
+    }
+    this.classesPerCall = (delegate instanceof LinearClassifier) ? ((LinearClassifier) delegate).getNumClasses() : 0;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int classify(SparseFeatureVector s) {
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      int label = delegate.classify(s);
+      succeeded = true;
+      return label;
+    } finally {
+      record(Operation.CLASSIFY, start, s, succeeded);
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      List<Integer> nBest = delegate.classifyNBest(n, s);
+      succeeded = true;
+      return nBest;
+    } finally {
+      record(Operation.CLASSIFY_N_BEST, start, s, succeeded);
+    }
+  }
+
+  /**
+   * Records a call to operation that started at start (from {@code System.nanoTime}). Called
+   * from a finally block, so it only inspects s if the delegate accepted it; an exception
+   * thrown here would replace the delegate's.
+   */
+  protected void record(Operation operation, long start, SparseFeatureVector s, boolean succeeded) {
+    latencies.get(operation).record(System.nanoTime() - start);
+    if (!succeeded) {
+      return;
+    }
+    if (s != null) {
+      featuresPerDocument.record(numEntries(s));
+    }
+    if (delegate instanceof SelectiveClassifier) {
+      classesScored.record(((SelectiveClassifier) delegate).getLastNumEvaluated());
+    } else if (classesPerCall > 0) {
+      classesScored.record(classesPerCall);
+    }
+  }
+
+  private static int numEntries(SparseFeatureVector s) {
+    final int[] count = new int[1];
+    s.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int index, double value) {
+        ++count[0];
+      }
+    });
+    return count[0];
+  }
+
+  public Classifier getDelegate() {
+    return delegate;
+  }
+
+  public Metrics snapshot() {
+    Map<Operation, LogHistogram.Snapshot> latencySnapshots = Maps.newEnumMap(Operation.class);
+    for (Map.Entry<Operation, LogHistogram> entry : latencies.entrySet()) {
+      latencySnapshots.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return new Metrics(latencySnapshots, featuresPerDocument.snapshot(), classesScored.snapshot());
+  }
+
+  /**
+   * The distributions recorded up to the time of a snapshot.
+   */
+  public static class Metrics {
+    private final Map<Operation, LogHistogram.Snapshot> latencies;
+    private final LogHistogram.Snapshot featuresPerDocument;
+    private final LogHistogram.Snapshot classesScored;
+
+    private Metrics(Map<Operation, LogHistogram.Snapshot> latencies, LogHistogram.Snapshot featuresPerDocument,
+        LogHistogram.Snapshot classesScored) {
+      this.latencies = latencies;
+      this.featuresPerDocument = featuresPerDocument;
+      this.classesScored = classesScored;
+    }
+
+    /**
+     * Latencies in nanoseconds; the count is the number of calls.
+     */
+    public LogHistogram.Snapshot getLatency(Operation operation) {
+      return latencies.get(operation);
+    }
+
+    public LogHistogram.Snapshot getFeaturesPerDocument() {
+      return featuresPerDocument;
+    }
+
+    public LogHistogram.Snapshot getClassesScored() {
+      return classesScored;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (Operation operation : Operation.values()) {
+        if (latencies.get(operation).getCount() > 0) {
+          sb.append(operation).append(" latency (ns): ").append(latencies.get(operation)).append('\n');
+        }
+      }
+      sb.append("features per document: ").append(featuresPerDocument).append('\n');
+      sb.append("classes scored: ").append(classesScored);
+      return sb.toString();
+    }
+  }
+
+}
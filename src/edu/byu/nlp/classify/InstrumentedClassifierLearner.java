@@ -0,0 +1,71 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.classify.util.LogHistogram;
+import edu.byu.nlp.data.types.Dataset;
+
+/**
+ * Wraps a {@code ClassifierLearner} and records the latency (in nanoseconds) of each call to
+ * {@link #learnFrom} and the number of instances it was given (for calls that succeed).
+ */
+public class InstrumentedClassifierLearner implements ClassifierLearner {
+
+  private final ClassifierLearner delegate;
+  private final LogHistogram latency = new LogHistogram();
+  private final LogHistogram instancesPerCall = new LogHistogram();
+
+  public InstrumentedClassifierLearner(ClassifierLearner delegate) {
+    this.delegate = Preconditions.checkNotNull(delegate);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Classifier learnFrom(Dataset data) {
+    Preconditions.checkNotNull(data);
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      Classifier classifier = delegate.learnFrom(data);
+      succeeded = true;
+      return classifier;
+    } finally {
+      latency.record(System.nanoTime() - start);
+      // only once the delegate has accepted data, so that an exception here cannot replace its own
+      if (succeeded) {
+        instancesPerCall.record(data.getInfo().getNumDocuments());
+      }
+    }
+  }
+
+  public ClassifierLearner getDelegate() {
+    return delegate;
+  }
+
+  /**
+   * Latencies in nanoseconds; the count is the number of calls.
+   */
+  public LogHistogram.Snapshot getLatency() {
+    return latency.snapshot();
+  }
+
+  public LogHistogram.Snapshot getInstancesPerCall() {
+    return instancesPerCall.snapshot();
+  }
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.stats.CategoricalDistribution;
+
+/**
+ * An {@code InstrumentedClassifier} that also records calls to {@link #given}.
+ */
+public class InstrumentedProbabilisticClassifier extends InstrumentedClassifier implements ProbabilisticClassifier {
+
+  private final ProbabilisticClassifier delegate;
+
+  public InstrumentedProbabilisticClassifier(ProbabilisticClassifier delegate) {
+    super(delegate);
+    this.delegate = delegate;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public CategoricalDistribution given(SparseFeatureVector s) {
+    long start = System.nanoTime();
+    boolean succeeded = false;
+    try {
+      CategoricalDistribution posterior = delegate.given(s);
+      succeeded = true;
+      return posterior;
+    } finally {
+      record(Operation.GIVEN, start, s, succeeded);
+    }
+  }
+
+}
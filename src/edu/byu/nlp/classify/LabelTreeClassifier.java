@@ -0,0 +1,336 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+import edu.byu.nlp.stats.CategoricalDistribution;
+import edu.byu.nlp.stats.DoubleArrayCategoricalDistribution;
+
+/**
+ * A label tree (hierarchical softmax) over the classes 0 ... numClasses - 1. The tree is a
+ * balanced binary tree over the leaves 0 ... numClasses - 1: a node covering the leaves
+ * [lo, hi) has children covering [lo, mid) and [mid, hi), with mid = (lo + hi) / 2. Leaf i
+ * is the class {@code leafClasses[i]} (by default, class i). Each of the numClasses - 1
+ * internal nodes holds a binary model of p(right child | x, node), and p(y | x) is the
+ * product of the decisions on the path from the root to y's leaf.
+ * 
+ * <p>The internal nodes are numbered in pre-order, so the node covering [lo, hi) with number
+ * i has children i + 1 and i + (mid - lo); no pointers are stored.
+ * 
+ * <p>Each node's model is a logistic function of the form
+ * <pre>
+ *   logit(x) = bias + defaultWeight * sum_f x_f + sum_{f stored at the node} x_f w_f
+ * </pre>
+ * which only stores weights for the features seen at the node (see {@code LabelTreeLearner}).
+ * 
+ * <p>{@link #classify} and {@link #classifyNBest} use a beam search, evaluating
+ * O(beamWidth * log(numClasses)) nodes, and {@link #logProbability} walks a single path.
+ * {@link #given} returns the full distribution and so necessarily evaluates every node.
+ * {@link #getLastNumEvaluated} is the number of nodes the last of these calls evaluated.
+ */
+public class LabelTreeClassifier implements ProbabilisticClassifier, SelectiveClassifier {
+
+  private final int numClasses;
+  private final int numFeatures;
+  private final int beamWidth;
+  // per internal node
+  private final double[] biases;
+  private final double[] defaultWeights;
+  private final int[][] features;
+  private final double[][] weights;
+  // the class at each leaf, and the leaf of each class
+  private final int[] leafClasses;
+  private final int[] classLeaves;
+  // the number of nodes evaluated by the last call on each thread
+  private final ThreadLocal<int[]> lastNumEvaluated = new ThreadLocal<int[]>() {
+    @Override
+    protected int[] initialValue() {
+      return new int[1];
+    }
+  };
+
+  /**
+   * @param features the (strictly increasing) features stored at each node
+   * @param weights the corresponding weights
+   */
+  LabelTreeClassifier(int numClasses, int numFeatures, double[] biases, double[] defaultWeights,
+      int[][] features, double[][] weights, int beamWidth) {
+    this(numClasses, numFeatures, biases, defaultWeights, features, weights, identity(numClasses), beamWidth);
+  }
+
+  /**
+   * @param features the (strictly increasing) features stored at each node
+   * @param weights the corresponding weights
+   * @param leafClasses the class at each leaf, a permutation of 0 ... numClasses - 1
+   */
+  LabelTreeClassifier(int numClasses, int numFeatures, double[] biases, double[] defaultWeights,
+      int[][] features, double[][] weights, int[] leafClasses, int beamWidth) {
+    Preconditions.checkArgument(numClasses > 0, "there must be at least one class");
+    Preconditions.checkArgument(beamWidth > 0, "beamWidth must be positive");
+    Preconditions.checkArgument(biases.length == numClasses - 1 && defaultWeights.length == numClasses - 1
+        && features.length == numClasses - 1 && weights.length == numClasses - 1,
+        "a tree over %s classes has %s internal nodes", numClasses, numClasses - 1);
+    this.numClasses = numClasses;
+    this.numFeatures = numFeatures;
+    this.biases = biases;
+    this.defaultWeights = defaultWeights;
+    this.features = features;
+    this.weights = weights;
+    this.leafClasses = leafClasses;
+    this.classLeaves = inverse(leafClasses, numClasses);
+    this.beamWidth = beamWidth;
+  }
+
+  private static int[] identity(int numClasses) {
+    int[] identity = new int[numClasses];
+    for (int i = 0; i < numClasses; i++) {
+      identity[i] = i;
+    }
+    return identity;
+  }
+
+  /**
+   * The inverse of a permutation of 0 ... n - 1.
+   */
+  static int[] inverse(int[] permutation, int n) {
+    Preconditions.checkArgument(permutation.length == n, "expected a permutation of %s classes but got %s",
+        n, permutation.length);
+    int[] inverse = new int[n];
+    Arrays.fill(inverse, -1);
+    for (int i = 0; i < n; i++) {
+      Preconditions.checkElementIndex(permutation[i], n);
+      Preconditions.checkArgument(inverse[permutation[i]] < 0, "class %s occurs more than once", permutation[i]);
+      inverse[permutation[i]] = i;
+    }
+    return inverse;
+  }
+
+  /**
+   * The same model searched with a different beam width.
+   */
+  public LabelTreeClassifier withBeamWidth(int beamWidth) {
+    return new LabelTreeClassifier(numClasses, numFeatures, biases, defaultWeights, features, weights, leafClasses,
+        beamWidth);
+  }
+
+  public int getNumClasses() { return numClasses; }
+
+  /**
+   * The class at each leaf, from left to right.
+   */
+  public int[] getLeafClasses() { return leafClasses.clone(); }
+  public int getBeamWidth() { return beamWidth; }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getLastNumEvaluated() {
+    return lastNumEvaluated.get()[0];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int classify(SparseFeatureVector s) {
+    return leafClasses[search(beamWidth, entriesOf(s))[0]];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+    Preconditions.checkArgument(n > 0, "n must be positive");
+    int[] best = search(Math.max(n, beamWidth), entriesOf(s));
+    List<Integer> nBest = Lists.newArrayList();
+    for (int i = 0; i < Math.min(n, best.length); i++) {
+      nBest.add(leafClasses[best[i]]);
+    }
+    return nBest;
+  }
+
+  /**
+   * log p(label | s), computed along the path from the root to label.
+   */
+  public double logProbability(SparseFeatureVector s, int label) {
+    Preconditions.checkElementIndex(label, numClasses);
+    int leaf = classLeaves[label];
+    Entries x = entriesOf(s);
+    double logProb = 0.0;
+    int node = 0;
+    int lo = 0;
+    int hi = numClasses;
+    int numEvaluated = 0;
+    while (hi - lo > 1) {
+      ++numEvaluated;
+      int mid = (lo + hi) >>> 1;
+      double logit = logit(node, x);
+      if (leaf < mid) {
+        logProb += logSigmoid(-logit);
+        node = node + 1;
+        hi = mid;
+      } else {
+        logProb += logSigmoid(logit);
+        node = node + (mid - lo);
+        lo = mid;
+      }
+    }
+    lastNumEvaluated.get()[0] = numEvaluated;
+    return logProb;
+  }
+
+  /**
+   * The full posterior; evaluates all numClasses - 1 nodes.
+   */
+  @Override
+  public CategoricalDistribution given(SparseFeatureVector s) {
+    double[] logProbs = new double[numClasses];
+    fillLogProbs(0, 0, numClasses, 0.0, entriesOf(s), logProbs);
+    lastNumEvaluated.get()[0] = numClasses - 1;
+    return DoubleArrayCategoricalDistribution.newDistributionFromLogProbs(logProbs, false);
+  }
+
+  private void fillLogProbs(int node, int lo, int hi, double logProb, Entries x, double[] logProbs) {
+    if (hi - lo == 1) {
+      logProbs[leafClasses[lo]] = logProb;
+      return;
+    }
+    int mid = (lo + hi) >>> 1;
+    double logit = logit(node, x);
+    fillLogProbs(node + 1, lo, mid, logProb + logSigmoid(-logit), x, logProbs);
+    fillLogProbs(node + (mid - lo), mid, hi, logProb + logSigmoid(logit), x, logProbs);
+  }
+
+  /**
+   * Beam search from the root. Returns the (at most width) leaves reached, in descending
+   * order of log-probability.
+   */
+  private int[] search(int width, Entries x) {
+    // the beam: subtrees [lo, hi) rooted at node, with the log-probability of reaching them
+    int[] lo = new int[2 * width];
+    int[] hi = new int[2 * width];
+    int[] node = new int[2 * width];
+    double[] logProb = new double[2 * width];
+    int[] nextLo = new int[2 * width];
+    int[] nextHi = new int[2 * width];
+    int[] nextNode = new int[2 * width];
+    double[] nextLogProb = new double[2 * width];
+
+    int size = 1;
+    hi[0] = numClasses;
+    int numEvaluated = 0;
+    boolean expanded = numClasses > 1;
+    while (expanded) {
+      expanded = false;
+      int n = 0;
+      for (int i = 0; i < size; i++) {
+        if (hi[i] - lo[i] == 1) {
+          // leaves compete with the remaining subtrees as they are
+          nextLo[n] = lo[i];
+          nextHi[n] = hi[i];
+          nextNode[n] = node[i];
+          nextLogProb[n++] = logProb[i];
+          continue;
+        }
+        expanded = true;
+        int mid = (lo[i] + hi[i]) >>> 1;
+        double logit = logit(node[i], x);
+        ++numEvaluated;
+        nextLo[n] = lo[i];
+        nextHi[n] = mid;
+        nextNode[n] = node[i] + 1;
+        nextLogProb[n++] = logProb[i] + logSigmoid(-logit);
+        nextLo[n] = mid;
+        nextHi[n] = hi[i];
+        nextNode[n] = node[i] + (mid - lo[i]);
+        nextLogProb[n++] = logProb[i] + logSigmoid(logit);
+      }
+
+      // keep the best width candidates, in order (leftmost first among ties)
+      size = Math.min(width, n);
+      for (int i = 0; i < size; i++) {
+        int best = i;
+        for (int j = i + 1; j < n; j++) {
+          if (nextLogProb[j] > nextLogProb[best] || nextLogProb[j] == nextLogProb[best] && nextLo[j] < nextLo[best]) {
+            best = j;
+          }
+        }
+        lo[i] = nextLo[best];
+        hi[i] = nextHi[best];
+        node[i] = nextNode[best];
+        logProb[i] = nextLogProb[best];
+        nextLo[best] = nextLo[i];
+        nextHi[best] = nextHi[i];
+        nextNode[best] = nextNode[i];
+        nextLogProb[best] = nextLogProb[i];
+      }
+    }
+    lastNumEvaluated.get()[0] = numEvaluated;
+    return Arrays.copyOf(lo, size);
+  }
+
+  private double logit(int node, Entries x) {
+    double logit = biases[node] + defaultWeights[node] * x.sum;
+    int[] nodeFeatures = features[node];
+    double[] nodeWeights = weights[node];
+    for (int i = 0; i < x.size; i++) {
+      int j = Arrays.binarySearch(nodeFeatures, x.features[i]);
+      if (j >= 0) {
+        logit += x.values[i] * nodeWeights[j];
+      }
+    }
+    return logit;
+  }
+
+  /**
+   * log(1 / (1 + e^{-z})), computed without overflow.
+   */
+  private static double logSigmoid(double z) {
+    return (z > 0) ? -Math.log1p(Math.exp(-z)) : z - Math.log1p(Math.exp(z));
+  }
+
+  private Entries entriesOf(SparseFeatureVector s) {
+    Preconditions.checkArgument(s.length() <= numFeatures, "The input vector is longer than the number of features");
+    Entries entries = new Entries();
+    s.visitSparseEntries(entries);
+    return entries;
+  }
+
+  /**
+   * The entries of a vector, gathered once since every node on the path reads them.
+   */
+  private static class Entries implements EntryVisitor {
+    private int[] features = new int[16];
+    private double[] values = new double[16];
+    private int size;
+    private double sum;
+
+    @Override
+    public void visitEntry(int feature, double value) {
+      if (size == features.length) {
+        features = Arrays.copyOf(features, 2 * size);
+        values = Arrays.copyOf(values, 2 * size);
+      }
+      features[size] = feature;
+      values[size++] = value;
+      sum += value;
+    }
+  }
+
+}
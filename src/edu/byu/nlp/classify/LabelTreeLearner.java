@@ -0,0 +1,373 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+import edu.byu.nlp.dataset.Datasets;
+import edu.byu.nlp.util.Nullable;
+
+/**
+ * Learns a {@code LabelTreeClassifier}: each internal node is a two-class naive Bayes model
+ * (with add-one smoothing, as in {@code NaiveBayesLearner}) that decides between the classes
+ * of its left and right subtrees, trained on the labeled instances whose label lies under
+ * the node.
+ * 
+ * <p>For a node, the log-odds of the right subtree are
+ * <pre>
+ *   log (1 + n_R) / (1 + n_L) + sum_f x_f [log (1 + c_R(f)) / (F + T_R) - log (1 + c_L(f)) / (F + T_L)]
+ * </pre>
+ * where n is the number of instances, c(f) the count of feature f, T the total count and F
+ * the number of features. For a feature never seen at the node the bracket is the same
+ * constant, so only features seen at the node are stored. Every instance contributes to
+ * the log(numClasses) nodes on its label's path, so training takes
+ * O(numInstances * log(numClasses)) vector passes and the model's size is proportional to
+ * the data rather than to numClasses * numFeatures.
+ * 
+ * <p>The tree's shape is fixed (balanced, split at the middle leaf), so its quality depends
+ * on which classes share subtrees. By default the leaves are the classes in index order,
+ * which is arbitrary: similar classes may be separated early and dissimilar ones grouped,
+ * making the upper nodes' decisions hard. Supply a label order (for example one from a
+ * known taxonomy) or use {@link #clusteringCentroids}, which orders the classes by
+ * recursively splitting their feature centroids in two. The centroid split is a single
+ * balanced assignment to two seeds, not a converged clustering, and the tree is never
+ * restructured after training.
+ * 
+ * <p>With no features the per-feature terms vanish and each node is just its prior.
+ */
+public class LabelTreeLearner implements ClassifierLearner {
+
+  public static final int DEFAULT_BEAM_WIDTH = 5;
+
+  private final int beamWidth;
+  @Nullable private final int[] labelOrder;
+  private final boolean clusterCentroids;
+
+  public LabelTreeLearner() {
+    this(DEFAULT_BEAM_WIDTH);
+  }
+
+  /**
+   * Places the classes at the leaves in index order.
+   * 
+   * @param beamWidth the beam width of the learned classifier's search
+   */
+  public LabelTreeLearner(int beamWidth) {
+    this(beamWidth, null, false);
+  }
+
+  /**
+   * @param beamWidth the beam width of the learned classifier's search
+   * @param labelOrder the classes from the leftmost leaf to the rightmost, a permutation of
+   *     0 ... numClasses - 1; classes adjacent in it share the lowest subtrees
+   */
+  public LabelTreeLearner(int beamWidth, int[] labelOrder) {
+    this(beamWidth, Preconditions.checkNotNull(labelOrder).clone(), false);
+  }
+
+  private LabelTreeLearner(int beamWidth, @Nullable int[] labelOrder, boolean clusterCentroids) {
+    Preconditions.checkArgument(beamWidth > 0, "beamWidth must be positive");
+    this.beamWidth = beamWidth;
+    this.labelOrder = labelOrder;
+    this.clusterCentroids = clusterCentroids;
+  }
+
+  /**
+   * A learner that orders the leaves with {@link #centroidLabelOrder} on each dataset it
+   * learns from.
+   */
+  public static LabelTreeLearner clusteringCentroids(int beamWidth) {
+    return new LabelTreeLearner(beamWidth, null, true);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public LabelTreeClassifier learnFrom(Dataset data) {
+    Preconditions.checkNotNull(data);
+    Preconditions.checkArgument(data.getInfo().getNumClasses() > 0, "Dataset must have at least one class");
+    Preconditions.checkArgument(data.getInfo().getNumFeatures() >= 0, "Dataset must have zero or more features");
+
+    List<DatasetInstance> labeled = Lists.newArrayList(Datasets.divideInstancesWithObservedLabels(data).getFirst());
+    int numClasses = data.getInfo().getNumClasses();
+    int numFeatures = data.getInfo().getNumFeatures();
+
+    int[] leafClasses;
+    if (clusterCentroids) {
+      leafClasses = centroidLabelOrder(labeled, numClasses);
+    } else if (labelOrder != null) {
+      leafClasses = labelOrder;
+    } else {
+      leafClasses = new int[numClasses];
+      for (int k = 0; k < numClasses; k++) {
+        leafClasses[k] = k;
+      }
+    }
+    // validates leafClasses
+    int[] classLeaves = LabelTreeClassifier.inverse(leafClasses, numClasses);
+
+    // the tree is trained on leaves rather than classes
+    int[] labels = new int[labeled.size()];
+    SparseFeatureVector[] vectors = new SparseFeatureVector[labeled.size()];
+    for (int i = 0; i < labels.length; i++) {
+      labels[i] = classLeaves[labeled.get(i).getObservedLabel()];
+      vectors[i] = labeled.get(i).asFeatureVector();
+    }
+    int[] instances = new int[labels.length];
+    for (int i = 0; i < instances.length; i++) {
+      instances[i] = i;
+    }
+
+    Tree tree = new Tree(numClasses - 1, numFeatures, labels, vectors);
+    tree.train(0, 0, numClasses, instances);
+    return new LabelTreeClassifier(numClasses, numFeatures, tree.biases, tree.defaultWeights, tree.features,
+        tree.weights, leafClasses, beamWidth);
+  }
+
+  /**
+   * Orders the classes so that classes with similar feature centroids share subtrees. The
+   * classes are split top-down as the tree splits its leaves: the classes under a node are
+   * divided between two seeds (the class least similar to the classes' mean centroid, and
+   * the class least similar to that one) by the difference of their cosine similarities to
+   * the seeds, with the left half of the node's leaves going to the first seed. Classes
+   * without labeled instances have empty centroids and fall in the middle.
+   */
+  public static int[] centroidLabelOrder(Dataset data) {
+    Preconditions.checkNotNull(data);
+    return centroidLabelOrder(Datasets.divideInstancesWithObservedLabels(data).getFirst(),
+        data.getInfo().getNumClasses());
+  }
+
+  private static int[] centroidLabelOrder(Iterable<DatasetInstance> labeled, int numClasses) {
+    final Int2DoubleOpenHashMap[] centroids = new Int2DoubleOpenHashMap[numClasses];
+    for (int k = 0; k < numClasses; k++) {
+      centroids[k] = new Int2DoubleOpenHashMap();
+    }
+    for (DatasetInstance instance : labeled) {
+      final Int2DoubleOpenHashMap centroid = centroids[instance.getObservedLabel()];
+      instance.asFeatureVector().visitSparseEntries(new EntryVisitor() {
+        @Override
+        public void visitEntry(int feature, double value) {
+          centroid.addTo(feature, value);
+        }
+      });
+    }
+    // unit length, so that dot products are cosine similarities
+    for (int k = 0; k < numClasses; k++) {
+      double norm = Math.sqrt(dot(centroids[k], centroids[k]));
+      Int2DoubleOpenHashMap normalized = new Int2DoubleOpenHashMap(centroids[k].size());
+      for (Int2DoubleMap.Entry entry : centroids[k].int2DoubleEntrySet()) {
+        normalized.put(entry.getIntKey(), entry.getDoubleValue() / norm);
+      }
+      centroids[k] = normalized;
+    }
+
+    int[] order = new int[numClasses];
+    for (int k = 0; k < numClasses; k++) {
+      order[k] = k;
+    }
+    split(order, 0, numClasses, centroids);
+    return order;
+  }
+
+  /**
+   * Reorders order[lo, hi) into the classes of the left subtree, [lo, mid), and of the right,
+   * [mid, hi), and recurses.
+   */
+  private static void split(int[] order, int lo, int hi, final Int2DoubleOpenHashMap[] centroids) {
+    if (hi - lo < 2) {
+      return;
+    }
+    Int2DoubleOpenHashMap mean = new Int2DoubleOpenHashMap();
+    for (int i = lo; i < hi; i++) {
+      for (Int2DoubleMap.Entry entry : centroids[order[i]].int2DoubleEntrySet()) {
+        mean.addTo(entry.getIntKey(), entry.getDoubleValue());
+      }
+    }
+    int first = leastSimilar(order, lo, hi, mean, centroids);
+    int second = leastSimilar(order, lo, hi, centroids[first], centroids);
+
+    Integer[] classes = new Integer[hi - lo];
+    final double[] preference = new double[centroids.length];
+    for (int i = lo; i < hi; i++) {
+      int k = order[i];
+      classes[i - lo] = k;
+      preference[k] = dot(centroids[k], centroids[second]) - dot(centroids[k], centroids[first]);
+    }
+    // the first seed's side first; ties by class
+    Arrays.sort(classes, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer k1, Integer k2) {
+        int cmp = Double.compare(preference[k1], preference[k2]);
+        return (cmp != 0) ? cmp : k1.compareTo(k2);
+      }
+    });
+    for (int i = lo; i < hi; i++) {
+      order[i] = classes[i - lo];
+    }
+    int mid = (lo + hi) >>> 1;
+    split(order, lo, mid, centroids);
+    split(order, mid, hi, centroids);
+  }
+
+  /**
+   * The class among order[lo, hi) with a non-empty centroid whose centroid has the smallest
+   * dot product with target (the lowest such class among ties), or order[lo] if every
+   * centroid is empty.
+   */
+  private static int leastSimilar(int[] order, int lo, int hi, Int2DoubleOpenHashMap target,
+      Int2DoubleOpenHashMap[] centroids) {
+    int best = order[lo];
+    double bestDot = Double.POSITIVE_INFINITY;
+    for (int i = lo; i < hi; i++) {
+      int k = order[i];
+      if (centroids[k].size() == 0) {
+        continue;
+      }
+      double dot = dot(centroids[k], target);
+      if (dot < bestDot || dot == bestDot && k < best) {
+        best = k;
+        bestDot = dot;
+      }
+    }
+    return best;
+  }
+
+  private static double dot(Int2DoubleOpenHashMap a, Int2DoubleOpenHashMap b) {
+    if (a.size() > b.size()) {
+      return dot(b, a);
+    }
+    double dot = 0.0;
+    for (Int2DoubleMap.Entry entry : a.int2DoubleEntrySet()) {
+      dot += entry.getDoubleValue() * b.get(entry.getIntKey());
+    }
+    return dot;
+  }
+
+  /**
+   * The parameters of the internal nodes, filled in pre-order.
+   */
+  private static class Tree {
+    private final int numFeatures;
+    private final int[] labels;
+    private final SparseFeatureVector[] vectors;
+    private final double[] biases;
+    private final double[] defaultWeights;
+    private final int[][] features;
+    private final double[][] weights;
+
+    Tree(int numNodes, int numFeatures, int[] labels, SparseFeatureVector[] vectors) {
+      this.numFeatures = numFeatures;
+      this.labels = labels;
+      this.vectors = vectors;
+      this.biases = new double[numNodes];
+      this.defaultWeights = new double[numNodes];
+      this.features = new int[numNodes][];
+      this.weights = new double[numNodes][];
+    }
+
+    /**
+     * Trains the subtree numbered node that covers the leaves [lo, hi) from the given
+     * instances (all of which have a leaf in [lo, hi)).
+     */
+    void train(int node, int lo, int hi, int[] instances) {
+      if (hi - lo < 2) {
+        return;
+      }
+      int mid = (lo + hi) >>> 1;
+      Side left = new Side();
+      Side right = new Side();
+      for (int i : instances) {
+        Side side = (labels[i] < mid) ? left : right;
+        side.instances.add(i);
+        vectors[i].visitSparseEntries(side);
+      }
+
+      // add-one smoothing of the instance and feature counts
+      double leftNorm = Math.log(numFeatures + left.total);
+      double rightNorm = Math.log(numFeatures + right.total);
+      biases[node] = Math.log(1 + right.instances.size()) - Math.log(1 + left.instances.size());
+      // with no features every vector is empty, and log 0 - log 0 would make the logit NaN
+      defaultWeights[node] = (numFeatures == 0) ? 0.0 : leftNorm - rightNorm;
+
+      int[] seen = left.union(right);
+      double[] nodeWeights = new double[seen.length];
+      for (int j = 0; j < seen.length; j++) {
+        nodeWeights[j] = Math.log1p(right.counts.get(seen[j])) - Math.log1p(left.counts.get(seen[j]));
+      }
+      features[node] = seen;
+      weights[node] = nodeWeights;
+
+      int[] leftInstances = left.instances.toIntArray();
+      int[] rightInstances = right.instances.toIntArray();
+      // release the counts before descending
+      left = null;
+      right = null;
+      train(node + 1, lo, mid, leftInstances);
+      train(node + (mid - lo), mid, hi, rightInstances);
+    }
+  }
+
+  /**
+   * The instances and feature counts on one side of a node.
+   */
+  private static class Side implements EntryVisitor {
+    private final IntArrayList instances = new IntArrayList();
+    private final Int2DoubleOpenHashMap counts = new Int2DoubleOpenHashMap();
+    private double total;
+
+    @Override
+    public void visitEntry(int feature, double value) {
+      counts.addTo(feature, value);
+      total += value;
+    }
+
+    /**
+     * The features seen on either side, in increasing order.
+     */
+    int[] union(Side other) {
+      int[] seen = new int[counts.size() + other.counts.size()];
+      int n = 0;
+      for (Int2DoubleMap.Entry entry : counts.int2DoubleEntrySet()) {
+        seen[n++] = entry.getIntKey();
+      }
+      for (Int2DoubleMap.Entry entry : other.counts.int2DoubleEntrySet()) {
+        seen[n++] = entry.getIntKey();
+      }
+      Arrays.sort(seen);
+      int unique = 0;
+      for (int i = 0; i < n; i++) {
+        if (unique == 0 || seen[i] != seen[unique - 1]) {
+          seen[unique++] = seen[i];
+        }
+      }
+      return Arrays.copyOf(seen, unique);
+    }
+  }
+
+}
@@ -15,12 +15,14 @@
  */
 package edu.byu.nlp.classify;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
 import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
 import edu.byu.nlp.util.DoubleArrays;
 
 /**
@@ -30,44 +32,144 @@ import edu.byu.nlp.util.DoubleArrays;
 public class LinearClassifier implements Classifier {
 
 	private final double[] bias;
-	// TODO(rah67): this should really be represented by a ColumnMajorMatrix class
-	private final double[] weights;
-	private final double[] scores;
+	private final WeightMatrix weights;
+	// per-thread scratch space so that classify and scoresFor may be called concurrently
+	private final ThreadLocal<double[]> scores;
 	private final int numFeatures;
 	
+	/**
+	 * @param weights feature-major weights: entry (k, f) is at f * numClasses + k (see
+	 *     {@link WeightLayout#FEATURE_MAJOR}); not copied
+	 */
 	public LinearClassifier(double[] bias, double... weights) {
+		this(bias, new FeatureMajorWeightMatrix(Preconditions.checkNotNull(bias).length, Preconditions.checkNotNull(weights)));
+	}
+	
+	public LinearClassifier(double[] bias, WeightMatrix weights) {
 		Preconditions.checkNotNull(bias);
 		Preconditions.checkNotNull(weights);
-		Preconditions.checkArgument(weights.length % bias.length == 0,
-				"There is a mismatch in the number of classes (%s) and the number of weights (%s)",
-				Integer.toString(bias.length), Integer.toString(weights.length));
+		Preconditions.checkArgument(weights.getNumClasses() == bias.length,
+				"There is a mismatch in the number of classes (%s) and the number of classes of the weights (%s)",
+				Integer.toString(bias.length), Integer.toString(weights.getNumClasses()));
 		
-		this.numFeatures = weights.length / bias.length;
+		this.numFeatures = weights.getNumFeatures();
 		this.bias = bias;
 		this.weights = weights;
-		this.scores = new double[bias.length];
+		this.scores = new ThreadLocal<double[]>() {
+		  @Override
+		  protected double[] initialValue() {
+		    return new double[LinearClassifier.this.bias.length];
+		  }
+		};
 	}
 	
 	/** {@inheritDoc} */
 	@Override
 	public int classify(SparseFeatureVector s) {
-		return DoubleArrays.argMax(scoresFor(s));
+		return ScoringKernels.argMax(scoresFor(s));
+	}
+	
+	/**
+	 * Writes the label of vectors.get(i) into labels[i].
+	 * 
+	 * With feature-major weights, the entries of the whole batch are sorted by feature and
+	 * each feature's block of class weights is read once and added to the scores of every
+	 * document containing it, so features shared within the batch are fetched from memory
+	 * once rather than once per document. Other layouts score each document in turn.
+	 */
+	public void classifyAll(List<? extends SparseFeatureVector> vectors, int[] labels) {
+	  Preconditions.checkArgument(labels.length >= vectors.size(), "labels is shorter than the batch");
+	  int numClasses = bias.length;
+	  double[][] scores = new double[vectors.size()][];
+	  if (weights.getLayout() != WeightLayout.FEATURE_MAJOR) {
+	    for (int i = 0; i < vectors.size(); i++) {
+	      scores[i] = scoresFor(vectors.get(i), new double[numClasses]);
+	    }
+	  } else {
+	    BatchEntries entries = new BatchEntries();
+	    for (int i = 0; i < vectors.size(); i++) {
+	      SparseFeatureVector s = vectors.get(i);
+	      Preconditions.checkArgument(s.length() <= numFeatures, "The input vector is longer than the number of features");
+	      scores[i] = bias.clone();
+	      entries.document = i;
+	      s.visitSparseEntries(entries);
+	    }
+	    // (feature, entry) pairs packed into longs so that a primitive sort orders them by feature
+	    long[] order = new long[entries.size];
+	    for (int j = 0; j < entries.size; j++) {
+	      order[j] = ((long) entries.features[j] << 32) | j;
+	    }
+	    Arrays.sort(order);
+	    double[] w = weights.toFeatureMajorArray();
+	    for (long key : order) {
+	      int j = (int) key;
+	      ScoringKernels.axpy(entries.values[j], w, entries.features[j] * numClasses, scores[entries.documents[j]], numClasses);
+	    }
+	  }
+	  for (int i = 0; i < vectors.size(); i++) {
+	    labels[i] = ScoringKernels.argMax(scores[i]);
+	  }
+	}
+	
+	/**
+	 * The entries of a batch of documents.
+	 */
+	private class BatchEntries implements EntryVisitor {
+	  private int document;
+	  private int size;
+	  private int[] documents = new int[64];
+	  private int[] features = new int[64];
+	  private double[] values = new double[64];
+	  
+	  @Override
+	  public void visitEntry(int feature, double value) {
+	    Preconditions.checkElementIndex(feature, numFeatures);
+	    if (size == features.length) {
+	      documents = Arrays.copyOf(documents, 2 * size);
+	      features = Arrays.copyOf(features, 2 * size);
+	      values = Arrays.copyOf(values, 2 * size);
+	    }
+	    documents[size] = document;
+	    features[size] = feature;
+	    values[size++] = value;
+	  }
 	}
 	
 	/**
 	 * The returned array is owned by this class and may be changed at any time. Therefore a copy should be
-	 * made before any other operations are performed with the classifier.
+	 * made before any other operations are performed with the classifier (on the same thread).
 	 */
 	protected double[] scoresFor(SparseFeatureVector s) {
+	  return scoresFor(s, scores.get());
+	}
+	
+	/**
+	 * Writes the scores into the supplied array (of length numClasses) and returns it. Since no state is 
+	 * shared, this may be called concurrently with distinct arrays.
+	 */
+	protected double[] scoresFor(SparseFeatureVector s, double[] scores) {
 	  Preconditions.checkArgument(s.length() <= numFeatures, "The input vector is longer than the number of features");
     System.arraycopy(bias, 0, scores, 0, bias.length);
     // FIXME(rah67): be sure there that "unseen" features don't AIOOB
-    s.preMultiplyAsColumnAndAddTo(weights, scores);
+    weights.addScoresTo(s, scores);
     return scores;
 	}
 	
-	@VisibleForTesting double[] getBias() { return bias; }
-	@VisibleForTesting double[] getWeights() { return weights; }
+	/**
+	 * A classifier with the same bias whose weights are compacted into a
+	 * {@code SparseWeightMatrix}: weights within tolerance of their class's default are dropped.
+	 */
+	public LinearClassifier compact(double tolerance) {
+	  return new LinearClassifier(bias, SparseWeightMatrix.compact(weights, tolerance));
+	}
+	
+	public int getNumClasses() { return bias.length; }
+	public int getNumFeatures() { return numFeatures; }
+	public WeightMatrix getWeightMatrix() { return weights; }
+	
+	/** The bias of each class; not a copy. */
+	public double[] getBias() { return bias; }
+	@VisibleForTesting double[] getWeights() { return weights.toFeatureMajorArray(); }
 
   /** {@inheritDoc} */
   @Override
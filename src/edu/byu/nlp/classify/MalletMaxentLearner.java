@@ -0,0 +1,63 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.data.types.Dataset;
+
+/**
+ * A {@code ClassifierLearner} that trains a mallet maxent model on the observed
+ * labels of a dataset. The (expensive) conversion to mallet instances is done once
+ * by the {@code MalletMaxentTrainer} passed in, so many learners with different
+ * settings can share a single trainer (e.g., during a hyperparameter sweep).
+ *
+ * The dataset passed to learnFrom must be the one the trainer was built on. If the trainer
+ * was built with feature hashing, the returned classifier hashes its input.
+ */
+public class MalletMaxentLearner implements ClassifierLearner {
+
+  private final MalletMaxentTrainer trainer;
+  private final Double gaussianPriorVariance;
+
+  public MalletMaxentLearner(MalletMaxentTrainer trainer){
+    this(trainer, null);
+  }
+
+  /**
+   * @param gaussianPriorVariance null means use the mallet default
+   */
+  public MalletMaxentLearner(MalletMaxentTrainer trainer, Double gaussianPriorVariance){
+    this.trainer = Preconditions.checkNotNull(trainer);
+    this.gaussianPriorVariance = gaussianPriorVariance;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Classifier learnFrom(Dataset data) {
+    Preconditions.checkNotNull(data);
+    Preconditions.checkArgument(data.getInfo().getNumDocuments()==trainer.getNumInstances(),
+        "The dataset (%s documents) does not match the one the trainer was built on (%s documents)",
+        data.getInfo().getNumDocuments(), trainer.getNumInstances());
+    Classifier classifier = new MalletMaxentClassifier(
+        trainer.maxDataModel(trainer.observedLabelSoftLabels(), null, gaussianPriorVariance));
+    if (trainer.getFeatureHasher()!=null){
+      classifier = new HashingClassifier(classifier, trainer.getFeatureHasher());
+    }
+    return classifier;
+  }
+
+}
@@ -15,6 +15,7 @@
  */
 package edu.byu.nlp.classify;
 
+import java.util.Arrays;
 import java.util.List;
 
 import cc.mallet.classify.MaxEnt;
@@ -36,6 +37,7 @@ import edu.byu.nlp.util.DoubleArrays;
 import edu.byu.nlp.util.Enumeration;
 import edu.byu.nlp.util.IntArrays;
 import edu.byu.nlp.util.Iterables2;
+import edu.byu.nlp.util.Nullable;
 
 public class MalletMaxentTrainer{
 
@@ -43,6 +45,7 @@ public class MalletMaxentTrainer{
   private Alphabet dataAlphabet;
   private LabelAlphabet targetAlphabet;
   private List<DatasetInstance> externalInstances;
+  private FeatureHasher featureHasher;
 
   private MalletMaxentTrainer(){}
   
@@ -52,8 +55,20 @@ public class MalletMaxentTrainer{
    * are passed in separately during training.
    */
   public static MalletMaxentTrainer build(Dataset data){
+    return build(data, null);
+  }
+  
+  /**
+   * Like build(data), but features are first mapped into the space defined by featureHasher 
+   * (if non-null), so that the mallet alphabet has a fixed size regardless of the vocabulary. 
+   * Models trained this way must be applied to hashed feature vectors (see 
+   * {@code MalletMaxentLearner}, which takes care of this).
+   */
+  public static MalletMaxentTrainer build(Dataset data, @Nullable FeatureHasher featureHasher){
 
     final MalletMaxentTrainer trainer = new MalletMaxentTrainer();
+    trainer.featureHasher = featureHasher;
+    int numFeatures = (featureHasher==null)? data.getInfo().getNumFeatures(): featureHasher.getNumBuckets();
     
     trainer.externalInstances = Lists.newArrayListWithCapacity(data.getInfo().getNumDocuments());
     trainer.instances = new cc.mallet.types.Instance[data.getInfo().getNumDocuments()];
@@ -63,7 +78,7 @@ public class MalletMaxentTrainer{
     trainer.targetAlphabet.startGrowth();
     
     // create identity mallet alphabets (so that our indices correspond exactly to theirs)
-    for (int f=0; f<data.getInfo().getNumFeatures(); f++){
+    for (int f=0; f<numFeatures; f++){
       trainer.dataAlphabet.lookupIndex(f,true);
     }
     trainer.dataAlphabet.stopGrowth();
@@ -73,7 +88,7 @@ public class MalletMaxentTrainer{
     trainer.targetAlphabet.stopGrowth();
     
     // alphabet sanity check #1 (make sure mallet alphabets return identity mappings
-    Preconditions.checkState(data.getInfo().getNumFeatures()==trainer.dataAlphabet.size());
+    Preconditions.checkState(numFeatures==trainer.dataAlphabet.size());
     Preconditions.checkState(data.getInfo().getNumClasses()==trainer.targetAlphabet.size());
     for (int f=0; f<trainer.dataAlphabet.size(); f++){
       Preconditions.checkState(trainer.dataAlphabet.lookupIndex(f)==f);
@@ -90,7 +105,7 @@ public class MalletMaxentTrainer{
     // the existing indices)
     for (DatasetInstance inst: data){
       // visit the data (to make sure all features and labels were added correctly)
-      inst.asFeatureVector().visitSparseEntries(new EntryVisitor() {
+      trainer.featuresOf(inst).visitSparseEntries(new EntryVisitor() {
         @Override
         public void visitEntry(int index, double value) {
           Preconditions.checkState(trainer.dataAlphabet.lookupIndex(index,false)>=0);
@@ -104,7 +119,8 @@ public class MalletMaxentTrainer{
     // convert each dataset instance to a mallet instance 
     for (Enumeration<DatasetInstance> item: Iterables2.enumerate(data)){
       // convert feature vector
-      trainer.instances[item.getIndex()] = convert(trainer.dataAlphabet, item.getElement());
+      DatasetInstance inst = item.getElement();
+      trainer.instances[item.getIndex()] = convert(trainer.dataAlphabet, trainer.featuresOf(inst), inst.getInfo().getRawSource());
       // remember the original instance
       trainer.externalInstances.add(item.getElement());
     }
@@ -117,6 +133,16 @@ public class MalletMaxentTrainer{
    * dataset this trainer was build on).
    */
   public MaxEnt maxDataModel(double[][] softlabels, MaxEnt previousModel){
+    return maxDataModel(softlabels, previousModel, null);
+  }
+
+  /**
+   * Train a log-linear model using the given soft labels (must match the 
+   * dataset this trainer was build on) and gaussian prior variance 
+   * (null means use the mallet default). The converted instances are only 
+   * read, so a single trainer may be shared by concurrent calls. 
+   */
+  public MaxEnt maxDataModel(double[][] softlabels, MaxEnt previousModel, Double gaussianPriorVariance){
     // create a training set by adding each instance K times, each weighted by softlabels
     InstanceList trainingSet = new InstanceList(dataAlphabet, targetAlphabet);
     for (int i=0; i<instances.length; i++){
@@ -130,7 +156,45 @@ public class MalletMaxentTrainer{
       }
     }
     // train
-    return new MaxEntTrainer(previousModel).train(trainingSet);
+    MaxEntTrainer maxentTrainer = (previousModel==null)? new MaxEntTrainer(): new MaxEntTrainer(previousModel);
+    if (gaussianPriorVariance!=null){
+      maxentTrainer.setGaussianPriorVariance(gaussianPriorVariance);
+    }
+    return maxentTrainer.train(trainingSet);
+  }
+  
+  /**
+   * Soft labels that put all mass on the observed label of each instance 
+   * this trainer was built on. Instances without an observed label get 
+   * a row of NaNs (and are ignored by maxDataModel).
+   */
+  public double[][] observedLabelSoftLabels(){
+    double[][] softlabels = new double[instances.length][targetAlphabet.size()];
+    for (int i=0; i<instances.length; i++){
+      Integer label = externalInstances.get(i).getObservedLabel();
+      if (label==null){
+        Arrays.fill(softlabels[i], Double.NaN);
+      }
+      else{
+        softlabels[i][label] = 1;
+      }
+    }
+    return softlabels;
+  }
+  
+  public int getNumInstances(){
+    return instances.length;
+  }
+  
+  /**
+   * null unless this trainer was built with feature hashing
+   */
+  public FeatureHasher getFeatureHasher(){
+    return featureHasher;
+  }
+  
+  private SparseFeatureVector featuresOf(DatasetInstance inst){
+    return (featureHasher==null)? inst.asFeatureVector(): featureHasher.hash(inst.asFeatureVector());
   }
   
   /**
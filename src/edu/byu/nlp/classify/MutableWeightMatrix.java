@@ -0,0 +1,44 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+
+/**
+ * A {@code WeightMatrix} that can be modified, e.g., by a learner accumulating counts.
+ */
+public interface MutableWeightMatrix extends WeightMatrix {
+
+  void set(int classIndex, int feature, double value);
+
+  void fill(double value);
+
+  /**
+   * Adds scale * vector to the weights of classIndex.
+   */
+  void addToClass(int classIndex, SparseFeatureVector vector, double scale);
+
+  /**
+   * Scales the weights of each class so they sum to one.
+   */
+  void normalizeClasses();
+
+  /**
+   * Replaces every weight by its natural log.
+   */
+  void logToSelf();
+
+}
@@ -15,6 +15,8 @@
  */
 package edu.byu.nlp.classify;
 
+import java.util.List;
+
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
@@ -76,15 +78,100 @@ public class NaiveBayesClassifier extends LinearClassifier implements Probabilis
     @VisibleForTesting NaiveBayesClassifier(double[] logPOfY, double[] logPOfXGivenY) {
         super(logPOfY, logPOfXGivenY);
     }
+
+    /**
+     * Does not copy or validate its arguments.
+     * 
+     * @param logPOfXGivenY log p(feature | class) in any layout
+     */
+    public NaiveBayesClassifier(double[] logPOfY, WeightMatrix logPOfXGivenY) {
+        super(logPOfY, logPOfXGivenY);
+    }
     
+    /**
+     * A naive Bayes classifier with the same prior whose log p(feature | class) are compacted
+     * into a {@code SparseWeightMatrix}. The posteriors remain normalized, since they are
+     * renormalized after scoring.
+     */
+    @Override
+    public NaiveBayesClassifier compact(double tolerance) {
+        return new NaiveBayesClassifier(getBias(), SparseWeightMatrix.compact(getWeightMatrix(), tolerance));
+    }
+
     /** {@inheritDoc} */
     @Override
     public CategoricalDistribution given(SparseFeatureVector condition) {
         // The scores of a linear model are the dot product between the input vector and weights for each class.
         // Since each weight w_yf is log p(x_f | y), p(y|x) \propto x \cdot w_y.
         double[] scores = scoresFor(condition);
-        DoubleArrays.logNormalizeToSelf(scores);
+        ScoringKernels.logNormalizeToSelf(scores);
         return DoubleArrayCategoricalDistribution.newDistributionFromLogProbs(scores, true);
     }
 
+    /**
+     * Computes the posterior of every document without creating a distribution object per document.
+     * Normalization (log-sum-exp), entropy and margin are computed in the same pass over the scores.
+     */
+    public PosteriorBatch givenAll(List<? extends SparseFeatureVector> conditions, boolean computeUncertainty) {
+        int numClasses = getNumClasses();
+        double[] probabilities = new double[conditions.size() * numClasses];
+        double[] entropies = computeUncertainty ? new double[conditions.size()] : null;
+        double[] margins = computeUncertainty ? new double[conditions.size()] : null;
+        givenAll(conditions, probabilities, entropies, margins);
+        return new PosteriorBatch(numClasses, probabilities, entropies, margins);
+    }
+
+    /**
+     * Writes the posterior of document i into probabilities[i * numClasses ... (i + 1) * numClasses - 1]
+     * and, when the arrays are non-null, its entropy and margin into entropies[i] and margins[i].
+     */
+    public void givenAll(List<? extends SparseFeatureVector> conditions, double[] probabilities,
+                         double[] entropies, double[] margins) {
+        int numClasses = getNumClasses();
+        Preconditions.checkArgument(probabilities.length >= conditions.size() * numClasses);
+        double[] scores = new double[numClasses];
+        int offset = 0;
+        for (int i = 0; i < conditions.size(); i++, offset += numClasses) {
+            scoresFor(conditions.get(i), scores);
+
+            // max and runner-up (for the margin)
+            double max = Double.NEGATIVE_INFINITY;
+            double second = Double.NEGATIVE_INFINITY;
+            for (int k = 0; k < numClasses; k++) {
+                if (scores[k] > max) {
+                    second = max;
+                    max = scores[k];
+                } else if (scores[k] > second) {
+                    second = scores[k];
+                }
+            }
+
+            // unnormalized probabilities, their sum, and sum_k e^{s_k - max} (s_k - max) for the entropy
+            double sum = 0.0;
+            double weightedSum = 0.0;
+            for (int k = 0; k < numClasses; k++) {
+                double shifted = scores[k] - max;
+                double p = Math.exp(shifted);
+                probabilities[offset + k] = p;
+                sum += p;
+                if (p > 0) {
+                    weightedSum += p * shifted;
+                }
+            }
+            double norm = 1.0 / sum;
+            for (int k = 0; k < numClasses; k++) {
+                probabilities[offset + k] *= norm;
+            }
+
+            if (entropies != null) {
+                // H = -sum_k p_k log p_k = log Z - sum_k p_k (s_k - max), where Z = sum_k e^{s_k - max}
+                entropies[i] = Math.log(sum) - weightedSum * norm;
+            }
+            if (margins != null) {
+                margins[i] = numClasses < 2 ? 1.0 : (1.0 - Math.exp(second - max)) * norm;
+            }
+        }
+    }
+
+
 }
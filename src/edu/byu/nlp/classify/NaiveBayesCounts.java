@@ -0,0 +1,320 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+import edu.byu.nlp.dataset.Datasets;
+import edu.byu.nlp.util.DoubleArrays;
+import edu.byu.nlp.util.Nullable;
+
+/**
+ * The raw (unsmoothed) sufficient statistics of a multinomial naive bayes model.
+ * Because the counts are kept, a {@code NaiveBayesClassifier} can be produced for
+ * any symmetric Dirichlet smoothing parameter (global or per class) without
+ * another pass over the data.
+ *
+ * Feature counts are kept in a {@code MutableWeightMatrix}. By default its layout is
+ * {@link WeightLayout#FEATURE_MAJOR}, or {@link WeightLayout#OFF_HEAP} when numClasses *
+ * numFeatures does not fit in an array (e.g., many classes in a large hashed space).
+ * Classifiers built from OFF_HEAP counts compute their weights from the counts when
+ * scoring rather than copying them, so a model larger than memory is not stored twice.
+ *
+ * If the counts were computed with a {@code FeatureHasher}, features are counted in the
+ * hashed space and the resulting classifiers must be wrapped in a
+ * {@code HashingProbabilisticClassifier} (see {@code HashingNaiveBayesLearner}).
+ */
+public class NaiveBayesCounts {
+
+  private final int numClasses;
+  private final int numFeatures;
+  private final double[] classCounts;
+  private final MutableWeightMatrix featureCounts;
+  // sum over features of featureCounts for each class
+  private final double[] classFeatureTotals;
+  private final FeatureHasher hasher;
+
+  private NaiveBayesCounts(MutableWeightMatrix featureCounts, FeatureHasher hasher) {
+    this.hasher = hasher;
+    this.numClasses = featureCounts.getNumClasses();
+    this.numFeatures = featureCounts.getNumFeatures();
+    this.classCounts = new double[numClasses];
+    this.featureCounts = featureCounts;
+    this.classFeatureTotals = new double[numClasses];
+  }
+
+  /**
+   * Counts the instances with observed labels.
+   */
+  public static NaiveBayesCounts fromDataset(Dataset data) {
+    return fromDataset(data, null);
+  }
+
+  /**
+   * Counts the instances with observed labels in the space defined by hasher (if non-null). 
+   */
+  public static NaiveBayesCounts fromDataset(Dataset data, @Nullable FeatureHasher hasher) {
+    return fromDataset(data, hasher, (WeightLayout) null);
+  }
+
+  /**
+   * @param layout a mutable layout for the feature counts, or null to choose by size
+   */
+  public static NaiveBayesCounts fromDataset(Dataset data, @Nullable FeatureHasher hasher,
+      @Nullable WeightLayout layout) {
+    checkDataset(data, hasher);
+    int numClasses = data.getInfo().getNumClasses();
+    int numFeatures = numFeatures(data, hasher);
+    if (layout == null) {
+      layout = WeightLayout.featureMajorFor(numClasses, numFeatures);
+    }
+    Preconditions.checkArgument(layout.isMutable(), "cannot count in %s weights", layout);
+    return count(data, hasher, layout.newMatrix(numClasses, numFeatures));
+  }
+
+  /**
+   * Accumulates the counts in featureCounts, which must be a zero numClasses x numFeatures
+   * (or numBuckets) matrix; e.g., an {@code OffHeapWeightMatrix} mapped from a new file,
+   * for counts larger than memory.
+   */
+  public static NaiveBayesCounts fromDataset(Dataset data, @Nullable FeatureHasher hasher,
+      MutableWeightMatrix featureCounts) {
+    checkDataset(data, hasher);
+    Preconditions.checkArgument(featureCounts.getNumClasses() == data.getInfo().getNumClasses(),
+        "expected counts for %s classes but got %s", data.getInfo().getNumClasses(), featureCounts.getNumClasses());
+    Preconditions.checkArgument(featureCounts.getNumFeatures() == numFeatures(data, hasher),
+        "expected counts for %s features but got %s", numFeatures(data, hasher), featureCounts.getNumFeatures());
+    return count(data, hasher, featureCounts);
+  }
+
+  private static void checkDataset(Dataset data, FeatureHasher hasher) {
+    Preconditions.checkNotNull(data);
+    Preconditions.checkArgument(hasher == null || !hasher.isSigned(), "naive bayes requires unsigned feature hashing");
+    Preconditions.checkArgument(data.getInfo().getNumClasses() > 0, "Dataset must have at least one class");
+    Preconditions.checkArgument(data.getInfo().getNumFeatures() >= 0, "Dataset must have zero or more features");
+  }
+
+  private static int numFeatures(Dataset data, FeatureHasher hasher) {
+    return (hasher == null) ? data.getInfo().getNumFeatures() : hasher.getNumBuckets();
+  }
+
+  private static NaiveBayesCounts count(Dataset data, FeatureHasher hasher, MutableWeightMatrix featureCounts) {
+    final NaiveBayesCounts counts = new NaiveBayesCounts(featureCounts, hasher);
+    for (DatasetInstance instance : Datasets.divideInstancesWithObservedLabels(data).getFirst()) {
+      final int label = instance.getObservedLabel();
+      ++counts.classCounts[label];
+      SparseFeatureVector features = counts.featuresOf(instance);
+      featureCounts.addToClass(label, features, 1.0);
+      features.visitSparseEntries(new EntryVisitor() {
+        @Override
+        public void visitEntry(int index, double value) {
+          counts.classFeatureTotals[label] += value;
+        }
+      });
+    }
+    return counts;
+  }
+
+  public int getNumClasses() { return numClasses; }
+  public int getNumFeatures() { return numFeatures; }
+  public FeatureHasher getFeatureHasher() { return hasher; }
+
+  /**
+   * The unsmoothed count of each (class, feature); not a copy.
+   */
+  public WeightMatrix getFeatureCounts() { return featureCounts; }
+
+  private SparseFeatureVector featuresOf(DatasetInstance instance) {
+    return (hasher == null) ? instance.asFeatureVector() : hasher.hash(instance.asFeatureVector());
+  }
+
+  /**
+   * Same smoothing parameter for every class.
+   */
+  public NaiveBayesClassifier classifier(double classAlpha, double featureAlpha) {
+    double[] featureAlphas = new double[numClasses];
+    Arrays.fill(featureAlphas, featureAlpha);
+    return classifier(classAlpha, featureAlphas);
+  }
+
+  /**
+   * The weights are in the layout of the counts.
+   * 
+   * @param classAlpha Dirichlet parameter of the prior over p(y)
+   * @param featureAlphas featureAlphas[k] is the Dirichlet parameter of the prior over p(x|y=k)
+   */
+  public NaiveBayesClassifier classifier(double classAlpha, double[] featureAlphas) {
+    Preconditions.checkArgument(classAlpha >= 0, "smoothing must be non-negative");
+    Preconditions.checkArgument(featureAlphas.length == numClasses,
+        "expected one smoothing parameter per class (%s) but got %s", numClasses, featureAlphas.length);
+
+    // Compute log p(c)
+    double[] biases = new double[numClasses];
+    for (int k = 0; k < numClasses; k++) {
+      biases[k] = classCounts[k] + classAlpha;
+    }
+    DoubleArrays.logToSelf(biases);
+    DoubleArrays.logNormalizeToSelf(biases);
+
+    // Compute log p(f|c)
+    double[] logNorms = new double[numClasses];
+    for (int k = 0; k < numClasses; k++) {
+      Preconditions.checkArgument(featureAlphas[k] >= 0, "smoothing must be non-negative");
+      logNorms[k] = Math.log(classFeatureTotals[k] + numFeatures * featureAlphas[k]);
+    }
+    if (featureCounts.getLayout() == WeightLayout.OFF_HEAP) {
+      return new NaiveBayesClassifier(biases, new SmoothedLogProbabilities(featureCounts, featureAlphas.clone(), logNorms));
+    }
+    MutableWeightMatrix weights = featureCounts.getLayout().newMatrix(numClasses, numFeatures);
+    for (int f = 0; f < numFeatures; f++) {
+      for (int k = 0; k < numClasses; k++) {
+        weights.set(k, f, Math.log(featureCounts.get(k, f) + featureAlphas[k]) - logNorms[k]);
+      }
+    }
+    return new NaiveBayesClassifier(biases, weights);
+  }
+
+  /**
+   * The leave-one-out log likelihood log p(x_d, y_d | everything but d) summed over the
+   * labeled instances of data, evaluated for several feature smoothing parameters at once.
+   * Each instance's counts are subtracted from the sufficient statistics on the fly, so
+   * this is a single pass over the non-zero features regardless of the number of candidates.
+   *
+   * @param data must be the dataset these counts were computed from
+   */
+  public double[] leaveOneOutLogLikelihoods(Dataset data, double classAlpha, final double[] featureAlphas) {
+    Preconditions.checkArgument(classAlpha > 0, "leave-one-out requires positive smoothing");
+    for (double alpha : featureAlphas) {
+      Preconditions.checkArgument(alpha > 0, "leave-one-out requires positive smoothing");
+    }
+    double numLabeled = 0;
+    for (double count : classCounts) {
+      numLabeled += count;
+    }
+    final double logClassNorm = Math.log(numLabeled - 1 + numClasses * classAlpha);
+
+    final double[] logLikelihoods = new double[featureAlphas.length];
+    for (DatasetInstance instance : Datasets.divideInstancesWithObservedLabels(data).getFirst()) {
+      final int label = instance.getObservedLabel();
+      double logPOfY = Math.log(classCounts[label] - 1 + classAlpha) - logClassNorm;
+
+      // first pass over the features: document length
+      SparseFeatureVector features = featuresOf(instance);
+      final double[] length = new double[1];
+      features.visitSparseEntries(new EntryVisitor() {
+        @Override
+        public void visitEntry(int index, double value) {
+          length[0] += value;
+        }
+      });
+      for (int a = 0; a < featureAlphas.length; a++) {
+        logLikelihoods[a] += logPOfY - length[0] *
+            Math.log(classFeatureTotals[label] - length[0] + numFeatures * featureAlphas[a]);
+      }
+      // second pass: numerators
+      features.visitSparseEntries(new EntryVisitor() {
+        @Override
+        public void visitEntry(int index, double value) {
+          double heldOutCount = featureCounts.get(label, index) - value;
+          for (int a = 0; a < featureAlphas.length; a++) {
+            logLikelihoods[a] += value * Math.log(heldOutCount + featureAlphas[a]);
+          }
+        }
+      });
+    }
+    return logLikelihoods;
+  }
+
+  /**
+   * The candidate feature smoothing parameter with the highest leave-one-out log likelihood.
+   */
+  public double chooseFeatureAlpha(Dataset data, double classAlpha, double... candidates) {
+    Preconditions.checkArgument(candidates.length > 0, "must supply at least one candidate");
+    return candidates[DoubleArrays.argMax(leaveOneOutLogLikelihoods(data, classAlpha, candidates))];
+  }
+
+  /**
+   * log p(f | k) = log (count(k, f) + alpha_k) - log (total_k + numFeatures * alpha_k),
+   * computed from the counts on demand.
+   */
+  private static class SmoothedLogProbabilities implements WeightMatrix {
+    private final WeightMatrix counts;
+    private final double[] featureAlphas;
+    private final double[] logNorms;
+
+    SmoothedLogProbabilities(WeightMatrix counts, double[] featureAlphas, double[] logNorms) {
+      this.counts = counts;
+      this.featureAlphas = featureAlphas;
+      this.logNorms = logNorms;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public WeightLayout getLayout() {
+      return counts.getLayout();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getNumClasses() {
+      return counts.getNumClasses();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int getNumFeatures() {
+      return counts.getNumFeatures();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double get(int classIndex, int feature) {
+      return Math.log(counts.get(classIndex, feature) + featureAlphas[classIndex]) - logNorms[classIndex];
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void addScoresTo(SparseFeatureVector vector, final double[] scores) {
+      final int numClasses = counts.getNumClasses();
+      vector.visitSparseEntries(new EntryVisitor() {
+        @Override
+        public void visitEntry(int feature, double value) {
+          for (int k = 0; k < numClasses; k++) {
+            scores[k] += value * get(k, feature);
+          }
+        }
+      });
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double[] toFeatureMajorArray() {
+      int numClasses = counts.getNumClasses();
+      double[] weights = new double[FeatureMajorWeightMatrix.checkedSize(numClasses, counts.getNumFeatures())];
+      for (int i = 0; i < weights.length; i++) {
+        weights[i] = get(i % numClasses, i / numClasses);
+      }
+      return weights;
+    }
+  }
+
+}
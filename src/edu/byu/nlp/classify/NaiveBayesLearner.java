@@ -22,17 +22,37 @@ import com.google.common.base.Preconditions;
 import edu.byu.nlp.data.types.Dataset;
 import edu.byu.nlp.data.types.DatasetInstance;
 import edu.byu.nlp.dataset.Datasets;
-import edu.byu.nlp.util.ColumnMajorMatrices;
 import edu.byu.nlp.util.DoubleArrays;
 
 
 /**
- * Add one smoothing.
+ * Add one smoothing. See {@code SmoothedNaiveBayesLearner} for other smoothing values.
+ * 
+ * Counts are accumulated directly in a {@code WeightMatrix} of the chosen layout. By default,
+ * the layout is {@link WeightLayout#FEATURE_MAJOR} (fastest to score sparse documents), or
+ * {@link WeightLayout#OFF_HEAP} when numClasses * numFeatures does not fit in an array.
  * @author rah67
  *
  */
 public class NaiveBayesLearner implements ClassifierLearner {
 
+	// null chooses based on the size of the model
+	private final WeightLayout layout;
+	
+	public NaiveBayesLearner() {
+		this.layout = null;
+	}
+	
+	/**
+	 * @param layout a mutable layout: counts are accumulated in place
+	 */
+	public NaiveBayesLearner(WeightLayout layout) {
+		Preconditions.checkNotNull(layout);
+		Preconditions.checkArgument(layout.isMutable(),
+				"cannot train %s weights; train another layout and compact the classifier", layout);
+		this.layout = layout;
+	}
+
 	/** {@inheritDoc} */
 	@Override
 	public NaiveBayesClassifier learnFrom(Dataset data) {
@@ -42,16 +62,19 @@ public class NaiveBayesLearner implements ClassifierLearner {
 		
 		Dataset labeledData = Datasets.divideInstancesWithObservedLabels(data).getFirst();
 		
-		double[] weights = new double[data.getInfo().getNumClasses() * data.getInfo().getNumFeatures()];
+		int numClasses = data.getInfo().getNumClasses();
+		int numFeatures = data.getInfo().getNumFeatures();
+		WeightLayout layout = (this.layout != null) ? this.layout : WeightLayout.featureMajorFor(numClasses, numFeatures);
+		MutableWeightMatrix weights = layout.newMatrix(numClasses, numFeatures);
 		double[] biases = new double[data.getInfo().getNumClasses()];
 
 		// Add-one smoothing.
-		Arrays.fill(weights, 1.0);
+		weights.fill(1.0);
 		Arrays.fill(biases, 1.0);
 		
 		for (DatasetInstance instance : labeledData) {
 			++biases[instance.getObservedLabel()];
-			instance.asFeatureVector().addToRow(weights, instance.getObservedLabel(), data.getInfo().getNumClasses());
+			weights.addToClass(instance.getObservedLabel(), instance.asFeatureVector(), 1.0);
 		}
 
 		// Compute log p(c)
@@ -59,8 +82,8 @@ public class NaiveBayesLearner implements ClassifierLearner {
 		DoubleArrays.logNormalizeToSelf(biases);
 		
 		// Compute log p(f|c)
-    ColumnMajorMatrices.normalizeRows(weights, biases.length);
-		DoubleArrays.logToSelf(weights);
+		weights.normalizeClasses();
+		weights.logToSelf();
 		
 		return new NaiveBayesClassifier(biases, weights);
 	}
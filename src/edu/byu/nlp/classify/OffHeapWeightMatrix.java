@@ -0,0 +1,292 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+
+/**
+ * A feature-major {@code WeightMatrix} (entry (k, f) at f * numClasses + k; see
+ * {@link WeightLayout#FEATURE_MAJOR}) stored outside the Java heap in segments of at most
+ * 1GB, so the number of weights is not limited by the maximum array size.
+ *
+ * Segments hold a whole number of features, so the class weights of a feature never
+ * straddle a segment and scoring touches one contiguous block per active feature, as with
+ * the array-backed {@code FeatureMajorWeightMatrix}.
+ *
+ * Matrices are either allocated in direct memory ({@link #allocate}) or memory-mapped from
+ * a file of little-endian doubles in feature-major order ({@link #map}), which allows models
+ * larger than RAM to be shared between processes through the page cache.
+ */
+public class OffHeapWeightMatrix implements MutableWeightMatrix, Closeable {
+
+  private static final int MAX_SEGMENT_BYTES = 1 << 30;
+
+  private final int numClasses;
+  private final int numFeatures;
+  private final int featuresPerSegment;
+  private final DoubleBuffer[] segments;
+
+  private OffHeapWeightMatrix(int numClasses, int numFeatures, int featuresPerSegment, DoubleBuffer[] segments) {
+    this.numClasses = numClasses;
+    this.numFeatures = numFeatures;
+    this.featuresPerSegment = featuresPerSegment;
+    this.segments = segments;
+  }
+
+  private static int featuresPerSegment(int numClasses, int maxSegmentBytes) {
+    Preconditions.checkArgument(numClasses > 0, "there must be at least one class");
+    Preconditions.checkArgument((long) numClasses * 8 <= maxSegmentBytes, "too many classes (%s)", numClasses);
+    return maxSegmentBytes / (8 * numClasses);
+  }
+
+  private static int numSegments(int numFeatures, int featuresPerSegment) {
+    Preconditions.checkArgument(numFeatures >= 0);
+    return (numFeatures + featuresPerSegment - 1) / featuresPerSegment;
+  }
+
+  private static int segmentLength(int segment, int numClasses, int numFeatures, int featuresPerSegment) {
+    int firstFeature = segment * featuresPerSegment;
+    return Math.min(featuresPerSegment, numFeatures - firstFeature) * numClasses;
+  }
+
+  /**
+   * A zero matrix in direct (off-heap) memory.
+   */
+  public static OffHeapWeightMatrix allocate(int numClasses, int numFeatures) {
+    return allocate(numClasses, numFeatures, MAX_SEGMENT_BYTES);
+  }
+
+  /**
+   * Like {@link #allocate(int, int)}, but with segments of at most maxSegmentBytes (so that
+   * tests can exercise several segments).
+   */
+  @VisibleForTesting
+  static OffHeapWeightMatrix allocate(int numClasses, int numFeatures, int maxSegmentBytes) {
+    int featuresPerSegment = featuresPerSegment(numClasses, maxSegmentBytes);
+    DoubleBuffer[] segments = new DoubleBuffer[numSegments(numFeatures, featuresPerSegment)];
+    for (int s = 0; s < segments.length; s++) {
+      int length = segmentLength(s, numClasses, numFeatures, featuresPerSegment);
+      segments[s] = ByteBuffer.allocateDirect(length * 8).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
+    return new OffHeapWeightMatrix(numClasses, numFeatures, featuresPerSegment, segments);
+  }
+
+  /**
+   * Memory-maps file as a numClasses x numFeatures matrix. When writable, the file is created
+   * or extended as necessary and changes are written back to it; otherwise, it must already
+   * hold numClasses * numFeatures doubles and the matrix must not be modified.
+   */
+  public static OffHeapWeightMatrix map(File file, int numClasses, int numFeatures, boolean writable)
+      throws IOException {
+    return map(file, numClasses, numFeatures, writable, MAX_SEGMENT_BYTES);
+  }
+
+  /**
+   * Like {@link #map(File, int, int, boolean)}, but with segments of at most maxSegmentBytes.
+   * The file format does not depend on the segment size.
+   */
+  @VisibleForTesting
+  static OffHeapWeightMatrix map(File file, int numClasses, int numFeatures, boolean writable, int maxSegmentBytes)
+      throws IOException {
+    int featuresPerSegment = featuresPerSegment(numClasses, maxSegmentBytes);
+    DoubleBuffer[] segments = new DoubleBuffer[numSegments(numFeatures, featuresPerSegment)];
+    RandomAccessFile raf = new RandomAccessFile(file, writable ? "rw" : "r");
+    try {
+      long expectedBytes = 8L * numClasses * numFeatures;
+      if (!writable && raf.length() < expectedBytes) {
+        throw new IOException(file + " holds " + raf.length() + " bytes; expected " + expectedBytes);
+      }
+      FileChannel channel = raf.getChannel();
+      FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+      long position = 0;
+      for (int s = 0; s < segments.length; s++) {
+        long bytes = 8L * segmentLength(s, numClasses, numFeatures, featuresPerSegment);
+        segments[s] = channel.map(mode, position, bytes).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        position += bytes;
+      }
+    } finally {
+      // mappings remain valid after the channel is closed
+      raf.close();
+    }
+    return new OffHeapWeightMatrix(numClasses, numFeatures, featuresPerSegment, segments);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WeightLayout getLayout() {
+    return WeightLayout.OFF_HEAP;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumFeatures() {
+    return numFeatures;
+  }
+
+  public long size() {
+    return (long) numClasses * numFeatures;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double get(int classIndex, int feature) {
+    Preconditions.checkElementIndex(classIndex, numClasses);
+    Preconditions.checkElementIndex(feature, numFeatures);
+    return segmentOf(feature).get(offsetOf(feature) + classIndex);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void set(int classIndex, int feature, double value) {
+    Preconditions.checkElementIndex(classIndex, numClasses);
+    Preconditions.checkElementIndex(feature, numFeatures);
+    segmentOf(feature).put(offsetOf(feature) + classIndex, value);
+  }
+
+  private DoubleBuffer segmentOf(int feature) {
+    return segments[feature / featuresPerSegment];
+  }
+
+  private int offsetOf(int feature) {
+    return (feature % featuresPerSegment) * numClasses;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void fill(double value) {
+    for (DoubleBuffer segment : segments) {
+      for (int i = 0, n = segment.capacity(); i < n; i++) {
+        segment.put(i, value);
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addToClass(final int classIndex, SparseFeatureVector vector, final double scale) {
+    Preconditions.checkElementIndex(classIndex, numClasses);
+    vector.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int feature, double value) {
+        DoubleBuffer segment = segmentOf(feature);
+        int i = offsetOf(feature) + classIndex;
+        segment.put(i, segment.get(i) + scale * value);
+      }
+    });
+  }
+
+  /**
+   * Copies each active feature's block of class weights out with one bulk get and adds it
+   * to the scores with {@link ScoringKernels#axpy}, rather than calling get() per class.
+   */
+  @Override
+  public void addScoresTo(SparseFeatureVector vector, final double[] scores) {
+    final double[] block = new double[numClasses];
+    // positioned views of the segments (bulk gets move the position), created on first use
+    final DoubleBuffer[] views = new DoubleBuffer[segments.length];
+    vector.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int feature, double value) {
+        int s = feature / featuresPerSegment;
+        if (views[s] == null) {
+          views[s] = segments[s].duplicate();
+        }
+        views[s].position(offsetOf(feature));
+        views[s].get(block);
+        ScoringKernels.axpy(value, block, 0, scores, numClasses);
+      }
+    });
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void normalizeClasses() {
+    double[] sums = new double[numClasses];
+    for (DoubleBuffer segment : segments) {
+      for (int i = 0, n = segment.capacity(); i < n; i += numClasses) {
+        for (int k = 0; k < numClasses; k++) {
+          sums[k] += segment.get(i + k);
+        }
+      }
+    }
+    for (DoubleBuffer segment : segments) {
+      for (int i = 0, n = segment.capacity(); i < n; i += numClasses) {
+        for (int k = 0; k < numClasses; k++) {
+          segment.put(i + k, segment.get(i + k) / sums[k]);
+        }
+      }
+    }
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void logToSelf() {
+    for (DoubleBuffer segment : segments) {
+      for (int i = 0, n = segment.capacity(); i < n; i++) {
+        segment.put(i, Math.log(segment.get(i)));
+      }
+    }
+  }
+
+  /**
+   * A copy of the weights; only possible if they fit in an array.
+   */
+  @Override
+  public double[] toFeatureMajorArray() {
+    Preconditions.checkState(size() <= Integer.MAX_VALUE, "%s weights do not fit in an array", size());
+    double[] weights = new double[(int) size()];
+    int position = 0;
+    for (DoubleBuffer segment : segments) {
+      DoubleBuffer copy = segment.duplicate();
+      copy.clear();
+      int length = copy.remaining();
+      copy.get(weights, position, length);
+      position += length;
+    }
+    return weights;
+  }
+
+  /**
+   * Drops the references to the segments so that their direct memory (or mappings) can be
+   * reclaimed as soon as the buffers are garbage collected; there is no public way to unmap
+   * a buffer explicitly. The matrix must not be used afterwards. Closing twice has no effect.
+   */
+  @Override
+  public void close() {
+    Arrays.fill(segments, null);
+  }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The posterior distributions p(y|x) of a batch of documents, stored as a single
+ * row-major {@code double[numDocuments * numClasses]} of probabilities, plus
+ * (optionally) the entropy and margin (difference between the two most probable
+ * classes) of each posterior.
+ */
+public class PosteriorBatch {
+
+  private final int numClasses;
+  private final double[] probabilities;
+  private final double[] entropies;
+  private final double[] margins;
+
+  public PosteriorBatch(int numClasses, double[] probabilities, double[] entropies, double[] margins) {
+    Preconditions.checkArgument(numClasses > 0);
+    Preconditions.checkArgument(probabilities.length % numClasses == 0);
+    this.numClasses = numClasses;
+    this.probabilities = probabilities;
+    this.entropies = entropies;
+    this.margins = margins;
+  }
+
+  public int size() { return probabilities.length / numClasses; }
+  public int getNumClasses() { return numClasses; }
+
+  public double probabilityOf(int document, int label) {
+    return probabilities[document * numClasses + label];
+  }
+
+  /**
+   * The backing array (not a copy); row i holds the posterior of document i.
+   */
+  public double[] getProbabilities() { return probabilities; }
+
+  public boolean hasUncertainty() { return entropies != null; }
+
+  /**
+   * Natural-log entropy. Only available if the batch was computed with uncertainty.
+   */
+  public double entropyOf(int document) {
+    Preconditions.checkState(hasUncertainty(), "uncertainty was not computed for this batch");
+    return entropies[document];
+  }
+
+  /**
+   * p(best) - p(second best). Only available if the batch was computed with uncertainty.
+   */
+  public double marginOf(int document) {
+    Preconditions.checkState(hasUncertainty(), "uncertainty was not computed for this batch");
+    return margins[document];
+  }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The inner loops of scoring over dense class-score vectors: accumulating a feature's class
+ * weights into the scores, argmax, and log-sum-exp.
+ *
+ * Each loop is unrolled by four with independent accumulators, which removes the
+ * loop-carried dependency of the naive version so that the JIT can keep several
+ * multiply-adds (or comparisons) in flight and auto-vectorize where it is able to.
+ */
+public class ScoringKernels {
+
+  private ScoringKernels() { }
+
+  /**
+   * y[k] += a * x[xOffset + k] for k in [0, n).
+   */
+  public static void axpy(double a, double[] x, int xOffset, double[] y, int n) {
+    int k = 0;
+    for (int end = n - 3; k < end; k += 4) {
+      int i = xOffset + k;
+      y[k] += a * x[i];
+      y[k + 1] += a * x[i + 1];
+      y[k + 2] += a * x[i + 2];
+      y[k + 3] += a * x[i + 3];
+    }
+    for (; k < n; k++) {
+      y[k] += a * x[xOffset + k];
+    }
+  }
+
+  /**
+   * The largest element (NaN if x contains NaN, negative infinity if x is empty).
+   */
+  public static double max(double[] x) {
+    double m0 = Double.NEGATIVE_INFINITY, m1 = m0, m2 = m0, m3 = m0;
+    int k = 0;
+    for (int end = x.length - 3; k < end; k += 4) {
+      m0 = Math.max(m0, x[k]);
+      m1 = Math.max(m1, x[k + 1]);
+      m2 = Math.max(m2, x[k + 2]);
+      m3 = Math.max(m3, x[k + 3]);
+    }
+    for (; k < x.length; k++) {
+      m0 = Math.max(m0, x[k]);
+    }
+    return Math.max(Math.max(m0, m1), Math.max(m2, m3));
+  }
+
+  /**
+   * The index of the largest element, the first one in case of ties. NaNs are ignored; if
+   * every element is NaN, returns 0 (as {@code DoubleArrays.argMax} does), so the result is
+   * always a valid label.
+   *
+   * @throws IllegalArgumentException if x is empty
+   */
+  public static int argMax(double[] x) {
+    Preconditions.checkArgument(x.length > 0, "cannot take the argmax of an empty array");
+    double max = Double.NEGATIVE_INFINITY;
+    int argMax = -1;
+    int k = 0;
+    for (int end = x.length - 3; k < end; k += 4) {
+      // compare each element on its own: a NaN fails every comparison and so is never chosen
+      double x0 = x[k], x1 = x[k + 1], x2 = x[k + 2], x3 = x[k + 3];
+      if (x0 > max) {
+        max = x0;
+        argMax = k;
+      }
+      if (x1 > max) {
+        max = x1;
+        argMax = k + 1;
+      }
+      if (x2 > max) {
+        max = x2;
+        argMax = k + 2;
+      }
+      if (x3 > max) {
+        max = x3;
+        argMax = k + 3;
+      }
+    }
+    for (; k < x.length; k++) {
+      if (x[k] > max) {
+        max = x[k];
+        argMax = k;
+      }
+    }
+    if (argMax >= 0) {
+      return argMax;
+    }
+    // nothing exceeds negative infinity: the first element that equals it, if any
+    for (k = 0; k < x.length; k++) {
+      if (x[k] == Double.NEGATIVE_INFINITY) {
+        return k;
+      }
+    }
+    return 0;
+  }
+
+  /**
+   * log(sum_k exp(x[k])), computed stably.
+   */
+  public static double logSumExp(double[] x) {
+    double max = max(x);
+    if (Double.isInfinite(max)) {
+      return max;
+    }
+    double s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+    int k = 0;
+    for (int end = x.length - 3; k < end; k += 4) {
+      s0 += Math.exp(x[k] - max);
+      s1 += Math.exp(x[k + 1] - max);
+      s2 += Math.exp(x[k + 2] - max);
+      s3 += Math.exp(x[k + 3] - max);
+    }
+    for (; k < x.length; k++) {
+      s0 += Math.exp(x[k] - max);
+    }
+    return max + Math.log((s0 + s1) + (s2 + s3));
+  }
+
+  /**
+   * Subtracts logSumExp(x) from every element so that exp(x) sums to one.
+   */
+  public static void logNormalizeToSelf(double[] x) {
+    double logSum = logSumExp(x);
+    for (int k = 0; k < x.length; k++) {
+      x[k] -= logSum;
+    }
+  }
+
+}
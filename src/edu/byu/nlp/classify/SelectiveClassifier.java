@@ -0,0 +1,31 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+/**
+ * A classifier that may evaluate only part of its model for a document, e.g., by pruning
+ * classes ({@code EarlyExitLinearClassifier}) or by searching a label tree
+ * ({@code LabelTreeClassifier}), and that reports how much of it was evaluated.
+ */
+public interface SelectiveClassifier extends Classifier {
+
+  /**
+   * How much of the model the last call on the current thread evaluated: a number of classes
+   * or, for tree models, of internal nodes (0 before the first call).
+   */
+  int getLastNumEvaluated();
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.util.Nullable;
+
+/**
+ * Naive bayes with configurable (symmetric Dirichlet) smoothing. With both
+ * parameters set to 1 this is equivalent to {@code NaiveBayesLearner}.
+ *
+ * To try many smoothing values on the same data, use {@code NaiveBayesCounts}
+ * directly rather than calling learnFrom repeatedly.
+ */
+public class SmoothedNaiveBayesLearner implements ClassifierLearner {
+
+  private final double classAlpha;
+  // one per class, or a single value shared by every class
+  private final double[] featureAlphas;
+  // null chooses based on the size of the model
+  private final WeightLayout layout;
+
+  public SmoothedNaiveBayesLearner(double classAlpha, double featureAlpha) {
+    this(classAlpha, new double[]{featureAlpha});
+  }
+
+  /**
+   * @param featureAlphas a smoothing parameter for each class; a single value applies to
+   *     every class
+   */
+  public SmoothedNaiveBayesLearner(double classAlpha, double[] featureAlphas) {
+    this(classAlpha, featureAlphas, null);
+  }
+
+  /**
+   * @param layout a mutable layout for the counts (see {@code NaiveBayesCounts}), or null to
+   *     choose by size
+   */
+  public SmoothedNaiveBayesLearner(double classAlpha, double[] featureAlphas, @Nullable WeightLayout layout) {
+    Preconditions.checkArgument(classAlpha >= 0, "smoothing must be non-negative");
+    Preconditions.checkArgument(featureAlphas.length > 0, "must supply at least one smoothing parameter");
+    for (double featureAlpha : featureAlphas) {
+      Preconditions.checkArgument(featureAlpha >= 0, "smoothing must be non-negative");
+    }
+    Preconditions.checkArgument(layout == null || layout.isMutable(), "cannot count in %s weights", layout);
+    this.classAlpha = classAlpha;
+    this.featureAlphas = featureAlphas.clone();
+    this.layout = layout;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public NaiveBayesClassifier learnFrom(Dataset data) {
+    NaiveBayesCounts counts = NaiveBayesCounts.fromDataset(data, null, layout);
+    if (featureAlphas.length == 1) {
+      return counts.classifier(classAlpha, featureAlphas[0]);
+    }
+    return counts.classifier(classAlpha, featureAlphas);
+  }
+
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.util.Arrays;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Doubles;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+
+/**
+ * A read-only, compacted {@code WeightMatrix}. Each class k has a default weight d_k (the
+ * median of its weights); per feature, only the classes whose weight differs from the
+ * default by more than a tolerance are stored, as (class, w - d_k) pairs in compressed
+ * sparse rows by feature. Since d_k is shared by every feature,
+ * 
+ * <pre>
+ *   weights(k, .) . x = d_k * sum_f x_f + sum_{stored (k, f)} (w_kf - d_k) x_f
+ * </pre>
+ * 
+ * so scoring touches only the stored entries of the active features plus one pass over
+ * the classes.
+ * 
+ * <p>Weights that were dropped read back as the default, so the compacted model differs
+ * from the original by at most tolerance per weight (and not at all with a tolerance of 0).
+ */
+public class SparseWeightMatrix implements WeightMatrix {
+
+  private final int numClasses;
+  private final int numFeatures;
+  private final double[] defaults;
+  // the stored entries of feature f are at [featureOffsets[f], featureOffsets[f + 1])
+  private final int[] featureOffsets;
+  private final int[] classes;
+  private final double[] deltas;
+
+  private SparseWeightMatrix(double[] defaults, int[] featureOffsets, int[] classes, double[] deltas) {
+    this.numClasses = defaults.length;
+    this.numFeatures = featureOffsets.length - 1;
+    this.defaults = defaults;
+    this.featureOffsets = featureOffsets;
+    this.classes = classes;
+    this.deltas = deltas;
+  }
+
+  /**
+   * Compacts weights, keeping (k, f) only if |weights(k, f) - d_k| > tolerance. The
+   * original matrix is not modified.
+   */
+  public static SparseWeightMatrix compact(WeightMatrix weights, double tolerance) {
+    Preconditions.checkNotNull(weights);
+    Preconditions.checkArgument(tolerance >= 0, "tolerance must be non-negative (was %s)", tolerance);
+    int numClasses = weights.getNumClasses();
+    int numFeatures = weights.getNumFeatures();
+
+    double[] defaults = new double[numClasses];
+    double[] column = new double[numFeatures];
+    for (int k = 0; k < numClasses; k++) {
+      for (int f = 0; f < numFeatures; f++) {
+        column[f] = weights.get(k, f);
+      }
+      double median = median(column);
+      // an infinite default would turn every stored delta into an infinity or NaN
+      defaults[k] = Doubles.isFinite(median) ? median : 0.0;
+    }
+
+    // count, then fill, so that no intermediate lists are needed
+    int[] featureOffsets = new int[numFeatures + 1];
+    long numStored = 0;
+    for (int f = 0; f < numFeatures; f++) {
+      for (int k = 0; k < numClasses; k++) {
+        if (isStored(weights.get(k, f), defaults[k], tolerance)) {
+          ++numStored;
+        }
+      }
+      Preconditions.checkArgument(numStored <= Integer.MAX_VALUE,
+          "too many weights deviate from the defaults; increase the tolerance");
+      featureOffsets[f + 1] = (int) numStored;
+    }
+
+    int[] classes = new int[(int) numStored];
+    double[] deltas = new double[(int) numStored];
+    int j = 0;
+    for (int f = 0; f < numFeatures; f++) {
+      for (int k = 0; k < numClasses; k++) {
+        double weight = weights.get(k, f);
+        if (isStored(weight, defaults[k], tolerance)) {
+          classes[j] = k;
+          deltas[j] = weight - defaults[k];
+          ++j;
+        }
+      }
+    }
+    return new SparseWeightMatrix(defaults, featureOffsets, classes, deltas);
+  }
+
+  private static boolean isStored(double weight, double defaultWeight, double tolerance) {
+    // infinite weights (e.g., log 0) are always kept
+    return !(Math.abs(weight - defaultWeight) <= tolerance);
+  }
+
+  private static double median(double[] values) {
+    if (values.length == 0) {
+      return 0.0;
+    }
+    double[] sorted = values.clone();
+    Arrays.sort(sorted);
+    int mid = sorted.length / 2;
+    return (sorted.length % 2 == 1) ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2;
+  }
+
+  /**
+   * The number of (class, feature) weights that are stored explicitly.
+   */
+  public int getNumStoredWeights() {
+    return classes.length;
+  }
+
+  /**
+   * The default weight of each class; not a copy.
+   */
+  public double[] getDefaults() {
+    return defaults;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public WeightLayout getLayout() {
+    return WeightLayout.SPARSE;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int getNumFeatures() {
+    return numFeatures;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double get(int classIndex, int feature) {
+    Preconditions.checkElementIndex(classIndex, numClasses);
+    Preconditions.checkElementIndex(feature, numFeatures);
+    // classes are stored in increasing order within a feature
+    int j = Arrays.binarySearch(classes, featureOffsets[feature], featureOffsets[feature + 1], classIndex);
+    return (j >= 0) ? defaults[classIndex] + deltas[j] : defaults[classIndex];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void addScoresTo(SparseFeatureVector vector, final double[] scores) {
+    final double[] sum = new double[1];
+    vector.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int feature, double value) {
+        sum[0] += value;
+        for (int j = featureOffsets[feature], end = featureOffsets[feature + 1]; j < end; j++) {
+          scores[classes[j]] += value * deltas[j];
+        }
+      }
+    });
+    ScoringKernels.axpy(sum[0], defaults, 0, scores, numClasses);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double[] toFeatureMajorArray() {
+    double[] weights = new double[FeatureMajorWeightMatrix.checkedSize(numClasses, numFeatures)];
+    for (int f = 0; f < numFeatures; f++) {
+      System.arraycopy(defaults, 0, weights, f * numClasses, numClasses);
+      for (int j = featureOffsets[f]; j < featureOffsets[f + 1]; j++) {
+        weights[f * numClasses + classes[j]] += deltas[j];
+      }
+    }
+    return weights;
+  }
+
+}
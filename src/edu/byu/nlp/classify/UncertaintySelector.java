@@ -0,0 +1,407 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.io.Closeable;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+import edu.byu.nlp.stats.CategoricalDistribution;
+import edu.byu.nlp.util.Nullable;
+
+/**
+ * Uncertainty sampling for active learning: ranks the unannotated instances of a pool by
+ * how uncertain a {@code ProbabilisticClassifier} is about them and returns the top k.
+ *
+ * The pool is scanned in parallel (numChunks chunks), and each chunk only keeps a bounded
+ * heap of its k best candidates, so memory is O(numChunks * k) beyond the cached scores.
+ * The classifier must therefore be safe to call concurrently (e.g., {@code NaiveBayesClassifier}).
+ * The threads are reused from round to round; {@link #close()} releases them unless they
+ * belong to an {@code ExecutorService} supplied by the caller.
+ *
+ * Scores are cached between rounds. {@link #select(ProbabilisticClassifier, int)} rescores
+ * the whole pool; {@link #selectIncremental(ProbabilisticClassifier, int)} only rescores
+ * instances that were invalidated since the last round. Incremental rescoring is only sound
+ * when the caller knows exactly which posteriors can have changed, i.e., for models whose
+ * updates are local to the features of the newly annotated instances (in which case
+ * {@link #invalidateSharingFeaturesWith(SparseFeatureVector)} invalidates the right ones).
+ * Retraining a {@code NaiveBayesClassifier} is not such an update: one new document changes
+ * the class prior and every class normalizer, and so every posterior. Use {@code select}
+ * after retraining it.
+ */
+public class UncertaintySelector implements Closeable {
+
+  private static final int BATCH_SIZE = 256;
+
+  public enum Measure {
+    /** entropy of the posterior */
+    ENTROPY,
+    /** one minus the difference between the two most probable classes */
+    MARGIN,
+    /** one minus the probability of the most probable class */
+    LEAST_CONFIDENCE;
+
+    /**
+     * Higher means more uncertain.
+     */
+    double score(double[] probabilities, int offset, int numClasses) {
+      switch (this) {
+      case ENTROPY:
+        double entropy = 0;
+        for (int k = offset; k < offset + numClasses; k++) {
+          if (probabilities[k] > 0) {
+            entropy -= probabilities[k] * Math.log(probabilities[k]);
+          }
+        }
+        return entropy;
+      case MARGIN:
+        double first = 0, second = 0;
+        for (int k = offset; k < offset + numClasses; k++) {
+          if (probabilities[k] > first) {
+            second = first;
+            first = probabilities[k];
+          } else if (probabilities[k] > second) {
+            second = probabilities[k];
+          }
+        }
+        return 1 - (first - second);
+      case LEAST_CONFIDENCE:
+        double max = 0;
+        for (int k = offset; k < offset + numClasses; k++) {
+          max = Math.max(max, probabilities[k]);
+        }
+        return 1 - max;
+      default:
+        throw new UnsupportedOperationException("Unknown measure " + this);
+      }
+    }
+  }
+
+  private final List<? extends SparseFeatureVector> pool;
+  private final int numClasses;
+  private final Measure measure;
+  private final int numChunks;
+  // null if there is a single chunk, which is scanned on the calling thread
+  private final ExecutorService executor;
+  private final boolean ownsExecutor;
+
+  private final double[] scores;
+  private final BitSet stale;
+  private final BitSet annotated;
+  // lazily built inverted index from feature to the pool instances containing it
+  private List<int[]> instancesByFeature;
+
+  /**
+   * Scans the pool with numThreads threads of its own, which are released by {@link #close()}.
+   */
+  public UncertaintySelector(List<? extends SparseFeatureVector> pool, int numClasses, Measure measure, int numThreads) {
+    this(pool, numClasses, measure, numThreads, (numThreads == 1) ? null : Executors.newFixedThreadPool(numThreads,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("uncertainty-selector-%d").build()), true);
+  }
+
+  /**
+   * Scans the pool in numChunks chunks on executor, which is left running by {@link #close()}.
+   */
+  public UncertaintySelector(List<? extends SparseFeatureVector> pool, int numClasses, Measure measure,
+      ExecutorService executor, int numChunks) {
+    this(pool, numClasses, measure, numChunks, Preconditions.checkNotNull(executor), false);
+  }
+
+  private UncertaintySelector(List<? extends SparseFeatureVector> pool, int numClasses, Measure measure, int numChunks,
+      @Nullable ExecutorService executor, boolean ownsExecutor) {
+    Preconditions.checkNotNull(pool);
+    Preconditions.checkArgument(numClasses > 0);
+    Preconditions.checkArgument(numChunks > 0, "the number of threads or chunks must be positive");
+    this.pool = pool;
+    this.numClasses = numClasses;
+    this.measure = Preconditions.checkNotNull(measure);
+    this.numChunks = numChunks;
+    this.executor = executor;
+    this.ownsExecutor = ownsExecutor;
+    this.scores = new double[pool.size()];
+    this.stale = new BitSet(pool.size());
+    this.stale.set(0, pool.size());
+    this.annotated = new BitSet(pool.size());
+  }
+
+  /**
+   * Removes an instance from consideration (e.g., because it was just annotated).
+   */
+  public void markAnnotated(int index) {
+    annotated.set(index);
+  }
+
+  public void invalidate(int index) {
+    stale.set(index);
+  }
+
+  public void invalidateAll() {
+    stale.set(0, pool.size());
+  }
+
+  /**
+   * Invalidates every pool instance that shares at least one feature with features.
+   */
+  public void invalidateSharingFeaturesWith(SparseFeatureVector features) {
+    final List<int[]> index = instancesByFeature();
+    features.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int feature, double value) {
+        if (feature < index.size() && index.get(feature) != null) {
+          for (int i : index.get(feature)) {
+            stale.set(i);
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * Rescores every unannotated instance and returns the (at most) k most uncertain, most
+   * uncertain first.
+   */
+  public int[] select(ProbabilisticClassifier classifier, int k) {
+    invalidateAll();
+    return selectIncremental(classifier, k);
+  }
+
+  /**
+   * Like {@link #select(ProbabilisticClassifier, int)} but only rescores invalidated instances;
+   * the rest keep the score computed in a previous round.
+   */
+  public int[] selectIncremental(final ProbabilisticClassifier classifier, final int k) {
+    Preconditions.checkNotNull(classifier);
+    Preconditions.checkArgument(k >= 0);
+
+    int chunkSize = (pool.size() + numChunks - 1) / numChunks;
+    List<Callable<BoundedHeap>> chunks = Lists.newArrayList();
+    for (int start = 0; start < pool.size(); start += chunkSize) {
+      final int from = start;
+      final int to = Math.min(pool.size(), start + chunkSize);
+      chunks.add(new Callable<BoundedHeap>() {
+        @Override
+        public BoundedHeap call() throws Exception {
+          return scan(classifier, from, to, k);
+        }
+      });
+    }
+
+    BoundedHeap best = new BoundedHeap(k);
+    if (chunks.size() == 1) {
+      best = scan(classifier, 0, pool.size(), k);
+    } else if (chunks.size() > 1) {
+      try {
+        for (Future<BoundedHeap> chunk : executor.invokeAll(chunks)) {
+          best.addAll(chunk.get());
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("interrupted while scoring the pool", e);
+      } catch (ExecutionException e) {
+        throw new IllegalStateException("error while scoring the pool", e.getCause());
+      }
+    }
+    stale.clear();
+    return best.toSortedIndices();
+  }
+
+  /**
+   * Rescores the stale instances in [from, to) and returns the k most uncertain unannotated ones.
+   * Chunks touch disjoint ranges of scores, so no synchronization is needed.
+   */
+  private BoundedHeap scan(ProbabilisticClassifier classifier, int from, int to, int k) {
+    BoundedHeap heap = new BoundedHeap(k);
+    List<SparseFeatureVector> batch = Lists.newArrayListWithCapacity(BATCH_SIZE);
+    int[] batchIndices = new int[BATCH_SIZE];
+    double[] probabilities = new double[BATCH_SIZE * numClasses];
+    for (int i = from; i < to; i++) {
+      if (annotated.get(i)) {
+        continue;
+      }
+      if (stale.get(i)) {
+        batchIndices[batch.size()] = i;
+        batch.add(pool.get(i));
+        if (batch.size() == BATCH_SIZE) {
+          scoreBatch(classifier, batch, batchIndices, probabilities, heap);
+        }
+      } else {
+        heap.offer(i, scores[i]);
+      }
+    }
+    scoreBatch(classifier, batch, batchIndices, probabilities, heap);
+    return heap;
+  }
+
+  private void scoreBatch(ProbabilisticClassifier classifier, List<SparseFeatureVector> batch, int[] batchIndices,
+      double[] probabilities, BoundedHeap heap) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    if (classifier instanceof NaiveBayesClassifier) {
+      ((NaiveBayesClassifier) classifier).givenAll(batch, probabilities, null, null);
+    } else {
+      for (int b = 0; b < batch.size(); b++) {
+        CategoricalDistribution posterior = classifier.given(batch.get(b));
+        for (int c = 0; c < numClasses; c++) {
+          probabilities[b * numClasses + c] = Math.exp(posterior.logProbabilityOf(c));
+        }
+      }
+    }
+    for (int b = 0; b < batch.size(); b++) {
+      int i = batchIndices[b];
+      scores[i] = measure.score(probabilities, b * numClasses, numClasses);
+      heap.offer(i, scores[i]);
+    }
+    batch.clear();
+  }
+
+  /**
+   * Releases the scanning threads, unless they belong to a caller-supplied executor.
+   */
+  @Override
+  public void close() {
+    if (ownsExecutor && executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  private synchronized List<int[]> instancesByFeature() {
+    if (instancesByFeature == null) {
+      final List<IntArrayList> postings = Lists.newArrayList();
+      for (int i = 0; i < pool.size(); i++) {
+        final int instance = i;
+        pool.get(i).visitSparseEntries(new EntryVisitor() {
+          @Override
+          public void visitEntry(int feature, double value) {
+            while (postings.size() <= feature) {
+              postings.add(null);
+            }
+            if (postings.get(feature) == null) {
+              postings.set(feature, new IntArrayList());
+            }
+            postings.get(feature).add(instance);
+          }
+        });
+      }
+      instancesByFeature = Lists.newArrayListWithCapacity(postings.size());
+      for (IntArrayList posting : postings) {
+        instancesByFeature.add(posting == null ? null : posting.toIntArray());
+      }
+    }
+    return instancesByFeature;
+  }
+
+  /**
+   * A min-heap (by score) holding the capacity highest scoring indices offered so far.
+   */
+  private static class BoundedHeap {
+    private final int capacity;
+    private final int[] indices;
+    private final double[] scores;
+    private int size = 0;
+
+    BoundedHeap(int capacity) {
+      this.capacity = capacity;
+      this.indices = new int[capacity];
+      this.scores = new double[capacity];
+    }
+
+    void offer(int index, double score) {
+      if (size < capacity) {
+        indices[size] = index;
+        scores[size] = score;
+        siftUp(size++);
+      } else if (capacity > 0 && score > scores[0]) {
+        indices[0] = index;
+        scores[0] = score;
+        siftDown(0);
+      }
+    }
+
+    void addAll(BoundedHeap other) {
+      for (int i = 0; i < other.size; i++) {
+        offer(other.indices[i], other.scores[i]);
+      }
+    }
+
+    /**
+     * Destructively empties the heap, highest score first.
+     */
+    int[] toSortedIndices() {
+      int[] sorted = new int[size];
+      for (int i = sorted.length - 1; i >= 0; i--) {
+        sorted[i] = indices[0];
+        --size;
+        indices[0] = indices[size];
+        scores[0] = scores[size];
+        siftDown(0);
+      }
+      return sorted;
+    }
+
+    private void siftUp(int i) {
+      while (i > 0) {
+        int parent = (i - 1) / 2;
+        if (scores[i] >= scores[parent]) {
+          return;
+        }
+        swap(i, parent);
+        i = parent;
+      }
+    }
+
+    private void siftDown(int i) {
+      while (true) {
+        int smallest = i;
+        int left = 2 * i + 1, right = left + 1;
+        if (left < size && scores[left] < scores[smallest]) {
+          smallest = left;
+        }
+        if (right < size && scores[right] < scores[smallest]) {
+          smallest = right;
+        }
+        if (smallest == i) {
+          return;
+        }
+        swap(i, smallest);
+        i = smallest;
+      }
+    }
+
+    private void swap(int i, int j) {
+      int index = indices[i];
+      indices[i] = indices[j];
+      indices[j] = index;
+      double score = scores[i];
+      scores[i] = scores[j];
+      scores[j] = score;
+    }
+  }
+
+}
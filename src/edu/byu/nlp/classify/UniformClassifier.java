@@ -16,33 +16,129 @@
 package edu.byu.nlp.classify;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.math3.random.RandomGenerator;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
 import edu.byu.nlp.data.types.SparseFeatureVector;
 import edu.byu.nlp.stats.UniformDistribution;
 import edu.byu.nlp.util.IntArrays;
 
+/**
+ * Guesses uniformly at random.
+ * 
+ * When constructed with a {@code RandomGenerator}, all calls share that generator, so the
+ * classifier is not safe to use concurrently and its guesses depend on the order of calls.
+ * When constructed with a seed, the guess for the i'th instance is drawn from its own random
+ * stream keyed by the seed and i (as in {@code RandomLabelLabeler}), so it does not depend on
+ * call order or threading. The index must then be given explicitly: only
+ * {@link #classify(long)} and {@link #classifyAll} are supported, and the vector-based
+ * entry points throw {@code IllegalStateException}.
+ */
 public class UniformClassifier implements ProbabilisticClassifier {
 
     private final int numLabels;
     private final RandomGenerator rnd;
+    private final long seed;
     
     public UniformClassifier(int numLabels, RandomGenerator rnd) {
         this.numLabels = numLabels;
         this.rnd = rnd;
+        this.seed = 0;
     }
 
-    /** {@inheritDoc} */
+    public UniformClassifier(int numLabels, long seed) {
+        this.numLabels = numLabels;
+        this.rnd = null;
+        this.seed = seed;
+    }
+
+    private RandomGenerator sharedRnd() {
+        Preconditions.checkState(rnd != null,
+            "a seeded UniformClassifier is keyed on the instance index; use classify(long) or classifyAll");
+        return rnd;
+    }
+
+    /**
+     * Requires a classifier constructed with a {@code RandomGenerator}.
+     */
     @Override
     public int classify(SparseFeatureVector s) {
-        return rnd.nextInt(numLabels);
+        return sharedRnd().nextInt(numLabels);
     }
 
-    /** {@inheritDoc} */
+    /**
+     * The guess for the index'th instance. Requires a seeded classifier.
+     */
+    public int classify(long index) {
+        Preconditions.checkState(rnd == null, "index-keyed classification requires a seeded UniformClassifier");
+        return SplittableRandomGenerator.forStream(seed, index).nextInt(numLabels);
+    }
+
+    /**
+     * Requires a classifier constructed with a {@code RandomGenerator}.
+     */
     @Override
     public edu.byu.nlp.stats.CategoricalDistribution given(SparseFeatureVector condition) {
-        return new UniformDistribution(numLabels, rnd);
+        return new UniformDistribution(numLabels, sharedRnd());
+    }
+
+    /**
+     * Classifies every vector on the calling thread. Requires a seeded classifier; the i'th
+     * label is {@code classify(i)}.
+     */
+    public int[] classifyAll(List<? extends SparseFeatureVector> vectors) {
+        Preconditions.checkState(rnd == null, "index-keyed classification requires a seeded UniformClassifier");
+        int[] labels = new int[vectors.size()];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = classify(i);
+        }
+        return labels;
+    }
+
+    /**
+     * Classifies every vector in numChunks contiguous chunks run on executor, which is left
+     * running. Requires a seeded classifier; the labels equal {@code classifyAll(vectors)}
+     * regardless of numChunks and of the executor's threads.
+     */
+    public int[] classifyAll(List<? extends SparseFeatureVector> vectors, ExecutorService executor, int numChunks) {
+        Preconditions.checkState(rnd == null, "index-keyed classification requires a seeded UniformClassifier");
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(numChunks > 0, "numChunks must be positive");
+        final int[] labels = new int[vectors.size()];
+        int chunkSize = Math.max(1, (vectors.size() + numChunks - 1) / numChunks);
+        List<Callable<Void>> tasks = Lists.newArrayList();
+        for (int start = 0; start < vectors.size(); start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(vectors.size(), start + chunkSize);
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int i = from; i < to; i++) {
+                        labels[i] = classify(i);
+                    }
+                    return null;
+                }
+            });
+        }
+        try {
+            for (Future<Void> task : executor.invokeAll(tasks)) {
+                task.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted during classification", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("error during classification", e.getCause());
+        }
+        return labels;
     }
 
     /** {@inheritDoc} */
@@ -0,0 +1,99 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+/**
+ * Memory layouts for a {@code WeightMatrix}.
+ */
+public enum WeightLayout {
+
+  /**
+   * The weights of all classes for a feature are contiguous (entry (k, f) at
+   * f * numClasses + k). Scoring a sparse vector touches one contiguous block per active
+   * feature, so this is the layout of choice for sparse documents and large vocabularies.
+   */
+  FEATURE_MAJOR {
+    @Override
+    public MutableWeightMatrix newMatrix(int numClasses, int numFeatures) {
+      return new FeatureMajorWeightMatrix(numClasses, numFeatures);
+    }
+  },
+
+  /**
+   * The weights of a class are contiguous (entry (k, f) at k * numFeatures + f). Scoring
+   * touches one cache line per (class, active feature), but per-class operations (e.g.,
+   * normalization, updating a single class) are sequential scans.
+   */
+  CLASS_MAJOR {
+    @Override
+    public MutableWeightMatrix newMatrix(int numClasses, int numFeatures) {
+      return new ClassMajorWeightMatrix(numClasses, numFeatures);
+    }
+  },
+
+  /**
+   * The same order as FEATURE_MAJOR, but stored outside the Java heap in segments (see
+   * {@code OffHeapWeightMatrix}), so the number of weights may exceed the maximum array size.
+   */
+  OFF_HEAP {
+    @Override
+    public MutableWeightMatrix newMatrix(int numClasses, int numFeatures) {
+      return OffHeapWeightMatrix.allocate(numClasses, numFeatures);
+    }
+  },
+
+  /**
+   * Per-class default weights plus, per feature, only the weights that deviate from them
+   * (see {@code SparseWeightMatrix}). Such matrices are read-only and are obtained by
+   * compacting a trained model, not created empty, so {@link #isMutable()} is false.
+   */
+  SPARSE {
+    @Override
+    public boolean isMutable() {
+      return false;
+    }
+
+    @Override
+    public MutableWeightMatrix newMatrix(int numClasses, int numFeatures) {
+      throw new UnsupportedOperationException("sparse weights are created with SparseWeightMatrix.compact");
+    }
+  };
+
+  // some VMs reserve a few header words in arrays
+  private static final long MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+  /**
+   * FEATURE_MAJOR if the weights fit in a single array, otherwise OFF_HEAP.
+   */
+  public static WeightLayout featureMajorFor(int numClasses, int numFeatures) {
+    return ((long) numClasses * numFeatures <= MAX_ARRAY_SIZE) ? FEATURE_MAJOR : OFF_HEAP;
+  }
+
+  /**
+   * Whether {@link #newMatrix} can create matrices in this layout (to be trained in place).
+   */
+  public boolean isMutable() {
+    return true;
+  }
+
+  /**
+   * A zero matrix in this layout.
+   * 
+   * @throws UnsupportedOperationException if this layout is not {@link #isMutable() mutable}
+   */
+  public abstract MutableWeightMatrix newMatrix(int numClasses, int numFeatures);
+
+}
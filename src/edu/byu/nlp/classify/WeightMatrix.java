@@ -0,0 +1,47 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+
+/**
+ * The numClasses x numFeatures weights of a linear model, as seen by a classifier: the
+ * operations needed to score and to inspect the weights. Implementations differ in memory
+ * layout (see {@link WeightLayout}), which determines how many cache lines scoring a sparse
+ * vector touches. Weights that can be trained in place are {@link MutableWeightMatrix}es.
+ */
+public interface WeightMatrix {
+
+  WeightLayout getLayout();
+
+  int getNumClasses();
+
+  int getNumFeatures();
+
+  double get(int classIndex, int feature);
+
+  /**
+   * scores[k] += weights(k, .) . vector for every class k.
+   */
+  void addScoresTo(SparseFeatureVector vector, double[] scores);
+
+  /**
+   * The weights in feature-major order (entry (k, f) at f * numClasses + k), the layout
+   * taken by {@code LinearClassifier}'s array constructor. May return the backing array.
+   */
+  double[] toFeatureMajorArray();
+
+}
@@ -0,0 +1,327 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.data;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
+import org.apache.commons.math3.linear.SparseRealMatrix;
+import org.apache.commons.math3.random.RandomGenerator;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.eval.ConfusionMatrixDistribution;
+import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.LabelSampler;
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+
+/**
+ * Simulates a crowd of noisy annotators labeling every item of a dataset.
+ *
+ * An {@link AssignmentPolicy} decides which annotators label each item, and each annotator's
+ * label is drawn from its {@code LabelSampler} (e.g., a {@code ConfusionMatrixDistribution})
+ * given the item's true label. Items are processed in parallel in fixed-size blocks. The
+ * assignments of block b and the labels annotator a produces in block b each come from their
+ * own {@code SplittableRandomGenerator} stream derived from the seed, so the result depends
+ * only on the seed, never on the number of threads.
+ */
+public class AnnotationSimulator {
+
+  static final int BLOCK_SIZE = 1 << 12;
+
+  /**
+   * Chooses the annotators of an item. Must be safe to call concurrently.
+   */
+  public interface AssignmentPolicy {
+    /**
+     * Writes the (distinct) annotators of item to the beginning of annotators, which has
+     * room for every annotator, and returns how many were written.
+     */
+    int assign(int item, RandomGenerator rnd, int[] annotators);
+  }
+
+  private final LabelSampler[] annotators;
+  private final AssignmentPolicy policy;
+  private final long assignmentSeed;
+  private final long[] annotatorSeeds;
+  private final int numThreads;
+
+  public AnnotationSimulator(LabelSampler[] annotators, AssignmentPolicy policy, long seed, int numThreads) {
+    Preconditions.checkArgument(annotators.length > 0, "there must be at least one annotator");
+    Preconditions.checkArgument(numThreads > 0, "numThreads must be positive");
+    this.annotators = annotators.clone();
+    this.policy = Preconditions.checkNotNull(policy);
+    // stream 0 of the seed drives assignments; stream a + 1 drives annotator a
+    this.assignmentSeed = SplittableRandomGenerator.forStream(seed, 0).nextLong();
+    this.annotatorSeeds = new long[annotators.length];
+    for (int a = 0; a < annotators.length; a++) {
+      annotatorSeeds[a] = SplittableRandomGenerator.forStream(seed, a + 1).nextLong();
+    }
+    this.numThreads = numThreads;
+  }
+
+  /**
+   * @param confusionMatrices [annotator][true label][annotated label], unnormalized
+   */
+  public static AnnotationSimulator fromConfusionMatrices(double[][][] confusionMatrices, AssignmentPolicy policy,
+      long seed, int numThreads) {
+    LabelSampler[] annotators = new LabelSampler[confusionMatrices.length];
+    for (int a = 0; a < annotators.length; a++) {
+      annotators[a] = new ConfusionMatrixDistribution(confusionMatrices[a]);
+    }
+    return new AnnotationSimulator(annotators, policy, seed, numThreads);
+  }
+
+  public int getNumAnnotators() {
+    return annotators.length;
+  }
+
+  /**
+   * Annotates the instances of data in iteration order. Instances without a true label
+   * receive no annotations.
+   */
+  public SimulatedAnnotations simulate(Dataset data) {
+    IntArrayList trueLabels = new IntArrayList();
+    for (DatasetInstance instance : data) {
+      trueLabels.add(instance.hasLabel() ? instance.getLabel() : -1);
+    }
+    return simulate(trueLabels.toIntArray());
+  }
+
+  /**
+   * @param trueLabels the true label of each item, or a negative number if unknown (no annotations)
+   */
+  public SimulatedAnnotations simulate(final int[] trueLabels) {
+    final int numBlocks = (trueLabels.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    final Block[] blocks = new Block[numBlocks];
+    final int numTasks = Math.max(1, Math.min(numThreads, numBlocks));
+
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    for (int t = 0; t < numTasks; t++) {
+      final int firstBlock = t;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          for (int b = firstBlock; b < numBlocks; b += numTasks) {
+            blocks[b] = simulateBlock(trueLabels, b);
+          }
+          return null;
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(numTasks);
+    try {
+      for (Future<Void> task : executor.invokeAll(tasks)) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while simulating annotations", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("error while simulating annotations", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return SimulatedAnnotations.concat(trueLabels.length, annotators.length, blocks);
+  }
+
+  private Block simulateBlock(int[] trueLabels, int block) {
+    int from = block * BLOCK_SIZE;
+    int to = Math.min(trueLabels.length, from + BLOCK_SIZE);
+    RandomGenerator assignmentRnd = SplittableRandomGenerator.forStream(assignmentSeed, block);
+    RandomGenerator[] annotatorRnds = new RandomGenerator[annotators.length];
+    int[] assigned = new int[annotators.length];
+
+    Block result = new Block(to - from);
+    for (int item = from; item < to; item++) {
+      if (trueLabels[item] < 0) {
+        continue;
+      }
+      int numAssigned = policy.assign(item, assignmentRnd, assigned);
+      for (int i = 0; i < numAssigned; i++) {
+        int a = assigned[i];
+        if (annotatorRnds[a] == null) {
+          annotatorRnds[a] = SplittableRandomGenerator.forStream(annotatorSeeds[a], block);
+        }
+        result.annotators.add(a);
+        result.labels.add(annotators[a].sample(trueLabels[item], annotatorRnds[a]));
+      }
+      result.counts[item - from] = numAssigned;
+    }
+    return result;
+  }
+
+  /**
+   * The annotations of one block of items, in item order.
+   */
+  private static class Block {
+    final int[] counts;
+    final IntArrayList annotators = new IntArrayList();
+    final IntArrayList labels = new IntArrayList();
+
+    Block(int numItems) {
+      this.counts = new int[numItems];
+    }
+  }
+
+  /**
+   * Every annotator labels every item.
+   */
+  public static AssignmentPolicy allAnnotators(final int numAnnotators) {
+    return new AssignmentPolicy() {
+      @Override
+      public int assign(int item, RandomGenerator rnd, int[] annotators) {
+        for (int a = 0; a < numAnnotators; a++) {
+          annotators[a] = a;
+        }
+        return numAnnotators;
+      }
+    };
+  }
+
+  /**
+   * Item i is labeled by annotators i*k, i*k + 1, ..., i*k + k - 1 (mod numAnnotators).
+   */
+  public static AssignmentPolicy roundRobin(final int numAnnotators, final int k) {
+    Preconditions.checkArgument(0 < k && k <= numAnnotators, "k must be in [1, %s]", numAnnotators);
+    return new AssignmentPolicy() {
+      @Override
+      public int assign(int item, RandomGenerator rnd, int[] annotators) {
+        long first = (long) item * k;
+        for (int i = 0; i < k; i++) {
+          annotators[i] = (int) ((first + i) % numAnnotators);
+        }
+        return k;
+      }
+    };
+  }
+
+  /**
+   * Each item is labeled by k distinct annotators chosen uniformly at random.
+   */
+  public static AssignmentPolicy uniformRandom(final int numAnnotators, final int k) {
+    Preconditions.checkArgument(0 < k && k <= numAnnotators, "k must be in [1, %s]", numAnnotators);
+    return new AssignmentPolicy() {
+      @Override
+      public int assign(int item, RandomGenerator rnd, int[] annotators) {
+        // Floyd's algorithm: O(k^2) time, no scratch beyond the output
+        int n = 0;
+        for (int j = numAnnotators - k; j < numAnnotators; j++) {
+          int candidate = rnd.nextInt(j + 1);
+          for (int i = 0; i < n; i++) {
+            if (annotators[i] == candidate) {
+              candidate = j;
+              break;
+            }
+          }
+          annotators[n++] = candidate;
+        }
+        return k;
+      }
+    };
+  }
+
+  /**
+   * Simulated annotations stored compactly: the annotations of item i are entries
+   * offsets[i] (inclusive) to offsets[i + 1] (exclusive) of the annotator and label arrays.
+   */
+  public static class SimulatedAnnotations {
+    private final int numAnnotators;
+    private final int[] offsets;
+    private final int[] annotators;
+    private final int[] labels;
+
+    private SimulatedAnnotations(int numAnnotators, int[] offsets, int[] annotators, int[] labels) {
+      this.numAnnotators = numAnnotators;
+      this.offsets = offsets;
+      this.annotators = annotators;
+      this.labels = labels;
+    }
+
+    private static SimulatedAnnotations concat(int numItems, int numAnnotators, Block[] blocks) {
+      long total = 0;
+      for (Block block : blocks) {
+        total += block.labels.size();
+      }
+      Preconditions.checkState(total <= Integer.MAX_VALUE, "too many annotations (%s)", total);
+      int[] offsets = new int[numItems + 1];
+      int[] annotators = new int[(int) total];
+      int[] labels = new int[(int) total];
+      int item = 0, next = 0;
+      for (Block block : blocks) {
+        for (int count : block.counts) {
+          offsets[item + 1] = offsets[item] + count;
+          ++item;
+        }
+        block.annotators.getElements(0, annotators, next, block.annotators.size());
+        block.labels.getElements(0, labels, next, block.labels.size());
+        next += block.labels.size();
+      }
+      return new SimulatedAnnotations(numAnnotators, offsets, annotators, labels);
+    }
+
+    public int getNumItems() {
+      return offsets.length - 1;
+    }
+
+    public int getNumAnnotators() {
+      return numAnnotators;
+    }
+
+    public int size() {
+      return labels.length;
+    }
+
+    public int getNumAnnotations(int item) {
+      return offsets[item + 1] - offsets[item];
+    }
+
+    /** The index of the first annotation of item in the annotator and label arrays. */
+    public int getOffset(int item) {
+      return offsets[item];
+    }
+
+    public int getAnnotator(int index) {
+      return annotators[index];
+    }
+
+    public int getLabel(int index) {
+      return labels[index];
+    }
+
+    /**
+     * The annotations of item as a numAnnotators x numLabels count matrix (the representation
+     * used by {@code AnnotationSet} and {@code LabelChooser}).
+     */
+    public SparseRealMatrix getLabelAnnotations(int item, int numLabels) {
+      SparseRealMatrix matrix = new OpenMapRealMatrix(numAnnotators, numLabels);
+      for (int i = offsets[item]; i < offsets[item + 1]; i++) {
+        matrix.addToEntry(annotators[i], labels[i], 1);
+      }
+      return matrix;
+    }
+  }
+
+}
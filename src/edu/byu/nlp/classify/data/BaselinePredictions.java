@@ -0,0 +1,76 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.data;
+
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.eval.ColumnarPredictions;
+import edu.byu.nlp.classify.eval.ColumnarPredictions.Split;
+import edu.byu.nlp.classify.eval.Predictions;
+import edu.byu.nlp.classify.eval.SparseAnnotatorConfusions;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+
+/**
+ * Builds the {@code Predictions} of the baseline labelers, which predict a single label per
+ * instance and have no annotator or machine statistics. Rows are stored in a
+ * {@code ColumnarPredictions} and the (all-zero) annotator confusion matrices are empty
+ * {@code SparseAnnotatorConfusions}, so no dense tensor is allocated unless someone asks for it.
+ */
+class BaselinePredictions {
+
+  private BaselinePredictions() { }
+
+  /**
+   * @param trainingInstances supplies the number of annotators and classes
+   * @param training the training instances, in order
+   * @param trainingLabels the predicted label of each training instance
+   * @param heldout the heldout instances, in order
+   * @param heldoutLabels the predicted label of each heldout instance
+   */
+  static Predictions of(Dataset trainingInstances, List<DatasetInstance> training, int[] trainingLabels,
+      List<DatasetInstance> heldout, int[] heldoutLabels) {
+    List<DatasetInstance> instances = Lists.newArrayListWithCapacity(training.size() + heldout.size());
+    instances.addAll(training);
+    instances.addAll(heldout);
+    ColumnarPredictions predictions = new ColumnarPredictions(1, instances.size(), instances);
+    for (int i = 0; i < training.size(); i++) {
+      DatasetInstance inst = training.get(i);
+      Split split = inst.hasAnnotations() ? Split.LABELED : Split.UNLABELED;
+      predictions.add(split, i, goldLabelOf(inst), trainingLabels[i]);
+    }
+    for (int i = 0; i < heldout.size(); i++) {
+      predictions.add(Split.HELDOUT, training.size() + i, goldLabelOf(heldout.get(i)), heldoutLabels[i]);
+    }
+
+    int numAnnotators = trainingInstances.getInfo().getNumAnnotators();
+    int numClasses = trainingInstances.getInfo().getNumClasses();
+    double[] annotatorAccuracies = new double[numAnnotators];
+    SparseAnnotatorConfusions annotatorConfusionMatrices = new SparseAnnotatorConfusions(numAnnotators, numClasses);
+    double machineAccuracy = -1;
+    double[][] machineConfusionMatrix = new double[numClasses][numClasses];
+    double logJoint = -1;
+    return predictions.asPredictionsWithSparseConfusions(annotatorAccuracies, annotatorConfusionMatrices, machineAccuracy,
+        machineConfusionMatrix, logJoint);
+  }
+
+  private static int goldLabelOf(DatasetInstance inst) {
+    return inst.hasLabel() ? inst.getLabel() : ColumnarPredictions.NO_LABEL;
+  }
+
+}
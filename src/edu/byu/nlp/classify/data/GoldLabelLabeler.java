@@ -5,8 +5,6 @@ import java.util.List;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
-import edu.byu.nlp.classify.eval.BasicPrediction;
-import edu.byu.nlp.classify.eval.Prediction;
 import edu.byu.nlp.classify.eval.Predictions;
 import edu.byu.nlp.data.types.Dataset;
 import edu.byu.nlp.data.types.DatasetInstance;
@@ -16,34 +14,20 @@ public class GoldLabelLabeler implements DatasetLabeler{
 	@Override
 	public Predictions label(Dataset trainingInstances, Dataset heldoutInstances) {
 
-		List<Prediction> labeledPredictions = Lists.newArrayList();
-		List<Prediction> unlabeledPredictions = Lists.newArrayList();
-		List<Prediction> heldoutPredictions = Lists.newArrayList();
+		List<DatasetInstance> training = Lists.newArrayList(trainingInstances);
+		List<DatasetInstance> heldout = Lists.newArrayList(heldoutInstances);
+		return BaselinePredictions.of(trainingInstances, training, goldLabels(training), heldout, goldLabels(heldout));
+		
+	}
 
-		for (DatasetInstance inst: trainingInstances){
-			Preconditions.checkArgument(inst.hasLabel(),"gold labels are not available for instance "+inst.getInfo().getRawSource());
-			if (inst.hasAnnotations()){
-				labeledPredictions.add(new BasicPrediction(inst.getLabel(), inst));
-			}
-			else{
-				unlabeledPredictions.add(new BasicPrediction(inst.getLabel(), inst));
-			}
-		}
-		for (DatasetInstance inst: heldoutInstances){
+	private static int[] goldLabels(List<DatasetInstance> instances){
+		int[] labels = new int[instances.size()];
+		for (int i=0; i<labels.length; i++){
+			DatasetInstance inst = instances.get(i);
 			Preconditions.checkArgument(inst.hasLabel(),"gold labels are not available for instance "+inst.getInfo().getRawSource());
-			heldoutPredictions.add(new BasicPrediction(inst.getLabel(), inst));
+			labels[i] = inst.getLabel();
 		}
-
-		int numAnnotators = trainingInstances.getInfo().getNumAnnotators();
-		int numClasses = trainingInstances.getInfo().getNumClasses();
-		double[] annotatorAccuracies = new double[numAnnotators];
-		double[][][] annotatorConfusionMatrices = new double[numAnnotators][numClasses][numClasses];
-		double machineAccuracy = -1;
-		double[][] machineConfusionMatrix = new double[numClasses][numClasses];
-		double logJoint = -1;
-		return new Predictions(labeledPredictions, unlabeledPredictions, heldoutPredictions, 
-				annotatorAccuracies, annotatorConfusionMatrices, machineAccuracy, machineConfusionMatrix, logJoint);
-		
+		return labels;
 	}
 
 }
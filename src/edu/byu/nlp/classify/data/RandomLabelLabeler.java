@@ -1,55 +1,105 @@
 package edu.byu.nlp.classify.data;
 
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.math3.random.RandomGenerator;
 
+import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 
-import edu.byu.nlp.classify.eval.BasicPrediction;
-import edu.byu.nlp.classify.eval.Prediction;
 import edu.byu.nlp.classify.eval.Predictions;
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
 import edu.byu.nlp.data.types.Dataset;
 import edu.byu.nlp.data.types.DatasetInstance;
 
+/**
+ * Labels every instance uniformly at random.
+ *
+ * When constructed with a {@code RandomGenerator}, labels are drawn sequentially from it.
+ * When constructed with a seed, the label of the i'th training (heldout) instance is drawn
+ * from its own random stream keyed by the seed and i, so labeling can be spread over
+ * several threads and each instance's label is reproducible independently of the others.
+ */
 public class RandomLabelLabeler implements DatasetLabeler{
 
 	private RandomGenerator rnd;
+	private final long trainingSeed;
+	private final long heldoutSeed;
+	private final int numThreads;
 
 	public RandomLabelLabeler(RandomGenerator rnd){
 		this.rnd=rnd;
+		this.trainingSeed=0;
+		this.heldoutSeed=0;
+		this.numThreads=1;
 	}
-	
+
+	public RandomLabelLabeler(long seed, int numThreads){
+		Preconditions.checkArgument(numThreads>0, "numThreads must be positive");
+		this.rnd=null;
+		this.trainingSeed=SplittableRandomGenerator.forStream(seed, 0).nextLong();
+		this.heldoutSeed=SplittableRandomGenerator.forStream(seed, 1).nextLong();
+		this.numThreads=numThreads;
+	}
+
 	@Override
 	public Predictions label(Dataset trainingInstances, Dataset heldoutInstances) {
 
-		List<Prediction> labeledPredictions = Lists.newArrayList();
-		List<Prediction> unlabeledPredictions = Lists.newArrayList();
-		List<Prediction> heldoutPredictions = Lists.newArrayList();
+		int numLabels = trainingInstances.getInfo().getNumClasses();
+		List<DatasetInstance> training = Lists.newArrayList(trainingInstances);
+		List<DatasetInstance> heldout = Lists.newArrayList(heldoutInstances);
+		int[] trainingLabels = randomLabels(training.size(), numLabels, trainingSeed);
+		int[] heldoutLabels = randomLabels(heldout.size(), numLabels, heldoutSeed);
 
-		for (DatasetInstance inst: trainingInstances){
-			int randLabel = rnd.nextInt(trainingInstances.getInfo().getNumClasses());
-			if (inst.hasAnnotations()){
-				labeledPredictions.add(new BasicPrediction(randLabel, inst));
-			}
-			else{
-				unlabeledPredictions.add(new BasicPrediction(randLabel, inst));
+		return BaselinePredictions.of(trainingInstances, training, trainingLabels, heldout, heldoutLabels);
+		
+	}
+	
+	private int[] randomLabels(int numInstances, final int numLabels, final long seed){
+		final int[] labels = new int[numInstances];
+		if (rnd!=null){
+			for (int i=0; i<numInstances; i++){
+				labels[i] = rnd.nextInt(numLabels);
 			}
+			return labels;
 		}
-		for (DatasetInstance inst: heldoutInstances){
-			int randLabel = rnd.nextInt(trainingInstances.getInfo().getNumClasses());
-			heldoutPredictions.add(new BasicPrediction(randLabel, inst));
-		}
-
-		int numAnnotators = trainingInstances.getInfo().getNumAnnotators();
-		int numClasses = trainingInstances.getInfo().getNumClasses();
-		double[] annotatorAccuracies = new double[numAnnotators];
-		double[][][] annotatorConfusionMatrices = new double[numAnnotators][numClasses][numClasses];
-		double machineAccuracy = -1;
-		double[][] machineConfusionMatrix = new double[numClasses][numClasses];
-		double logJoint = -1;
-		return new Predictions(labeledPredictions, unlabeledPredictions, heldoutPredictions, 
-				annotatorAccuracies, annotatorConfusionMatrices, machineAccuracy, machineConfusionMatrix, logJoint);
 		
+		int chunkSize = Math.max(1, (numInstances + numThreads - 1) / numThreads);
+		List<Callable<Void>> tasks = Lists.newArrayList();
+		for (int start=0; start<numInstances; start+=chunkSize){
+			final int from = start;
+			final int to = Math.min(numInstances, start + chunkSize);
+			tasks.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					for (int i=from; i<to; i++){
+						labels[i] = SplittableRandomGenerator.forStream(seed, i).nextInt(numLabels);
+					}
+					return null;
+				}
+			});
+		}
+		if (tasks.isEmpty()){
+			return labels;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			for (Future<Void> task : executor.invokeAll(tasks)) {
+				task.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while labeling", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("error while labeling", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return labels;
 	}
 }
@@ -27,6 +27,7 @@ import edu.byu.nlp.classify.ClassifierLearner;
 import edu.byu.nlp.classify.eval.BasicPrediction;
 import edu.byu.nlp.classify.eval.Prediction;
 import edu.byu.nlp.classify.eval.Predictions;
+import edu.byu.nlp.classify.eval.SparseAnnotatorConfusions;
 import edu.byu.nlp.data.types.Dataset;
 import edu.byu.nlp.data.types.DatasetInstance;
 import edu.byu.nlp.dataset.BasicDataset;
@@ -110,8 +111,8 @@ public class SingleLabelLabeler implements DatasetLabeler {
     }
     serializePredictions(annotatedPredictions,unannotatedPredictions, serializeOut);
     double[] annotatorAccuracies = annotatorAccuracy(annotatedPredictions);
-    double[][][] annotatorConfusionMatrices = annotatorConfusions(annotatedPredictions, trainingData.getInfo().getNumClasses());
-    return new Predictions(annotatedPredictions, unannotatedPredictions,
+    SparseAnnotatorConfusions annotatorConfusionMatrices = annotatorConfusions(annotatedPredictions, numAnnotators, trainingData.getInfo().getNumClasses());
+    return Predictions.withSparseConfusions(annotatedPredictions, unannotatedPredictions,
         heldoutPredictions, annotatorAccuracies, annotatorConfusionMatrices , -1, null, -1);
   }
 
@@ -172,11 +173,11 @@ public class SingleLabelLabeler implements DatasetLabeler {
     return annotatorAccuracies;
   }
 
-  private double[][][] annotatorConfusions(
-      Collection<Prediction> labeledPredictions, int numLabels) {
+  static SparseAnnotatorConfusions annotatorConfusions(
+      Iterable<? extends Prediction> labeledPredictions, int numAnnotators, int numLabels) {
     // Calculate a matrix based on the disagreements with the singly-labeled dataset 
     // (e.g., majority if DatasetBuilder had a MajorityVoteChooser).
-    final double[][][] confusionMatrices = new double[numAnnotators][numLabels][numLabels];
+    final SparseAnnotatorConfusions confusionMatrices = new SparseAnnotatorConfusions(numAnnotators, numLabels);
     if (numAnnotators>0 && numLabels>0){
       for (final Prediction p : labeledPredictions) {
         p.getInstance().getAnnotations().getLabelAnnotations().walkInOptimizedOrder(
@@ -184,7 +185,7 @@ public class SingleLabelLabeler implements DatasetLabeler {
           @Override
           public void visit(int annotator, int annval, double value) {
             for (int i=0; i<value; i++){
-              confusionMatrices[annotator][p.getPredictedLabel()][annval] += value;
+              confusionMatrices.add(annotator, p.getPredictedLabel(), annval, value);
             }
           }
         });
@@ -15,16 +15,30 @@
  */
 package edu.byu.nlp.classify.eval;
 
+import com.google.common.primitives.Ints;
+
 public class Accuracy {
-	private final int correct;
-	private final int total;
+	private final long correct;
+	private final long total;
 	
 	public Accuracy(int correct, int total) {
+		this((long) correct, (long) total);
+	}
+	
+	public Accuracy(long correct, long total) {
 		this.correct = correct;
 		this.total = total;
 	}
 	
-	public int getCorrect() { return correct; }
-	public int getTotal() { return total; }
+	/**
+	 * Throws if the count does not fit in an int; see {@link #getCorrectCount()}.
+	 */
+	public int getCorrect() { return Ints.checkedCast(correct); }
+	/**
+	 * Throws if the count does not fit in an int; see {@link #getTotalCount()}.
+	 */
+	public int getTotal() { return Ints.checkedCast(total); }
+	public long getCorrectCount() { return correct; }
+	public long getTotalCount() { return total; }
 	public double getAccuracy() { return (double) correct / total; }
 }
\ No newline at end of file
@@ -65,6 +65,34 @@ public class AccuracyComputer {
 		return new OverallAccuracy(labeledAccuracy, unlabeledAccuracy, heldoutAccuracy);
 	}
 	
+	/**
+	 * Same as {@link #compute(Predictions, Integer)} but reads the prediction columns directly.
+	 */
+	public OverallAccuracy compute(ColumnarPredictions predictions) {
+	  int[] correct = new int[ColumnarPredictions.Split.values().length];
+	  int[] total = new int[correct.length];
+	  for (int row = 0; row < predictions.size(); row++) {
+	    // see computeFor for why unlabeled instances and null predictions are ignored
+	    if (predictions.getGoldLabel(row) == ColumnarPredictions.NO_LABEL
+	        || predictions.getPredictedLabel(row) == ColumnarPredictions.NO_LABEL) {
+	      continue;
+	    }
+	    int split = predictions.getSplit(row).ordinal();
+	    if (predictions.isCorrectInTop(row, topn)) {
+	      ++correct[split];
+	    }
+	    ++total[split];
+	  }
+	  return new OverallAccuracy(
+	      accuracyOf(ColumnarPredictions.Split.LABELED, correct, total),
+	      accuracyOf(ColumnarPredictions.Split.UNLABELED, correct, total),
+	      accuracyOf(ColumnarPredictions.Split.HELDOUT, correct, total));
+	}
+	
+	private static Accuracy accuracyOf(ColumnarPredictions.Split split, int[] correct, int[] total) {
+	  return new Accuracy(correct[split.ordinal()], total[split.ordinal()]);
+	}
+	
 	public String csvHeader() {
 	  String prefix = (topn==1)? "": "top"+topn+"_";
 	    return prefix+"labeled_correct, "+prefix+"labeled_total, "+prefix+"labeled_acc, "+
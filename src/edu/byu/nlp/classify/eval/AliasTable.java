@@ -0,0 +1,102 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.CategoricalDistribution;
+
+/**
+ * A categorical distribution over 0..n-1 that samples in constant time using Vose's alias
+ * method. Construction is O(n); each sample costs a single uniform deviate.
+ */
+public class AliasTable implements CategoricalDistribution<Integer> {
+
+  // probability of keeping the column's own outcome rather than its alias
+  private final double[] threshold;
+  private final int[] alias;
+
+  /**
+   * @param weights non-negative, unnormalized probabilities; at least one must be positive
+   */
+  public AliasTable(double[] weights) {
+    int n = weights.length;
+    double sum = 0;
+    for (double weight : weights) {
+      Preconditions.checkArgument(weight >= 0 && !Double.isInfinite(weight), "invalid weight %s", weight);
+      sum += weight;
+    }
+    Preconditions.checkArgument(sum > 0, "weights must not all be zero");
+
+    this.threshold = new double[n];
+    this.alias = new int[n];
+    double[] scaled = new double[n];
+    int[] small = new int[n];
+    int[] large = new int[n];
+    int numSmall = 0, numLarge = 0;
+    for (int i = 0; i < n; i++) {
+      scaled[i] = weights[i] * n / sum;
+      if (scaled[i] < 1) {
+        small[numSmall++] = i;
+      } else {
+        large[numLarge++] = i;
+      }
+    }
+    while (numSmall > 0 && numLarge > 0) {
+      int s = small[--numSmall];
+      int l = large[--numLarge];
+      threshold[s] = scaled[s];
+      alias[s] = l;
+      scaled[l] = (scaled[l] + scaled[s]) - 1;
+      if (scaled[l] < 1) {
+        small[numSmall++] = l;
+      } else {
+        large[numLarge++] = l;
+      }
+    }
+    // whatever remains is 1 up to rounding error
+    while (numLarge > 0) {
+      int l = large[--numLarge];
+      threshold[l] = 1;
+      alias[l] = l;
+    }
+    while (numSmall > 0) {
+      int s = small[--numSmall];
+      threshold[s] = 1;
+      alias[s] = s;
+    }
+  }
+
+  public int size() {
+    return threshold.length;
+  }
+
+  public int sampleInt(RandomGenerator rnd) {
+    double u = rnd.nextDouble() * threshold.length;
+    // guards against u rounding up to the number of columns
+    int column = Math.min((int) u, threshold.length - 1);
+    return (u - column < threshold[column]) ? column : alias[column];
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public Integer sample(RandomGenerator rnd) {
+    return sampleInt(rnd);
+  }
+
+}
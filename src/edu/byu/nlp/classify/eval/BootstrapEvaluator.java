@@ -0,0 +1,384 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.eval.ColumnarPredictions.Split;
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
+
+/**
+ * Percentile bootstrap confidence intervals for accuracy, per-class precision / recall / F1
+ * and macro-F1.
+ *
+ * Predictions are first reduced to two parallel int arrays (gold and predicted label) using
+ * the same rules as {@code AccuracyComputer} (instances without a gold label and null
+ * predictions are ignored). Each replicate then resamples those arrays with replacement,
+ * accumulating only O(numClasses) counts. Replicates are divided among numThreads threads;
+ * replicate r always uses stream r of seed ({@code SplittableRandomGenerator.forStream}), so
+ * results do not depend on the number of threads.
+ *
+ * Accuracy and macro-F1 keep one value per replicate. Per-class intervals need numReplicates
+ * values per class and statistic, so they are only kept for the labels passed to the
+ * constructor.
+ */
+public class BootstrapEvaluator {
+
+  private final int numClasses;
+  private final int numReplicates;
+  private final long seed;
+  private final int numThreads;
+  // the labels with per-class intervals, and the position of each label among them (-1 if none)
+  private final int[] perClassLabels;
+  private final int[] perClassIndex;
+
+  /**
+   * Computes intervals for accuracy and macro-F1 only.
+   */
+  public BootstrapEvaluator(int numClasses, int numReplicates, long seed, int numThreads) {
+    this(numClasses, numReplicates, seed, numThreads, new int[0]);
+  }
+
+  /**
+   * @param perClassLabels the labels whose precision, recall and F1 intervals are wanted
+   */
+  public BootstrapEvaluator(int numClasses, int numReplicates, long seed, int numThreads, int[] perClassLabels) {
+    Preconditions.checkArgument(numClasses > 0, "numClasses must be positive");
+    Preconditions.checkArgument(numReplicates > 0, "numReplicates must be positive");
+    Preconditions.checkArgument(numThreads > 0, "numThreads must be positive");
+    this.numClasses = numClasses;
+    this.numReplicates = numReplicates;
+    this.seed = seed;
+    this.numThreads = numThreads;
+    this.perClassLabels = perClassLabels.clone();
+    this.perClassIndex = new int[numClasses];
+    Arrays.fill(perClassIndex, -1);
+    for (int i = 0; i < perClassLabels.length; i++) {
+      Preconditions.checkElementIndex(perClassLabels[i], numClasses);
+      Preconditions.checkArgument(perClassIndex[perClassLabels[i]] < 0, "label %s is repeated", perClassLabels[i]);
+      perClassIndex[perClassLabels[i]] = i;
+    }
+  }
+
+  /**
+   * Computes per-class intervals for every label.
+   */
+  public static BootstrapEvaluator withAllClasses(int numClasses, int numReplicates, long seed, int numThreads) {
+    int[] labels = new int[numClasses];
+    for (int k = 0; k < numClasses; k++) {
+      labels[k] = k;
+    }
+    return new BootstrapEvaluator(numClasses, numReplicates, seed, numThreads, labels);
+  }
+
+  public Result evaluate(Predictions predictions, Split split) {
+    switch (split) {
+    case LABELED:
+      return evaluate(predictions.labeledPredictions());
+    case UNLABELED:
+      return evaluate(predictions.unlabeledPredictions());
+    case HELDOUT:
+      return evaluate(predictions.testPredictions());
+    default:
+      throw new IllegalArgumentException("Unknown split " + split);
+    }
+  }
+
+  public Result evaluate(Iterable<? extends Prediction> predictions) {
+    IntArrayList gold = new IntArrayList();
+    IntArrayList predicted = new IntArrayList();
+    for (Prediction prediction : predictions) {
+      if (prediction.getInstance().hasLabel() && prediction.getPredictedLabel() != null) {
+        gold.add(prediction.getInstance().getLabel());
+        predicted.add(prediction.getPredictedLabel());
+      }
+    }
+    return evaluate(gold.toIntArray(), predicted.toIntArray());
+  }
+
+  /**
+   * Pools the rows of the given splits (all splits if none are given).
+   */
+  public Result evaluate(ColumnarPredictions predictions, Split... splits) {
+    boolean[] include = new boolean[Split.values().length];
+    if (splits.length == 0) {
+      Arrays.fill(include, true);
+    }
+    for (Split split : splits) {
+      include[split.ordinal()] = true;
+    }
+    IntArrayList gold = new IntArrayList(predictions.size());
+    IntArrayList predicted = new IntArrayList(predictions.size());
+    for (int row = 0; row < predictions.size(); row++) {
+      if (include[predictions.getSplit(row).ordinal()]
+          && predictions.getGoldLabel(row) != ColumnarPredictions.NO_LABEL
+          && predictions.getPredictedLabel(row) != ColumnarPredictions.NO_LABEL) {
+        gold.add(predictions.getGoldLabel(row));
+        predicted.add(predictions.getPredictedLabel(row));
+      }
+    }
+    return evaluate(gold.toIntArray(), predicted.toIntArray());
+  }
+
+  /**
+   * @param gold the gold label of each evaluated item
+   * @param predicted the predicted label of each evaluated item
+   */
+  public Result evaluate(final int[] gold, final int[] predicted) {
+    Preconditions.checkArgument(gold.length == predicted.length,
+        "gold and predicted labels differ in length (%s vs %s)", gold.length, predicted.length);
+    for (int i = 0; i < gold.length; i++) {
+      Preconditions.checkElementIndex(gold[i], numClasses);
+      Preconditions.checkElementIndex(predicted[i], numClasses);
+    }
+
+    final Result result = new Result(gold.length);
+    result.observed.count(gold, predicted, null);
+    if (gold.length == 0) {
+      return result;
+    }
+
+    int chunkSize = (numReplicates + numThreads - 1) / numThreads;
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    for (int start = 0; start < numReplicates; start += chunkSize) {
+      final int from = start;
+      final int to = Math.min(numReplicates, start + chunkSize);
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          Counts counts = new Counts();
+          for (int r = from; r < to; r++) {
+            counts.count(gold, predicted, replicateGenerator(r));
+            result.record(r, counts);
+          }
+          return null;
+        }
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+    try {
+      for (Future<Void> task : executor.invokeAll(tasks)) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while bootstrapping", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("error while bootstrapping", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return result;
+  }
+
+  private RandomGenerator replicateGenerator(int replicate) {
+    return SplittableRandomGenerator.forStream(seed, replicate);
+  }
+
+  /**
+   * Per-class counts of one (re)sample.
+   */
+  private class Counts {
+    private final long[] truePositives = new long[numClasses];
+    private final long[] goldCounts = new long[numClasses];
+    private final long[] predictedCounts = new long[numClasses];
+    private long correct;
+    private long total;
+
+    /**
+     * Counts a resample of the items drawn using rnd, or the items themselves if rnd is null.
+     */
+    void count(int[] gold, int[] predicted, RandomGenerator rnd) {
+      Arrays.fill(truePositives, 0);
+      Arrays.fill(goldCounts, 0);
+      Arrays.fill(predictedCounts, 0);
+      correct = 0;
+      total = gold.length;
+      for (int n = 0; n < gold.length; n++) {
+        int i = (rnd == null) ? n : rnd.nextInt(gold.length);
+        int g = gold[i];
+        int p = predicted[i];
+        ++goldCounts[g];
+        ++predictedCounts[p];
+        if (g == p) {
+          ++truePositives[g];
+          ++correct;
+        }
+      }
+    }
+
+    double accuracy() {
+      return (double) correct / total;
+    }
+
+    double precision(int label) {
+      return (double) truePositives[label] / predictedCounts[label];
+    }
+
+    double recall(int label) {
+      return (double) truePositives[label] / goldCounts[label];
+    }
+
+    double f1(int label) {
+      // equivalent to 2PR/(P+R); see ConfusionMatrix.f1
+      return 2.0 * truePositives[label] / (predictedCounts[label] + goldCounts[label]);
+    }
+
+    double macroF1() {
+      double sum = 0;
+      int n = 0;
+      for (int k = 0; k < numClasses; k++) {
+        if (predictedCounts[k] + goldCounts[k] > 0) {
+          sum += f1(k);
+          ++n;
+        }
+      }
+      return sum / n;
+    }
+  }
+
+  /**
+   * A point estimate and the percentile interval around it.
+   */
+  public static class ConfidenceInterval {
+    private final double estimate;
+    private final double lower;
+    private final double upper;
+    private final double level;
+
+    public ConfidenceInterval(double estimate, double lower, double upper, double level) {
+      this.estimate = estimate;
+      this.lower = lower;
+      this.upper = upper;
+      this.level = level;
+    }
+
+    public double getEstimate() { return estimate; }
+    public double getLower() { return lower; }
+    public double getUpper() { return upper; }
+    public double getLevel() { return level; }
+
+    @Override
+    public String toString() {
+      return String.format("%f [%f, %f] (%.0f%%)", estimate, lower, upper, 100 * level);
+    }
+  }
+
+  /**
+   * The replicate statistics of one call to evaluate. Intervals at any level can be read
+   * from the same replicates.
+   */
+  public class Result {
+    private final int numItems;
+    private final Counts observed = new Counts();
+    private final double[] accuracies = new double[numReplicates];
+    private final double[] macroF1s = new double[numReplicates];
+    // [position in perClassLabels][replicate]
+    private final double[][] precisions = new double[perClassLabels.length][numReplicates];
+    private final double[][] recalls = new double[perClassLabels.length][numReplicates];
+    private final double[][] f1s = new double[perClassLabels.length][numReplicates];
+
+    private Result(int numItems) {
+      this.numItems = numItems;
+    }
+
+    /**
+     * Replicates are recorded by disjoint threads into disjoint slots.
+     */
+    private void record(int replicate, Counts counts) {
+      accuracies[replicate] = counts.accuracy();
+      macroF1s[replicate] = counts.macroF1();
+      for (int i = 0; i < perClassLabels.length; i++) {
+        precisions[i][replicate] = counts.precision(perClassLabels[i]);
+        recalls[i][replicate] = counts.recall(perClassLabels[i]);
+        f1s[i][replicate] = counts.f1(perClassLabels[i]);
+      }
+    }
+
+    public int getNumItems() { return numItems; }
+    public int getNumReplicates() { return numReplicates; }
+
+    /**
+     * @param level e.g., 0.95
+     */
+    public ConfidenceInterval getAccuracy(double level) {
+      return interval(observed.accuracy(), accuracies, level);
+    }
+
+    public ConfidenceInterval getMacroF1(double level) {
+      return interval(observed.macroF1(), macroF1s, level);
+    }
+
+    /**
+     * Replicates in which label was never predicted are excluded. Requires label to have been
+     * passed to the constructor (as do the other per-class intervals).
+     */
+    public ConfidenceInterval getPrecision(int label, double level) {
+      return interval(observed.precision(label), precisions[perClassIndexOf(label)], level);
+    }
+
+    /**
+     * Replicates in which label never occurs are excluded.
+     */
+    public ConfidenceInterval getRecall(int label, double level) {
+      return interval(observed.recall(label), recalls[perClassIndexOf(label)], level);
+    }
+
+    public ConfidenceInterval getF1(int label, double level) {
+      return interval(observed.f1(label), f1s[perClassIndexOf(label)], level);
+    }
+
+    private int perClassIndexOf(int label) {
+      Preconditions.checkElementIndex(label, numClasses);
+      Preconditions.checkArgument(perClassIndex[label] >= 0, "per-class intervals were not requested for label %s", label);
+      return perClassIndex[label];
+    }
+
+    private ConfidenceInterval interval(double estimate, double[] replicates, double level) {
+      Preconditions.checkArgument(level > 0 && level < 1, "level must be in (0, 1)");
+      double[] sorted = new double[replicates.length];
+      int n = 0;
+      for (double value : replicates) {
+        if (!Double.isNaN(value)) {
+          sorted[n++] = value;
+        }
+      }
+      if (numItems == 0 || n == 0) {
+        return new ConfidenceInterval(estimate, Double.NaN, Double.NaN, level);
+      }
+      Arrays.sort(sorted, 0, n);
+      double alpha = (1 - level) / 2;
+      int lower = (int) Math.floor(alpha * (n - 1));
+      int upper = (int) Math.ceil((1 - alpha) * (n - 1));
+      return new ConfidenceInterval(estimate, sorted[lower], sorted[upper], level);
+    }
+  }
+
+}
@@ -20,7 +20,7 @@ import org.apache.commons.math3.random.RandomGenerator;
 import com.google.common.annotations.VisibleForTesting;
 
 import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.CategoricalDistribution;
-import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.ConditionalCategoricalDistribution;
+import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.LabelSampler;
 
 
 
@@ -30,7 +30,7 @@ import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.ConditionalCate
  * @author rah67
  *
  */
-public class ClassificationErrorDistribution implements ConditionalCategoricalDistribution<Integer,Integer> {
+public class ClassificationErrorDistribution implements LabelSampler {
 
 	private static class DistributionParameterizedByAccuracy implements CategoricalDistribution<Integer> {
 		
@@ -47,6 +47,10 @@ public class ClassificationErrorDistribution implements ConditionalCategoricalDi
 		/** {@inheritDoc} */
 		@Override
 		public Integer sample(RandomGenerator rnd) {
+			return sampleInt(rnd);
+		}
+		
+		int sampleInt(RandomGenerator rnd) {
 			double u = rnd.nextDouble();
 			if (u < accuracy) {
 				return label;
@@ -77,6 +81,16 @@ public class ClassificationErrorDistribution implements ConditionalCategoricalDi
 		return distributions[condition];
 	}
 	
+	/** {@inheritDoc} */
+	@Override
+	public int sample(int trueLabel, RandomGenerator rnd) {
+		CategoricalDistribution<Integer> dist = distributions[trueLabel];
+		if (dist instanceof DistributionParameterizedByAccuracy) {
+			return ((DistributionParameterizedByAccuracy) dist).sampleInt(rnd);
+		}
+		return dist.sample(rnd);
+	}
+	
 	/**
 	 * Generates a conditional distribution where p(correct) is the supplied accuracy and the various errors are
 	 * uniformly distributed across the other options. 
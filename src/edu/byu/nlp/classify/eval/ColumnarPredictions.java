@@ -0,0 +1,301 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.UnmodifiableIterator;
+import com.google.common.primitives.Ints;
+
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.util.Nullable;
+
+/**
+ * A compact, column-oriented store of predictions. Each row is a handful of ints (the
+ * instance index, the gold label, the split and the top-k predicted labels) rather than
+ * a {@code BasicPrediction} with a boxed label list.
+ *
+ * Evaluation code can read the columns directly (see {@code AccuracyComputer} and
+ * {@code ConfusionMatrixComputer}). For code written against {@code Prediction},
+ * {@link #asPredictions} exposes the rows through lightweight views that are created
+ * on the fly during iteration.
+ */
+public class ColumnarPredictions {
+
+  /** Used for a missing gold label or a null (punted) prediction. */
+  public static final int NO_LABEL = -1;
+
+  public enum Split {
+    LABELED, UNLABELED, HELDOUT;
+  }
+
+  private static final Split[] SPLITS = Split.values();
+
+  private final int topK;
+  private final List<? extends DatasetInstance> instances;
+  private int size = 0;
+  private int[] instanceIndices;
+  private int[] goldLabels;
+  private byte[] splits;
+  // row-major, topK entries per row, padded with NO_LABEL
+  private int[] predictedLabels;
+
+  /**
+   * @param topK the number of ranked predictions to keep per row
+   * @param instances if non-null, used to resolve instance indices for the
+   *     {@code Prediction} views returned by {@link #asPredictions}
+   */
+  public ColumnarPredictions(int topK, int expectedSize, @Nullable List<? extends DatasetInstance> instances) {
+    Preconditions.checkArgument(topK > 0, "topK must be positive");
+    this.topK = topK;
+    this.instances = instances;
+    int capacity = Math.max(expectedSize, 16);
+    this.instanceIndices = new int[capacity];
+    this.goldLabels = new int[capacity];
+    this.splits = new byte[capacity];
+    this.predictedLabels = new int[capacity * topK];
+  }
+
+  /**
+   * @param goldLabel NO_LABEL if the instance's label is unknown
+   * @param rankedLabels best first; only the first topK are kept. May be empty for a null prediction.
+   */
+  public void add(Split split, int instanceIndex, int goldLabel, int... rankedLabels) {
+    ensureCapacity(size + 1);
+    instanceIndices[size] = instanceIndex;
+    goldLabels[size] = goldLabel;
+    splits[size] = (byte) split.ordinal();
+    int offset = size * topK;
+    int n = Math.min(topK, rankedLabels.length);
+    System.arraycopy(rankedLabels, 0, predictedLabels, offset, n);
+    Arrays.fill(predictedLabels, offset + n, offset + topK, NO_LABEL);
+    ++size;
+  }
+
+  /**
+   * Convenience for the boxed representations used by {@code Prediction} and {@code DatasetInstance}.
+   */
+  public void add(Split split, int instanceIndex, @Nullable Integer goldLabel, List<Integer> rankedLabels) {
+    int n = Math.min(topK, rankedLabels.size());
+    int[] labels = new int[n];
+    for (int i = 0; i < n; i++) {
+      Integer label = rankedLabels.get(i);
+      labels[i] = (label == null) ? NO_LABEL : label;
+    }
+    add(split, instanceIndex, (goldLabel == null) ? NO_LABEL : goldLabel, labels);
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > instanceIndices.length) {
+      int newCapacity = Math.max(capacity, instanceIndices.length + (instanceIndices.length >> 1));
+      instanceIndices = Arrays.copyOf(instanceIndices, newCapacity);
+      goldLabels = Arrays.copyOf(goldLabels, newCapacity);
+      splits = Arrays.copyOf(splits, newCapacity);
+      predictedLabels = Arrays.copyOf(predictedLabels, newCapacity * topK);
+    }
+  }
+
+  /**
+   * Releases unused capacity.
+   */
+  public void trimToSize() {
+    instanceIndices = Arrays.copyOf(instanceIndices, size);
+    goldLabels = Arrays.copyOf(goldLabels, size);
+    splits = Arrays.copyOf(splits, size);
+    predictedLabels = Arrays.copyOf(predictedLabels, size * topK);
+  }
+
+  public int size() { return size; }
+  public int getTopK() { return topK; }
+
+  public Split getSplit(int row) {
+    return SPLITS[splits[row]];
+  }
+
+  public int getInstanceIndex(int row) {
+    return instanceIndices[row];
+  }
+
+  public int getGoldLabel(int row) {
+    return goldLabels[row];
+  }
+
+  /**
+   * NO_LABEL for a null prediction.
+   */
+  public int getPredictedLabel(int row) {
+    return predictedLabels[row * topK];
+  }
+
+  public int getPredictedLabel(int row, int rank) {
+    Preconditions.checkElementIndex(rank, topK);
+    return predictedLabels[row * topK + rank];
+  }
+
+  public int getNumPredictedLabels(int row) {
+    int offset = row * topK;
+    int n = 0;
+    while (n < topK && predictedLabels[offset + n] != NO_LABEL) {
+      ++n;
+    }
+    return n;
+  }
+
+  /**
+   * True if the gold label is one of the first n predicted labels of the row.
+   */
+  public boolean isCorrectInTop(int row, int n) {
+    int gold = goldLabels[row];
+    int offset = row * topK;
+    int end = offset + Math.min(n, topK);
+    for (int i = offset; i < end && predictedLabels[i] != NO_LABEL; i++) {
+      if (predictedLabels[i] == gold) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The rows of one split as {@code Prediction}s. Requires instances to have been supplied.
+   */
+  public Iterable<Prediction> view(final Split split) {
+    Preconditions.checkState(instances != null, "instances are required for Prediction views");
+    return new Iterable<Prediction>() {
+      @Override
+      public Iterator<Prediction> iterator() {
+        return new UnmodifiableIterator<Prediction>() {
+          private int next = advance(0);
+
+          private int advance(int row) {
+            while (row < size && splits[row] != split.ordinal()) {
+              ++row;
+            }
+            return row;
+          }
+
+          @Override
+          public boolean hasNext() {
+            return next < size;
+          }
+
+          @Override
+          public Prediction next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            Prediction prediction = new RowPrediction(next);
+            next = advance(next + 1);
+            return prediction;
+          }
+        };
+      }
+    };
+  }
+
+  /**
+   * Wraps these predictions (without copying) as a {@code Predictions} object.
+   */
+  public Predictions asPredictions(double[] annotatorAccuracies, double[][][] annotatorConfusionMatrices,
+      double machineAccuracy, double[][] machineConfusionMatrix, double logJoint) {
+    return new Predictions(view(Split.LABELED), view(Split.UNLABELED), view(Split.HELDOUT),
+        annotatorAccuracies, annotatorConfusionMatrices, machineAccuracy, machineConfusionMatrix, logJoint);
+  }
+
+  /**
+   * Like {@link #asPredictions} but the annotator confusion tensor is only obtained if
+   * requested (see {@link Predictions#withLazyConfusions}).
+   */
+  public Predictions asPredictionsWithLazyConfusions(double[] annotatorAccuracies,
+      Supplier<double[][][]> annotatorConfusionMatrices, double machineAccuracy, double[][] machineConfusionMatrix,
+      double logJoint) {
+    return Predictions.withLazyConfusions(view(Split.LABELED), view(Split.UNLABELED), view(Split.HELDOUT),
+        annotatorAccuracies, annotatorConfusionMatrices, machineAccuracy, machineConfusionMatrix, logJoint);
+  }
+
+  /**
+   * Like {@link #asPredictions} but the annotator confusion matrices are given sparsely (see
+   * {@link Predictions#withSparseConfusions}).
+   */
+  public Predictions asPredictionsWithSparseConfusions(double[] annotatorAccuracies,
+      SparseAnnotatorConfusions annotatorConfusions, double machineAccuracy, double[][] machineConfusionMatrix,
+      double logJoint) {
+    return Predictions.withSparseConfusions(view(Split.LABELED), view(Split.UNLABELED), view(Split.HELDOUT),
+        annotatorAccuracies, annotatorConfusions, machineAccuracy, machineConfusionMatrix, logJoint);
+  }
+
+  /**
+   * A view of a single row.
+   */
+  private class RowPrediction implements Prediction {
+    private final int row;
+
+    RowPrediction(int row) {
+      this.row = row;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer getPredictedLabel() {
+      int label = ColumnarPredictions.this.getPredictedLabel(row);
+      return (label == NO_LABEL) ? null : label;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public DatasetInstance getInstance() {
+      return instances.get(instanceIndices[row]);
+    }
+
+    /**
+     * The ranked labels; [null] for a null prediction, as for a {@code BasicPrediction} of a
+     * null label.
+     */
+    @Override
+    public List<Integer> getPredictedLabels() {
+      int numPredicted = getNumPredictedLabels(row);
+      if (numPredicted == 0) {
+        return Collections.singletonList(null);
+      }
+      int offset = row * topK;
+      return Ints.asList(predictedLabels).subList(offset, offset + numPredicted);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Integer getAlternativePredictedLabel() {
+      return null;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int[] getPredictedWordTopics() {
+      return null;
+    }
+
+    @Override
+    public String toString() {
+      return "RowPrediction [predictedLabel=" + getPredictedLabel() + ", instance=" + getInstance() + "]";
+    }
+  }
+
+}
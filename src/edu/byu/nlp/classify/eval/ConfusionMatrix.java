@@ -15,37 +15,176 @@
  */
 package edu.byu.nlp.classify.eval;
 
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.RealMatrix;
+import com.google.common.base.Preconditions;
 
 import edu.byu.nlp.util.Indexer;
+import edu.byu.nlp.util.Nullable;
 
+/**
+ * Counts of (truth, predicted) pairs, stored row-major in a single {@code long[]}.
+ * 
+ * Partial matrices accumulated independently (e.g., one per thread; see {@link #newPartial()})
+ * can be combined with {@link #merge(ConfusionMatrix)}.
+ */
 public class ConfusionMatrix {
 
-  private final RealMatrix matrix;
+  private final int numRows;
+  private final int numColumns;
+  private final long[] counts;
   private final Indexer<String> labels;
 
-  public ConfusionMatrix(int numLabels, int K, Indexer<String> labels) {
+  public ConfusionMatrix(int numLabels, int K, @Nullable Indexer<String> labels) {
+      Preconditions.checkArgument(numLabels >= 0 && K >= 0);
+      Preconditions.checkArgument((long) numLabels * K <= Integer.MAX_VALUE, 
+          "confusion matrix is too large (%s x %s)", numLabels, K);
       this.labels = labels;
-      this.matrix = new Array2DRowRealMatrix(numLabels, K);
+      this.numRows = numLabels;
+      this.numColumns = K;
+      this.counts = new long[numLabels * K];
+  }
+
+  /**
+   * An empty matrix with the same dimensions and labels (suitable for accumulating 
+   * a partial result to be merged into this one). 
+   */
+  public ConfusionMatrix newPartial() {
+      return new ConfusionMatrix(numRows, numColumns, labels);
   }
 
   public void incrementEntry(int truth, int predicted) {
-      addToEntry(truth, predicted, 1);
+      ++counts[index(truth, predicted)];
   }
 
   public void addToEntry(int truth, int predicted, int amount) {
-      matrix.addToEntry(truth, predicted, amount);
+      addToEntry(truth, predicted, (long) amount);
+  }
+
+  public void addToEntry(int truth, int predicted, long amount) {
+      counts[index(truth, predicted)] += amount;
   }
 
+  private int index(int truth, int predicted) {
+      Preconditions.checkElementIndex(truth, numRows);
+      Preconditions.checkElementIndex(predicted, numColumns);
+      return truth * numColumns + predicted;
+  }
+
+  /**
+   * Adds the counts of other (which must have the same dimensions) to this matrix.
+   */
+  public void merge(ConfusionMatrix other) {
+      Preconditions.checkArgument(other.numRows == numRows && other.numColumns == numColumns,
+          "cannot merge a %sx%s matrix into a %sx%s matrix", other.numRows, other.numColumns, numRows, numColumns);
+      for (int i = 0; i < counts.length; i++) {
+          counts[i] += other.counts[i];
+      }
+  }
+
+  public int getNumRows() { return numRows; }
+  public int getNumColumns() { return numColumns; }
+
+  public long getEntry(int truth, int predicted) {
+      return counts[index(truth, predicted)];
+  }
+
+  /**
+   * The backing array (row-major; entry (truth, predicted) is at truth * numColumns + predicted).
+   * Callers must not modify it.
+   */
+  public long[] getCounts() {
+      return counts;
+  }
+
+  /**
+   * A copy of the counts as doubles.
+   */
   public double[][] getData(){
-    return matrix.getData();
+      double[][] data = new double[numRows][numColumns];
+      for (int truth = 0; truth < numRows; truth++) {
+          for (int predicted = 0; predicted < numColumns; predicted++) {
+              data[truth][predicted] = counts[truth * numColumns + predicted];
+          }
+      }
+      return data;
+  }
+
+  /** The number of items whose true label is truth. */
+  public long rowSum(int truth) {
+      long sum = 0;
+      for (int i = truth * numColumns, end = i + numColumns; i < end; i++) {
+          sum += counts[i];
+      }
+      return sum;
+  }
+
+  /** The number of items predicted to be predicted. */
+  public long columnSum(int predicted) {
+      long sum = 0;
+      for (int i = predicted; i < counts.length; i += numColumns) {
+          sum += counts[i];
+      }
+      return sum;
+  }
+
+  public long total() {
+      long sum = 0;
+      for (long count : counts) {
+          sum += count;
+      }
+      return sum;
+  }
+
+  public long correct() {
+      long sum = 0;
+      for (int k = 0; k < Math.min(numRows, numColumns); k++) {
+          sum += counts[k * numColumns + k];
+      }
+      return sum;
+  }
+
+  public double accuracy() {
+      return (double) correct() / total();
+  }
+
+  /** NaN if label was never predicted. */
+  public double precision(int label) {
+      return (double) getEntry(label, label) / columnSum(label);
+  }
+
+  /** NaN if label never occurs. */
+  public double recall(int label) {
+      return (double) getEntry(label, label) / rowSum(label);
+  }
+
+  /**
+   * 2 tp / (predicted + actual), which equals 2PR/(P+R) but is 0 rather than NaN when the
+   * label occurs or is predicted but never correctly. NaN if label neither occurs nor is
+   * predicted.
+   */
+  public double f1(int label) {
+      return 2.0 * getEntry(label, label) / (columnSum(label) + rowSum(label));
+  }
+
+  /**
+   * The unweighted mean of the F1 of every label that occurs or is predicted.
+   */
+  public double macroF1() {
+      double sum = 0;
+      int n = 0;
+      for (int k = 0; k < Math.min(numRows, numColumns); k++) {
+          if (columnSum(k) + rowSum(k) > 0) {
+              sum += f1(k);
+              ++n;
+          }
+      }
+      return sum / n;
   }
 
   @Override
   public String toString() {
       int maxLen = 0;
-      for (String label : labels) {
+      for (int truth = 0; truth < numRows; truth++) {
+          String label = labelOf(truth);
           if (maxLen < label.length()) {
               maxLen = label.length();
           }
@@ -60,29 +199,32 @@ public class ConfusionMatrix {
 
       sb.append(String.format("%6s", "|"));
       
-      for (int i = 0; i < matrix.getColumnDimension(); i++) {
+      for (int i = 0; i < numColumns; i++) {
           sb.append(String.format(" %6d", i));
       }
       sb.append('\n');
 
       // horizontal divider composed of hyphens
-      int rowLength = maxLen + 7 * (labels.size()+1);
+      int rowLength = maxLen + 7 * (((labels == null)? numRows: labels.size())+1);
       for (int i = 0; i < rowLength; i++) {
           sb.append('-');
       }
       sb.append('\n');
 
       // body
-      for (int truth = 0; truth < matrix.getRowDimension(); truth++) {
-          sb.append(String.format(headerFormat, labels.get(truth)));
+      for (int truth = 0; truth < numRows; truth++) {
+          sb.append(String.format(headerFormat, labelOf(truth)));
           sb.append(String.format("%6s", truth+"|"));
-          for (int guess = 0; guess < matrix.getColumnDimension(); guess++) {
-              sb.append(String.format(" %6d", (int) matrix.getEntry(truth, guess)));
+          for (int guess = 0; guess < numColumns; guess++) {
+              sb.append(String.format(" %6d", counts[truth * numColumns + guess]));
           }
           sb.append('\n');
       }
       return sb.toString();
   }
 
-}
+  private String labelOf(int truth) {
+      return (labels == null)? Integer.toString(truth): labels.get(truth);
+  }
 
+}
@@ -15,6 +15,9 @@
  */
 package edu.byu.nlp.classify.eval;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import edu.byu.nlp.util.Indexer;
 
 public class ConfusionMatrixComputer {
@@ -37,4 +40,24 @@ public class ConfusionMatrixComputer {
     return matrix;
 	}
 	
+	/**
+	 * Confusion matrix over every row (regardless of split) with a gold label and a non-null prediction.
+	 */
+	public ConfusionMatrix compute(ColumnarPredictions predictions) {
+	  return compute(predictions, EnumSet.allOf(ColumnarPredictions.Split.class));
+	}
+	
+	public ConfusionMatrix compute(ColumnarPredictions predictions, Set<ColumnarPredictions.Split> splits) {
+	  ConfusionMatrix matrix = new ConfusionMatrix(labels.size(), labels.size(), labels);
+	  for (int row = 0; row < predictions.size(); row++) {
+	    int truth = predictions.getGoldLabel(row);
+	    int guess = predictions.getPredictedLabel(row);
+	    if (truth != ColumnarPredictions.NO_LABEL && guess != ColumnarPredictions.NO_LABEL
+	        && splits.contains(predictions.getSplit(row))) {
+	      matrix.addToEntry(truth, guess, 1);
+	    }
+	  }
+	  return matrix;
+	}
+	
 }
\ No newline at end of file
@@ -20,31 +20,47 @@ import org.apache.commons.math3.random.RandomGenerator;
 import com.google.common.base.Preconditions;
 
 import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.CategoricalDistribution;
-import edu.byu.nlp.stats.RandomGenerators;
+import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.LabelSampler;
 
 /**
+ * Samples a noisy label from the row of a confusion matrix corresponding to the true label.
+ * Each row is converted to an {@code AliasTable} at construction, so sampling takes constant
+ * time and {@code given} does not allocate; later changes to the matrix are not seen. Rows
+ * summing to zero may not be sampled from.
+ * 
  * @author rah67
  *
  */
-public class ConfusionMatrixDistribution implements ProbabilisticLabelErrorFunction.ConditionalCategoricalDistribution<Integer, Integer> {
+public class ConfusionMatrixDistribution implements LabelSampler {
 
-  private final double[][] confusionMatrix;
+  private final AliasTable[] rows;
   
   public ConfusionMatrixDistribution(double[][] confusionMatrix) {
-    this.confusionMatrix = Preconditions.checkNotNull(confusionMatrix);
+    Preconditions.checkNotNull(confusionMatrix);
+    this.rows = new AliasTable[confusionMatrix.length];
+    for (int trueLabel = 0; trueLabel < confusionMatrix.length; trueLabel++) {
+      double sum = 0;
+      for (double weight : confusionMatrix[trueLabel]) {
+        sum += weight;
+      }
+      rows[trueLabel] = (sum > 0) ? new AliasTable(confusionMatrix[trueLabel]) : null;
+    }
   }
   
   @Override
-  public CategoricalDistribution<Integer> given(final Integer trueLabel) {
-    Preconditions.checkArgument(0 <= trueLabel && trueLabel<confusionMatrix.length);
-    return new CategoricalDistribution<Integer>() {
+  public CategoricalDistribution<Integer> given(Integer trueLabel) {
+    return row(trueLabel);
+  }
 
-      @Override
-      public Integer sample(RandomGenerator rnd) {
-        double[] dist = confusionMatrix[trueLabel];
-        return RandomGenerators.nextIntUnnormalizedProbs(rnd, dist);
-      }
-    };
+  @Override
+  public int sample(int trueLabel, RandomGenerator rnd) {
+    return row(trueLabel).sampleInt(rnd);
+  }
+
+  private AliasTable row(int trueLabel) {
+    Preconditions.checkArgument(0 <= trueLabel && trueLabel < rows.length);
+    Preconditions.checkState(rows[trueLabel] != null, "row %s of the confusion matrix is all zeros", trueLabel);
+    return rows[trueLabel];
   }
   
-}
\ No newline at end of file
+}
@@ -0,0 +1,355 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.eval.ColumnarPredictions.Split;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Computes top-n accuracy (for several n at once) and per-class precision / recall / F1 in a
+ * single pass over the predictions, instead of one pass per {@code AccuracyComputer} plus
+ * another for the {@code ConfusionMatrixComputer}. The rules for skipping predictions are the
+ * same as theirs: instances without a gold label and null predictions are ignored.
+ *
+ * Each pass keeps only O(K) counts per split (true positives, predicted and actual per label).
+ * The K x K confusion matrices are built by a second pass the first time one is requested.
+ *
+ * Work is split across threads by contiguous ranges of each split (for {@code Predictions})
+ * or of the rows (for {@code ColumnarPredictions}) and the partial counts are merged at the
+ * end.
+ */
+public class FusedEvaluator {
+
+  private static final int NUM_SPLITS = Split.values().length;
+
+  private final Indexer<String> labels;
+  private final int[] topns;
+  private final int maxTopn;
+  private final int numThreads;
+
+  public FusedEvaluator(Indexer<String> labels, int numThreads, int... topns) {
+    Preconditions.checkNotNull(labels);
+    Preconditions.checkArgument(numThreads > 0, "numThreads must be positive");
+    Preconditions.checkArgument(topns.length > 0, "must evaluate at least one n");
+    int max = 0;
+    for (int topn : topns) {
+      Preconditions.checkArgument(topn > 0, "n must be positive");
+      max = Math.max(max, topn);
+    }
+    this.labels = labels;
+    this.numThreads = numThreads;
+    this.topns = topns.clone();
+    this.maxTopn = max;
+  }
+
+  /**
+   * Produces the tasks of one pass over the predictions.
+   */
+  private interface Scan {
+    List<Callable<Partial>> tasks(boolean countConfusions);
+  }
+
+  public Evaluation evaluate(Predictions predictions) {
+    final List<? extends Prediction> labeled = asList(predictions.labeledPredictions());
+    final List<? extends Prediction> unlabeled = asList(predictions.unlabeledPredictions());
+    final List<? extends Prediction> test = asList(predictions.testPredictions());
+    return new Evaluation(new Scan() {
+      @Override
+      public List<Callable<Partial>> tasks(boolean countConfusions) {
+        List<Callable<Partial>> tasks = Lists.newArrayList();
+        addListTasks(tasks, labeled, Split.LABELED, countConfusions);
+        addListTasks(tasks, unlabeled, Split.UNLABELED, countConfusions);
+        addListTasks(tasks, test, Split.HELDOUT, countConfusions);
+        return tasks;
+      }
+    });
+  }
+
+  public Evaluation evaluate(final ColumnarPredictions predictions) {
+    return new Evaluation(new Scan() {
+      @Override
+      public List<Callable<Partial>> tasks(boolean countConfusions) {
+        List<Callable<Partial>> tasks = Lists.newArrayList();
+        int chunkSize = chunkSize(predictions.size());
+        for (int start = 0; start < predictions.size(); start += chunkSize) {
+          tasks.add(columnarTask(predictions, start, Math.min(predictions.size(), start + chunkSize), countConfusions));
+        }
+        return tasks;
+      }
+    });
+  }
+
+  private static List<? extends Prediction> asList(Iterable<? extends Prediction> predictions) {
+    if (predictions == null) {
+      return Lists.newArrayList();
+    }
+    if (predictions instanceof List) {
+      return (List<? extends Prediction>) predictions;
+    }
+    return Lists.newArrayList(predictions);
+  }
+
+  private int chunkSize(int size) {
+    return Math.max(1, (size + numThreads - 1) / numThreads);
+  }
+
+  private Callable<Partial> columnarTask(final ColumnarPredictions predictions, final int from, final int to,
+      final boolean countConfusions) {
+    return new Callable<Partial>() {
+      @Override
+      public Partial call() throws Exception {
+        Partial partial = new Partial(countConfusions);
+        for (int row = from; row < to; row++) {
+          int gold = predictions.getGoldLabel(row);
+          if (gold == ColumnarPredictions.NO_LABEL || predictions.getPredictedLabel(row) == ColumnarPredictions.NO_LABEL) {
+            continue;
+          }
+          int rank = Integer.MAX_VALUE;
+          int numPredicted = Math.min(maxTopn, predictions.getTopK());
+          for (int r = 0; r < numPredicted; r++) {
+            int label = predictions.getPredictedLabel(row, r);
+            if (label == ColumnarPredictions.NO_LABEL) {
+              break;
+            }
+            if (label == gold) {
+              rank = r;
+              break;
+            }
+          }
+          partial.add(predictions.getSplit(row), gold, predictions.getPredictedLabel(row), rank);
+        }
+        return partial;
+      }
+    };
+  }
+
+  private void addListTasks(List<Callable<Partial>> tasks, final List<? extends Prediction> predictions,
+      final Split split, final boolean countConfusions) {
+    int chunkSize = chunkSize(predictions.size());
+    for (int start = 0; start < predictions.size(); start += chunkSize) {
+      final List<? extends Prediction> chunk =
+          predictions.subList(start, Math.min(predictions.size(), start + chunkSize));
+      tasks.add(new Callable<Partial>() {
+        @Override
+        public Partial call() throws Exception {
+          Partial partial = new Partial(countConfusions);
+          for (Prediction prediction : chunk) {
+            if (!prediction.getInstance().hasLabel() || prediction.getPredictedLabel() == null) {
+              continue;
+            }
+            int gold = prediction.getInstance().getLabel();
+            List<Integer> guesses = prediction.getPredictedLabels();
+            int rank = Integer.MAX_VALUE;
+            int numGuesses = Math.min(maxTopn, guesses.size());
+            for (int r = 0; r < numGuesses; r++) {
+              Integer guess = guesses.get(r);
+              if (guess != null && guess == gold) {
+                rank = r;
+                break;
+              }
+            }
+            partial.add(split, gold, prediction.getPredictedLabel(), rank);
+          }
+          return partial;
+        }
+      });
+    }
+  }
+
+  private Partial run(List<Callable<Partial>> tasks, boolean countConfusions) {
+    Partial total = new Partial(countConfusions);
+    if (tasks.isEmpty()) {
+      return total;
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, tasks.size()));
+    try {
+      for (Future<Partial> partial : executor.invokeAll(tasks)) {
+        total.merge(partial.get());
+      }
+      return total;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted during evaluation", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("error during evaluation", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Counts accumulated by one thread.
+   */
+  private class Partial {
+    // [split][topn index]
+    private final long[][] correct = new long[NUM_SPLITS][topns.length];
+    private final long[] total = new long[NUM_SPLITS];
+    // [split][label]
+    private final long[][] truePositives = new long[NUM_SPLITS][labels.size()];
+    private final long[][] predicted = new long[NUM_SPLITS][labels.size()];
+    private final long[][] actual = new long[NUM_SPLITS][labels.size()];
+    // null unless the pass counts the confusion matrices
+    private final ConfusionMatrix[] confusion;
+
+    Partial(boolean countConfusions) {
+      if (countConfusions) {
+        confusion = new ConfusionMatrix[NUM_SPLITS];
+        for (int s = 0; s < NUM_SPLITS; s++) {
+          confusion[s] = new ConfusionMatrix(labels.size(), labels.size(), labels);
+        }
+      } else {
+        confusion = null;
+      }
+    }
+
+    /**
+     * @param rank the position of the gold label in the predicted labels (MAX_VALUE if absent)
+     */
+    void add(Split split, int gold, int guess, int rank) {
+      int s = split.ordinal();
+      for (int i = 0; i < topns.length; i++) {
+        if (rank < topns[i]) {
+          ++correct[s][i];
+        }
+      }
+      ++total[s];
+      if (gold == guess) {
+        ++truePositives[s][gold];
+      }
+      ++predicted[s][guess];
+      ++actual[s][gold];
+      if (confusion != null) {
+        confusion[s].incrementEntry(gold, guess);
+      }
+    }
+
+    void merge(Partial other) {
+      for (int s = 0; s < NUM_SPLITS; s++) {
+        for (int i = 0; i < topns.length; i++) {
+          correct[s][i] += other.correct[s][i];
+        }
+        total[s] += other.total[s];
+        for (int k = 0; k < labels.size(); k++) {
+          truePositives[s][k] += other.truePositives[s][k];
+          predicted[s][k] += other.predicted[s][k];
+          actual[s][k] += other.actual[s][k];
+        }
+        if (confusion != null) {
+          confusion[s].merge(other.confusion[s]);
+        }
+      }
+    }
+  }
+
+  public class Evaluation {
+    private final Scan scan;
+    private final Partial counts;
+    // built on the first call to getConfusionMatrix
+    private ConfusionMatrix[] confusion;
+
+    private Evaluation(Scan scan) {
+      this.scan = scan;
+      this.counts = run(scan.tasks(false), false);
+    }
+
+    /**
+     * @param topn one of the n's this evaluator was constructed with
+     */
+    public OverallAccuracy getAccuracy(int topn) {
+      int i = indexOf(topn);
+      return new OverallAccuracy(accuracy(Split.LABELED, i), accuracy(Split.UNLABELED, i), accuracy(Split.HELDOUT, i));
+    }
+
+    private Accuracy accuracy(Split split, int topnIndex) {
+      return new Accuracy(counts.correct[split.ordinal()][topnIndex], counts.total[split.ordinal()]);
+    }
+
+    private int indexOf(int topn) {
+      for (int i = 0; i < topns.length; i++) {
+        if (topns[i] == topn) {
+          return i;
+        }
+      }
+      throw new IllegalArgumentException("top-" + topn + " accuracy was not computed");
+    }
+
+    /**
+     * The confusion matrix of the top prediction over the given splits. The matrices of every
+     * split are counted by one more pass over the predictions the first time this is called.
+     */
+    public ConfusionMatrix getConfusionMatrix(Split... splits) {
+      Preconditions.checkArgument(splits.length > 0, "must specify at least one split");
+      ConfusionMatrix[] bySplit = confusionMatrices();
+      ConfusionMatrix matrix = new ConfusionMatrix(labels.size(), labels.size(), labels);
+      for (Split split : splits) {
+        matrix.merge(bySplit[split.ordinal()]);
+      }
+      return matrix;
+    }
+
+    private synchronized ConfusionMatrix[] confusionMatrices() {
+      if (confusion == null) {
+        confusion = run(scan.tasks(true), true).confusion;
+      }
+      return confusion;
+    }
+
+    /**
+     * Precision of label over the given splits (NaN if label was never predicted).
+     */
+    public double getPrecision(int label, Split... splits) {
+      return (double) sum(counts.truePositives, label, splits) / sum(counts.predicted, label, splits);
+    }
+
+    /**
+     * Recall of label over the given splits (NaN if label never occurs).
+     */
+    public double getRecall(int label, Split... splits) {
+      return (double) sum(counts.truePositives, label, splits) / sum(counts.actual, label, splits);
+    }
+
+    /**
+     * F1 of label over the given splits, computed as 2tp / (predicted + actual) so that it is 0
+     * (rather than NaN) when label occurs or is predicted but is never right. NaN only if label
+     * neither occurs nor is predicted.
+     */
+    public double getF1(int label, Split... splits) {
+      long truePositives = sum(counts.truePositives, label, splits);
+      return 2.0 * truePositives / (sum(counts.predicted, label, splits) + sum(counts.actual, label, splits));
+    }
+
+    private long sum(long[][] bySplit, int label, Split... splits) {
+      Preconditions.checkArgument(splits.length > 0, "must specify at least one split");
+      Preconditions.checkElementIndex(label, labels.size());
+      long sum = 0;
+      for (Split split : splits) {
+        sum += bySplit[split.ordinal()][label];
+      }
+      return sum;
+    }
+  }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.random.RandomGenerator;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.eval.ProbabilisticLabelErrorFunction.LabelSampler;
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
+
+/**
+ * Samples noisy labels for many true labels at once.
+ *
+ * The parallel variants split the input into fixed-size blocks and sample block b with
+ * {@code SplittableRandomGenerator.forStream(seed, b)}, so the output depends only on the
+ * seed and not on the number of threads.
+ */
+public class LabelSamplers {
+
+  static final int BLOCK_SIZE = 1 << 14;
+
+  private LabelSamplers() { }
+
+  public static int[] sampleAll(LabelSampler sampler, int[] trueLabels, RandomGenerator rnd) {
+    int[] noisyLabels = new int[trueLabels.length];
+    sampleAll(sampler, trueLabels, noisyLabels, rnd);
+    return noisyLabels;
+  }
+
+  /**
+   * Sequentially samples noisyLabels[i] given trueLabels[i] using rnd.
+   */
+  public static void sampleAll(LabelSampler sampler, int[] trueLabels, int[] noisyLabels, RandomGenerator rnd) {
+    Preconditions.checkArgument(noisyLabels.length >= trueLabels.length, "output is too small");
+    sampleRange(sampler, trueLabels, noisyLabels, 0, trueLabels.length, rnd);
+  }
+
+  public static int[] sampleAll(LabelSampler sampler, int[] trueLabels, long seed, int numThreads) {
+    int[] noisyLabels = new int[trueLabels.length];
+    sampleAll(sampler, trueLabels, noisyLabels, seed, numThreads);
+    return noisyLabels;
+  }
+
+  /**
+   * Samples noisyLabels[i] given trueLabels[i] using numThreads threads. The sampler must be
+   * safe to call concurrently (as are {@code ConfusionMatrixDistribution} and
+   * {@code ClassificationErrorDistribution}).
+   */
+  public static void sampleAll(final LabelSampler sampler, final int[] trueLabels, final int[] noisyLabels,
+      final long seed, int numThreads) {
+    Preconditions.checkArgument(noisyLabels.length >= trueLabels.length, "output is too small");
+    Preconditions.checkArgument(numThreads > 0, "numThreads must be positive");
+    final int numBlocks = (trueLabels.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    final int numTasks = Math.min(numThreads, numBlocks);
+    if (numTasks <= 1) {
+      sampleBlocks(sampler, trueLabels, noisyLabels, seed, 0, numBlocks, 1);
+      return;
+    }
+
+    List<Callable<Void>> tasks = Lists.newArrayList();
+    for (int t = 0; t < numTasks; t++) {
+      final int firstBlock = t;
+      tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          sampleBlocks(sampler, trueLabels, noisyLabels, seed, firstBlock, numBlocks, numTasks);
+          return null;
+        }
+      });
+    }
+    ExecutorService executor = Executors.newFixedThreadPool(numTasks);
+    try {
+      for (Future<Void> task : executor.invokeAll(tasks)) {
+        task.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while sampling labels", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("error while sampling labels", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  private static void sampleBlocks(LabelSampler sampler, int[] trueLabels, int[] noisyLabels, long seed,
+      int firstBlock, int numBlocks, int stride) {
+    for (int block = firstBlock; block < numBlocks; block += stride) {
+      int from = block * BLOCK_SIZE;
+      int to = Math.min(trueLabels.length, from + BLOCK_SIZE);
+      sampleRange(sampler, trueLabels, noisyLabels, from, to, SplittableRandomGenerator.forStream(seed, block));
+    }
+  }
+
+  private static void sampleRange(LabelSampler sampler, int[] trueLabels, int[] noisyLabels, int from, int to,
+      RandomGenerator rnd) {
+    for (int i = from; i < to; i++) {
+      noisyLabels[i] = sampler.sample(trueLabels[i], rnd);
+    }
+  }
+
+}
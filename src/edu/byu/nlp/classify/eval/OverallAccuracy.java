@@ -47,42 +47,42 @@ public class OverallAccuracy {
 	 * Excludes heldout accuracy.
 	 */
 	public Accuracy getOverallAccuracy() {
-		return new Accuracy(labeledAccuracy.getCorrect() + unlabeledAccuracy.getCorrect(),
-				labeledAccuracy.getTotal() + unlabeledAccuracy.getTotal());
+		return new Accuracy(labeledAccuracy.getCorrectCount() + unlabeledAccuracy.getCorrectCount(),
+				labeledAccuracy.getTotalCount() + unlabeledAccuracy.getTotalCount());
 	}
 	
 	@Override
 	public String toString() {
 		Accuracy overallAccuracy = getOverallAccuracy();
 		return String.format("labeled: %d / %d = %f, unlabeled: %d / %d = %f, total: %d / %d = %f, heldout = %d / %d = %f",
-				labeledAccuracy.getCorrect(),
-				labeledAccuracy.getTotal(),
+				labeledAccuracy.getCorrectCount(),
+				labeledAccuracy.getTotalCount(),
 				labeledAccuracy.getAccuracy(),
-				unlabeledAccuracy.getCorrect(),
-				unlabeledAccuracy.getTotal(),
+				unlabeledAccuracy.getCorrectCount(),
+				unlabeledAccuracy.getTotalCount(),
 				unlabeledAccuracy.getAccuracy(),
-				overallAccuracy.getCorrect(),
-				overallAccuracy.getTotal(),
+				overallAccuracy.getCorrectCount(),
+				overallAccuracy.getTotalCount(),
 				overallAccuracy.getAccuracy(),
-				heldoutAccuracy.getCorrect(),
-				heldoutAccuracy.getTotal(),
+				heldoutAccuracy.getCorrectCount(),
+				heldoutAccuracy.getTotalCount(),
 				heldoutAccuracy.getAccuracy());
 	}
 	
 	public String toCsv() {
 	    Accuracy overallAccuracy = getOverallAccuracy();
 	    return Joiner.on(", ").join(
-	            labeledAccuracy.getCorrect(),
-	            labeledAccuracy.getTotal(),
+	            labeledAccuracy.getCorrectCount(),
+	            labeledAccuracy.getTotalCount(),
                   labeledAccuracy.getAccuracy(),
-                  unlabeledAccuracy.getCorrect(),
-                  unlabeledAccuracy.getTotal(),
+                  unlabeledAccuracy.getCorrectCount(),
+                  unlabeledAccuracy.getTotalCount(),
                   unlabeledAccuracy.getAccuracy(),
-                  overallAccuracy.getCorrect(),
-                  overallAccuracy.getTotal(),
+                  overallAccuracy.getCorrectCount(),
+                  overallAccuracy.getTotalCount(),
                   overallAccuracy.getAccuracy(),
-                  heldoutAccuracy.getCorrect(),
-                  heldoutAccuracy.getTotal(),
+                  heldoutAccuracy.getCorrectCount(),
+                  heldoutAccuracy.getTotalCount(),
                   heldoutAccuracy.getAccuracy());
 	}
 }
\ No newline at end of file
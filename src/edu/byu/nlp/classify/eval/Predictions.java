@@ -15,6 +15,9 @@
  */
 package edu.byu.nlp.classify.eval;
 
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.Iterables;
 
 public class Predictions {
@@ -22,7 +25,8 @@ public class Predictions {
   private final Iterable<? extends Prediction> unlabeledPredictions;
   private final Iterable<? extends Prediction> heldoutPredictions;
   private final double[] annotatorAccuracies;
-  private final double[][][] annotatorConfusionMatrices;
+  private final Supplier<double[][][]> annotatorConfusionMatrices;
+  private final Supplier<SparseAnnotatorConfusions> sparseAnnotatorConfusions;
   private final double machineAccuracy;
   private final double[][] machineConfusionMatrix; 
   private final double logJoint;
@@ -32,11 +36,67 @@ public class Predictions {
           Iterable<? extends Prediction> heldoutPredictions,
               double[] annotatorAccuracies, double[][][] annotatorConfusionMatrices, 
               double machineAccuracy, double[][] machineConfusionMatrix, double logJoint) {
+    this(labeledPredictions, unlabeledPredictions, heldoutPredictions, annotatorAccuracies, 
+        Suppliers.ofInstance(annotatorConfusionMatrices), sparseFromDense(Suppliers.ofInstance(annotatorConfusionMatrices)),
+        machineAccuracy, machineConfusionMatrix, logJoint);
+  }
+
+  /**
+   * Like the constructor, but the (potentially numAnnotators x numClasses x numClasses)
+   * annotator confusion tensor is only obtained from the supplier if it is requested. Use
+   * {@code Suppliers.memoize} if it should only be computed once.
+   */
+  public static Predictions withLazyConfusions(Iterable<? extends Prediction> labeledPredictions,
+      Iterable<? extends Prediction> unlabeledPredictions,
+          Iterable<? extends Prediction> heldoutPredictions,
+              double[] annotatorAccuracies, Supplier<double[][][]> annotatorConfusionMatrices, 
+              double machineAccuracy, double[][] machineConfusionMatrix, double logJoint) {
+    Preconditions.checkNotNull(annotatorConfusionMatrices);
+    return new Predictions(labeledPredictions, unlabeledPredictions, heldoutPredictions, annotatorAccuracies, 
+        annotatorConfusionMatrices, sparseFromDense(annotatorConfusionMatrices),
+        machineAccuracy, machineConfusionMatrix, logJoint);
+  }
+
+  /**
+   * Like the constructor, but the annotator confusion matrices (which may be null) are given
+   * sparsely; the dense tensor is only built if {@link #annotatorConfusionMatrices()} is called.
+   */
+  public static Predictions withSparseConfusions(Iterable<? extends Prediction> labeledPredictions,
+      Iterable<? extends Prediction> unlabeledPredictions,
+          Iterable<? extends Prediction> heldoutPredictions,
+              double[] annotatorAccuracies, final SparseAnnotatorConfusions annotatorConfusions, 
+              double machineAccuracy, double[][] machineConfusionMatrix, double logJoint) {
+    return new Predictions(labeledPredictions, unlabeledPredictions, heldoutPredictions, annotatorAccuracies, 
+        Suppliers.memoize(new Supplier<double[][][]>() {
+          @Override
+          public double[][][] get() {
+            return (annotatorConfusions == null) ? null : annotatorConfusions.toDense();
+          }
+        }),
+        Suppliers.ofInstance(annotatorConfusions), machineAccuracy, machineConfusionMatrix, logJoint);
+  }
+
+  private static Supplier<SparseAnnotatorConfusions> sparseFromDense(final Supplier<double[][][]> annotatorConfusionMatrices) {
+    return Suppliers.memoize(new Supplier<SparseAnnotatorConfusions>() {
+      @Override
+      public SparseAnnotatorConfusions get() {
+        return SparseAnnotatorConfusions.fromNullableDense(annotatorConfusionMatrices.get());
+      }
+    });
+  }
+
+  private Predictions(Iterable<? extends Prediction> labeledPredictions,
+      Iterable<? extends Prediction> unlabeledPredictions,
+          Iterable<? extends Prediction> heldoutPredictions,
+              double[] annotatorAccuracies, Supplier<double[][][]> annotatorConfusionMatrices, 
+              Supplier<SparseAnnotatorConfusions> sparseAnnotatorConfusions, 
+              double machineAccuracy, double[][] machineConfusionMatrix, double logJoint) {
     this.labeledPredictions = labeledPredictions;
     this.unlabeledPredictions = unlabeledPredictions;
     this.heldoutPredictions = heldoutPredictions;
     this.annotatorAccuracies = annotatorAccuracies;
     this.annotatorConfusionMatrices=annotatorConfusionMatrices;
+    this.sparseAnnotatorConfusions=sparseAnnotatorConfusions;
     this.machineAccuracy = machineAccuracy;
     this.machineConfusionMatrix=machineConfusionMatrix;
     this.logJoint = logJoint;
@@ -63,7 +123,15 @@ public class Predictions {
   }
   
   public double[][][] annotatorConfusionMatrices(){
-    return annotatorConfusionMatrices;
+    return annotatorConfusionMatrices.get();
+  }
+  
+  /**
+   * The annotator confusion matrices in sparse form (converted from the dense tensor if the
+   * predictions were constructed with one). 
+   */
+  public SparseAnnotatorConfusions sparseAnnotatorConfusionMatrices(){
+    return sparseAnnotatorConfusions.get();
   }
   
   public double machineAccuracy() {
@@ -39,6 +39,14 @@ public class ProbabilisticLabelErrorFunction<L> implements Function<L, L> {
 	public static interface ConditionalCategoricalDistribution<C, E> {
 		CategoricalDistribution<E> given(C condition);
 	}
+	
+	/**
+	 * A conditional distribution over label indices that can sample without allocating or boxing.
+	 * See {@link LabelSamplers} for sampling many labels at once.
+	 */
+	public static interface LabelSampler extends ConditionalCategoricalDistribution<Integer, Integer> {
+		int sample(int trueLabel, RandomGenerator rnd);
+	}
 
 	private final ConditionalCategoricalDistribution<L, L> dist;
 	private final RandomGenerator rnd;
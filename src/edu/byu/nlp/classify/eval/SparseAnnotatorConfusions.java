@@ -0,0 +1,165 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.util.Nullable;
+
+/**
+ * Per-annotator confusion matrices (counts of (true label, annotated label) pairs) that only
+ * store non-zero entries: each annotator has a hash map from true * numClasses + annotated
+ * to count, created on the first non-zero entry. Memory is therefore proportional to the
+ * number of distinct (annotator, true, annotated) triples observed rather than to
+ * numAnnotators x numClasses x numClasses.
+ *
+ * The dense {@code double[annotator][true][annotated]} layout used by {@code Predictions}
+ * is available through {@link #toDense()} or, one annotator at a time, {@link #toDense(int)}.
+ */
+public class SparseAnnotatorConfusions {
+
+  public interface EntryVisitor {
+    void visit(int annotator, int trueLabel, int annotatedLabel, double value);
+  }
+
+  private final int numAnnotators;
+  private final int numClasses;
+  private final Int2DoubleOpenHashMap[] matrices;
+
+  public SparseAnnotatorConfusions(int numAnnotators, int numClasses) {
+    Preconditions.checkArgument(numAnnotators >= 0 && numClasses >= 0);
+    Preconditions.checkArgument((long) numClasses * numClasses <= Integer.MAX_VALUE,
+        "too many classes (%s)", numClasses);
+    this.numAnnotators = numAnnotators;
+    this.numClasses = numClasses;
+    this.matrices = new Int2DoubleOpenHashMap[numAnnotators];
+  }
+
+  /**
+   * Copies the non-zero entries of a dense [annotator][true][annotated] tensor.
+   */
+  public static SparseAnnotatorConfusions fromDense(double[][][] dense) {
+    int numClasses = (dense.length == 0) ? 0 : dense[0].length;
+    SparseAnnotatorConfusions sparse = new SparseAnnotatorConfusions(dense.length, numClasses);
+    for (int annotator = 0; annotator < dense.length; annotator++) {
+      for (int trueLabel = 0; trueLabel < dense[annotator].length; trueLabel++) {
+        for (int annotatedLabel = 0; annotatedLabel < dense[annotator][trueLabel].length; annotatedLabel++) {
+          if (dense[annotator][trueLabel][annotatedLabel] != 0) {
+            sparse.add(annotator, trueLabel, annotatedLabel, dense[annotator][trueLabel][annotatedLabel]);
+          }
+        }
+      }
+    }
+    return sparse;
+  }
+
+  public int getNumAnnotators() {
+    return numAnnotators;
+  }
+
+  public int getNumClasses() {
+    return numClasses;
+  }
+
+  public void add(int annotator, int trueLabel, int annotatedLabel, double amount) {
+    Preconditions.checkElementIndex(annotator, numAnnotators);
+    if (matrices[annotator] == null) {
+      matrices[annotator] = new Int2DoubleOpenHashMap();
+    }
+    matrices[annotator].addTo(index(trueLabel, annotatedLabel), amount);
+  }
+
+  public double get(int annotator, int trueLabel, int annotatedLabel) {
+    Preconditions.checkElementIndex(annotator, numAnnotators);
+    return (matrices[annotator] == null) ? 0 : matrices[annotator].get(index(trueLabel, annotatedLabel));
+  }
+
+  private int index(int trueLabel, int annotatedLabel) {
+    Preconditions.checkElementIndex(trueLabel, numClasses);
+    Preconditions.checkElementIndex(annotatedLabel, numClasses);
+    return trueLabel * numClasses + annotatedLabel;
+  }
+
+  /**
+   * The number of stored entries (an upper bound on the number of non-zero entries).
+   */
+  public long numEntries() {
+    long entries = 0;
+    for (Int2DoubleOpenHashMap matrix : matrices) {
+      if (matrix != null) {
+        entries += matrix.size();
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Visits the stored entries of every annotator (in no particular order within an annotator).
+   */
+  public void visitEntries(EntryVisitor visitor) {
+    for (int annotator = 0; annotator < numAnnotators; annotator++) {
+      visitEntries(annotator, visitor);
+    }
+  }
+
+  public void visitEntries(int annotator, EntryVisitor visitor) {
+    if (matrices[annotator] == null) {
+      return;
+    }
+    for (Int2DoubleMap.Entry entry : matrices[annotator].int2DoubleEntrySet()) {
+      int index = entry.getIntKey();
+      visitor.visit(annotator, index / numClasses, index % numClasses, entry.getDoubleValue());
+    }
+  }
+
+  /**
+   * A dense copy of one annotator's [true][annotated] matrix.
+   */
+  public double[][] toDense(int annotator) {
+    Preconditions.checkElementIndex(annotator, numAnnotators);
+    final double[][] dense = new double[numClasses][numClasses];
+    visitEntries(annotator, new EntryVisitor() {
+      @Override
+      public void visit(int annotator, int trueLabel, int annotatedLabel, double value) {
+        dense[trueLabel][annotatedLabel] = value;
+      }
+    });
+    return dense;
+  }
+
+  /**
+   * A dense copy of every annotator's matrix. This allocates
+   * numAnnotators x numClasses x numClasses doubles.
+   */
+  public double[][][] toDense() {
+    double[][][] dense = new double[numAnnotators][][];
+    for (int annotator = 0; annotator < numAnnotators; annotator++) {
+      dense[annotator] = toDense(annotator);
+    }
+    return dense;
+  }
+
+  /**
+   * Null-tolerant version of {@link #fromDense(double[][][])}.
+   */
+  static SparseAnnotatorConfusions fromNullableDense(@Nullable double[][][] dense) {
+    return (dense == null) ? null : fromDense(dense);
+  }
+
+}
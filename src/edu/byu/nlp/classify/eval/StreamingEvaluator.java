@@ -0,0 +1,219 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+
+import com.google.common.base.Preconditions;
+
+import edu.byu.nlp.classify.eval.ColumnarPredictions.Split;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Accumulates accuracy and confusion statistics one prediction at a time, so that
+ * prediction sets far larger than memory can be evaluated. Memory is constant in the
+ * number of predictions (a confusion matrix plus a few counters).
+ *
+ * Predictions can be fed directly ({@link #accept(Split, int, int)}), from
+ * {@code Prediction}s, or from a file of fixed-size binary records written by
+ * {@link RecordWriter}. Each record is a split byte followed by the gold label and the
+ * predicted label as ints (NO_LABEL, i.e. -1, when missing). A tab-separated text form
+ * (split ordinal, gold, predicted per line) is also accepted.
+ *
+ * As with {@code AccuracyComputer}, records without a gold label or with a null prediction
+ * are ignored.
+ */
+public class StreamingEvaluator {
+
+  private static final int BUFFER_SIZE = 1 << 16;
+  private static final Split[] SPLITS = Split.values();
+
+  private final long[] correct = new long[SPLITS.length];
+  private final long[] total = new long[SPLITS.length];
+  private final ConfusionMatrix[] confusion = new ConfusionMatrix[SPLITS.length];
+
+  public StreamingEvaluator(Indexer<String> labels) {
+    for (int s = 0; s < SPLITS.length; s++) {
+      confusion[s] = new ConfusionMatrix(labels.size(), labels.size(), labels);
+    }
+  }
+
+  public void accept(Split split, int gold, int predicted) {
+    if (gold == ColumnarPredictions.NO_LABEL || predicted == ColumnarPredictions.NO_LABEL) {
+      return;
+    }
+    int s = split.ordinal();
+    if (gold == predicted) {
+      ++correct[s];
+    }
+    ++total[s];
+    confusion[s].incrementEntry(gold, predicted);
+  }
+
+  public void acceptAll(Split split, Iterable<? extends Prediction> predictions) {
+    for (Prediction prediction : predictions) {
+      Integer gold = prediction.getInstance().getLabel();
+      Integer predicted = prediction.getPredictedLabel();
+      if (gold != null && predicted != null) {
+        accept(split, gold, predicted);
+      }
+    }
+  }
+
+  /**
+   * Reads binary records (see {@link RecordWriter}) until the end of the stream. Does not close in.
+   */
+  public void readFrom(InputStream in) throws IOException {
+    DataInputStream data = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+    int split;
+    while ((split = data.read()) != -1) {
+      try {
+        int gold = data.readInt();
+        int predicted = data.readInt();
+        accept(splitOf(split), gold, predicted);
+      } catch (EOFException e) {
+        throw new IOException("truncated prediction record", e);
+      }
+    }
+  }
+
+  public void readFrom(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      readFrom(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads lines of the form "split\tgold\tpredicted" (split is the ordinal of the
+   * {@code Split}). Blank lines are skipped. Does not close in.
+   */
+  public void readTsv(Reader in) throws IOException {
+    BufferedReader reader = new BufferedReader(in, BUFFER_SIZE);
+    String line;
+    int lineNumber = 0;
+    while ((line = reader.readLine()) != null) {
+      ++lineNumber;
+      if (line.isEmpty()) {
+        continue;
+      }
+      int tab1 = line.indexOf('\t');
+      int tab2 = (tab1 < 0) ? -1 : line.indexOf('\t', tab1 + 1);
+      if (tab2 < 0) {
+        throw new IOException("malformed prediction on line " + lineNumber + ": " + line);
+      }
+      try {
+        int split = Integer.parseInt(line.substring(0, tab1));
+        int gold = Integer.parseInt(line.substring(tab1 + 1, tab2));
+        int predicted = Integer.parseInt(line.substring(tab2 + 1).trim());
+        accept(splitOf(split), gold, predicted);
+      } catch (NumberFormatException e) {
+        throw new IOException("malformed prediction on line " + lineNumber + ": " + line, e);
+      }
+    }
+  }
+
+  private static Split splitOf(int ordinal) throws IOException {
+    if (ordinal < 0 || ordinal >= SPLITS.length) {
+      throw new IOException("unknown split " + ordinal);
+    }
+    return SPLITS[ordinal];
+  }
+
+  /**
+   * Adds the statistics of another evaluator (e.g., one that read a different shard).
+   */
+  public void merge(StreamingEvaluator other) {
+    for (int s = 0; s < SPLITS.length; s++) {
+      correct[s] += other.correct[s];
+      total[s] += other.total[s];
+      confusion[s].merge(other.confusion[s]);
+    }
+  }
+
+  public OverallAccuracy getOverallAccuracy() {
+    return new OverallAccuracy(accuracyOf(Split.LABELED), accuracyOf(Split.UNLABELED), accuracyOf(Split.HELDOUT));
+  }
+
+  private Accuracy accuracyOf(Split split) {
+    return new Accuracy(correct[split.ordinal()], total[split.ordinal()]);
+  }
+
+  /**
+   * The confusion matrix over the given splits.
+   */
+  public ConfusionMatrix getConfusionMatrix(Split... splits) {
+    Preconditions.checkArgument(splits.length > 0, "must specify at least one split");
+    ConfusionMatrix matrix = confusion[0].newPartial();
+    for (Split split : splits) {
+      matrix.merge(confusion[split.ordinal()]);
+    }
+    return matrix;
+  }
+
+  /**
+   * Writes the binary records read by {@link StreamingEvaluator#readFrom(InputStream)}.
+   */
+  public static class RecordWriter implements Closeable {
+    private final DataOutputStream out;
+
+    public RecordWriter(OutputStream out) {
+      this.out = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+    }
+
+    public RecordWriter(File file) throws IOException {
+      this(new FileOutputStream(file));
+    }
+
+    /**
+     * @param gold NO_LABEL if unknown
+     * @param predicted NO_LABEL for a null prediction
+     */
+    public void write(Split split, int gold, int predicted) throws IOException {
+      out.writeByte(split.ordinal());
+      out.writeInt(gold);
+      out.writeInt(predicted);
+    }
+
+    public void write(Split split, Prediction prediction) throws IOException {
+      Integer gold = prediction.getInstance().getLabel();
+      Integer predicted = prediction.getPredictedLabel();
+      write(split, (gold == null) ? ColumnarPredictions.NO_LABEL : gold,
+          (predicted == null) ? ColumnarPredictions.NO_LABEL : predicted);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.close();
+    }
+  }
+
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.serve;
+
+import java.util.List;
+
+import edu.byu.nlp.classify.Classifier;
+import edu.byu.nlp.classify.LinearClassifier;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+
+/**
+ * Classifies a batch of documents in one call, which lets implementations share work
+ * across the documents of a batch (see {@link LinearClassifier#classifyAll}).
+ */
+public abstract class BatchClassifier {
+
+  /**
+   * Writes the label of vectors.get(i) into labels[i].
+   */
+  public abstract void classifyAll(List<? extends SparseFeatureVector> vectors, int[] labels);
+
+  /**
+   * Uses {@link LinearClassifier#classifyAll} for linear classifiers and calls
+   * {@code classify} per document otherwise.
+   */
+  public static BatchClassifier of(final Classifier classifier) {
+    if (classifier instanceof LinearClassifier) {
+      final LinearClassifier linear = (LinearClassifier) classifier;
+      return new BatchClassifier() {
+        @Override
+        public void classifyAll(List<? extends SparseFeatureVector> vectors, int[] labels) {
+          linear.classifyAll(vectors, labels);
+        }
+      };
+    }
+    return new BatchClassifier() {
+      @Override
+      public void classifyAll(List<? extends SparseFeatureVector> vectors, int[] labels) {
+        for (int i = 0; i < vectors.size(); i++) {
+          labels[i] = classifier.classify(vectors.get(i));
+        }
+      }
+    };
+  }
+
+}
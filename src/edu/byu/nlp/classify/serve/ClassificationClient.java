@@ -0,0 +1,91 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.serve;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.EntryVisitor;
+
+/**
+ * A connection to a {@code ClassificationServer} on this machine. Not thread-safe; use one
+ * client per thread (requests from different connections are batched together by the
+ * server).
+ */
+public class ClassificationClient implements Closeable {
+
+  private final Socket socket;
+  private final DataInputStream in;
+  private final DataOutputStream out;
+
+  public ClassificationClient(int port) throws IOException {
+    this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    this.socket.setTcpNoDelay(true);
+    this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+  }
+
+  public int classify(SparseFeatureVector vector) throws IOException {
+    final int[] count = new int[1];
+    vector.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int index, double value) {
+        ++count[0];
+      }
+    });
+    out.writeInt(count[0]);
+    final IOException[] error = new IOException[1];
+    vector.visitSparseEntries(new EntryVisitor() {
+      @Override
+      public void visitEntry(int index, double value) {
+        if (error[0] == null) {
+          try {
+            out.writeInt(index);
+            out.writeDouble(value);
+          } catch (IOException e) {
+            error[0] = e;
+          }
+        }
+      }
+    });
+    if (error[0] != null) {
+      throw error[0];
+    }
+    out.flush();
+
+    byte status = in.readByte();
+    if (status == ClassificationServer.STATUS_OK) {
+      return in.readInt();
+    }
+    if (status == ClassificationServer.STATUS_ERROR) {
+      throw new IOException("the server failed to classify the vector: " + in.readUTF());
+    }
+    throw new IOException("unexpected response status " + status);
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+
+}
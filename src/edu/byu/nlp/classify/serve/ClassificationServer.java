@@ -0,0 +1,181 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.serve;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * A socket front end for a {@code ClassificationService}, bound to the loopback interface.
+ * 
+ * <p>Each connection is served by its own thread, which reads a request, waits for its
+ * label and writes the response; requests from concurrent connections are coalesced into
+ * batches by the service. The protocol (see {@code ClassificationClient}), in the big-endian
+ * encoding of {@code DataOutputStream}, is
+ * <pre>
+ *   request:  int n, then n times (int index, double value)
+ *   response: byte STATUS_OK followed by int label, or
+ *             byte STATUS_ERROR followed by a UTF error message
+ * </pre>
+ * A connection may send any number of requests.
+ */
+public class ClassificationServer implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(ClassificationServer.class);
+
+  static final byte STATUS_OK = 0;
+  static final byte STATUS_ERROR = 1;
+
+  // guards against corrupt or hostile lengths
+  static final int MAX_ENTRIES = 1 << 24;
+
+  private final ClassificationService service;
+  private final ServerSocket serverSocket;
+  private final ExecutorService connections = Executors.newCachedThreadPool();
+  private final Set<Socket> openSockets = Sets.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+  private final Thread acceptor;
+
+  /**
+   * Starts listening on the loopback interface.
+   * 
+   * @param port the port, or 0 for any free port (see {@link #getPort})
+   */
+  public ClassificationServer(ClassificationService service, int port) throws IOException {
+    this.service = Preconditions.checkNotNull(service);
+    this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    this.acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        accept();
+      }
+    }, "classification-server");
+    this.acceptor.setDaemon(true);
+    this.acceptor.start();
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  private void accept() {
+    while (!serverSocket.isClosed()) {
+      try {
+        final Socket socket = serverSocket.accept();
+        socket.setTcpNoDelay(true);
+        openSockets.add(socket);
+        connections.execute(new Runnable() {
+          @Override
+          public void run() {
+            serve(socket);
+          }
+        });
+      } catch (SocketException e) {
+        // the server socket was closed
+      } catch (IOException e) {
+        logger.warn("error accepting a connection", e);
+      }
+    }
+  }
+
+  private void serve(Socket socket) {
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+      while (true) {
+        int n;
+        try {
+          n = in.readInt();
+        } catch (EOFException e) {
+          return;
+        }
+        if (n < 0 || n > MAX_ENTRIES) {
+          writeError(out, "invalid number of entries: " + n);
+          return;
+        }
+        int[] indices = new int[n];
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+          indices[i] = in.readInt();
+          values[i] = in.readDouble();
+        }
+        try {
+          int label = service.submit(new BasicSparseFeatureVector(indices, values)).get();
+          out.writeByte(STATUS_OK);
+          out.writeInt(label);
+          out.flush();
+        } catch (ExecutionException e) {
+          writeError(out, String.valueOf(e.getCause()));
+        } catch (RuntimeException e) {
+          writeError(out, String.valueOf(e));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (IOException e) {
+      if (!serverSocket.isClosed()) {
+        logger.debug("connection closed", e);
+      }
+    } finally {
+      openSockets.remove(socket);
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // already failed
+      }
+    }
+  }
+
+  private static void writeError(DataOutputStream out, String message) throws IOException {
+    out.writeByte(STATUS_ERROR);
+    out.writeUTF(message);
+    out.flush();
+  }
+
+  /**
+   * Stops accepting connections and closes the open ones. Does not close the service.
+   */
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    for (Socket socket : openSockets) {
+      socket.close();
+    }
+    connections.shutdownNow();
+  }
+
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.serve;
+
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import edu.byu.nlp.classify.Classifier;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+
+/**
+ * An in-process classification service that coalesces concurrent requests into
+ * micro-batches.
+ * 
+ * <p>Requests are queued by {@link #submit} and a dispatcher thread collects them into
+ * batches: a batch is dispatched as soon as it holds maxBatchSize requests, or maxWait after
+ * its first request arrived, whichever comes first. Batches are classified on a pool of
+ * numWorkers threads, each with one call to a {@code BatchClassifier}, so scoring still uses
+ * as many cores as there are workers while the dispatcher forms the next batch. Under light
+ * load a request therefore waits at most maxWait; under heavy load batches fill immediately.
+ * 
+ * <p>If a batch fails, its requests are classified one at a time so that only the requests
+ * that fail on their own complete exceptionally. If the classifier throws an {@code Error},
+ * the service closes itself.
+ * 
+ * <p>{@link #close} stops the dispatcher, lets dispatched batches finish, and cancels the
+ * requests that have not been dispatched.
+ */
+public class ClassificationService implements Closeable {
+
+  private final BatchClassifier classifier;
+  private final int maxBatchSize;
+  private final long maxWaitNanos;
+  private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+  private final Thread dispatcher;
+  private final ExecutorService workers;
+  private volatile boolean closed = false;
+
+  private final AtomicLong numRequests = new AtomicLong();
+  private final AtomicLong numBatches = new AtomicLong();
+
+  /**
+   * Uses one worker per available processor.
+   */
+  public ClassificationService(Classifier classifier, int maxBatchSize, long maxWait, TimeUnit unit) {
+    this(classifier, maxBatchSize, maxWait, unit, Runtime.getRuntime().availableProcessors());
+  }
+
+  public ClassificationService(Classifier classifier, int maxBatchSize, long maxWait, TimeUnit unit,
+      int numWorkers) {
+    this(BatchClassifier.of(Preconditions.checkNotNull(classifier)), maxBatchSize, maxWait, unit, numWorkers);
+  }
+
+  /**
+   * Uses one worker per available processor.
+   */
+  public ClassificationService(BatchClassifier classifier, int maxBatchSize, long maxWait, TimeUnit unit) {
+    this(classifier, maxBatchSize, maxWait, unit, Runtime.getRuntime().availableProcessors());
+  }
+
+  public ClassificationService(BatchClassifier classifier, int maxBatchSize, long maxWait, TimeUnit unit,
+      int numWorkers) {
+    Preconditions.checkNotNull(classifier);
+    Preconditions.checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+    Preconditions.checkArgument(maxWait >= 0, "maxWait must be non-negative");
+    Preconditions.checkArgument(numWorkers > 0, "numWorkers must be positive");
+    this.classifier = classifier;
+    this.maxBatchSize = maxBatchSize;
+    this.maxWaitNanos = unit.toNanos(maxWait);
+    this.workers = Executors.newFixedThreadPool(numWorkers,
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("classification-worker-%d").build());
+    this.dispatcher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        dispatch();
+      }
+    }, "classification-dispatcher");
+    this.dispatcher.setDaemon(true);
+    this.dispatcher.start();
+  }
+
+  /**
+   * Queues vector for classification. The future completes with its label, fails with the
+   * exception the classifier threw for it, or is cancelled if the service is closed first.
+   */
+  public ListenableFuture<Integer> submit(SparseFeatureVector vector) {
+    Preconditions.checkNotNull(vector);
+    Request request = new Request(vector);
+    queue.add(request);
+    // close() may have drained the queue between the check and the add
+    if (closed) {
+      cancelPending();
+    }
+    return request.future;
+  }
+
+  /**
+   * Submits vector and waits for its label.
+   */
+  public int classify(SparseFeatureVector vector) throws InterruptedException {
+    try {
+      return submit(vector).get();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("error while classifying", e.getCause());
+    }
+  }
+
+  public boolean isClosed() {
+    return closed;
+  }
+
+  public long getNumRequests() {
+    return numRequests.get();
+  }
+
+  public long getNumBatches() {
+    return numBatches.get();
+  }
+
+  private void dispatch() {
+    List<Request> batch = Lists.newArrayListWithCapacity(maxBatchSize);
+    try {
+      while (!closed) {
+        Request first = queue.take();
+        batch.add(first);
+        long deadline = System.nanoTime() + maxWaitNanos;
+        queue.drainTo(batch, maxBatchSize - batch.size());
+        while (batch.size() < maxBatchSize) {
+          long remaining = deadline - System.nanoTime();
+          if (remaining <= 0) {
+            break;
+          }
+          Request next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+        final List<Request> dispatched = batch;
+        batch = Lists.newArrayListWithCapacity(maxBatchSize);
+        try {
+          workers.execute(new Runnable() {
+            @Override
+            public void run() {
+              ClassificationService.this.run(dispatched);
+            }
+          });
+        } catch (RejectedExecutionException e) {
+          // the service was closed by an Error in a worker
+          batch = dispatched;
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      // close() interrupts the dispatcher
+    } finally {
+      for (Request request : batch) {
+        request.future.cancel(false);
+      }
+      cancelPending();
+    }
+  }
+
+  private void run(List<Request> batch) {
+    List<SparseFeatureVector> vectors = Lists.newArrayListWithCapacity(batch.size());
+    for (Request request : batch) {
+      vectors.add(request.vector);
+    }
+    int[] labels = new int[batch.size()];
+    try {
+      try {
+        classifier.classifyAll(vectors, labels);
+      } catch (RuntimeException e) {
+        // isolate the request(s) at fault rather than failing the whole batch
+        runIndividually(batch);
+        return;
+      }
+      numBatches.incrementAndGet();
+      numRequests.addAndGet(batch.size());
+      for (int i = 0; i < batch.size(); i++) {
+        batch.get(i).future.set(labels[i]);
+      }
+    } catch (Error e) {
+      // close first, so that the service is closed once any of these futures completes
+      closeAfterError();
+      for (Request request : batch) {
+        request.future.setException(e);
+      }
+      throw e;
+    }
+  }
+
+  private void runIndividually(List<Request> batch) {
+    int[] label = new int[1];
+    for (Request request : batch) {
+      try {
+        classifier.classifyAll(Collections.singletonList(request.vector), label);
+        request.future.set(label[0]);
+      } catch (RuntimeException e) {
+        request.future.setException(e);
+      }
+    }
+    numBatches.incrementAndGet();
+    numRequests.addAndGet(batch.size());
+  }
+
+  private void closeAfterError() {
+    closed = true;
+    dispatcher.interrupt();
+    workers.shutdown();
+    cancelPending();
+  }
+
+  private void cancelPending() {
+    Request request;
+    while ((request = queue.poll()) != null) {
+      request.future.cancel(false);
+    }
+  }
+
+  /**
+   * Stops the dispatcher, waits for the dispatched batches to finish and cancels queued
+   * requests.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    dispatcher.interrupt();
+    try {
+      dispatcher.join();
+      workers.shutdown();
+      workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      workers.shutdownNow();
+    }
+    cancelPending();
+  }
+
+  private static class Request {
+    private final SparseFeatureVector vector;
+    private final SettableFuture<Integer> future = SettableFuture.create();
+
+    Request(SparseFeatureVector vector) {
+      this.vector = vector;
+    }
+  }
+
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.serve;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+import edu.byu.nlp.classify.Classifier;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+
+/**
+ * Named, versioned classifiers that can be replaced while they are in use.
+ * 
+ * <p>Callers {@link #acquire} a {@code Lease} on the current version of a model, use it, and
+ * close the lease. {@link #publish} atomically makes a new version current: leases acquired
+ * afterwards see the new version, while leases already held keep using the old one. Each
+ * version is reference counted (the registry holds one reference while the version is
+ * current, and each open lease one more), so a replaced version is reclaimed exactly when
+ * its last in-flight lease is closed, and without any locking on the request path.
+ * 
+ * <p>Reclaiming a version closes the resources passed to
+ * {@link #publish(String, Classifier, Closeable)} and the classifier itself if it is
+ * {@code Closeable}, and nothing else: parts of the classifier, such as the weights of a
+ * {@code LinearClassifier}, may be shared with other versions or other owners, so a caller
+ * that wants an {@code OffHeapWeightMatrix} released with its version passes it as the
+ * resources.
+ *
+ * <p>Version numbers increase monotonically per name, across {@link #remove} as well.
+ */
+public class ModelRegistry<C extends Classifier> implements Closeable {
+
+  private static final Logger logger = LoggerFactory.getLogger(ModelRegistry.class);
+
+  private final ConcurrentMap<String, AtomicReference<Version<C>>> models = Maps.newConcurrentMap();
+
+  /**
+   * Makes classifier the current version of name, retiring the previous version.
+   * 
+   * @return the new version number (1 for the first version of a name)
+   */
+  public long publish(String name, C classifier) {
+    return publish(name, classifier, null);
+  }
+
+  /**
+   * Like {@link #publish(String, Classifier)}, but also closes resources (if non-null) once
+   * this version has been retired and drained.
+   */
+  public long publish(String name, C classifier, Closeable resources) {
+    Preconditions.checkNotNull(name);
+    Preconditions.checkNotNull(classifier);
+    AtomicReference<Version<C>> current = currentOf(name);
+    while (true) {
+      Version<C> old = current.get();
+      Version<C> version = new Version<C>(name, (old == null) ? 1 : old.number + 1, classifier, resources);
+      if (current.compareAndSet(old, version)) {
+        if (isLive(old)) {
+          old.release();
+        }
+        return version.number;
+      }
+    }
+  }
+
+  private AtomicReference<Version<C>> currentOf(String name) {
+    AtomicReference<Version<C>> current = models.get(name);
+    if (current == null) {
+      AtomicReference<Version<C>> created = new AtomicReference<Version<C>>();
+      current = models.putIfAbsent(name, created);
+      if (current == null) {
+        current = created;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * A lease on the current version of name, which must be closed after use.
+   * 
+   * @throws IllegalArgumentException if no model named name is registered
+   */
+  public Lease<C> acquire(String name) {
+    AtomicReference<Version<C>> current = models.get(name);
+    while (true) {
+      Version<C> version = (current == null) ? null : current.get();
+      Preconditions.checkArgument(isLive(version), "no model named %s", name);
+      // fails only if the version was retired and drained after we read it
+      if (version.retain()) {
+        return new Lease<C>(version);
+      }
+    }
+  }
+
+  /**
+   * Classifies vector with the current version of name.
+   */
+  public int classify(String name, SparseFeatureVector vector) {
+    Lease<C> lease = acquire(name);
+    try {
+      return lease.get().classify(vector);
+    } finally {
+      lease.close();
+    }
+  }
+
+  /**
+   * The current version number of name, or 0 if there is none.
+   */
+  public long getVersion(String name) {
+    AtomicReference<Version<C>> current = models.get(name);
+    Version<C> version = (current == null) ? null : current.get();
+    return isLive(version) ? version.number : 0;
+  }
+
+  private static boolean isLive(Version<?> version) {
+    return version != null && !version.isRemoved();
+  }
+
+  public Set<String> getNames() {
+    ImmutableSet.Builder<String> names = ImmutableSet.builder();
+    for (String name : models.keySet()) {
+      if (getVersion(name) > 0) {
+        names.add(name);
+      }
+    }
+    return names.build();
+  }
+
+  /**
+   * Retires the current version of name (it is reclaimed once its leases are closed). A
+   * later {@link #publish} of name continues from the removed version's number.
+   * 
+   * @return whether there was a model named name
+   */
+  public boolean remove(String name) {
+    AtomicReference<Version<C>> current = models.get(name);
+    if (current == null) {
+      return false;
+    }
+    while (true) {
+      Version<C> old = current.get();
+      if (!isLive(old)) {
+        return false;
+      }
+      // leave a marker that remembers the version number
+      if (current.compareAndSet(old, Version.removed(old))) {
+        old.release();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Retires every model.
+   */
+  @Override
+  public void close() {
+    for (String name : models.keySet()) {
+      remove(name);
+    }
+  }
+
+  /**
+   * A reference to one version of a model. Closing it more than once has no effect.
+   */
+  public static class Lease<C extends Classifier> implements Closeable {
+    private final Version<C> version;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private Lease(Version<C> version) {
+      this.version = version;
+    }
+
+    public C get() {
+      Preconditions.checkState(!closed.get(), "the lease on %s has been closed", version.name);
+      return version.classifier;
+    }
+
+    public String getName() {
+      return version.name;
+    }
+
+    public long getVersion() {
+      return version.number;
+    }
+
+    @Override
+    public void close() {
+      if (closed.compareAndSet(false, true)) {
+        version.release();
+      }
+    }
+  }
+
+  private static class Version<C extends Classifier> {
+    private final String name;
+    private final long number;
+    private final C classifier;
+    private final Closeable resources;
+    // the registry's reference while current plus one per open lease; 0 once reclaimed
+    private final AtomicInteger references;
+
+    Version(String name, long number, C classifier, Closeable resources) {
+      this(name, number, classifier, resources, 1);
+    }
+
+    private Version(String name, long number, C classifier, Closeable resources, int references) {
+      this.name = name;
+      this.number = number;
+      this.classifier = classifier;
+      this.resources = resources;
+      this.references = new AtomicInteger(references);
+    }
+
+    /**
+     * A marker for a removed model whose last version was version; it cannot be acquired.
+     */
+    static <C extends Classifier> Version<C> removed(Version<C> version) {
+      return new Version<C>(version.name, version.number, null, null, 0);
+    }
+
+    boolean isRemoved() {
+      return classifier == null;
+    }
+
+    boolean retain() {
+      while (true) {
+        int count = references.get();
+        if (count == 0) {
+          return false;
+        }
+        if (references.compareAndSet(count, count + 1)) {
+          return true;
+        }
+      }
+    }
+
+    void release() {
+      int count = references.decrementAndGet();
+      Preconditions.checkState(count >= 0, "version %s of %s was released too many times", number, name);
+      if (count == 0) {
+        reclaim();
+      }
+    }
+
+    private void reclaim() {
+      closeQuietly(resources);
+      if (classifier instanceof Closeable) {
+        closeQuietly((Closeable) classifier);
+      }
+    }
+
+    private void closeQuietly(Closeable closeable) {
+      if (closeable == null) {
+        return;
+      }
+      try {
+        closeable.close();
+      } catch (IOException e) {
+        logger.warn("error while reclaiming version " + number + " of " + name, e);
+      } catch (RuntimeException e) {
+        logger.warn("error while reclaiming version " + number + " of " + name, e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,325 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.util;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.random.RandomGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import edu.byu.nlp.classify.Classifier;
+import edu.byu.nlp.classify.ClassifierLearner;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+
+/**
+ * Runs many learner configurations (trials) against a single training set inside
+ * one jvm. The training dataset is shared (read-only) by every trial, as is anything
+ * the {@code LearnerFactory} chooses to capture (e.g., a {@code MalletMaxentTrainer}
+ * whose instances have already been converted), so the expensive data preparation
+ * happens once per sweep instead of once per trial.
+ *
+ * Trials run concurrently, so learners must not mutate the dataset or any
+ * captured state.
+ *
+ * For example,
+ *
+ * <pre>
+ * final MalletMaxentTrainer trainer = MalletMaxentTrainer.build(data);
+ * HyperparameterSweep sweep = new HyperparameterSweep(new LearnerFactory() {
+ *   public ClassifierLearner learnerFor(Map<String, Object> config) {
+ *     return new MalletMaxentLearner(trainer, (Double) config.get("variance"));
+ *   }
+ * }, HyperparameterSweep.heldoutAccuracy(heldout), 8);
+ * ResultTable results = sweep.run(data, new SearchSpace().with("variance", 0.1, 1.0, 10.0).grid());
+ * </pre>
+ */
+public class HyperparameterSweep {
+
+  private static final Logger logger = LoggerFactory.getLogger(HyperparameterSweep.class);
+
+  public interface LearnerFactory{
+    ClassifierLearner learnerFor(Map<String,Object> config);
+  }
+
+  public interface TrialScorer{
+    /**
+     * Higher is better.
+     */
+    double score(Classifier classifier);
+  }
+
+  /**
+   * A set of named dimensions, each with a finite list of candidate values.
+   */
+  public static class SearchSpace{
+    private final Map<String, List<Object>> dimensions = Maps.newLinkedHashMap();
+
+    public SearchSpace with(String name, Object... values){
+      Preconditions.checkArgument(values.length>0, "dimension %s must have at least one value", name);
+      dimensions.put(name, ImmutableList.copyOf(values));
+      return this;
+    }
+
+    /**
+     * Every combination of values (the cartesian product of all dimensions).
+     */
+    public List<Map<String,Object>> grid(){
+      List<String> names = Lists.newArrayList(dimensions.keySet());
+      List<Map<String,Object>> configs = Lists.newArrayList();
+      for (List<Object> values: Lists.cartesianProduct(Lists.newArrayList(dimensions.values()))){
+        configs.add(toConfig(names, values));
+      }
+      return configs;
+    }
+
+    /**
+     * numTrials configurations, each dimension sampled uniformly at random (with replacement).
+     */
+    public List<Map<String,Object>> random(int numTrials, RandomGenerator rnd){
+      List<String> names = Lists.newArrayList(dimensions.keySet());
+      List<Map<String,Object>> configs = Lists.newArrayList();
+      for (int t=0; t<numTrials; t++){
+        List<Object> values = Lists.newArrayList();
+        for (List<Object> candidates: dimensions.values()){
+          values.add(candidates.get(rnd.nextInt(candidates.size())));
+        }
+        configs.add(toConfig(names, values));
+      }
+      return configs;
+    }
+
+    private static Map<String,Object> toConfig(List<String> names, List<Object> values){
+      ImmutableMap.Builder<String, Object> config = ImmutableMap.builder();
+      for (int i=0; i<names.size(); i++){
+        config.put(names.get(i), values.get(i));
+      }
+      return config.build();
+    }
+  }
+
+  public static class TrialResult{
+    private final Map<String,Object> config;
+    private final double score;
+    private final long trainingMillis;
+    private final long scoringMillis;
+    private final Throwable failure;
+
+    private TrialResult(Map<String,Object> config, double score, long trainingMillis, long scoringMillis, Throwable failure){
+      this.config=config;
+      this.score=score;
+      this.trainingMillis=trainingMillis;
+      this.scoringMillis=scoringMillis;
+      this.failure=failure;
+    }
+    public Map<String,Object> getConfig() { return config; }
+    /** NaN if the trial failed */
+    public double getScore() { return score; }
+    public long getTrainingMillis() { return trainingMillis; }
+    public long getScoringMillis() { return scoringMillis; }
+    public boolean failed() { return failure!=null; }
+    public Throwable getFailure() { return failure; }
+
+    @Override
+    public String toString() {
+      return "TrialResult [config=" + config + ", score=" + score + ", trainingMillis=" + trainingMillis
+          + ", scoringMillis=" + scoringMillis + (failed()? ", failure=" + failure: "") + "]";
+    }
+  }
+
+  /**
+   * Trial results in the order the configurations were given.
+   */
+  public static class ResultTable implements Iterable<TrialResult>{
+    private final List<String> dimensions;
+    private final List<TrialResult> results;
+
+    private ResultTable(List<String> dimensions, List<TrialResult> results){
+      this.dimensions=dimensions;
+      this.results=results;
+    }
+
+    public List<TrialResult> getResults(){
+      return Collections.unmodifiableList(results);
+    }
+
+    /**
+     * The highest scoring trial that did not fail (null if all failed).
+     */
+    public TrialResult best(){
+      TrialResult best = null;
+      for (TrialResult result: results){
+        if (!result.failed() && (best==null || result.getScore()>best.getScore())){
+          best = result;
+        }
+      }
+      return best;
+    }
+
+    @Override
+    public Iterator<TrialResult> iterator() {
+      return getResults().iterator();
+    }
+
+    public String csvHeader(){
+      List<String> columns = Lists.newArrayList(dimensions);
+      columns.add("score");
+      columns.add("training_millis");
+      columns.add("scoring_millis");
+      return Joiner.on(", ").join(columns);
+    }
+
+    public String toCsv(){
+      StringBuilder sb = new StringBuilder(csvHeader()).append('\n');
+      for (TrialResult result: results){
+        List<Object> row = Lists.newArrayList();
+        for (String dimension: dimensions){
+          row.add(result.getConfig().get(dimension));
+        }
+        row.add(result.getScore());
+        row.add(result.getTrainingMillis());
+        row.add(result.getScoringMillis());
+        sb.append(Joiner.on(", ").useForNull("null").join(row)).append('\n');
+      }
+      return sb.toString();
+    }
+  }
+
+  private final LearnerFactory learnerFactory;
+  private final TrialScorer scorer;
+  private final int numThreads;
+
+  public HyperparameterSweep(LearnerFactory learnerFactory, TrialScorer scorer, int numThreads){
+    Preconditions.checkArgument(numThreads>0, "numThreads must be positive");
+    this.learnerFactory=Preconditions.checkNotNull(learnerFactory);
+    this.scorer=Preconditions.checkNotNull(scorer);
+    this.numThreads=numThreads;
+  }
+
+  /**
+   * Train and score a classifier for every config. A trial that throws is recorded
+   * as failed rather than aborting the whole sweep, unless it throws a
+   * {@code VirtualMachineError} (such as an {@code OutOfMemoryError}), which is rethrown.
+   */
+  public ResultTable run(final Dataset trainingData, List<Map<String,Object>> configs){
+    Preconditions.checkNotNull(trainingData);
+    Preconditions.checkNotNull(configs);
+
+    List<Callable<TrialResult>> trials = Lists.newArrayListWithCapacity(configs.size());
+    for (final Map<String,Object> config: configs){
+      trials.add(new Callable<TrialResult>() {
+        @Override
+        public TrialResult call() throws Exception {
+          return runTrial(trainingData, config);
+        }
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(numThreads, Math.max(1, trials.size())));
+    try{
+      List<TrialResult> results = Lists.newArrayListWithCapacity(trials.size());
+      for (Future<TrialResult> future: executor.invokeAll(trials)){
+        results.add(future.get());
+      }
+      List<String> dimensions = configs.isEmpty()?
+          Collections.<String>emptyList(): Lists.newArrayList(configs.get(0).keySet());
+      return new ResultTable(dimensions, results);
+    }
+    catch (InterruptedException e){
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for sweep trials", e);
+    }
+    catch (ExecutionException e){
+      // runTrial records every failure except a VirtualMachineError
+      if (e.getCause() instanceof Error){
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException("error while running sweep trials", e.getCause());
+    }
+    finally{
+      executor.shutdownNow();
+    }
+  }
+
+  private TrialResult runTrial(Dataset trainingData, Map<String,Object> config){
+    long start = System.nanoTime();
+    long trainingMillis = 0;
+    try{
+      Classifier classifier = learnerFactory.learnerFor(config).learnFrom(trainingData);
+      long trained = System.nanoTime();
+      trainingMillis = (trained-start)/1000000;
+      double score = scorer.score(classifier);
+      long scoringMillis = (System.nanoTime()-trained)/1000000;
+      logger.info("sweep trial "+config+" scored "+score+" (trained in "+trainingMillis+"ms)");
+      return new TrialResult(config, score, trainingMillis, scoringMillis, null);
+    }
+    catch (RuntimeException e){
+      return failedTrial(config, trainingMillis, e);
+    }
+    catch (VirtualMachineError e){
+      // the jvm may be unusable (e.g., out of memory), so abort the whole sweep
+      throw e;
+    }
+    catch (Error e){
+      // e.g., an AssertionError or a NoClassDefFoundError raised by one learner
+      return failedTrial(config, trainingMillis, e);
+    }
+  }
+
+  private static TrialResult failedTrial(Map<String,Object> config, long trainingMillis, Throwable failure){
+    logger.warn("sweep trial "+config+" failed", failure);
+    return new TrialResult(config, Double.NaN, trainingMillis, 0, failure);
+  }
+
+  /**
+   * Scores a classifier by its accuracy on the labeled instances of a heldout set.
+   */
+  public static TrialScorer heldoutAccuracy(final Dataset heldout){
+    Preconditions.checkNotNull(heldout);
+    return new TrialScorer() {
+      @Override
+      public double score(Classifier classifier) {
+        int correct = 0, total = 0;
+        for (DatasetInstance instance: heldout){
+          if (instance.hasLabel()){
+            if (classifier.classify(instance.asFeatureVector())==instance.getLabel()){
+              ++correct;
+            }
+            ++total;
+          }
+        }
+        return (double) correct / total;
+      }
+    };
+  }
+
+}
@@ -0,0 +1,162 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A lock-free histogram of non-negative longs (e.g., latencies in nanoseconds or counts)
+ * with logarithmic buckets: values below 8 have a bucket each, and every power-of-two range
+ * above that is split into 8 buckets, so any value is within 12.5% of its bucket's lower
+ * bound. All non-negative longs fit in 488 buckets, so recording never allocates and is a single
+ * atomic increment (plus an add for the sum and, rarely, a CAS for the maximum).
+ * 
+ * <p>{@link #snapshot} copies the counts without stopping writers; a snapshot taken during
+ * concurrent recording may include some of the in-flight values and not others.
+ */
+public class LogHistogram {
+
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int NUM_BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Records value (negative values are recorded as 0).
+   */
+  public void record(long value) {
+    value = Math.max(0, value);
+    counts.incrementAndGet(bucketOf(value));
+    sum.addAndGet(value);
+    long currentMax = max.get();
+    while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  static int bucketOf(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * The smallest value in bucket.
+   */
+  static long lowerBound(int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = bucket % SUB_BUCKETS;
+    return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  public Snapshot snapshot() {
+    long[] copy = new long[NUM_BUCKETS];
+    long count = 0;
+    for (int b = 0; b < NUM_BUCKETS; b++) {
+      copy[b] = counts.get(b);
+      count += copy[b];
+    }
+    return new Snapshot(copy, count, sum.get(), max.get());
+  }
+
+  /**
+   * An immutable copy of a histogram.
+   */
+  public static class Snapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    private Snapshot(long[] counts, long count, long sum, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    public long getCount() { return count; }
+    public long getSum() { return sum; }
+    public long getMax() { return max; }
+
+    public double getMean() {
+      return (count == 0) ? Double.NaN : (double) sum / count;
+    }
+
+    /**
+     * An upper bound (within one bucket) on the value at quantile q, e.g., 0.99 for the
+     * 99th percentile; 0 if nothing was recorded.
+     */
+    public long getValueAtQuantile(double q) {
+      Preconditions.checkArgument(q >= 0 && q <= 1, "q must be in [0, 1]");
+      if (count == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(q * count));
+      long seen = 0;
+      for (int b = 0; b < NUM_BUCKETS; b++) {
+        seen += counts[b];
+        if (seen >= rank) {
+          long upper = (b + 1 < NUM_BUCKETS) ? lowerBound(b + 1) - 1 : Long.MAX_VALUE;
+          return Math.min(upper, max);
+        }
+      }
+      return max;
+    }
+
+    /**
+     * The number of recorded values in [lowerBound, upperBound] of each non-empty bucket, as
+     * rows of (lowerBound, upperBound, count).
+     */
+    public long[][] getBuckets() {
+      int numNonEmpty = 0;
+      for (long c : counts) {
+        if (c > 0) {
+          ++numNonEmpty;
+        }
+      }
+      long[][] buckets = new long[numNonEmpty][];
+      int i = 0;
+      for (int b = 0; b < NUM_BUCKETS; b++) {
+        if (counts[b] > 0) {
+          long upper = (b + 1 < NUM_BUCKETS) ? lowerBound(b + 1) - 1 : Long.MAX_VALUE;
+          buckets[i++] = new long[] {lowerBound(b), upper, counts[b]};
+        }
+      }
+      return buckets;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("count=%d mean=%.1f p50=%d p90=%d p99=%d p999=%d max=%d", count, getMean(),
+          getValueAtQuantile(0.5), getValueAtQuantile(0.9), getValueAtQuantile(0.99),
+          getValueAtQuantile(0.999), max);
+    }
+  }
+
+}
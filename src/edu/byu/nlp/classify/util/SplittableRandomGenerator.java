@@ -0,0 +1,127 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.util;
+
+import org.apache.commons.math3.random.BitsStreamGenerator;
+
+/**
+ * A small, fast generator (SplitMix64) that can be split into statistically independent
+ * streams. Unlike {@code MersenneTwister}, creating a generator costs a couple of
+ * multiplications, so it is practical to give every block of work its own stream:
+ * {@link #forStream(long, long)} deterministically derives stream i of a seed, which makes
+ * parallel computations reproducible regardless of how blocks are assigned to threads.
+ *
+ * Not thread-safe; give each thread its own instance (e.g., via {@link #split()}).
+ */
+public class SplittableRandomGenerator extends BitsStreamGenerator {
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+  private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+  private long seed;
+  private long gamma;
+
+  public SplittableRandomGenerator(long seed) {
+    this(seed, GOLDEN_GAMMA);
+  }
+
+  private SplittableRandomGenerator(long seed, long gamma) {
+    this.seed = seed;
+    this.gamma = gamma;
+  }
+
+  /**
+   * The stream'th independent generator derived from seed.
+   */
+  public static SplittableRandomGenerator forStream(long seed, long stream) {
+    long s = mix64(seed ^ mix64((stream + 1) * GOLDEN_GAMMA));
+    return new SplittableRandomGenerator(s, mixGamma(s + GOLDEN_GAMMA));
+  }
+
+  /**
+   * A new generator whose values are independent of the subsequent values of this one.
+   */
+  public SplittableRandomGenerator split() {
+    return new SplittableRandomGenerator(nextLong(), mixGamma(nextSeed()));
+  }
+
+  private long nextSeed() {
+    return seed += gamma;
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+  private static long mixGamma(long z) {
+    z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+    z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    z = (z ^ (z >>> 33)) | 1L;
+    // avoid gammas with too few bit transitions
+    return (Long.bitCount(z ^ (z >>> 1)) < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setSeed(int seed) {
+    setSeed((long) seed);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setSeed(int[] seed) {
+    long s = 0;
+    for (int i : seed) {
+      s = mix64(s + GOLDEN_GAMMA + (i & 0xffffffffL));
+    }
+    setSeed(s);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void setSeed(long seed) {
+    this.seed = seed;
+    this.gamma = GOLDEN_GAMMA;
+    clear();
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  protected int next(int bits) {
+    return (int) (nextLong() >>> (64 - bits));
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public long nextLong() {
+    return mix64(nextSeed());
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public int nextInt() {
+    return (int) (nextLong() >>> 32);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+}
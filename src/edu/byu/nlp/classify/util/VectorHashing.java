@@ -0,0 +1,49 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.util;
+
+/**
+ * 64-bit content hashes of feature vectors. Two vectors with the same (index, value) entries
+ * in the same order hash identically, which makes the hash usable as a stable cache key.
+ * Distinct vectors collide with probability about
+ * 2^-64; callers that cannot tolerate that must verify equality themselves.
+ */
+public class VectorHashing {
+
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private VectorHashing() { }
+
+  /**
+   * The hash of a vector whose entries are the first length (index, value) pairs.
+   */
+  public static long hash64(int[] indices, double[] values, int length) {
+    long hash = GOLDEN_GAMMA;
+    for (int i = 0; i < length; i++) {
+      hash = mix64(hash + indices[i] + GOLDEN_GAMMA);
+      // +0.0 so that -0.0 and 0.0 hash identically
+      hash = mix64(hash ^ Double.doubleToLongBits(values[i] + 0.0));
+    }
+    return mix64(hash + length);
+  }
+
+  private static long mix64(long z) {
+    z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+    z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+    return z ^ (z >>> 31);
+  }
+
+}
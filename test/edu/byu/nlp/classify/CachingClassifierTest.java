@@ -0,0 +1,60 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Unit tests for {@link CachingClassifier}.
+ */
+public class CachingClassifierTest {
+
+  @Test
+  public void testDuplicatesAreServedFromCache() {
+    final AtomicInteger calls = new AtomicInteger();
+    // labels a vector with its first index
+    Classifier counting = new Classifier() {
+      @Override
+      public int classify(SparseFeatureVector s) {
+        calls.incrementAndGet();
+        return s.sparseEntries().iterator().next().getIndex();
+      }
+
+      @Override
+      public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+        throw new UnsupportedOperationException();
+      }
+    };
+    CachingClassifier cache = new CachingClassifier(counting, 100);
+
+    assertThat(cache.classify(new BasicSparseFeatureVector(new int[] {3, 5}, new double[] {1.0, 2.0}))).isEqualTo(3);
+    assertThat(cache.classify(new BasicSparseFeatureVector(new int[] {3, 5}, new double[] {1.0, 2.0}))).isEqualTo(3);
+    // same indices, different values
+    assertThat(cache.classify(new BasicSparseFeatureVector(new int[] {3, 5}, new double[] {1.0, 3.0}))).isEqualTo(3);
+    assertThat(calls.get()).isEqualTo(2);
+    assertThat(cache.stats().hitCount()).isEqualTo(1);
+    assertThat(cache.stats().missCount()).isEqualTo(2);
+  }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Unit tests for {@link EarlyExitLinearClassifier}.
+ */
+public class EarlyExitLinearClassifierTest {
+
+  @Test
+  public void testAgreesWithLinearClassifier() {
+    int numClasses = 50;
+    int numFeatures = 30;
+    SplittableRandomGenerator rnd = new SplittableRandomGenerator(11);
+    double[] bias = new double[numClasses];
+    double[] weights = new double[numClasses * numFeatures];
+    for (int k = 0; k < numClasses; k++) {
+      bias[k] = rnd.nextDouble();
+    }
+    for (int i = 0; i < weights.length; i++) {
+      // a few features with large weights, as in a skewed vocabulary
+      weights[i] = (i / numClasses % 5 == 0) ? 4 * rnd.nextDouble() - 2 : 0.1 * rnd.nextDouble();
+    }
+    LinearClassifier exhaustive = new LinearClassifier(bias, weights);
+    EarlyExitLinearClassifier earlyExit = new EarlyExitLinearClassifier(exhaustive);
+
+    for (int t = 0; t < 200; t++) {
+      int[] features = new int[] {rnd.nextInt(10), 10 + rnd.nextInt(10), 20 + rnd.nextInt(10)};
+      double[] values = new double[] {rnd.nextDouble(), 2 * rnd.nextDouble(), rnd.nextDouble() - 0.5};
+      BasicSparseFeatureVector vector = new BasicSparseFeatureVector(features, values);
+      assertThat(earlyExit.classify(vector)).isEqualTo(exhaustive.classify(vector));
+      assertThat(earlyExit.classifyNBest(3, vector)).isEqualTo(exhaustive.classifyNBest(3, vector));
+    }
+  }
+
+  @Test
+  public void testTiesAndNegativeFeatureValues() {
+    int numClasses = 20;
+    int numFeatures = 12;
+    SplittableRandomGenerator rnd = new SplittableRandomGenerator(5);
+    double[] bias = new double[numClasses];
+    double[] weights = new double[numClasses * numFeatures];
+    for (int k = 0; k < numClasses; k++) {
+      bias[k] = rnd.nextDouble();
+    }
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = 4 * rnd.nextDouble() - 2;
+    }
+    // classes 7 and 12 duplicate classes 3 and 9, so they always tie with them
+    bias[7] = bias[3];
+    bias[12] = bias[9];
+    for (int f = 0; f < numFeatures; f++) {
+      weights[f * numClasses + 7] = weights[f * numClasses + 3];
+      weights[f * numClasses + 12] = weights[f * numClasses + 9];
+    }
+    LinearClassifier exhaustive = new LinearClassifier(bias, weights);
+    EarlyExitLinearClassifier earlyExit = new EarlyExitLinearClassifier(exhaustive);
+
+    for (int t = 0; t < 200; t++) {
+      int[] features = new int[] {rnd.nextInt(4), 4 + rnd.nextInt(4), 8 + rnd.nextInt(4)};
+      // all negative, or of mixed sign
+      double[] values = new double[] {-rnd.nextDouble(), -2 * rnd.nextDouble(), (t % 2 == 0) ? -rnd.nextDouble() : rnd.nextDouble()};
+      BasicSparseFeatureVector vector = new BasicSparseFeatureVector(features, values);
+      List<Integer> expected = nBest(5, exhaustive.scoresFor(vector, new double[numClasses]));
+      assertThat(earlyExit.classify(vector)).isEqualTo(expected.get(0));
+      assertThat(earlyExit.classifyNBest(5, vector)).isEqualTo(expected);
+    }
+
+    // a document without features is decided by the bias alone; tied classes in index order
+    BasicSparseFeatureVector empty = new BasicSparseFeatureVector(new int[0], new double[0]);
+    assertThat(earlyExit.classifyNBest(numClasses, empty)).isEqualTo(nBest(numClasses, bias.clone()));
+  }
+
+  /**
+   * The n highest scoring classes, the lowest index first among ties.
+   */
+  private static List<Integer> nBest(int n, double[] scores) {
+    List<Integer> nBest = Lists.newArrayList();
+    boolean[] taken = new boolean[scores.length];
+    for (int j = 0; j < n; j++) {
+      int best = -1;
+      for (int k = 0; k < scores.length; k++) {
+        if (!taken[k] && (best < 0 || scores[k] > scores[best])) {
+          best = k;
+        }
+      }
+      taken[best] = true;
+      nBest.add(best);
+    }
+    return nBest;
+  }
+
+}
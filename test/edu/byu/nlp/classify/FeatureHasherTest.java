@@ -0,0 +1,81 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import org.junit.Test;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.Entry;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Unit tests for {@link FeatureHasher}.
+ */
+public class FeatureHasherTest {
+
+  private static final SparseFeatureVector VECTOR = new BasicSparseFeatureVector(
+      new int[] {0, 3, 17, 1000, 123456, 99999999}, new double[] {1.0, 2.0, 3.0, 4.0, 5.0, 6.0});
+
+  /**
+   * Collisions are summed, so the total mass is preserved and every index is a valid bucket.
+   */
+  @Test
+  public void testUnsignedHashingPreservesMass() {
+    FeatureHasher hasher = new FeatureHasher(2, false);
+    SparseFeatureVector hashed = hasher.hash(VECTOR);
+
+    double sum = 0;
+    int previous = -1;
+    for (Entry entry : hashed.sparseEntries()) {
+      assertThat(entry.getIndex()).isGreaterThan(previous);
+      assertThat(entry.getIndex()).isLessThan(hasher.getNumBuckets());
+      assertThat(entry.getIndex()).isEqualTo(entry.getIndex() & 3);
+      previous = entry.getIndex();
+      sum += entry.getValue();
+    }
+    assertThat(sum).isEqualTo(21.0, delta(1e-12));
+  }
+
+  @Test
+  public void testSignedHashingUsesSigns() {
+    FeatureHasher hasher = new FeatureHasher(20, true);
+    SparseFeatureVector hashed = hasher.hash(VECTOR);
+
+    double expected = 0;
+    for (Entry entry : VECTOR.sparseEntries()) {
+      expected += hasher.signOf(entry.getIndex()) * entry.getValue();
+    }
+    double actual = 0;
+    for (Entry entry : hashed.sparseEntries()) {
+      actual += entry.getValue();
+    }
+    assertThat(actual).isEqualTo(expected, delta(1e-12));
+  }
+
+  @Test
+  public void testDeterministic() {
+    FeatureHasher hasher1 = new FeatureHasher(18, false);
+    FeatureHasher hasher2 = new FeatureHasher(18, false);
+    for (int f = 0; f < 100; f++) {
+      assertThat(hasher1.bucketOf(f)).isEqualTo(hasher2.bucketOf(f));
+    }
+    assertThat(hasher1.bucketOf("token")).isEqualTo(hasher2.bucketOf("token"));
+  }
+
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link HashingNaiveBayesLearner}.
+ */
+public class HashingNaiveBayesLearnerTest {
+
+  private static final int NUM_CLASSES = 3;
+
+  private static Indexer<String> indexer(int size) {
+    Indexer<String> indexer = new Indexer<String>();
+    for (int i = 0; i < size; i++) {
+      indexer.add("" + i);
+    }
+    return indexer;
+  }
+
+  private static Dataset dataset(List<SparseFeatureVector> vectors, int[] labels, int numFeatures) {
+    Indexer<String> labelIndexer = indexer(NUM_CLASSES);
+    List<DatasetInstance> instances = Lists.newArrayList();
+    for (int i = 0; i < vectors.size(); i++) {
+      instances.add(new BasicDatasetInstance(vectors.get(i), labels[i], i, "0", labelIndexer));
+    }
+    return new BasicDataset("", instances, Sets.newHashSet(), new IndexerCalculator<>(
+        indexer(numFeatures), labelIndexer, indexer(vectors.size()), new Indexer<String>()));
+  }
+
+  /**
+   * Sparse features with large indices; class k favors features near 1000 * (k + 1).
+   */
+  private static List<SparseFeatureVector> vectors() {
+    return Lists.<SparseFeatureVector>newArrayList(
+        new BasicSparseFeatureVector(new int[]{1000, 1001, 1002}, new double[]{3., 1., 2.}),
+        new BasicSparseFeatureVector(new int[]{1000, 2001}, new double[]{4., 1.}),
+        new BasicSparseFeatureVector(new int[]{2000, 2001, 2002}, new double[]{2., 2., 2.}),
+        new BasicSparseFeatureVector(new int[]{2000, 3000}, new double[]{5., 1.}),
+        new BasicSparseFeatureVector(new int[]{3000, 3001, 3002}, new double[]{1., 3., 2.}),
+        new BasicSparseFeatureVector(new int[]{3001, 1002}, new double[]{4., 1.}));
+  }
+
+  private static final int[] LABELS = {0, 0, 1, 1, 2, 2};
+
+  /**
+   * The hashed model is the smoothed naive bayes model of the hashed data, collisions included.
+   */
+  @Test
+  public void testMatchesNaiveBayesOnHashedData() {
+    // few enough buckets that some of the 12 distinct features collide
+    FeatureHasher hasher = new FeatureHasher(3, false);
+    List<SparseFeatureVector> vectors = vectors();
+    HashingProbabilisticClassifier classifier =
+        new HashingNaiveBayesLearner(0.5, 0.2, hasher).learnFrom(dataset(vectors, LABELS, 3003));
+
+    List<SparseFeatureVector> hashed = Lists.newArrayList();
+    for (SparseFeatureVector vector : vectors) {
+      hashed.add(hasher.hash(vector));
+    }
+    NaiveBayesClassifier expected =
+        new SmoothedNaiveBayesLearner(0.5, 0.2).learnFrom(dataset(hashed, LABELS, hasher.getNumBuckets()));
+
+    for (SparseFeatureVector vector : vectors) {
+      for (int k = 0; k < NUM_CLASSES; k++) {
+        assertThat(classifier.given(vector).logProbabilityOf(k))
+            .isEqualTo(expected.given(hasher.hash(vector)).logProbabilityOf(k), delta(1e-10));
+      }
+    }
+  }
+
+  @Test
+  public void testClassifiesThroughHasher() {
+    FeatureHasher hasher = new FeatureHasher(16, false);
+    List<SparseFeatureVector> vectors = vectors();
+    HashingProbabilisticClassifier classifier =
+        new HashingNaiveBayesLearner(hasher).learnFrom(dataset(vectors, LABELS, 3003));
+    assertThat(classifier.getHasher()).isSameAs(hasher);
+
+    for (int i = 0; i < vectors.size(); i++) {
+      assertThat(classifier.classify(vectors.get(i))).isEqualTo(LABELS[i]);
+    }
+    // features that were never seen (or that are beyond the training feature space) are accepted
+    SparseFeatureVector unseen = new BasicSparseFeatureVector(new int[]{2000, 5000000}, new double[]{3., 1.});
+    assertThat(classifier.classify(unseen)).isEqualTo(1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsSignedHashing() {
+    new HashingNaiveBayesLearner(new FeatureHasher(10, true));
+  }
+
+  /**
+   * 3 x 2^30 weights overflow an int (to a negative size), so they cannot be counted in an
+   * array layout.
+   */
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsTooManyBucketsForAnArray() {
+    new HashingNaiveBayesLearner(1.0, 1.0, new FeatureHasher(FeatureHasher.MAX_BITS, false), WeightLayout.FEATURE_MAJOR)
+        .learnFrom(dataset(vectors(), LABELS, 3003));
+  }
+
+  @Test
+  public void testLayouts() {
+    FeatureHasher hasher = new FeatureHasher(8, false);
+    Dataset data = dataset(vectors(), LABELS, 3003);
+    NaiveBayesClassifier expected = (NaiveBayesClassifier)
+        new HashingNaiveBayesLearner(0.5, 0.2, hasher, WeightLayout.FEATURE_MAJOR).learnFrom(data).getDelegate();
+    for (WeightLayout layout : new WeightLayout[]{WeightLayout.CLASS_MAJOR, WeightLayout.OFF_HEAP}) {
+      NaiveBayesClassifier actual = (NaiveBayesClassifier)
+          new HashingNaiveBayesLearner(0.5, 0.2, hasher, layout).learnFrom(data).getDelegate();
+      assertThat(actual.getWeightMatrix().getLayout()).isEqualTo(layout);
+      assertThat(actual.getBias()).isEqualTo(expected.getBias(), delta(1e-12));
+      assertThat(actual.getWeights()).isEqualTo(expected.getWeights(), delta(1e-12));
+    }
+  }
+
+}
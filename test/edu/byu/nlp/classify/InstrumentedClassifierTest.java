@@ -0,0 +1,169 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.classify.InstrumentedClassifier.Metrics;
+import edu.byu.nlp.classify.InstrumentedClassifier.Operation;
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link InstrumentedClassifier}, {@link InstrumentedProbabilisticClassifier}
+ * and {@link InstrumentedClassifierLearner}.
+ */
+public class InstrumentedClassifierTest {
+
+  // 3 classes x 4 features, feature-major
+  private static final double[] BIAS = new double[] {-1.1, -0.9, -1.3};
+  private static final double[] WEIGHTS = new double[] {
+      -1.0, -2.0, -3.0,
+      -2.0, -1.0, -2.5,
+      -3.0, -1.5, -1.0,
+      -1.2, -1.3, -1.4};
+
+  private static final BasicSparseFeatureVector V1 =
+      new BasicSparseFeatureVector(new int[] {0, 2}, new double[] {1.0, 2.0});
+  private static final BasicSparseFeatureVector V2 =
+      new BasicSparseFeatureVector(new int[] {1, 2, 3}, new double[] {1.0, 1.0, 3.0});
+
+  @Test
+  public void testRecordsEveryCall() {
+    LinearClassifier linear = new LinearClassifier(BIAS, WEIGHTS);
+    InstrumentedClassifier classifier = new InstrumentedClassifier(linear);
+    assertThat(classifier.classify(V1)).isEqualTo(linear.classify(V1));
+    assertThat(classifier.classify(V2)).isEqualTo(linear.classify(V2));
+    assertThat(classifier.classifyNBest(2, V2)).isEqualTo(linear.classifyNBest(2, V2));
+
+    Metrics metrics = classifier.snapshot();
+    assertThat(metrics.getLatency(Operation.CLASSIFY).getCount()).isEqualTo(2);
+    assertThat(metrics.getLatency(Operation.CLASSIFY_N_BEST).getCount()).isEqualTo(1);
+    assertThat(metrics.getLatency(Operation.GIVEN).getCount()).isEqualTo(0);
+    assertThat(metrics.getFeaturesPerDocument().getCount()).isEqualTo(3);
+    assertThat(metrics.getFeaturesPerDocument().getSum()).isEqualTo(2 + 3 + 3);
+    // a linear classifier scores every class
+    assertThat(metrics.getClassesScored().getCount()).isEqualTo(3);
+    assertThat(metrics.getClassesScored().getSum()).isEqualTo(3 * 3);
+  }
+
+  @Test
+  public void testRecordsWhatSelectiveClassifiersEvaluated() {
+    EarlyExitLinearClassifier earlyExit = new EarlyExitLinearClassifier(new LinearClassifier(BIAS, WEIGHTS));
+    InstrumentedClassifier classifier = new InstrumentedClassifier(earlyExit);
+    classifier.classify(V1);
+    int evaluated = earlyExit.getLastNumEvaluated();
+    assertThat(evaluated).isGreaterThan(0);
+    assertThat(evaluated).isLessThanOrEqualTo(BIAS.length);
+    assertThat(classifier.snapshot().getClassesScored().getSum()).isEqualTo(evaluated);
+
+    // a tree over 4 classes: a beam of 1 evaluates one node per level
+    LabelTreeClassifier tree = new LabelTreeClassifier(4, 4, new double[] {0.5, -0.5, 1.0},
+        new double[] {0.0, 0.0, 0.0}, new int[][] {{0}, {1}, {2}}, new double[][] {{1.0}, {-1.0}, {2.0}}, 1);
+    InstrumentedProbabilisticClassifier instrumentedTree = new InstrumentedProbabilisticClassifier(tree);
+    instrumentedTree.classify(V1);
+    assertThat(tree.getLastNumEvaluated()).isEqualTo(2);
+    // the full posterior evaluates every internal node
+    instrumentedTree.given(V1);
+    assertThat(tree.getLastNumEvaluated()).isEqualTo(3);
+
+    Metrics metrics = instrumentedTree.snapshot();
+    assertThat(metrics.getLatency(Operation.CLASSIFY).getCount()).isEqualTo(1);
+    assertThat(metrics.getLatency(Operation.GIVEN).getCount()).isEqualTo(1);
+    assertThat(metrics.getClassesScored().getSum()).isEqualTo(2 + 3);
+  }
+
+  @Test
+  public void testDelegateExceptionIsNotMasked() {
+    Classifier rejectsNull = new Classifier() {
+      @Override
+      public int classify(SparseFeatureVector s) {
+        throw new IllegalArgumentException("no vector");
+      }
+
+      @Override
+      public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+        throw new IllegalArgumentException("no vector");
+      }
+    };
+    InstrumentedClassifier classifier = new InstrumentedClassifier(rejectsNull);
+    try {
+      // counting the features of null would throw a NullPointerException
+      classifier.classify(null);
+      fail("expected an IllegalArgumentException");
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).isEqualTo("no vector");
+    }
+    Metrics metrics = classifier.snapshot();
+    assertThat(metrics.getLatency(Operation.CLASSIFY).getCount()).isEqualTo(1);
+    assertThat(metrics.getFeaturesPerDocument().getCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void testLearner() {
+    Indexer<String> featureIndexer = new Indexer<String>();
+    for (int f = 0; f < 4; f++) {
+      featureIndexer.add("" + f);
+    }
+    Indexer<String> labelIndexer = new Indexer<String>();
+    for (int l = 0; l < 3; l++) {
+      labelIndexer.add("" + l);
+    }
+    Indexer<String> instanceIdIndexer = new Indexer<String>();
+    List<DatasetInstance> instances = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      instanceIdIndexer.add("" + i);
+      instances.add(new BasicDatasetInstance(V2, i, i, "" + i, labelIndexer));
+    }
+    Dataset dataset = new BasicDataset("", instances, Sets.newHashSet(),
+        new IndexerCalculator<>(featureIndexer, labelIndexer, instanceIdIndexer, new Indexer<String>()));
+
+    InstrumentedClassifierLearner learner = new InstrumentedClassifierLearner(new NaiveBayesLearner());
+    assertThat(learner.learnFrom(dataset)).isInstanceOf(NaiveBayesClassifier.class);
+    assertThat(learner.getLatency().getCount()).isEqualTo(1);
+    assertThat(learner.getInstancesPerCall().getSum()).isEqualTo(3);
+
+    InstrumentedClassifierLearner failing = new InstrumentedClassifierLearner(new ClassifierLearner() {
+      @Override
+      public Classifier learnFrom(Dataset data) {
+        throw new IllegalStateException("cannot learn");
+      }
+    });
+    try {
+      failing.learnFrom(dataset);
+      fail("expected an IllegalStateException");
+    } catch (IllegalStateException e) {
+      assertThat(e.getMessage()).isEqualTo("cannot learn");
+    }
+    assertThat(failing.getLatency().getCount()).isEqualTo(1);
+    assertThat(failing.getInstancesPerCall().getCount()).isEqualTo(0);
+  }
+
+}
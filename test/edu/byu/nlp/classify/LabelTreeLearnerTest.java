@@ -0,0 +1,154 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link LabelTreeLearner} and {@link LabelTreeClassifier}.
+ */
+public class LabelTreeLearnerTest {
+
+  private static Indexer<String> indexer(int size) {
+    Indexer<String> indexer = new Indexer<String>();
+    for (int i = 0; i < size; i++) {
+      indexer.add("" + i);
+    }
+    return indexer;
+  }
+
+  private static Dataset dataset(List<BasicSparseFeatureVector> vectors, int[] labels, int numClasses,
+      int numFeatures) {
+    Indexer<String> labelIndexer = indexer(numClasses);
+    List<DatasetInstance> instances = Lists.newArrayList();
+    for (int i = 0; i < vectors.size(); i++) {
+      instances.add(new BasicDatasetInstance(vectors.get(i), labels[i], i, "0", labelIndexer));
+    }
+    return new BasicDataset("", instances, Sets.newHashSet(), new IndexerCalculator<>(
+        indexer(numFeatures), labelIndexer, indexer(vectors.size()), new Indexer<String>()));
+  }
+
+  /**
+   * 5 labels, each with its own indicative feature (feature 5 is shared noise).
+   */
+  private static Dataset indicativeFeatures() {
+    List<BasicSparseFeatureVector> vectors = Lists.newArrayList();
+    int[] labels = new int[15];
+    for (int rep = 0; rep < 3; rep++) {
+      for (int l = 0; l < 5; l++) {
+        labels[vectors.size()] = l;
+        vectors.add(new BasicSparseFeatureVector(new int[] {l, 5}, new double[] {3., 1.}));
+      }
+    }
+    return dataset(vectors, labels, 5, 6);
+  }
+
+  private static void assertClassifiesIndicativeFeatures(LabelTreeClassifier classifier) {
+    for (int l = 0; l < 5; l++) {
+      BasicSparseFeatureVector vector = new BasicSparseFeatureVector(new int[] {l}, new double[] {1.});
+      assertThat(classifier.classify(vector)).isEqualTo(l);
+      assertThat(classifier.classifyNBest(3, vector).get(0)).isEqualTo(l);
+
+      double sum = 0;
+      for (int k = 0; k < 5; k++) {
+        sum += Math.exp(classifier.logProbability(vector, k));
+      }
+      assertThat(sum).isEqualTo(1.0, delta(1e-8));
+    }
+  }
+
+  @Test
+  public void testLearnFrom() {
+    LabelTreeClassifier classifier = new LabelTreeLearner(2).learnFrom(indicativeFeatures());
+    assertThat(classifier.getLeafClasses()).isEqualTo(new int[] {0, 1, 2, 3, 4});
+    assertClassifiesIndicativeFeatures(classifier);
+  }
+
+  @Test
+  public void testLabelOrder() {
+    int[] order = {3, 0, 4, 2, 1};
+    LabelTreeClassifier classifier = new LabelTreeLearner(2, order).learnFrom(indicativeFeatures());
+    assertThat(classifier.getLeafClasses()).isEqualTo(order);
+    assertClassifiesIndicativeFeatures(classifier);
+    assertClassifiesIndicativeFeatures(classifier.withBeamWidth(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLabelOrderThatIsNotAPermutation() {
+    new LabelTreeLearner(2, new int[] {3, 0, 4, 3, 1}).learnFrom(indicativeFeatures());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLabelOrderOfTheWrongLength() {
+    new LabelTreeLearner(2, new int[] {3, 0, 2, 1}).learnFrom(indicativeFeatures());
+  }
+
+  /**
+   * Classes 0 and 2 share feature 0, and classes 1 and 3 share feature 1, so each pair shares
+   * a subtree.
+   */
+  @Test
+  public void testCentroidLabelOrder() {
+    List<BasicSparseFeatureVector> vectors = Lists.newArrayList(
+        new BasicSparseFeatureVector(new int[] {0, 4}, new double[] {3., 1.}),
+        new BasicSparseFeatureVector(new int[] {1, 6}, new double[] {3., 1.}),
+        new BasicSparseFeatureVector(new int[] {0, 5}, new double[] {3., 1.}),
+        new BasicSparseFeatureVector(new int[] {1, 7}, new double[] {3., 1.}));
+    Dataset data = dataset(vectors, new int[] {0, 1, 2, 3}, 4, 8);
+    assertThat(LabelTreeLearner.centroidLabelOrder(data)).isEqualTo(new int[] {0, 2, 1, 3});
+
+    LabelTreeClassifier classifier = LabelTreeLearner.clusteringCentroids(2).learnFrom(data);
+    assertThat(classifier.getLeafClasses()).isEqualTo(new int[] {0, 2, 1, 3});
+    for (int l = 0; l < 4; l++) {
+      assertThat(classifier.classify(vectors.get(l))).isEqualTo(l);
+    }
+  }
+
+  /**
+   * Without features each node is its (smoothed) prior: the labels are 1, 1, 0, 1, 2.
+   */
+  @Test
+  public void testNoFeatures() {
+    List<BasicSparseFeatureVector> vectors = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      vectors.add(new BasicSparseFeatureVector(new int[0], new double[0]));
+    }
+    LabelTreeClassifier classifier = new LabelTreeLearner(2).learnFrom(dataset(vectors, new int[] {1, 1, 0, 1, 2}, 3, 0));
+    BasicSparseFeatureVector empty = new BasicSparseFeatureVector(new int[0], new double[0]);
+    assertThat(classifier.classify(empty)).isEqualTo(1);
+    // the root splits {0} (1 instance) from {1, 2} (4), which splits {1} (3) from {2} (1)
+    assertThat(classifier.logProbability(empty, 0)).isEqualTo(Math.log(2.0 / 7), delta(1e-10));
+    assertThat(classifier.logProbability(empty, 1)).isEqualTo(Math.log(5.0 / 7 * 4.0 / 6), delta(1e-10));
+    assertThat(classifier.logProbability(empty, 2)).isEqualTo(Math.log(5.0 / 7 * 2.0 / 6), delta(1e-10));
+  }
+
+}
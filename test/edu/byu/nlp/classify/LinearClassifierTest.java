@@ -19,6 +19,7 @@ import static org.fest.assertions.Assertions.assertThat;
 import static org.fest.assertions.Delta.delta;
 
 import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
@@ -100,4 +101,37 @@ public class LinearClassifierTest {
         expectedLabel = DoubleArrays.argMax(expectedScores(bias, weights, v3));
         assertThat(classifier.classify(v3)).isEqualTo(expectedLabel);
     }
+
+    @Test
+    public void testClassifyAll() {
+        double[] bias = new double[] { -1.1, 0.1, 2.1 };
+        double[] weights = new double[] {
+                -1.0,  0.0,   1.0,
+                10.0,  1.0,   0.1,
+                 0.1, -10.0, -0.1,
+                 1.0,  1.0,  10.0,
+                 1.0,  1.0,   1.0};
+        List<SparseFeatureVector> batch = Arrays.<SparseFeatureVector>asList(
+                new BasicSparseFeatureVector(new int[] {0, 4}, new double[] {1.23, 3.14}),
+                new BasicSparseFeatureVector(new int[] {0, 1, 2, 3, 4}, new double[] {-1.23, 2.45, -3.21, 4.72, 0.01}),
+                new BasicSparseFeatureVector(new int[] {1, 2}, new double[] {2.45, 4.72}),
+                new BasicSparseFeatureVector(new int[] {}, new double[] {}));
+
+        // the batched (feature-major) and per-document (class-major) paths agree with classify
+        LinearClassifier featureMajor = new LinearClassifier(bias, weights);
+        MutableWeightMatrix classMajorWeights = WeightLayout.CLASS_MAJOR.newMatrix(3, 5);
+        for (int f = 0; f < 5; f++) {
+            for (int k = 0; k < 3; k++) {
+                classMajorWeights.set(k, f, weights[f * 3 + k]);
+            }
+        }
+        LinearClassifier classMajor = new LinearClassifier(bias, classMajorWeights);
+        for (LinearClassifier classifier : Arrays.asList(featureMajor, classMajor)) {
+            int[] labels = new int[batch.size()];
+            classifier.classifyAll(batch, labels);
+            for (int i = 0; i < batch.size(); i++) {
+                assertThat(labels[i]).isEqualTo(DoubleArrays.argMax(expectedScores(bias, weights, batch.get(i))));
+            }
+        }
+    }
 }
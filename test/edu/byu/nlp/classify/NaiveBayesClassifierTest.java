@@ -17,11 +17,16 @@ package edu.byu.nlp.classify;
 
 import static java.lang.Math.log;
 import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
 
 import edu.byu.nlp.data.types.SparseFeatureVector;
 import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.stats.CategoricalDistribution;
 import edu.byu.nlp.util.DoubleArrays;
 
 /**
@@ -68,4 +73,46 @@ public class NaiveBayesClassifierTest {
         assertThat(classifier.given(v1).logProbabilityOf(2)).isEqualTo(expectedLogPOf2);
     }
 
+    /**
+     * Test method for {@link edu.byu.nlp.classify.NaiveBayesClassifier#givenAll(List, boolean)}.
+     */
+    @Test
+    public void testGivenAllMatchesGiven() {
+        double[] logPOfY = new double[] { log(0.1), log(0.45), log(0.45) };
+        double[] logPOfXGivenY = new double[] { log(0.8), log(0.2), log(0.1),
+                                                log(0.1), log(0.7), log(0.3),
+                                                log(0.1), log(0.1), log(0.6) };
+        NaiveBayesClassifier classifier = NaiveBayesClassifier.newClassifier(logPOfY, logPOfXGivenY, false, 1e-14);
+
+        List<SparseFeatureVector> documents = Arrays.<SparseFeatureVector>asList(
+                new BasicSparseFeatureVector(new int[]{0, 1, 2}, new double[]{ 1.1, 2.2, 3.3 }),
+                new BasicSparseFeatureVector(new int[]{1}, new double[]{ 4.0 }),
+                new BasicSparseFeatureVector(new int[]{0, 2}, new double[]{ 250.0, 0.5 }),
+                new BasicSparseFeatureVector(new int[]{}, new double[]{}));
+        PosteriorBatch batch = classifier.givenAll(documents, true);
+        assertThat(batch.size()).isEqualTo(documents.size());
+
+        for (int i = 0; i < documents.size(); i++) {
+            CategoricalDistribution posterior = classifier.given(documents.get(i));
+            double[] p = new double[logPOfY.length];
+            double entropy = 0.0;
+            for (int k = 0; k < p.length; k++) {
+                p[k] = Math.exp(posterior.logProbabilityOf(k));
+                assertThat(batch.probabilityOf(i, k)).isEqualTo(p[k], delta(1e-10));
+                if (p[k] > 0) {
+                    entropy -= p[k] * Math.log(p[k]);
+                }
+            }
+            double[] sorted = p.clone();
+            Arrays.sort(sorted);
+            assertThat(batch.entropyOf(i)).isEqualTo(entropy, delta(1e-10));
+            assertThat(batch.marginOf(i)).isEqualTo(sorted[2] - sorted[1], delta(1e-10));
+        }
+
+        // without uncertainty only the posteriors are computed
+        PosteriorBatch posteriorsOnly = classifier.givenAll(documents, false);
+        assertThat(posteriorsOnly.hasUncertainty()).isFalse();
+        assertThat(posteriorsOnly.getProbabilities()).isEqualTo(batch.getProbabilities(), delta(1e-15));
+    }
+
 }
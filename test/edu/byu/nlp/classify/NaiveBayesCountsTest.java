@@ -0,0 +1,194 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import org.fest.assertions.Assertions;
+import org.fest.assertions.Delta;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.data.types.SparseFeatureVector.Entry;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.DoubleArrays;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link NaiveBayesCounts}.
+ */
+public class NaiveBayesCountsTest {
+
+  private static List<DatasetInstance> instances(Indexer<String> labelIndexer) {
+    List<DatasetInstance> instances = Lists.newArrayList();
+    int instanceId = 0;
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{0, 2, 3}, new double[]{1., 2., 3.}),  2, instanceId++, "0", labelIndexer));
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{1, 2, 3}, new double[]{6., 5., 4.}),  0, instanceId++, "0", labelIndexer));
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{0}, new double[]{2.}),                1, instanceId++, "0", labelIndexer));
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{1}, new double[]{7.}),                1, instanceId++, "0", labelIndexer));
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{1}, new double[]{8.}),                0, instanceId++, "0", labelIndexer));
+    return instances;
+  }
+
+  private static Dataset dataset(List<DatasetInstance> instances) {
+    Indexer<String> annotatorIdIndexer = new Indexer<String>();
+    Indexer<String> instanceIdIndexer = new Indexer<String>();
+    for (int i = 0; i < instances.size(); i++) {
+      instanceIdIndexer.add("" + i);
+    }
+    Indexer<String> featureIndexer = new Indexer<String>();
+    for (int f = 0; f < 4; f++) {
+      featureIndexer.add("" + f);
+    }
+    return new BasicDataset("", instances, Sets.newHashSet(),
+        new IndexerCalculator<>(featureIndexer, labelIndexer(), instanceIdIndexer, annotatorIdIndexer));
+  }
+
+  private static Indexer<String> labelIndexer() {
+    Indexer<String> labelIndexer = new Indexer<String>();
+    for (int l = 0; l < 3; l++) {
+      labelIndexer.add("" + l);
+    }
+    return labelIndexer;
+  }
+
+  /**
+   * With add-one smoothing the counts should reproduce {@link NaiveBayesLearner}.
+   */
+  @Test
+  public void testAddOneMatchesNaiveBayesLearner() {
+    Dataset data = dataset(instances(labelIndexer()));
+
+    NaiveBayesClassifier expected = new NaiveBayesLearner().learnFrom(data);
+    NaiveBayesClassifier actual = NaiveBayesCounts.fromDataset(data).classifier(1.0, 1.0);
+
+    Assertions.assertThat(actual.getBias()).isEqualTo(expected.getBias(), Delta.delta(1e-8));
+    Assertions.assertThat(actual.getWeights()).isEqualTo(expected.getWeights(), Delta.delta(1e-8));
+  }
+
+  /**
+   * The single-pass leave-one-out likelihood should match retraining without each instance.
+   */
+  @Test
+  public void testLeaveOneOutLogLikelihoods() {
+    double classAlpha = 0.5;
+    double[] featureAlphas = new double[]{0.1, 1.0, 3.0};
+
+    Dataset data = dataset(instances(labelIndexer()));
+    double[] actual = NaiveBayesCounts.fromDataset(data).leaveOneOutLogLikelihoods(data, classAlpha, featureAlphas);
+
+    double[] expected = new double[featureAlphas.length];
+    for (int heldout = 0; heldout < 5; heldout++) {
+      List<DatasetInstance> instances = instances(labelIndexer());
+      DatasetInstance instance = instances.remove(heldout);
+      NaiveBayesCounts counts = NaiveBayesCounts.fromDataset(dataset(instances));
+      int label = instance.getObservedLabel();
+      for (int a = 0; a < featureAlphas.length; a++) {
+        NaiveBayesClassifier classifier = counts.classifier(classAlpha, featureAlphas[a]);
+        expected[a] += classifier.getBias()[label];
+        for (Entry entry : instance.asFeatureVector().sparseEntries()) {
+          expected[a] += entry.getValue() * classifier.getWeights()[entry.getIndex() * 3 + label];
+        }
+      }
+    }
+    Assertions.assertThat(actual).isEqualTo(expected, Delta.delta(1e-8));
+  }
+
+  @Test
+  public void testLayouts() {
+    Dataset data = dataset(instances(labelIndexer()));
+    NaiveBayesClassifier expected = NaiveBayesCounts.fromDataset(data, null, WeightLayout.FEATURE_MAJOR)
+        .classifier(0.5, new double[]{0.1, 1.0, 3.0});
+    for (WeightLayout layout : new WeightLayout[]{WeightLayout.CLASS_MAJOR, WeightLayout.OFF_HEAP}) {
+      NaiveBayesCounts counts = NaiveBayesCounts.fromDataset(data, null, layout);
+      Assertions.assertThat(counts.getFeatureCounts().getLayout()).isEqualTo(layout);
+      NaiveBayesClassifier actual = counts.classifier(0.5, new double[]{0.1, 1.0, 3.0});
+      Assertions.assertThat(actual.getWeightMatrix().getLayout()).isEqualTo(layout);
+      Assertions.assertThat(actual.getBias()).isEqualTo(expected.getBias(), Delta.delta(1e-12));
+      Assertions.assertThat(actual.getWeights()).isEqualTo(expected.getWeights(), Delta.delta(1e-12));
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRejectsSparseLayout() {
+    NaiveBayesCounts.fromDataset(dataset(instances(labelIndexer())), null, WeightLayout.SPARSE);
+  }
+
+  /**
+   * 3 classes x 2^30 buckets is more counts than an array can hold. They are counted in
+   * an OFF_HEAP matrix mapped from a new (sparse) file, so that only the pages of the
+   * buckets that occur are touched, and the classifier computes its weights from them.
+   */
+  @Test
+  public void testHashedModelLargerThanAnArray() throws IOException {
+    FeatureHasher hasher = new FeatureHasher(FeatureHasher.MAX_BITS, false);
+    int numBuckets = hasher.getNumBuckets();
+    Assertions.assertThat(3L * numBuckets > Integer.MAX_VALUE).isTrue();
+    int[] buckets = new int[4];
+    for (int f = 0; f < 4; f++) {
+      buckets[f] = hasher.bucketOf(f);
+    }
+    Assertions.assertThat(Sets.newHashSet(buckets[0], buckets[1], buckets[2], buckets[3]).size()).isEqualTo(4);
+
+    File file = File.createTempFile("naive-bayes-counts", ".bin");
+    try {
+      OffHeapWeightMatrix matrix = OffHeapWeightMatrix.map(file, 3, numBuckets, true);
+      NaiveBayesCounts counts = NaiveBayesCounts.fromDataset(dataset(instances(labelIndexer())), hasher, matrix);
+      Assertions.assertThat(counts.getNumFeatures()).isEqualTo(numBuckets);
+
+      // see instances(): the counts of features 0..3 for each class
+      double[][] expectedCounts = {{0, 14, 5, 4}, {2, 7, 0, 0}, {1, 0, 2, 3}};
+      double[] totals = {23, 9, 6};
+      double[] classCounts = {2, 2, 1};
+      for (int k = 0; k < 3; k++) {
+        for (int f = 0; f < 4; f++) {
+          Assertions.assertThat(counts.getFeatureCounts().get(k, buckets[f])).isEqualTo(expectedCounts[k][f]);
+        }
+      }
+
+      HashingProbabilisticClassifier classifier = new HashingProbabilisticClassifier(counts.classifier(1.0, 1.0), hasher);
+      Assertions.assertThat(((NaiveBayesClassifier) classifier.getDelegate()).getWeightMatrix().getLayout())
+          .isEqualTo(WeightLayout.OFF_HEAP);
+      SparseFeatureVector document = new BasicSparseFeatureVector(new int[]{1, 3}, new double[]{1., 2.});
+      double[] expected = new double[3];
+      for (int k = 0; k < 3; k++) {
+        double logNorm = Math.log(totals[k] + numBuckets);
+        expected[k] = Math.log((classCounts[k] + 1) / 8.0)
+            + 1. * (Math.log(expectedCounts[k][1] + 1) - logNorm)
+            + 2. * (Math.log(expectedCounts[k][3] + 1) - logNorm);
+      }
+      double logSum = DoubleArrays.logSum(expected);
+      for (int k = 0; k < 3; k++) {
+        Assertions.assertThat(classifier.given(document).logProbabilityOf(k))
+            .isEqualTo(expected[k] - logSum, Delta.delta(1e-8));
+      }
+      matrix.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+}
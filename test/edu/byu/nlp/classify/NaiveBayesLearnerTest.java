@@ -114,6 +114,23 @@ public class NaiveBayesLearnerTest {
 		
 		Assertions.assertThat(classifier.getBias()).isEqualTo(logPOfC, Delta.delta(1e-8));
 		Assertions.assertThat(classifier.getWeights()).isEqualTo(log(pOfFeatureGivenClass), Delta.delta(1e-8));
+
+		// The class-major layout must learn the same model
+		LinearClassifier classMajor = new NaiveBayesLearner(WeightLayout.CLASS_MAJOR).learnFrom(dataset);
+
+		Assertions.assertThat(classMajor.getBias()).isEqualTo(logPOfC, Delta.delta(1e-8));
+		Assertions.assertThat(classMajor.getWeights()).isEqualTo(log(pOfFeatureGivenClass), Delta.delta(1e-8));
+
+		// ... as must the off-heap layout
+		LinearClassifier offHeap = new NaiveBayesLearner(WeightLayout.OFF_HEAP).learnFrom(dataset);
+
+		Assertions.assertThat(offHeap.getBias()).isEqualTo(logPOfC, Delta.delta(1e-8));
+		Assertions.assertThat(offHeap.getWeights()).isEqualTo(log(pOfFeatureGivenClass), Delta.delta(1e-8));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testRejectsReadOnlyLayout() {
+		new NaiveBayesLearner(WeightLayout.SPARSE);
 	}
 
 	private boolean isNormalized(double[] pOfFeatureGivenClass, int numLabels, int numFeatures) {
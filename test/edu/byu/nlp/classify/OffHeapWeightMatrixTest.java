@@ -0,0 +1,155 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ReadOnlyBufferException;
+
+import org.junit.Test;
+
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Unit tests for {@link OffHeapWeightMatrix}, using segments small enough that every matrix
+ * spans several of them.
+ */
+public class OffHeapWeightMatrixTest {
+
+  private static final int NUM_CLASSES = 3;
+  private static final int NUM_FEATURES = 10;
+  // 4 features per segment: segments of 4, 4 and 2 features
+  private static final int SEGMENT_BYTES = 4 * NUM_CLASSES * 8;
+
+  private static final BasicSparseFeatureVector[] VECTORS = new BasicSparseFeatureVector[] {
+      new BasicSparseFeatureVector(new int[] {0, 3, 4, 9}, new double[] {1.0, 2.0, 3.0, 4.0}),
+      new BasicSparseFeatureVector(new int[] {3, 4}, new double[] {-1.5, 2.5}),
+      new BasicSparseFeatureVector(new int[] {7, 8, 9}, new double[] {0.5, 1.0, 2.0}),
+      new BasicSparseFeatureVector(new int[] {}, new double[] {}) };
+
+  private static double weight(int classIndex, int feature) {
+    return 10 * feature + classIndex + 0.5;
+  }
+
+  private static void fill(MutableWeightMatrix matrix) {
+    for (int f = 0; f < NUM_FEATURES; f++) {
+      for (int k = 0; k < NUM_CLASSES; k++) {
+        matrix.set(k, f, weight(k, f));
+      }
+    }
+  }
+
+  private static void assertSameWeights(WeightMatrix actual, WeightMatrix expected) {
+    for (int f = 0; f < NUM_FEATURES; f++) {
+      for (int k = 0; k < NUM_CLASSES; k++) {
+        assertThat(actual.get(k, f)).isEqualTo(expected.get(k, f), delta(1e-12));
+      }
+    }
+    assertThat(actual.toFeatureMajorArray()).isEqualTo(expected.toFeatureMajorArray(), delta(1e-12));
+    for (BasicSparseFeatureVector vector : VECTORS) {
+      double[] actualScores = new double[NUM_CLASSES];
+      double[] expectedScores = new double[NUM_CLASSES];
+      actual.addScoresTo(vector, actualScores);
+      expected.addScoresTo(vector, expectedScores);
+      assertThat(actualScores).isEqualTo(expectedScores, delta(1e-9));
+    }
+  }
+
+  @Test
+  public void testGetAndSetAcrossSegments() {
+    OffHeapWeightMatrix matrix = OffHeapWeightMatrix.allocate(NUM_CLASSES, NUM_FEATURES, SEGMENT_BYTES);
+    fill(matrix);
+    // the last feature of the first segment and the first of the second
+    assertThat(matrix.get(2, 3)).isEqualTo(weight(2, 3));
+    assertThat(matrix.get(0, 4)).isEqualTo(weight(0, 4));
+
+    double[] expected = new double[NUM_CLASSES * NUM_FEATURES];
+    for (int f = 0; f < NUM_FEATURES; f++) {
+      for (int k = 0; k < NUM_CLASSES; k++) {
+        expected[f * NUM_CLASSES + k] = weight(k, f);
+      }
+    }
+    assertThat(matrix.toFeatureMajorArray()).isEqualTo(expected);
+    assertSameWeights(matrix, new FeatureMajorWeightMatrix(NUM_CLASSES, expected));
+    matrix.close();
+  }
+
+  @Test
+  public void testMapRoundTrip() throws IOException {
+    File file = File.createTempFile("weights", ".bin");
+    try {
+      OffHeapWeightMatrix written = OffHeapWeightMatrix.map(file, NUM_CLASSES, NUM_FEATURES, true, SEGMENT_BYTES);
+      fill(written);
+      written.close();
+      assertThat(file.length()).isEqualTo(8L * NUM_CLASSES * NUM_FEATURES);
+
+      FeatureMajorWeightMatrix expected = new FeatureMajorWeightMatrix(NUM_CLASSES, NUM_FEATURES);
+      fill(expected);
+
+      // the file format does not depend on the segment size
+      OffHeapWeightMatrix readOnly = OffHeapWeightMatrix.map(file, NUM_CLASSES, NUM_FEATURES, false);
+      assertSameWeights(readOnly, expected);
+      try {
+        readOnly.set(0, 0, 1.0);
+        fail("expected a ReadOnlyBufferException");
+      } catch (ReadOnlyBufferException e) {
+        // mapped read-only
+      }
+      readOnly.close();
+
+      OffHeapWeightMatrix writable = OffHeapWeightMatrix.map(file, NUM_CLASSES, NUM_FEATURES, true, 2 * NUM_CLASSES * 8);
+      assertSameWeights(writable, expected);
+      writable.set(1, 5, -1.0);
+      writable.close();
+      expected.set(1, 5, -1.0);
+      OffHeapWeightMatrix reread = OffHeapWeightMatrix.map(file, NUM_CLASSES, NUM_FEATURES, false, SEGMENT_BYTES);
+      assertSameWeights(reread, expected);
+      reread.close();
+    } finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testLearnsTheSameNaiveBayesModelAsFeatureMajor() {
+    // the operations NaiveBayesLearner performs, applied to both layouts
+    OffHeapWeightMatrix offHeap = OffHeapWeightMatrix.allocate(NUM_CLASSES, NUM_FEATURES, SEGMENT_BYTES);
+    FeatureMajorWeightMatrix featureMajor = new FeatureMajorWeightMatrix(NUM_CLASSES, NUM_FEATURES);
+    for (MutableWeightMatrix weights : new MutableWeightMatrix[] {offHeap, featureMajor}) {
+      weights.fill(1.0);
+      for (int i = 0; i < VECTORS.length; i++) {
+        weights.addToClass(i % NUM_CLASSES, VECTORS[i], 1.0);
+      }
+      weights.addToClass(2, VECTORS[0], 2.0);
+      weights.normalizeClasses();
+      weights.logToSelf();
+    }
+    assertSameWeights(offHeap, featureMajor);
+
+    double[] bias = new double[] {-1.0, -1.5, -0.8};
+    LinearClassifier offHeapClassifier = new LinearClassifier(bias, offHeap);
+    LinearClassifier featureMajorClassifier = new LinearClassifier(bias, featureMajor);
+    for (BasicSparseFeatureVector vector : VECTORS) {
+      assertThat(offHeapClassifier.classify(vector)).isEqualTo(featureMajorClassifier.classify(vector));
+    }
+    offHeap.close();
+  }
+
+}
@@ -0,0 +1,94 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import org.junit.Test;
+
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
+
+/**
+ * Compares the unrolled kernels in {@link ScoringKernels} against the obvious loops for
+ * lengths that do and do not divide the unrolling factor.
+ */
+public class ScoringKernelsTest {
+
+  @Test
+  public void testKernelsMatchNaiveLoops() {
+    SplittableRandomGenerator rnd = new SplittableRandomGenerator(7);
+    for (int n = 1; n <= 11; n++) {
+      double[] x = new double[n + 3];
+      double[] y = new double[n];
+      for (int i = 0; i < x.length; i++) {
+        x[i] = 10 * rnd.nextDouble() - 5;
+      }
+      for (int k = 0; k < n; k++) {
+        y[k] = rnd.nextDouble();
+      }
+
+      double[] expected = y.clone();
+      for (int k = 0; k < n; k++) {
+        expected[k] += 0.5 * x[3 + k];
+      }
+      ScoringKernels.axpy(0.5, x, 3, y, n);
+      assertThat(y).isEqualTo(expected, delta(1e-12));
+
+      int argMax = 0;
+      double logSum = 0;
+      for (int k = 0; k < n; k++) {
+        if (y[k] > y[argMax]) {
+          argMax = k;
+        }
+      }
+      for (int k = 0; k < n; k++) {
+        logSum += Math.exp(y[k] - y[argMax]);
+      }
+      logSum = y[argMax] + Math.log(logSum);
+      assertThat(ScoringKernels.argMax(y)).isEqualTo(argMax);
+      assertThat(ScoringKernels.max(y)).isEqualTo(y[argMax]);
+      assertThat(ScoringKernels.logSumExp(y)).isEqualTo(logSum, delta(1e-12));
+    }
+  }
+
+  @Test
+  public void testArgMaxPrefersFirstOfTies() {
+    assertThat(ScoringKernels.argMax(new double[] {1, 3, 2, 3, 3, 0})).isEqualTo(1);
+    assertThat(ScoringKernels.argMax(new double[] {0, 0, 0, 0, 5, 5})).isEqualTo(4);
+    double[] allNegInf = {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+    assertThat(ScoringKernels.argMax(allNegInf)).isEqualTo(0);
+  }
+
+  @Test
+  public void testArgMaxIgnoresNaN() {
+    // a NaN must not hide a larger element in the same unrolled block
+    assertThat(ScoringKernels.argMax(new double[] {Double.NaN, 5, 1, 1, 2})).isEqualTo(1);
+    assertThat(ScoringKernels.argMax(new double[] {1, Double.NaN, 3, 2, 0, 4})).isEqualTo(5);
+    assertThat(ScoringKernels.argMax(new double[] {2, 1, 1, 1, Double.NaN})).isEqualTo(0);
+    double[] nanAndNegInf = {Double.NaN, Double.NEGATIVE_INFINITY, Double.NaN, Double.NaN, Double.NaN};
+    assertThat(ScoringKernels.argMax(nanAndNegInf)).isEqualTo(1);
+    // never -1, even when there is nothing to compare
+    assertThat(ScoringKernels.argMax(new double[] {Double.NaN, Double.NaN, Double.NaN, Double.NaN})).isEqualTo(0);
+    assertThat(ScoringKernels.argMax(new double[] {Double.NaN})).isEqualTo(0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testArgMaxOfEmptyArrayFails() {
+    ScoringKernels.argMax(new double[0]);
+  }
+
+}
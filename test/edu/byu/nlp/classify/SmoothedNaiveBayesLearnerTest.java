@@ -0,0 +1,119 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static java.lang.Math.log;
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link SmoothedNaiveBayesLearner}.
+ */
+public class SmoothedNaiveBayesLearnerTest {
+
+  /**
+   * 3 classes, 4 features. The feature counts of class 0 are {0, 14, 5, 4}, of class 1
+   * {2, 7, 0, 0} and of class 2 {1, 0, 2, 3}; the classes occur 2, 2 and 1 times.
+   */
+  private static Dataset dataset() {
+    Indexer<String> labelIndexer = new Indexer<String>();
+    for (int l = 0; l < 3; l++) {
+      labelIndexer.add("" + l);
+    }
+    List<DatasetInstance> instances = Lists.newArrayList();
+    int instanceId = 0;
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{0, 2, 3}, new double[]{1., 2., 3.}),  2, instanceId++, "0", labelIndexer));
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{1, 2, 3}, new double[]{6., 5., 4.}),  0, instanceId++, "0", labelIndexer));
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{0}, new double[]{2.}),                1, instanceId++, "0", labelIndexer));
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{1}, new double[]{7.}),                1, instanceId++, "0", labelIndexer));
+    instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{1}, new double[]{8.}),                0, instanceId++, "0", labelIndexer));
+
+    Indexer<String> instanceIdIndexer = new Indexer<String>();
+    for (int i = 0; i < instances.size(); i++) {
+      instanceIdIndexer.add("" + i);
+    }
+    Indexer<String> featureIndexer = new Indexer<String>();
+    for (int f = 0; f < 4; f++) {
+      featureIndexer.add("" + f);
+    }
+    return new BasicDataset("", instances, Sets.newHashSet(),
+        new IndexerCalculator<>(featureIndexer, labelIndexer, instanceIdIndexer, new Indexer<String>()));
+  }
+
+  private static double weight(NaiveBayesClassifier classifier, int classIndex, int feature) {
+    return classifier.getWeightMatrix().get(classIndex, feature);
+  }
+
+  @Test
+  public void testAddOneMatchesNaiveBayesLearner() {
+    Dataset data = dataset();
+    NaiveBayesClassifier expected = new NaiveBayesLearner().learnFrom(data);
+    NaiveBayesClassifier actual = new SmoothedNaiveBayesLearner(1.0, 1.0).learnFrom(data);
+    assertThat(actual.getBias()).isEqualTo(expected.getBias(), delta(1e-8));
+    assertThat(actual.getWeights()).isEqualTo(expected.getWeights(), delta(1e-8));
+  }
+
+  @Test
+  public void testPerClassSmoothing() {
+    NaiveBayesClassifier classifier =
+        new SmoothedNaiveBayesLearner(0.5, new double[]{0.1, 2.0, 0.5}).learnFrom(dataset());
+
+    assertThat(classifier.getBias()).isEqualTo(
+        new double[]{log(2.5 / 6.5), log(2.5 / 6.5), log(1.5 / 6.5)}, delta(1e-10));
+    // log (count + alpha_k) - log (total_k + numFeatures * alpha_k)
+    assertThat(weight(classifier, 0, 0)).isEqualTo(log(0.1 / 23.4), delta(1e-10));
+    assertThat(weight(classifier, 0, 1)).isEqualTo(log(14.1 / 23.4), delta(1e-10));
+    assertThat(weight(classifier, 1, 0)).isEqualTo(log(4.0 / 17.0), delta(1e-10));
+    assertThat(weight(classifier, 1, 3)).isEqualTo(log(2.0 / 17.0), delta(1e-10));
+    assertThat(weight(classifier, 2, 3)).isEqualTo(log(3.5 / 8.0), delta(1e-10));
+  }
+
+  @Test
+  public void testSingleFeatureAlphaIsShared() {
+    Dataset data = dataset();
+    NaiveBayesClassifier shared = new SmoothedNaiveBayesLearner(0.5, 0.3).learnFrom(data);
+    NaiveBayesClassifier single = new SmoothedNaiveBayesLearner(0.5, new double[]{0.3}).learnFrom(data);
+    NaiveBayesClassifier perClass = new SmoothedNaiveBayesLearner(0.5, new double[]{0.3, 0.3, 0.3}).learnFrom(data);
+    assertThat(single.getWeights()).isEqualTo(shared.getWeights(), delta(1e-12));
+    assertThat(perClass.getWeights()).isEqualTo(shared.getWeights(), delta(1e-12));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongNumberOfFeatureAlphas() {
+    new SmoothedNaiveBayesLearner(1.0, new double[]{1.0, 1.0}).learnFrom(dataset());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testNegativeFeatureAlpha() {
+    new SmoothedNaiveBayesLearner(1.0, new double[]{1.0, -1.0, 1.0});
+  }
+
+}
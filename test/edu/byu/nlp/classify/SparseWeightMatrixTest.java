@@ -0,0 +1,63 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import org.junit.Test;
+
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Unit tests for {@link SparseWeightMatrix}.
+ */
+public class SparseWeightMatrixTest {
+
+  // 3 classes x 5 features; most weights equal their class's background value
+  private static final double[] WEIGHTS = new double[] {
+      -2.0, -3.0, -1.0,
+      -2.0, -3.0, -1.0,
+       0.5, -3.0, -1.0,
+      -2.0, -3.0 + 1e-9, 2.0,
+      -2.0, -3.0, -1.0 };
+
+  @Test
+  public void testCompaction() {
+    LinearClassifier dense = new LinearClassifier(new double[] {0.1, 0.2, 0.3}, WEIGHTS);
+
+    SparseWeightMatrix exact = SparseWeightMatrix.compact(dense.getWeightMatrix(), 0.0);
+    assertThat(exact.getDefaults()).isEqualTo(new double[] {-2.0, -3.0, -1.0}, delta(1e-12));
+    assertThat(exact.getNumStoredWeights()).isEqualTo(3);
+    assertThat(exact.toFeatureMajorArray()).isEqualTo(WEIGHTS, delta(1e-12));
+
+    SparseWeightMatrix pruned = SparseWeightMatrix.compact(dense.getWeightMatrix(), 1e-6);
+    assertThat(pruned.getNumStoredWeights()).isEqualTo(2);
+    assertThat(pruned.get(1, 3)).isEqualTo(-3.0);
+    assertThat(pruned.get(0, 2)).isEqualTo(0.5, delta(1e-12));
+
+    LinearClassifier compacted = dense.compact(1e-6);
+    BasicSparseFeatureVector[] vectors = new BasicSparseFeatureVector[] {
+        new BasicSparseFeatureVector(new int[] {0, 2}, new double[] {1.0, 2.0}),
+        new BasicSparseFeatureVector(new int[] {3, 4}, new double[] {1.0, 1.0}),
+        new BasicSparseFeatureVector(new int[] {1}, new double[] {3.0}) };
+    for (BasicSparseFeatureVector vector : vectors) {
+      assertThat(compacted.scoresFor(vector).clone()).isEqualTo(dense.scoresFor(vector).clone(), delta(1e-6));
+      assertThat(compacted.classify(vector)).isEqualTo(dense.classify(vector));
+    }
+  }
+
+}
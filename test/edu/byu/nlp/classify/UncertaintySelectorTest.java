@@ -0,0 +1,291 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.classify.UncertaintySelector.Measure;
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.stats.CategoricalDistribution;
+import edu.byu.nlp.stats.DoubleArrayCategoricalDistribution;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link UncertaintySelector}.
+ */
+public class UncertaintySelectorTest {
+
+  private static final int NUM_CLASSES = 3;
+  private static final int POOL_SIZE = 700;
+  private static final int NUM_FEATURES = 12;
+
+  /**
+   * Instance i has features i % 7 and 7 + i % 5.
+   */
+  private static List<SparseFeatureVector> pool() {
+    List<SparseFeatureVector> pool = Lists.newArrayList();
+    for (int i = 0; i < POOL_SIZE; i++) {
+      pool.add(new BasicSparseFeatureVector(new int[]{i % 7, 7 + i % 5}, new double[]{1. + i % 3, 1.}));
+    }
+    return pool;
+  }
+
+  /**
+   * Returns a fixed random posterior per vector (by identity) and counts the calls to given.
+   */
+  private static class FixedPosteriors implements ProbabilisticClassifier {
+    private final Map<SparseFeatureVector, double[]> logProbs = new IdentityHashMap<SparseFeatureVector, double[]>();
+    private final AtomicInteger numCalls = new AtomicInteger();
+
+    FixedPosteriors(List<SparseFeatureVector> pool, Random rnd) {
+      for (SparseFeatureVector vector : pool) {
+        double[] p = new double[NUM_CLASSES];
+        double sum = 0;
+        for (int c = 0; c < NUM_CLASSES; c++) {
+          p[c] = rnd.nextDouble();
+          sum += p[c];
+        }
+        for (int c = 0; c < NUM_CLASSES; c++) {
+          p[c] = Math.log(p[c] / sum);
+        }
+        logProbs.put(vector, p);
+      }
+    }
+
+    @Override
+    public CategoricalDistribution given(SparseFeatureVector vector) {
+      numCalls.incrementAndGet();
+      return DoubleArrayCategoricalDistribution.newDistributionFromLogProbs(logProbs.get(vector).clone(), false);
+    }
+
+    @Override
+    public int classify(SparseFeatureVector vector) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<Integer> classifyNBest(int n, SparseFeatureVector vector) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static NaiveBayesClassifier naiveBayes(List<SparseFeatureVector> pool) {
+    Indexer<String> labelIndexer = new Indexer<String>();
+    for (int l = 0; l < NUM_CLASSES; l++) {
+      labelIndexer.add("" + l);
+    }
+    Indexer<String> featureIndexer = new Indexer<String>();
+    for (int f = 0; f < NUM_FEATURES; f++) {
+      featureIndexer.add("" + f);
+    }
+    Indexer<String> instanceIdIndexer = new Indexer<String>();
+    List<DatasetInstance> instances = Lists.newArrayList();
+    // train on a prefix so that the posteriors of the pool are not degenerate
+    for (int i = 0; i < 30; i++) {
+      instanceIdIndexer.add("" + i);
+      instances.add(new BasicDatasetInstance(pool.get(i), (i * 7) % NUM_CLASSES, i, "0", labelIndexer));
+    }
+    return new NaiveBayesLearner().learnFrom(new BasicDataset("", instances, Sets.newHashSet(),
+        new IndexerCalculator<>(featureIndexer, labelIndexer, instanceIdIndexer, new Indexer<String>())));
+  }
+
+  private static double score(Measure measure, ProbabilisticClassifier classifier, SparseFeatureVector vector) {
+    CategoricalDistribution posterior = classifier.given(vector);
+    double[] p = new double[NUM_CLASSES];
+    for (int c = 0; c < NUM_CLASSES; c++) {
+      p[c] = Math.exp(posterior.logProbabilityOf(c));
+    }
+    return measure.score(p, 0, NUM_CLASSES);
+  }
+
+  /**
+   * Sorts the unannotated indices by score (highest first) and returns the first k.
+   */
+  private static int[] bruteForce(final double[] scores, List<Integer> excluded, int k) {
+    List<Integer> indices = Lists.newArrayList();
+    for (int i = 0; i < scores.length; i++) {
+      if (!excluded.contains(i)) {
+        indices.add(i);
+      }
+    }
+    Collections.sort(indices, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i, Integer j) {
+        return Double.compare(scores[j], scores[i]);
+      }
+    });
+    int[] top = new int[Math.min(k, indices.size())];
+    for (int i = 0; i < top.length; i++) {
+      top[i] = indices.get(i);
+    }
+    return top;
+  }
+
+  private static double[] scores(Measure measure, ProbabilisticClassifier classifier, List<SparseFeatureVector> pool) {
+    double[] scores = new double[pool.size()];
+    for (int i = 0; i < pool.size(); i++) {
+      scores[i] = score(measure, classifier, pool.get(i));
+    }
+    return scores;
+  }
+
+  @Test
+  public void testMeasures() {
+    double[] p = {0.0, 0.5, 0.3, 0.2};
+    assertThat(Measure.ENTROPY.score(p, 1, 3))
+        .isEqualTo(-(0.5 * Math.log(0.5) + 0.3 * Math.log(0.3) + 0.2 * Math.log(0.2)), delta(1e-12));
+    assertThat(Measure.MARGIN.score(p, 1, 3)).isEqualTo(0.8, delta(1e-12));
+    assertThat(Measure.LEAST_CONFIDENCE.score(p, 1, 3)).isEqualTo(0.5, delta(1e-12));
+    // a certain posterior has the lowest score under every measure
+    double[] certain = {0.0, 1.0, 0.0};
+    assertThat(Measure.ENTROPY.score(certain, 0, 3)).isEqualTo(0.0);
+    assertThat(Measure.MARGIN.score(certain, 0, 3)).isEqualTo(0.0);
+    assertThat(Measure.LEAST_CONFIDENCE.score(certain, 0, 3)).isEqualTo(0.0);
+  }
+
+  @Test
+  public void testSelectMatchesBruteForce() {
+    List<SparseFeatureVector> pool = pool();
+    ProbabilisticClassifier[] classifiers = {new FixedPosteriors(pool, new Random(5)), naiveBayes(pool)};
+    List<Integer> annotated = Arrays.asList(3, 100, 699);
+    for (ProbabilisticClassifier classifier : classifiers) {
+      for (Measure measure : Measure.values()) {
+        double[] scores = scores(measure, classifier, pool);
+        for (int numThreads : new int[]{1, 4}) {
+          UncertaintySelector selector = new UncertaintySelector(pool, NUM_CLASSES, measure, numThreads);
+          try {
+            for (int i : annotated) {
+              selector.markAnnotated(i);
+            }
+            for (int k : new int[]{0, 1, 25}) {
+              int[] selected = selector.select(classifier, k);
+              // naive bayes gives many instances the same posterior, so compare the scores
+              int[] expected = bruteForce(scores, annotated, k);
+              assertThat(selected.length).isEqualTo(expected.length);
+              for (int i = 0; i < selected.length; i++) {
+                assertThat(annotated.contains(selected[i])).isFalse();
+                assertThat(scores[selected[i]]).isEqualTo(scores[expected[i]], delta(1e-10));
+              }
+            }
+          } finally {
+            selector.close();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Asking for more than the pool returns every unannotated instance, most uncertain first.
+   */
+  @Test
+  public void testKLargerThanPool() {
+    List<SparseFeatureVector> pool = pool().subList(0, 10);
+    FixedPosteriors classifier = new FixedPosteriors(pool, new Random(9));
+    UncertaintySelector selector = new UncertaintySelector(pool, NUM_CLASSES, Measure.MARGIN, 3);
+    try {
+      selector.markAnnotated(4);
+      int[] selected = selector.select(classifier, 50);
+      assertThat(selected).isEqualTo(bruteForce(scores(Measure.MARGIN, classifier, pool), Arrays.asList(4), 50));
+    } finally {
+      selector.close();
+    }
+  }
+
+  /**
+   * Only invalidated instances are rescored; the others keep their cached scores.
+   */
+  @Test
+  public void testSelectIncremental() {
+    List<SparseFeatureVector> pool = pool();
+    FixedPosteriors before = new FixedPosteriors(pool, new Random(1));
+    FixedPosteriors after = new FixedPosteriors(pool, new Random(2));
+    ExecutorService executor = Executors.newFixedThreadPool(3);
+    try {
+      UncertaintySelector selector = new UncertaintySelector(pool, NUM_CLASSES, Measure.ENTROPY, executor, 5);
+      selector.select(before, 10);
+      assertThat(before.numCalls.get()).isEqualTo(POOL_SIZE);
+
+      double[] expectedScores = scores(Measure.ENTROPY, before, pool);
+      List<Integer> invalidated = Arrays.asList(0, 17, 350, 698);
+      for (int i : invalidated) {
+        selector.invalidate(i);
+        expectedScores[i] = score(Measure.ENTROPY, after, pool.get(i));
+      }
+      after.numCalls.set(0);
+      int[] selected = selector.selectIncremental(after, 10);
+      assertThat(after.numCalls.get()).isEqualTo(invalidated.size());
+      assertThat(selected).isEqualTo(bruteForce(expectedScores, Collections.<Integer>emptyList(), 10));
+
+      // nothing is stale any more
+      after.numCalls.set(0);
+      assertThat(selector.selectIncremental(after, 10)).isEqualTo(selected);
+      assertThat(after.numCalls.get()).isEqualTo(0);
+
+      // the caller's executor survives close() and is reused
+      selector.close();
+      assertThat(executor.isShutdown()).isFalse();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testInvalidateSharingFeaturesWith() {
+    List<SparseFeatureVector> pool = pool();
+    FixedPosteriors classifier = new FixedPosteriors(pool, new Random(3));
+    UncertaintySelector selector = new UncertaintySelector(pool, NUM_CLASSES, Measure.LEAST_CONFIDENCE, 2);
+    try {
+      selector.select(classifier, 5);
+      classifier.numCalls.set(0);
+      // feature 2 occurs in instances i % 7 == 2, feature 8 in i % 5 == 1
+      selector.invalidateSharingFeaturesWith(new BasicSparseFeatureVector(new int[]{2, 8}, new double[]{1., 1.}));
+      selector.selectIncremental(classifier, 5);
+      int expected = 0;
+      for (int i = 0; i < POOL_SIZE; i++) {
+        if (i % 7 == 2 || i % 5 == 1) {
+          ++expected;
+        }
+      }
+      assertThat(classifier.numCalls.get()).isEqualTo(expected);
+    } finally {
+      selector.close();
+    }
+  }
+
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Unit tests for {@link UniformClassifier}.
+ */
+public class UniformClassifierTest {
+
+  private static final int NUM_LABELS = 5;
+  private static final int NUM_VECTORS = 3000;
+
+  /**
+   * Many identical vectors, so guesses cannot be keyed on the content.
+   */
+  private static List<SparseFeatureVector> vectors() {
+    List<SparseFeatureVector> vectors = Lists.newArrayList();
+    for (int i = 0; i < NUM_VECTORS; i++) {
+      vectors.add(new BasicSparseFeatureVector(new int[]{i % 3}, new double[]{1.}));
+    }
+    return vectors;
+  }
+
+  @Test
+  public void testClassifyAllIsKeyedOnTheIndex() {
+    UniformClassifier classifier = new UniformClassifier(NUM_LABELS, 17L);
+    int[] labels = classifier.classifyAll(vectors());
+    assertThat(labels.length).isEqualTo(NUM_VECTORS);
+    int[] counts = new int[NUM_LABELS];
+    for (int i = 0; i < NUM_VECTORS; i++) {
+      assertThat(labels[i]).isEqualTo(classifier.classify(i));
+      ++counts[labels[i]];
+    }
+    // roughly uniform (600 expected per label)
+    for (int count : counts) {
+      assertThat(count).isGreaterThan(500).isLessThan(700);
+    }
+    // another classifier with the same seed agrees; another seed does not
+    assertThat(new UniformClassifier(NUM_LABELS, 17L).classifyAll(vectors())).isEqualTo(labels);
+    assertThat(Arrays.equals(new UniformClassifier(NUM_LABELS, 18L).classifyAll(vectors()), labels)).isFalse();
+  }
+
+  @Test
+  public void testResultDoesNotDependOnThreads() {
+    List<SparseFeatureVector> vectors = vectors();
+    UniformClassifier classifier = new UniformClassifier(NUM_LABELS, 17L);
+    int[] serial = classifier.classifyAll(vectors);
+    for (int numThreads : new int[]{1, 4}) {
+      ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+      try {
+        for (int numChunks : new int[]{1, 3, 16}) {
+          assertThat(classifier.classifyAll(vectors, executor, numChunks)).isEqualTo(serial);
+        }
+        // the caller's executor is left running
+        assertThat(executor.isShutdown()).isFalse();
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      List<SparseFeatureVector> none = Lists.newArrayList();
+      assertThat(new UniformClassifier(NUM_LABELS, 17L).classifyAll(none, executor, 4).length).isEqualTo(0);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSeededRejectsVectorClassification() {
+    new UniformClassifier(NUM_LABELS, 17L).classify(vectors().get(0));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSeededRejectsGiven() {
+    new UniformClassifier(NUM_LABELS, 17L).given(vectors().get(0));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testSharedGeneratorRejectsIndexedClassification() {
+    new UniformClassifier(NUM_LABELS, new SplittableRandomGenerator(17L)).classifyAll(vectors());
+  }
+
+  @Test
+  public void testSharedGenerator() {
+    UniformClassifier classifier = new UniformClassifier(NUM_LABELS, new SplittableRandomGenerator(17L));
+    SplittableRandomGenerator expected = new SplittableRandomGenerator(17L);
+    for (SparseFeatureVector vector : vectors().subList(0, 100)) {
+      assertThat(classifier.classify(vector)).isEqualTo(expected.nextInt(NUM_LABELS));
+    }
+  }
+
+}
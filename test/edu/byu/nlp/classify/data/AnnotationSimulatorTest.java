@@ -0,0 +1,113 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.data;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import org.junit.Test;
+
+import edu.byu.nlp.classify.data.AnnotationSimulator.SimulatedAnnotations;
+
+/**
+ * Unit tests for {@link AnnotationSimulator}.
+ */
+public class AnnotationSimulatorTest {
+
+  private static final int NUM_ANNOTATORS = 5;
+  private static final int NUM_LABELS = 3;
+
+  private static double[][][] confusionMatrices() {
+    double[][][] confusions = new double[NUM_ANNOTATORS][NUM_LABELS][NUM_LABELS];
+    for (int a = 0; a < NUM_ANNOTATORS; a++) {
+      for (int k = 0; k < NUM_LABELS; k++) {
+        for (int j = 0; j < NUM_LABELS; j++) {
+          confusions[a][k][j] = (k == j) ? 5 + a : 1;
+        }
+      }
+    }
+    return confusions;
+  }
+
+  /**
+   * Spans several blocks; every seventh item has no true label.
+   */
+  private static int[] trueLabels() {
+    int[] trueLabels = new int[2 * AnnotationSimulator.BLOCK_SIZE + 100];
+    for (int i = 0; i < trueLabels.length; i++) {
+      trueLabels[i] = (i % 7 == 0) ? -1 : i % NUM_LABELS;
+    }
+    return trueLabels;
+  }
+
+  private static SimulatedAnnotations simulate(int numThreads, int[] trueLabels) {
+    return AnnotationSimulator.fromConfusionMatrices(confusionMatrices(),
+        AnnotationSimulator.uniformRandom(NUM_ANNOTATORS, 3), 42L, numThreads).simulate(trueLabels);
+  }
+
+  @Test
+  public void testResultDoesNotDependOnNumThreads() {
+    int[] trueLabels = trueLabels();
+    SimulatedAnnotations serial = simulate(1, trueLabels);
+    SimulatedAnnotations parallel = simulate(4, trueLabels);
+
+    assertThat(parallel.getNumItems()).isEqualTo(serial.getNumItems());
+    assertThat(parallel.size()).isEqualTo(serial.size());
+    for (int item = 0; item < trueLabels.length; item++) {
+      assertThat(parallel.getOffset(item)).isEqualTo(serial.getOffset(item));
+      assertThat(parallel.getNumAnnotations(item)).isEqualTo(serial.getNumAnnotations(item));
+    }
+    for (int i = 0; i < serial.size(); i++) {
+      assertThat(parallel.getAnnotator(i)).isEqualTo(serial.getAnnotator(i));
+      assertThat(parallel.getLabel(i)).isEqualTo(serial.getLabel(i));
+    }
+  }
+
+  @Test
+  public void testUniformRandomChoosesDistinctAnnotators() {
+    int[] trueLabels = trueLabels();
+    SimulatedAnnotations annotations = simulate(4, trueLabels);
+    for (int item = 0; item < trueLabels.length; item++) {
+      if (trueLabels[item] < 0) {
+        continue;
+      }
+      assertThat(annotations.getNumAnnotations(item)).isEqualTo(3);
+      boolean[] seen = new boolean[NUM_ANNOTATORS];
+      int offset = annotations.getOffset(item);
+      for (int i = offset; i < offset + annotations.getNumAnnotations(item); i++) {
+        int annotator = annotations.getAnnotator(i);
+        assertThat(seen[annotator]).isFalse();
+        seen[annotator] = true;
+        assertThat(annotations.getLabel(i)).isLessThan(NUM_LABELS);
+      }
+    }
+  }
+
+  @Test
+  public void testUnknownLabelsAreNotAnnotated() {
+    int[] trueLabels = trueLabels();
+    SimulatedAnnotations annotations = simulate(4, trueLabels);
+    int numLabeled = 0;
+    for (int item = 0; item < trueLabels.length; item++) {
+      if (trueLabels[item] < 0) {
+        assertThat(annotations.getNumAnnotations(item)).isEqualTo(0);
+      } else {
+        ++numLabeled;
+      }
+    }
+    assertThat(annotations.size()).isEqualTo(3 * numLabeled);
+  }
+
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.data;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.classify.eval.AccuracyComputer;
+import edu.byu.nlp.classify.eval.BasicPrediction;
+import edu.byu.nlp.classify.eval.ConfusionMatrix;
+import edu.byu.nlp.classify.eval.ConfusionMatrixComputer;
+import edu.byu.nlp.classify.eval.OverallAccuracy;
+import edu.byu.nlp.classify.eval.Prediction;
+import edu.byu.nlp.classify.eval.Predictions;
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Regression tests for the {@code Predictions} of {@link GoldLabelLabeler} and
+ * {@link RandomLabelLabeler} (built by {@link BaselinePredictions}): they must equal what the
+ * labelers returned when they built one {@code BasicPrediction} per instance and dense
+ * annotator confusion matrices.
+ */
+public class BaselineLabelersTest {
+
+  private static final int NUM_LABELS = 3;
+  private static final int NUM_ANNOTATORS = 2;
+
+  private static Indexer<String> indexer(int size) {
+    Indexer<String> indexer = new Indexer<String>();
+    for (int i = 0; i < size; i++) {
+      indexer.add("" + i);
+    }
+    return indexer;
+  }
+
+  /**
+   * An instance with the given gold label (null for none) that has annotations if annotated.
+   * {@code BasicDatasetInstance} always has a label and never annotations, so those two
+   * properties are overridden by a proxy.
+   */
+  private static DatasetInstance instance(int id, final Integer label, final boolean annotated,
+      Indexer<String> labelIndexer) {
+    final DatasetInstance delegate = new BasicDatasetInstance(
+        new BasicSparseFeatureVector(new int[]{id % 5}, new double[]{1.}), (label == null) ? 0 : label, id, "0",
+        labelIndexer);
+    return (DatasetInstance) Proxy.newProxyInstance(DatasetInstance.class.getClassLoader(),
+        new Class<?>[]{DatasetInstance.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("hasAnnotations")) {
+              return annotated;
+            }
+            if (method.getName().equals("hasLabel")) {
+              return label != null;
+            }
+            if (method.getName().equals("getLabel")) {
+              return label;
+            }
+            try {
+              return method.invoke(delegate, args);
+            } catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+          }
+        });
+  }
+
+  /**
+   * Instance i is annotated if i % 3 == 0 and (if withUnlabeled) has no gold label if i % 4 == 1.
+   */
+  private static Dataset dataset(int numInstances, int firstId, boolean withUnlabeled) {
+    Indexer<String> labelIndexer = indexer(NUM_LABELS);
+    List<DatasetInstance> instances = Lists.newArrayList();
+    for (int i = 0; i < numInstances; i++) {
+      Integer label = (withUnlabeled && i % 4 == 1) ? null : (i * 7) % NUM_LABELS;
+      instances.add(instance(firstId + i, label, i % 3 == 0, labelIndexer));
+    }
+    return new BasicDataset("", instances, Sets.newHashSet(), new IndexerCalculator<>(
+        indexer(5), labelIndexer, indexer(firstId + numInstances), indexer(NUM_ANNOTATORS)));
+  }
+
+  /**
+   * The labelers' output before they were made columnar.
+   */
+  private static Predictions legacyPredictions(Dataset trainingInstances, int[] trainingLabels,
+      Dataset heldoutInstances, int[] heldoutLabels) {
+    List<Prediction> labeledPredictions = Lists.newArrayList();
+    List<Prediction> unlabeledPredictions = Lists.newArrayList();
+    List<Prediction> heldoutPredictions = Lists.newArrayList();
+    int i = 0;
+    for (DatasetInstance inst : trainingInstances) {
+      if (inst.hasAnnotations()) {
+        labeledPredictions.add(new BasicPrediction(trainingLabels[i++], inst));
+      } else {
+        unlabeledPredictions.add(new BasicPrediction(trainingLabels[i++], inst));
+      }
+    }
+    i = 0;
+    for (DatasetInstance inst : heldoutInstances) {
+      heldoutPredictions.add(new BasicPrediction(heldoutLabels[i++], inst));
+    }
+    int numAnnotators = trainingInstances.getInfo().getNumAnnotators();
+    int numClasses = trainingInstances.getInfo().getNumClasses();
+    return new Predictions(labeledPredictions, unlabeledPredictions, heldoutPredictions, new double[numAnnotators],
+        new double[numAnnotators][numClasses][numClasses], -1, new double[numClasses][numClasses], -1);
+  }
+
+  private static int[] goldLabels(Dataset data) {
+    List<Integer> labels = Lists.newArrayList();
+    for (DatasetInstance inst : data) {
+      labels.add(inst.getLabel());
+    }
+    int[] array = new int[labels.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = labels.get(i);
+    }
+    return array;
+  }
+
+  private static void assertSamePredictions(Iterable<? extends Prediction> actual,
+      Iterable<? extends Prediction> expected) {
+    List<Prediction> actualList = Lists.newArrayList(actual);
+    List<Prediction> expectedList = Lists.newArrayList(expected);
+    assertThat(actualList).hasSize(expectedList.size());
+    for (int i = 0; i < actualList.size(); i++) {
+      assertThat(actualList.get(i).getInstance()).isSameAs(expectedList.get(i).getInstance());
+      assertThat(actualList.get(i).getPredictedLabel()).isEqualTo(expectedList.get(i).getPredictedLabel());
+      assertThat(actualList.get(i).getPredictedLabels()).isEqualTo(expectedList.get(i).getPredictedLabels());
+    }
+  }
+
+  private static void assertSameConfusion(Iterable<? extends Prediction> actual,
+      Iterable<? extends Prediction> expected) {
+    ConfusionMatrixComputer computer = new ConfusionMatrixComputer(indexer(NUM_LABELS));
+    ConfusionMatrix actualMatrix = computer.compute(actual);
+    ConfusionMatrix expectedMatrix = computer.compute(expected);
+    assertThat(actualMatrix.total()).isEqualTo(expectedMatrix.total());
+    for (int gold = 0; gold < NUM_LABELS; gold++) {
+      for (int predicted = 0; predicted < NUM_LABELS; predicted++) {
+        assertThat(actualMatrix.getEntry(gold, predicted)).isEqualTo(expectedMatrix.getEntry(gold, predicted));
+      }
+    }
+  }
+
+  private static void assertSame(Predictions actual, Predictions expected) {
+    assertSamePredictions(actual.labeledPredictions(), expected.labeledPredictions());
+    assertSamePredictions(actual.unlabeledPredictions(), expected.unlabeledPredictions());
+    assertSamePredictions(actual.testPredictions(), expected.testPredictions());
+
+    OverallAccuracy actualAccuracy = new AccuracyComputer().compute(actual, null);
+    OverallAccuracy expectedAccuracy = new AccuracyComputer().compute(expected, null);
+    assertThat(actualAccuracy.getLabeledAccuracy().getCorrectCount())
+        .isEqualTo(expectedAccuracy.getLabeledAccuracy().getCorrectCount());
+    assertThat(actualAccuracy.getLabeledAccuracy().getTotalCount())
+        .isEqualTo(expectedAccuracy.getLabeledAccuracy().getTotalCount());
+    assertThat(actualAccuracy.getUnlabeledAccuracy().getCorrectCount())
+        .isEqualTo(expectedAccuracy.getUnlabeledAccuracy().getCorrectCount());
+    assertThat(actualAccuracy.getUnlabeledAccuracy().getTotalCount())
+        .isEqualTo(expectedAccuracy.getUnlabeledAccuracy().getTotalCount());
+    assertThat(actualAccuracy.getTestAccuracy().getCorrectCount())
+        .isEqualTo(expectedAccuracy.getTestAccuracy().getCorrectCount());
+    assertThat(actualAccuracy.getTestAccuracy().getTotalCount())
+        .isEqualTo(expectedAccuracy.getTestAccuracy().getTotalCount());
+
+    assertSameConfusion(actual.labeledPredictions(), expected.labeledPredictions());
+    assertSameConfusion(actual.unlabeledPredictions(), expected.unlabeledPredictions());
+    assertSameConfusion(actual.testPredictions(), expected.testPredictions());
+
+    assertThat(Arrays.equals(actual.annotatorAccuracies(), expected.annotatorAccuracies())).isTrue();
+    assertThat(Arrays.deepEquals(actual.annotatorConfusionMatrices(), expected.annotatorConfusionMatrices())).isTrue();
+    assertThat(actual.machineAccuracy()).isEqualTo(expected.machineAccuracy());
+    assertThat(Arrays.deepEquals(actual.machineConfusionMatrix(), expected.machineConfusionMatrix())).isTrue();
+    assertThat(actual.logJoint()).isEqualTo(expected.logJoint());
+  }
+
+  @Test
+  public void testGoldLabelLabeler() {
+    Dataset training = dataset(40, 0, false);
+    Dataset heldout = dataset(15, 40, false);
+    Predictions actual = new GoldLabelLabeler().label(training, heldout);
+    Predictions expected = legacyPredictions(training, goldLabels(training), heldout, goldLabels(heldout));
+    assertSame(actual, expected);
+    // every prediction is right
+    assertThat(new AccuracyComputer().compute(actual, null).getTestAccuracy().getCorrectCount()).isEqualTo(15);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGoldLabelLabelerRequiresLabels() {
+    new GoldLabelLabeler().label(dataset(40, 0, true), dataset(15, 40, false));
+  }
+
+  /**
+   * A shared generator draws the training labels and then the heldout labels.
+   */
+  @Test
+  public void testRandomLabelLabeler() {
+    Dataset training = dataset(40, 0, true);
+    Dataset heldout = dataset(15, 40, true);
+    Predictions actual = new RandomLabelLabeler(new SplittableRandomGenerator(11)).label(training, heldout);
+
+    SplittableRandomGenerator rnd = new SplittableRandomGenerator(11);
+    int[] trainingLabels = new int[40];
+    for (int i = 0; i < trainingLabels.length; i++) {
+      trainingLabels[i] = rnd.nextInt(NUM_LABELS);
+    }
+    int[] heldoutLabels = new int[15];
+    for (int i = 0; i < heldoutLabels.length; i++) {
+      heldoutLabels[i] = rnd.nextInt(NUM_LABELS);
+    }
+    assertSame(actual, legacyPredictions(training, trainingLabels, heldout, heldoutLabels));
+  }
+
+  /**
+   * The seeded labeler draws different labels but its predictions are laid out the same way.
+   */
+  @Test
+  public void testSeededRandomLabelLabeler() {
+    Dataset training = dataset(40, 0, true);
+    Dataset heldout = dataset(15, 40, true);
+    Predictions actual = new RandomLabelLabeler(11L, 3).label(training, heldout);
+
+    int[] trainingLabels = new int[40];
+    int[] heldoutLabels = new int[15];
+    int i = 0;
+    for (Prediction prediction : actual.labeledPredictions()) {
+      trainingLabels[3 * i++] = prediction.getPredictedLabel();
+    }
+    int[] unannotated = new int[40 - i];
+    int j = 0;
+    for (Prediction prediction : actual.unlabeledPredictions()) {
+      unannotated[j++] = prediction.getPredictedLabel();
+    }
+    // training instance t is annotated if t % 3 == 0
+    for (int t = 0, u = 0; t < 40; t++) {
+      if (t % 3 != 0) {
+        trainingLabels[t] = unannotated[u++];
+      }
+    }
+    j = 0;
+    for (Prediction prediction : actual.testPredictions()) {
+      heldoutLabels[j++] = prediction.getPredictedLabel();
+    }
+    assertSame(actual, legacyPredictions(training, trainingLabels, heldout, heldoutLabels));
+  }
+
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.data;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.classify.eval.Prediction;
+import edu.byu.nlp.classify.eval.Predictions;
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link RandomLabelLabeler}.
+ */
+public class RandomLabelLabelerTest {
+
+  private static final int NUM_LABELS = 4;
+
+  private static Dataset dataset(int numInstances, int firstId) {
+    Indexer<String> labelIndexer = new Indexer<String>();
+    for (int l = 0; l < NUM_LABELS; l++) {
+      labelIndexer.add("" + l);
+    }
+    Indexer<String> instanceIdIndexer = new Indexer<String>();
+    List<DatasetInstance> instances = Lists.newArrayList();
+    for (int i = 0; i < numInstances; i++) {
+      instanceIdIndexer.add("" + (firstId + i));
+      // identical vectors, so labels cannot be keyed on the content
+      instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{0}, new double[]{1.}),
+          i % NUM_LABELS, firstId + i, "0", labelIndexer));
+    }
+    return new BasicDataset("", instances, Sets.newHashSet(), new IndexerCalculator<>(
+        new Indexer<String>(), labelIndexer, instanceIdIndexer, new Indexer<String>()));
+  }
+
+  /**
+   * The instances have no annotations, so every training instance is unlabeled.
+   */
+  private static List<Integer> trainingLabels(Predictions predictions) {
+    return predictedLabels(Iterables.concat(predictions.labeledPredictions(), predictions.unlabeledPredictions()));
+  }
+
+  private static List<Integer> predictedLabels(Iterable<? extends Prediction> predictions) {
+    List<Integer> labels = Lists.newArrayList();
+    for (Prediction prediction : predictions) {
+      labels.add(prediction.getPredictedLabel());
+    }
+    return labels;
+  }
+
+  @Test
+  public void testResultDoesNotDependOnNumThreads() {
+    Dataset training = dataset(1000, 0);
+    Dataset heldout = dataset(300, 1000);
+    Predictions serial = new RandomLabelLabeler(42L, 1).label(training, heldout);
+    List<Integer> serialTraining = trainingLabels(serial);
+    List<Integer> serialHeldout = predictedLabels(serial.testPredictions());
+    assertThat(serialTraining).hasSize(1000);
+    assertThat(serialHeldout).hasSize(300);
+
+    for (int numThreads : new int[]{2, 7}) {
+      Predictions parallel = new RandomLabelLabeler(42L, numThreads).label(training, heldout);
+      assertThat(trainingLabels(parallel)).isEqualTo(serialTraining);
+      assertThat(predictedLabels(parallel.testPredictions())).isEqualTo(serialHeldout);
+    }
+  }
+
+  /**
+   * The label of the i'th training instance does not depend on how many instances there are.
+   */
+  @Test
+  public void testLabelsArePerIndex() {
+    List<Integer> all = trainingLabels(new RandomLabelLabeler(42L, 3).label(dataset(1000, 0), dataset(10, 1000)));
+    List<Integer> prefix = trainingLabels(new RandomLabelLabeler(42L, 3).label(dataset(100, 0), dataset(10, 1000)));
+    assertThat(prefix).isEqualTo(all.subList(0, 100));
+  }
+
+  @Test
+  public void testSeeds() {
+    Dataset training = dataset(1000, 0);
+    Dataset heldout = dataset(300, 1000);
+    List<Integer> labels = trainingLabels(new RandomLabelLabeler(42L, 2).label(training, heldout));
+    List<Integer> other = trainingLabels(new RandomLabelLabeler(43L, 2).label(training, heldout));
+    assertThat(other.equals(labels)).isFalse();
+    int[] counts = new int[NUM_LABELS];
+    for (int label : labels) {
+      ++counts[label];
+    }
+    // roughly uniform (250 expected per label)
+    for (int count : counts) {
+      assertThat(count).isGreaterThan(180).isLessThan(320);
+    }
+  }
+
+}
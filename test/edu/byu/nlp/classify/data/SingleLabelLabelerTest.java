@@ -0,0 +1,149 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.data;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.linear.OpenMapRealMatrix;
+import org.apache.commons.math3.linear.SparseRealMatrix;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.eval.BasicPrediction;
+import edu.byu.nlp.classify.eval.Prediction;
+import edu.byu.nlp.classify.eval.Predictions;
+import edu.byu.nlp.classify.eval.SparseAnnotatorConfusions;
+import edu.byu.nlp.data.types.AnnotationSet;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.math.AbstractRealMatrixPreservingVisitor;
+
+/**
+ * Unit tests for {@link SingleLabelLabeler}.
+ */
+public class SingleLabelLabelerTest {
+
+  private static final int NUM_ANNOTATORS = 4;
+  private static final int NUM_LABELS = 3;
+
+  /**
+   * An instance whose only behavior is to return the given annotations (proxies stand in for
+   * the dataset types, which have no lightweight implementations).
+   */
+  private static DatasetInstance annotatedInstance(final SparseRealMatrix annotations) {
+    final AnnotationSet annotationSet = (AnnotationSet) Proxy.newProxyInstance(AnnotationSet.class.getClassLoader(),
+        new Class<?>[]{AnnotationSet.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getLabelAnnotations")) {
+              return annotations;
+            }
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+    return (DatasetInstance) Proxy.newProxyInstance(DatasetInstance.class.getClassLoader(),
+        new Class<?>[]{DatasetInstance.class}, new InvocationHandler() {
+          @Override
+          public Object invoke(Object proxy, Method method, Object[] args) {
+            if (method.getName().equals("getAnnotations")) {
+              return annotationSet;
+            }
+            throw new UnsupportedOperationException(method.getName());
+          }
+        });
+  }
+
+  /**
+   * Random single annotations by random annotators; some annotators annotate nothing.
+   */
+  private static List<Prediction> predictions(long seed) {
+    Random rnd = new Random(seed);
+    List<Prediction> predictions = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      SparseRealMatrix annotations = new OpenMapRealMatrix(NUM_ANNOTATORS, NUM_LABELS);
+      for (int j = 0; j < 3; j++) {
+        // annotator 3 never annotates
+        int annotator = rnd.nextInt(NUM_ANNOTATORS - 1);
+        if (annotations.getEntry(annotator, 0) + annotations.getEntry(annotator, 1)
+            + annotations.getEntry(annotator, 2) == 0) {
+          annotations.setEntry(annotator, rnd.nextInt(NUM_LABELS), 1);
+        }
+      }
+      predictions.add(new BasicPrediction(rnd.nextInt(NUM_LABELS), annotatedInstance(annotations)));
+    }
+    return predictions;
+  }
+
+  /**
+   * The dense tensor as {@code SingleLabelLabeler} computed it before it was made sparse.
+   */
+  private static double[][][] denseConfusions(List<Prediction> labeledPredictions) {
+    final double[][][] confusionMatrices = new double[NUM_ANNOTATORS][NUM_LABELS][NUM_LABELS];
+    for (final Prediction p : labeledPredictions) {
+      p.getInstance().getAnnotations().getLabelAnnotations().walkInOptimizedOrder(
+          new AbstractRealMatrixPreservingVisitor() {
+        @Override
+        public void visit(int annotator, int annval, double value) {
+          for (int i = 0; i < value; i++) {
+            confusionMatrices[annotator][p.getPredictedLabel()][annval] += value;
+          }
+        }
+      });
+    }
+    return confusionMatrices;
+  }
+
+  @Test
+  public void testSparseConfusionsMatchDense() {
+    List<Prediction> predictions = predictions(3);
+    SparseAnnotatorConfusions sparse =
+        SingleLabelLabeler.annotatorConfusions(predictions, NUM_ANNOTATORS, NUM_LABELS);
+    double[][][] dense = denseConfusions(predictions);
+    assertThat(sparse.getNumAnnotators()).isEqualTo(NUM_ANNOTATORS);
+    assertThat(sparse.getNumClasses()).isEqualTo(NUM_LABELS);
+    assertThat(Arrays.deepEquals(sparse.toDense(), dense)).isTrue();
+    for (int annotator = 0; annotator < NUM_ANNOTATORS; annotator++) {
+      for (int trueLabel = 0; trueLabel < NUM_LABELS; trueLabel++) {
+        for (int annotated = 0; annotated < NUM_LABELS; annotated++) {
+          assertThat(sparse.get(annotator, trueLabel, annotated)).isEqualTo(dense[annotator][trueLabel][annotated]);
+        }
+      }
+    }
+    // nothing is stored for the annotator who never annotates
+    assertThat(Arrays.deepEquals(sparse.toDense(NUM_ANNOTATORS - 1), new double[NUM_LABELS][NUM_LABELS])).isTrue();
+
+    // the labeler returns them through withSparseConfusions, whose dense view must agree
+    Predictions result = Predictions.withSparseConfusions(predictions, Collections.<Prediction>emptyList(), null,
+        new double[NUM_ANNOTATORS], sparse, -1, null, -1);
+    assertThat(Arrays.deepEquals(result.annotatorConfusionMatrices(), dense)).isTrue();
+  }
+
+  @Test
+  public void testNoAnnotators() {
+    SparseAnnotatorConfusions sparse = SingleLabelLabeler.annotatorConfusions(predictions(5), 0, NUM_LABELS);
+    assertThat(sparse.getNumAnnotators()).isEqualTo(0);
+    assertThat(sparse.toDense().length).isEqualTo(0);
+  }
+
+}
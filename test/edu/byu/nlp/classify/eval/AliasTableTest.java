@@ -0,0 +1,62 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import org.junit.Test;
+
+import edu.byu.nlp.classify.util.SplittableRandomGenerator;
+
+/**
+ * Unit tests for {@link AliasTable} and {@link LabelSamplers}.
+ */
+public class AliasTableTest {
+
+  @Test
+  public void testEmpiricalFrequencies() {
+    double[] weights = {1.0, 0.0, 3.0, 6.0};
+    AliasTable table = new AliasTable(weights);
+    SplittableRandomGenerator rnd = new SplittableRandomGenerator(17);
+    int numSamples = 200000;
+    int[] counts = new int[weights.length];
+    for (int i = 0; i < numSamples; i++) {
+      ++counts[table.sampleInt(rnd)];
+    }
+    assertThat(counts[1]).isEqualTo(0);
+    assertThat((double) counts[0] / numSamples).isEqualTo(0.1, delta(0.01));
+    assertThat((double) counts[2] / numSamples).isEqualTo(0.3, delta(0.01));
+    assertThat((double) counts[3] / numSamples).isEqualTo(0.6, delta(0.01));
+  }
+
+  /**
+   * Blocks are seeded independently of the threads that sample them.
+   */
+  @Test
+  public void testParallelSamplingIsReproducible() {
+    ConfusionMatrixDistribution dist = new ConfusionMatrixDistribution(new double[][] {
+        {0.8, 0.1, 0.1}, {0.2, 0.7, 0.1}, {0.0, 0.5, 0.5}});
+    int[] trueLabels = new int[3 * LabelSamplers.BLOCK_SIZE + 5];
+    for (int i = 0; i < trueLabels.length; i++) {
+      trueLabels[i] = i % 3;
+    }
+    int[] serial = LabelSamplers.sampleAll(dist, trueLabels, 42L, 1);
+    int[] parallel = LabelSamplers.sampleAll(dist, trueLabels, 42L, 3);
+    assertThat(parallel).isEqualTo(serial);
+  }
+
+}
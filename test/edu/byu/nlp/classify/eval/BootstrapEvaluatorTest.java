@@ -0,0 +1,85 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import org.junit.Test;
+
+import edu.byu.nlp.classify.eval.BootstrapEvaluator.ConfidenceInterval;
+
+/**
+ * Unit tests for {@link BootstrapEvaluator}.
+ */
+public class BootstrapEvaluatorTest {
+
+  private static final int[] GOLD = {0, 0, 0, 1, 1, 1, 2, 2, 2, 2};
+  private static final int[] PREDICTED = {0, 0, 1, 1, 1, 2, 2, 2, 0, 2};
+
+  @Test
+  public void testIntervalContainsEstimate() {
+    BootstrapEvaluator.Result result = new BootstrapEvaluator(3, 500, 1, 1, new int[]{2}).evaluate(GOLD, PREDICTED);
+    ConfidenceInterval accuracy = result.getAccuracy(0.95);
+    assertThat(accuracy.getEstimate()).isEqualTo(0.7, delta(1e-12));
+    assertThat(accuracy.getLower()).isLessThan(0.7 + 1e-12);
+    assertThat(accuracy.getUpper()).isGreaterThan(0.7 - 1e-12);
+    assertThat(result.getRecall(2, 0.95).getEstimate()).isEqualTo(0.75, delta(1e-12));
+  }
+
+  /**
+   * Each replicate has its own generator, so the number of threads must not matter.
+   */
+  @Test
+  public void testIndependentOfNumThreads() {
+    BootstrapEvaluator.Result serial = new BootstrapEvaluator(3, 200, 7, 1).evaluate(GOLD, PREDICTED);
+    BootstrapEvaluator.Result parallel = new BootstrapEvaluator(3, 200, 7, 4).evaluate(GOLD, PREDICTED);
+    assertThat(parallel.getAccuracy(0.9).getLower()).isEqualTo(serial.getAccuracy(0.9).getLower());
+    assertThat(parallel.getAccuracy(0.9).getUpper()).isEqualTo(serial.getAccuracy(0.9).getUpper());
+    assertThat(parallel.getMacroF1(0.9).getLower()).isEqualTo(serial.getMacroF1(0.9).getLower());
+  }
+
+  /**
+   * Per-class intervals come from the same replicates whichever labels are requested.
+   */
+  @Test
+  public void testPerClassIntervals() {
+    BootstrapEvaluator.Result all = BootstrapEvaluator.withAllClasses(3, 300, 5, 2).evaluate(GOLD, PREDICTED);
+    BootstrapEvaluator.Result some = new BootstrapEvaluator(3, 300, 5, 3, new int[]{2, 0}).evaluate(GOLD, PREDICTED);
+    for (int label : new int[]{0, 2}) {
+      assertThat(some.getPrecision(label, 0.9).getLower()).isEqualTo(all.getPrecision(label, 0.9).getLower());
+      assertThat(some.getRecall(label, 0.9).getUpper()).isEqualTo(all.getRecall(label, 0.9).getUpper());
+      assertThat(some.getF1(label, 0.8).getLower()).isEqualTo(all.getF1(label, 0.8).getLower());
+    }
+    assertThat(some.getAccuracy(0.9).getLower()).isEqualTo(all.getAccuracy(0.9).getLower());
+    ConfidenceInterval f1 = all.getF1(1, 0.95);
+    // label 1: tp 2, predicted 3, gold 3
+    assertThat(f1.getEstimate()).isEqualTo(2.0 / 3, delta(1e-12));
+    assertThat(f1.getLower()).isLessThan(f1.getEstimate() + 1e-12);
+    assertThat(f1.getUpper()).isGreaterThan(f1.getEstimate() - 1e-12);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPerClassIntervalNotRequested() {
+    new BootstrapEvaluator(3, 100, 5, 1, new int[]{2, 0}).evaluate(GOLD, PREDICTED).getPrecision(1, 0.9);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRepeatedPerClassLabel() {
+    new BootstrapEvaluator(3, 100, 5, 1, new int[]{2, 2});
+  }
+
+}
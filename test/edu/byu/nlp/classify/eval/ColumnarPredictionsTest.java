@@ -0,0 +1,209 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.eval.ColumnarPredictions.Split;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link ColumnarPredictions}.
+ */
+public class ColumnarPredictionsTest {
+
+  private static final int NUM_LABELS = 4;
+  private static final int TOP_K = 3;
+  private static final int NUM_PREDICTIONS = 300;
+
+  private static Indexer<String> labels() {
+    Indexer<String> labels = new Indexer<String>();
+    for (int l = 0; l < NUM_LABELS; l++) {
+      labels.add("" + l);
+    }
+    return labels;
+  }
+
+  /**
+   * The same random predictions as {@code BasicPrediction}s (by split) and as columns. Each
+   * has 0 (a null prediction) to TOP_K + 1 ranked labels; shorter rankings are padded with
+   * NO_LABEL in the columns and longer ones truncated.
+   */
+  private static class Data {
+    private final List<List<BasicPrediction>> bySplit = Lists.newArrayList();
+    private final ColumnarPredictions columns;
+
+    Data(long seed) {
+      Random rnd = new Random(seed);
+      Indexer<String> labels = labels();
+      for (int s = 0; s < Split.values().length; s++) {
+        bySplit.add(Lists.<BasicPrediction>newArrayList());
+      }
+      List<DatasetInstance> instances = Lists.newArrayList();
+      for (int i = 0; i < NUM_PREDICTIONS; i++) {
+        instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{0}, new double[]{1.}),
+            rnd.nextInt(NUM_LABELS), i, "0", labels));
+      }
+      columns = new ColumnarPredictions(TOP_K, NUM_PREDICTIONS, instances);
+      for (int i = 0; i < NUM_PREDICTIONS; i++) {
+        Split split = Split.values()[rnd.nextInt(Split.values().length)];
+        List<Integer> ranked = Lists.newArrayList(0, 1, 2, 3);
+        Collections.shuffle(ranked, rnd);
+        int numRanked = (rnd.nextInt(8) == 0) ? 0 : 1 + rnd.nextInt(TOP_K + 1);
+        List<Integer> predicted = (numRanked == 0)
+            ? Collections.<Integer>singletonList(null) : ranked.subList(0, numRanked);
+        DatasetInstance instance = instances.get(i);
+        bySplit.get(split.ordinal()).add(new BasicPrediction(predicted, instance));
+        columns.add(split, i, instance.getLabel(), (numRanked == 0) ? Collections.<Integer>emptyList() : predicted);
+      }
+    }
+
+    Predictions predictions() {
+      return new Predictions(bySplit.get(Split.LABELED.ordinal()), bySplit.get(Split.UNLABELED.ordinal()),
+          bySplit.get(Split.HELDOUT.ordinal()), null, null, 0, null, 0);
+    }
+
+    /**
+     * The predictions of split that are not null, which {@code ConfusionMatrixComputer} requires.
+     */
+    List<BasicPrediction> nonNull(Split split) {
+      List<BasicPrediction> nonNull = Lists.newArrayList();
+      for (BasicPrediction prediction : bySplit.get(split.ordinal())) {
+        if (prediction.getPredictedLabel() != null) {
+          nonNull.add(prediction);
+        }
+      }
+      return nonNull;
+    }
+  }
+
+  private static void assertSameAccuracy(OverallAccuracy actual, OverallAccuracy expected) {
+    assertSameAccuracy(actual.getLabeledAccuracy(), expected.getLabeledAccuracy());
+    assertSameAccuracy(actual.getUnlabeledAccuracy(), expected.getUnlabeledAccuracy());
+    assertSameAccuracy(actual.getTestAccuracy(), expected.getTestAccuracy());
+  }
+
+  private static void assertSameAccuracy(Accuracy actual, Accuracy expected) {
+    assertThat(actual.getCorrectCount()).isEqualTo(expected.getCorrectCount());
+    assertThat(actual.getTotalCount()).isEqualTo(expected.getTotalCount());
+  }
+
+  @Test
+  public void testAccuracyMatchesPredictions() {
+    Data data = new Data(3);
+    // the columns keep TOP_K labels, so larger n would only differ by truncation
+    for (int topn = 1; topn <= TOP_K; topn++) {
+      AccuracyComputer computer = new AccuracyComputer(topn);
+      OverallAccuracy expected = computer.compute(data.predictions(), null);
+      assertSameAccuracy(computer.compute(data.columns), expected);
+      assertSameAccuracy(computer.compute(data.columns.asPredictions(null, null, 0, null, 0), null), expected);
+    }
+  }
+
+  @Test
+  public void testConfusionMatrixMatchesPredictions() {
+    Data data = new Data(5);
+    ConfusionMatrixComputer computer = new ConfusionMatrixComputer(labels());
+    for (Split split : Split.values()) {
+      ConfusionMatrix expected = computer.compute(data.nonNull(split));
+      ConfusionMatrix actual = computer.compute(data.columns, EnumSet.of(split));
+      for (int gold = 0; gold < NUM_LABELS; gold++) {
+        for (int predicted = 0; predicted < NUM_LABELS; predicted++) {
+          assertThat(actual.getEntry(gold, predicted)).isEqualTo(expected.getEntry(gold, predicted));
+        }
+      }
+    }
+    ConfusionMatrix all = computer.compute(data.columns);
+    long total = 0;
+    for (Split split : Split.values()) {
+      total += data.nonNull(split).size();
+    }
+    assertThat(all.total()).isEqualTo(total);
+  }
+
+  /**
+   * The views have the predicted labels of the {@code BasicPrediction}s, truncated to TOP_K.
+   */
+  @Test
+  public void testViews() {
+    Data data = new Data(7);
+    for (Split split : Split.values()) {
+      List<Prediction> view = Lists.newArrayList(data.columns.view(split));
+      List<BasicPrediction> expected = data.bySplit.get(split.ordinal());
+      assertThat(view).hasSize(expected.size());
+      for (int i = 0; i < view.size(); i++) {
+        List<Integer> labels = expected.get(i).getPredictedLabels();
+        assertThat(view.get(i).getInstance()).isSameAs(expected.get(i).getInstance());
+        assertThat(view.get(i).getPredictedLabel()).isEqualTo(expected.get(i).getPredictedLabel());
+        assertThat(view.get(i).getPredictedLabels()).isEqualTo(labels.subList(0, Math.min(TOP_K, labels.size())));
+      }
+    }
+  }
+
+  @Test
+  public void testPaddingAndTruncation() {
+    ColumnarPredictions predictions = new ColumnarPredictions(TOP_K, 2, null);
+    predictions.add(Split.LABELED, 0, 1, 0, 1);
+    predictions.add(Split.LABELED, 1, 3, 0, 1, 2, 3);
+    predictions.add(Split.LABELED, 2, 0);
+
+    assertThat(predictions.getNumPredictedLabels(0)).isEqualTo(2);
+    assertThat(predictions.getPredictedLabel(0, 2)).isEqualTo(ColumnarPredictions.NO_LABEL);
+    assertThat(predictions.isCorrectInTop(0, 1)).isFalse();
+    assertThat(predictions.isCorrectInTop(0, 2)).isTrue();
+
+    // the fourth label is not kept
+    assertThat(predictions.getNumPredictedLabels(1)).isEqualTo(TOP_K);
+    assertThat(predictions.isCorrectInTop(1, TOP_K + 1)).isFalse();
+
+    // a null prediction
+    assertThat(predictions.getPredictedLabel(2)).isEqualTo(ColumnarPredictions.NO_LABEL);
+    assertThat(predictions.getNumPredictedLabels(2)).isEqualTo(0);
+    assertThat(predictions.isCorrectInTop(2, TOP_K)).isFalse();
+  }
+
+  /**
+   * A ranking is read up to its first NO_LABEL (or null), even if labels follow it.
+   */
+  @Test
+  public void testIsCorrectInTopStopsAtFirstNoLabel() {
+    ColumnarPredictions predictions = new ColumnarPredictions(TOP_K, 2, null);
+    predictions.add(Split.HELDOUT, 0, 2, 0, ColumnarPredictions.NO_LABEL, 2);
+    predictions.add(Split.HELDOUT, 1, 2, Arrays.asList(0, null, 2));
+    for (int row = 0; row < 2; row++) {
+      assertThat(predictions.getPredictedLabel(row, 2)).isEqualTo(2);
+      assertThat(predictions.getNumPredictedLabels(row)).isEqualTo(1);
+      assertThat(predictions.isCorrectInTop(row, TOP_K)).isFalse();
+    }
+    OverallAccuracy accuracy = new AccuracyComputer(TOP_K).compute(predictions);
+    assertThat(accuracy.getTestAccuracy().getCorrectCount()).isEqualTo(0);
+    assertThat(accuracy.getTestAccuracy().getTotalCount()).isEqualTo(2);
+  }
+
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ConfusionMatrix}.
+ */
+public class ConfusionMatrixTest {
+
+  /**
+   * Rows are the truth, columns the prediction.
+   *
+   * <pre>
+   *        0  1  2  3
+   *   0    3  1  0  0
+   *   1    2  0  1  0
+   *   2    0  0  4  0
+   *   3    0  0  0  0
+   * </pre>
+   *
+   * Label 1 occurs and is predicted but is never correct; label 3 neither occurs nor is predicted.
+   */
+  private static ConfusionMatrix matrix() {
+    ConfusionMatrix matrix = new ConfusionMatrix(4, 4, null);
+    matrix.addToEntry(0, 0, 3);
+    matrix.incrementEntry(0, 1);
+    matrix.addToEntry(1, 0, 2L);
+    matrix.incrementEntry(1, 2);
+    matrix.addToEntry(2, 2, 4);
+    return matrix;
+  }
+
+  @Test
+  public void testSums() {
+    ConfusionMatrix matrix = matrix();
+    assertThat(matrix.getEntry(0, 0)).isEqualTo(3L);
+    assertThat(matrix.getEntry(1, 0)).isEqualTo(2L);
+    assertThat(matrix.rowSum(0)).isEqualTo(4L);
+    assertThat(matrix.rowSum(1)).isEqualTo(3L);
+    assertThat(matrix.columnSum(0)).isEqualTo(5L);
+    assertThat(matrix.columnSum(2)).isEqualTo(5L);
+    assertThat(matrix.columnSum(3)).isEqualTo(0L);
+    assertThat(matrix.total()).isEqualTo(11L);
+    assertThat(matrix.correct()).isEqualTo(7L);
+    assertThat(matrix.accuracy()).isEqualTo(7.0 / 11, delta(1e-12));
+    assertThat(matrix.getData()[1][2]).isEqualTo(1.0);
+  }
+
+  @Test
+  public void testPrecisionRecallAndF1() {
+    ConfusionMatrix matrix = matrix();
+    assertThat(matrix.precision(0)).isEqualTo(3.0 / 5, delta(1e-12));
+    assertThat(matrix.recall(0)).isEqualTo(3.0 / 4, delta(1e-12));
+    assertThat(matrix.f1(0)).isEqualTo(2 * 0.6 * 0.75 / (0.6 + 0.75), delta(1e-12));
+    assertThat(matrix.precision(2)).isEqualTo(4.0 / 5, delta(1e-12));
+    assertThat(matrix.recall(2)).isEqualTo(1.0, delta(1e-12));
+    assertThat(matrix.f1(2)).isEqualTo(8.0 / 9, delta(1e-12));
+  }
+
+  /**
+   * tp = 0 gives F1 = 0 (not 0/0), consistently with macroF1.
+   */
+  @Test
+  public void testF1WithoutTruePositives() {
+    ConfusionMatrix matrix = matrix();
+    assertThat(matrix.precision(1)).isEqualTo(0.0);
+    assertThat(matrix.recall(1)).isEqualTo(0.0);
+    assertThat(matrix.f1(1)).isEqualTo(0.0);
+    // a label that never occurs and is never predicted has no F1
+    assertThat(Double.isNaN(matrix.f1(3))).isTrue();
+  }
+
+  /**
+   * The mean F1 of labels 0, 1 and 2; label 3 is skipped.
+   */
+  @Test
+  public void testMacroF1() {
+    ConfusionMatrix matrix = matrix();
+    double expected = (matrix.f1(0) + 0.0 + matrix.f1(2)) / 3;
+    assertThat(matrix.macroF1()).isEqualTo(expected, delta(1e-12));
+  }
+
+  @Test
+  public void testMerge() {
+    ConfusionMatrix merged = matrix();
+    ConfusionMatrix partial = merged.newPartial();
+    assertThat(partial.total()).isEqualTo(0L);
+    partial.incrementEntry(1, 1);
+    partial.addToEntry(3, 0, 5);
+    merged.merge(partial);
+
+    assertThat(merged.getEntry(1, 1)).isEqualTo(1L);
+    assertThat(merged.getEntry(3, 0)).isEqualTo(5L);
+    assertThat(merged.getEntry(0, 0)).isEqualTo(3L);
+    assertThat(merged.total()).isEqualTo(17L);
+    assertThat(merged.f1(1)).isEqualTo(2.0 / (2 + 4), delta(1e-12));
+    // the partial is unchanged
+    assertThat(partial.total()).isEqualTo(6L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMergeRejectsOtherDimensions() {
+    matrix().merge(new ConfusionMatrix(3, 4, null));
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testRejectsLabelOutOfRange() {
+    matrix().incrementEntry(4, 0);
+  }
+
+}
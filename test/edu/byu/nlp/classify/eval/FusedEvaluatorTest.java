@@ -0,0 +1,176 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import edu.byu.nlp.classify.eval.ColumnarPredictions.Split;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link FusedEvaluator}.
+ */
+public class FusedEvaluatorTest {
+
+  private static final int NUM_LABELS = 4;
+  private static final int TOP_K = 3;
+  private static final int NUM_PREDICTIONS = 500;
+  private static final int[] TOPNS = {1, 2, 3};
+
+  private static Indexer<String> labels() {
+    Indexer<String> labels = new Indexer<String>();
+    for (int l = 0; l < NUM_LABELS; l++) {
+      labels.add("" + l);
+    }
+    return labels;
+  }
+
+  /**
+   * Random gold labels (NO_LABEL if !labeled) with 0 to TOP_K ranked predictions, so that some
+   * rows are null predictions and some are padded with NO_LABEL.
+   */
+  private static int[][] randomRows(Random rnd, boolean unlabeled) {
+    int[][] rows = new int[NUM_PREDICTIONS][];
+    for (int i = 0; i < NUM_PREDICTIONS; i++) {
+      int gold = (unlabeled && rnd.nextInt(10) == 0) ? ColumnarPredictions.NO_LABEL : rnd.nextInt(NUM_LABELS);
+      int numPredicted = (rnd.nextInt(10) == 0) ? 0 : 1 + rnd.nextInt(TOP_K);
+      List<Integer> ranked = Lists.newArrayList(0, 1, 2, 3);
+      Collections.shuffle(ranked, rnd);
+      rows[i] = new int[1 + numPredicted];
+      rows[i][0] = gold;
+      for (int r = 0; r < numPredicted; r++) {
+        rows[i][1 + r] = ranked.get(r);
+      }
+    }
+    return rows;
+  }
+
+  private static ColumnarPredictions columnar(int[][] rows, Random rnd, List<? extends DatasetInstance> instances) {
+    ColumnarPredictions predictions = new ColumnarPredictions(TOP_K, rows.length, instances);
+    for (int i = 0; i < rows.length; i++) {
+      predictions.add(Split.values()[rnd.nextInt(Split.values().length)], i, rows[i][0],
+          Arrays.copyOfRange(rows[i], 1, rows[i].length));
+    }
+    return predictions;
+  }
+
+  private static void assertSameAccuracy(OverallAccuracy actual, OverallAccuracy expected) {
+    assertSameAccuracy(actual.getLabeledAccuracy(), expected.getLabeledAccuracy());
+    assertSameAccuracy(actual.getUnlabeledAccuracy(), expected.getUnlabeledAccuracy());
+    assertSameAccuracy(actual.getTestAccuracy(), expected.getTestAccuracy());
+  }
+
+  private static void assertSameAccuracy(Accuracy actual, Accuracy expected) {
+    assertThat(actual.getCorrectCount()).isEqualTo(expected.getCorrectCount());
+    assertThat(actual.getTotalCount()).isEqualTo(expected.getTotalCount());
+  }
+
+  private static void assertSameMatrix(ConfusionMatrix actual, ConfusionMatrix expected) {
+    for (int gold = 0; gold < NUM_LABELS; gold++) {
+      for (int predicted = 0; predicted < NUM_LABELS; predicted++) {
+        assertThat(actual.getEntry(gold, predicted)).isEqualTo(expected.getEntry(gold, predicted));
+      }
+    }
+  }
+
+  /**
+   * Compares evaluation against the single-purpose computers on the same predictions.
+   */
+  private static void assertAgrees(FusedEvaluator.Evaluation evaluation, ColumnarPredictions predictions) {
+    for (int topn : TOPNS) {
+      assertSameAccuracy(evaluation.getAccuracy(topn), new AccuracyComputer(topn).compute(predictions));
+    }
+    ConfusionMatrixComputer computer = new ConfusionMatrixComputer(labels());
+    Split[][] splitSets = {{Split.LABELED}, {Split.UNLABELED}, {Split.HELDOUT}, {Split.LABELED, Split.UNLABELED},
+        Split.values()};
+    for (Split[] splits : splitSets) {
+      ConfusionMatrix expected = computer.compute(predictions, EnumSet.copyOf(Arrays.asList(splits)));
+      assertSameMatrix(evaluation.getConfusionMatrix(splits), expected);
+      for (int label = 0; label < NUM_LABELS; label++) {
+        assertThat(evaluation.getPrecision(label, splits)).isEqualTo(expected.precision(label), delta(1e-12));
+        assertThat(evaluation.getRecall(label, splits)).isEqualTo(expected.recall(label), delta(1e-12));
+        assertThat(evaluation.getF1(label, splits)).isEqualTo(expected.f1(label), delta(1e-12));
+      }
+    }
+  }
+
+  @Test
+  public void testColumnarAgreesWithComputers() {
+    Random rnd = new Random(11);
+    ColumnarPredictions predictions = columnar(randomRows(rnd, true), rnd, null);
+    for (int numThreads : new int[]{1, 3, 8}) {
+      assertAgrees(new FusedEvaluator(labels(), numThreads, TOPNS).evaluate(predictions), predictions);
+    }
+  }
+
+  @Test
+  public void testPredictionsAgreeWithComputers() {
+    Random rnd = new Random(13);
+    int[][] rows = randomRows(rnd, false);
+    Indexer<String> labels = labels();
+    List<DatasetInstance> instances = Lists.newArrayList();
+    for (int i = 0; i < rows.length; i++) {
+      instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{0}, new double[]{1.}),
+          rows[i][0], i, "0", labels));
+    }
+    ColumnarPredictions columnar = columnar(rows, rnd, instances);
+    Predictions predictions = columnar.asPredictions(null, null, 0, null, 0);
+    for (int numThreads : new int[]{1, 3, 8}) {
+      FusedEvaluator.Evaluation evaluation = new FusedEvaluator(labels, numThreads, TOPNS).evaluate(predictions);
+      for (int topn : TOPNS) {
+        assertSameAccuracy(evaluation.getAccuracy(topn), new AccuracyComputer(topn).compute(predictions, null));
+      }
+      assertAgrees(evaluation, columnar);
+    }
+  }
+
+  /**
+   * A label that is predicted but never right has F1 0, not NaN.
+   */
+  @Test
+  public void testF1WithoutTruePositives() {
+    ColumnarPredictions predictions = new ColumnarPredictions(1, 4, null);
+    predictions.add(Split.HELDOUT, 0, 0, 1);
+    predictions.add(Split.HELDOUT, 1, 1, 0);
+    predictions.add(Split.HELDOUT, 2, 2, 2);
+    FusedEvaluator.Evaluation evaluation = new FusedEvaluator(labels(), 2, 1).evaluate(predictions);
+    assertThat(evaluation.getF1(0, Split.HELDOUT)).isEqualTo(0.0);
+    assertThat(evaluation.getF1(1, Split.HELDOUT)).isEqualTo(0.0);
+    assertThat(evaluation.getF1(2, Split.HELDOUT)).isEqualTo(1.0);
+    assertThat(Double.isNaN(evaluation.getF1(3, Split.HELDOUT))).isTrue();
+    assertThat(Double.isNaN(evaluation.getF1(0, Split.LABELED))).isTrue();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownTopn() {
+    new FusedEvaluator(labels(), 1, 1, 2).evaluate(new ColumnarPredictions(1, 1, null)).getAccuracy(3);
+  }
+
+}
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+
+/**
+ * Unit tests for {@link SparseAnnotatorConfusions}.
+ */
+public class SparseAnnotatorConfusionsTest {
+
+  private static final int NUM_ANNOTATORS = 3;
+  private static final int NUM_CLASSES = 4;
+
+  /**
+   * Annotator 1 has no entries.
+   */
+  private static SparseAnnotatorConfusions confusions() {
+    SparseAnnotatorConfusions confusions = new SparseAnnotatorConfusions(NUM_ANNOTATORS, NUM_CLASSES);
+    confusions.add(0, 0, 0, 2);
+    confusions.add(0, 0, 0, 1.5);
+    confusions.add(0, 3, 1, 1);
+    confusions.add(2, 1, 2, 4);
+    confusions.add(2, 2, 1, 0.5);
+    return confusions;
+  }
+
+  private static double[][][] dense() {
+    double[][][] dense = new double[NUM_ANNOTATORS][NUM_CLASSES][NUM_CLASSES];
+    dense[0][0][0] = 3.5;
+    dense[0][3][1] = 1;
+    dense[2][1][2] = 4;
+    dense[2][2][1] = 0.5;
+    return dense;
+  }
+
+  @Test
+  public void testAddAndGet() {
+    SparseAnnotatorConfusions confusions = confusions();
+    assertThat(confusions.getNumAnnotators()).isEqualTo(NUM_ANNOTATORS);
+    assertThat(confusions.getNumClasses()).isEqualTo(NUM_CLASSES);
+    assertThat(confusions.get(0, 0, 0)).isEqualTo(3.5);
+    assertThat(confusions.get(0, 3, 1)).isEqualTo(1.0);
+    // transposed entries are distinct
+    assertThat(confusions.get(0, 1, 3)).isEqualTo(0.0);
+    assertThat(confusions.get(1, 0, 0)).isEqualTo(0.0);
+    assertThat(confusions.get(2, 2, 1)).isEqualTo(0.5);
+    assertThat(confusions.numEntries()).isEqualTo(4L);
+  }
+
+  @Test
+  public void testVisitEntries() {
+    final double[][][] visited = new double[NUM_ANNOTATORS][NUM_CLASSES][NUM_CLASSES];
+    final AtomicInteger numVisits = new AtomicInteger();
+    confusions().visitEntries(new SparseAnnotatorConfusions.EntryVisitor() {
+      @Override
+      public void visit(int annotator, int trueLabel, int annotatedLabel, double value) {
+        visited[annotator][trueLabel][annotatedLabel] += value;
+        numVisits.incrementAndGet();
+      }
+    });
+    assertThat(numVisits.get()).isEqualTo(4);
+    assertThat(Arrays.deepEquals(visited, dense())).isTrue();
+
+    numVisits.set(0);
+    confusions().visitEntries(1, new SparseAnnotatorConfusions.EntryVisitor() {
+      @Override
+      public void visit(int annotator, int trueLabel, int annotatedLabel, double value) {
+        numVisits.incrementAndGet();
+      }
+    });
+    assertThat(numVisits.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void testDenseRoundTrip() {
+    SparseAnnotatorConfusions confusions = confusions();
+    assertThat(Arrays.deepEquals(confusions.toDense(), dense())).isTrue();
+    assertThat(Arrays.deepEquals(confusions.toDense(1), new double[NUM_CLASSES][NUM_CLASSES])).isTrue();
+
+    SparseAnnotatorConfusions fromDense = SparseAnnotatorConfusions.fromDense(dense());
+    assertThat(fromDense.getNumAnnotators()).isEqualTo(NUM_ANNOTATORS);
+    assertThat(fromDense.getNumClasses()).isEqualTo(NUM_CLASSES);
+    // zeros are not stored
+    assertThat(fromDense.numEntries()).isEqualTo(4L);
+    assertThat(Arrays.deepEquals(fromDense.toDense(), dense())).isTrue();
+
+    SparseAnnotatorConfusions empty = SparseAnnotatorConfusions.fromDense(new double[0][][]);
+    assertThat(empty.getNumAnnotators()).isEqualTo(0);
+    assertThat(empty.toDense().length).isEqualTo(0);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testRejectsLabelOutOfRange() {
+    confusions().add(0, NUM_CLASSES, 0, 1);
+  }
+
+  @Test(expected = IndexOutOfBoundsException.class)
+  public void testRejectsAnnotatorOutOfRange() {
+    confusions().get(NUM_ANNOTATORS, 0, 0);
+  }
+
+  /**
+   * The dense tensor is built once, on first request, and the sparse one is derived from it.
+   */
+  @Test
+  public void testLazyConfusionsAreMemoized() {
+    final AtomicInteger numBuilt = new AtomicInteger();
+    Supplier<double[][][]> supplier = Suppliers.memoize(new Supplier<double[][][]>() {
+      @Override
+      public double[][][] get() {
+        numBuilt.incrementAndGet();
+        return dense();
+      }
+    });
+    Predictions predictions = Predictions.withLazyConfusions(Collections.<Prediction>emptyList(),
+        Collections.<Prediction>emptyList(), Collections.<Prediction>emptyList(), null, supplier, -1, null, -1);
+    assertThat(numBuilt.get()).isEqualTo(0);
+
+    double[][][] dense = predictions.annotatorConfusionMatrices();
+    assertThat(predictions.annotatorConfusionMatrices()).isSameAs(dense);
+    SparseAnnotatorConfusions sparse = predictions.sparseAnnotatorConfusionMatrices();
+    assertThat(predictions.sparseAnnotatorConfusionMatrices()).isSameAs(sparse);
+    assertThat(numBuilt.get()).isEqualTo(1);
+    assertThat(Arrays.deepEquals(sparse.toDense(), dense())).isTrue();
+  }
+
+  @Test
+  public void testSparseConfusionsAreDensifiedOnce() {
+    SparseAnnotatorConfusions confusions = confusions();
+    Predictions predictions = Predictions.withSparseConfusions(Collections.<Prediction>emptyList(),
+        Collections.<Prediction>emptyList(), Collections.<Prediction>emptyList(), null, confusions, -1, null, -1);
+    assertThat(predictions.sparseAnnotatorConfusionMatrices()).isSameAs(confusions);
+    double[][][] dense = predictions.annotatorConfusionMatrices();
+    assertThat(Arrays.deepEquals(dense, dense())).isTrue();
+    assertThat(predictions.annotatorConfusionMatrices()).isSameAs(dense);
+
+    Predictions withoutConfusions = Predictions.withSparseConfusions(Collections.<Prediction>emptyList(),
+        Collections.<Prediction>emptyList(), Collections.<Prediction>emptyList(), null, null, -1, null, -1);
+    assertThat(withoutConfusions.annotatorConfusionMatrices()).isNull();
+    assertThat(withoutConfusions.sparseAnnotatorConfusionMatrices()).isNull();
+  }
+
+  @Test
+  public void testDenseConstructor() {
+    Predictions predictions = new Predictions(Collections.<Prediction>emptyList(), Collections.<Prediction>emptyList(),
+        Collections.<Prediction>emptyList(), null, dense(), -1, null, -1);
+    assertThat(Arrays.deepEquals(predictions.sparseAnnotatorConfusionMatrices().toDense(), dense())).isTrue();
+    assertThat(predictions.sparseAnnotatorConfusionMatrices()).isSameAs(predictions.sparseAnnotatorConfusionMatrices());
+  }
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.eval;
+
+import static org.fest.assertions.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.byu.nlp.classify.eval.ColumnarPredictions.Split;
+import edu.byu.nlp.classify.eval.StreamingEvaluator.RecordWriter;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link StreamingEvaluator}.
+ */
+public class StreamingEvaluatorTest {
+
+  private static final int NUM_LABELS = 3;
+  private static final int NUM_PREDICTIONS = 1000;
+
+  private static Indexer<String> labels() {
+    Indexer<String> labels = new Indexer<String>();
+    labels.add("a");
+    labels.add("b");
+    labels.add("c");
+    return labels;
+  }
+
+  /**
+   * Random predictions over every split, some without a gold label and some null.
+   */
+  private static ColumnarPredictions randomPredictions() {
+    Random rnd = new Random(7);
+    ColumnarPredictions predictions = new ColumnarPredictions(1, NUM_PREDICTIONS, null);
+    for (int i = 0; i < NUM_PREDICTIONS; i++) {
+      Split split = Split.values()[rnd.nextInt(Split.values().length)];
+      int gold = (rnd.nextInt(10) == 0) ? ColumnarPredictions.NO_LABEL : rnd.nextInt(NUM_LABELS);
+      if (rnd.nextInt(10) == 0) {
+        predictions.add(split, i, gold);
+      } else {
+        // often right, so that accuracy is not trivially 1/3
+        predictions.add(split, i, gold, (rnd.nextBoolean() && gold >= 0) ? gold : rnd.nextInt(NUM_LABELS));
+      }
+    }
+    return predictions;
+  }
+
+  private static byte[] writeRecords(ColumnarPredictions predictions) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    RecordWriter writer = new RecordWriter(bytes);
+    try {
+      for (int row = 0; row < predictions.size(); row++) {
+        writer.write(predictions.getSplit(row), predictions.getGoldLabel(row), predictions.getPredictedLabel(row));
+      }
+    } finally {
+      writer.close();
+    }
+    return bytes.toByteArray();
+  }
+
+  private static void assertSameAccuracy(OverallAccuracy actual, OverallAccuracy expected) {
+    assertSameAccuracy(actual.getLabeledAccuracy(), expected.getLabeledAccuracy());
+    assertSameAccuracy(actual.getUnlabeledAccuracy(), expected.getUnlabeledAccuracy());
+    assertSameAccuracy(actual.getTestAccuracy(), expected.getTestAccuracy());
+  }
+
+  private static void assertSameAccuracy(Accuracy actual, Accuracy expected) {
+    assertThat(actual.getCorrectCount()).isEqualTo(expected.getCorrectCount());
+    assertThat(actual.getTotalCount()).isEqualTo(expected.getTotalCount());
+  }
+
+  /**
+   * Counts, as {@code AccuracyComputer} does, only rows with both a gold and a predicted label.
+   */
+  private static long[][] expectedConfusion(ColumnarPredictions predictions, Split... splits) {
+    long[][] counts = new long[NUM_LABELS][NUM_LABELS];
+    for (int row = 0; row < predictions.size(); row++) {
+      int gold = predictions.getGoldLabel(row);
+      int predicted = predictions.getPredictedLabel(row);
+      if (gold != ColumnarPredictions.NO_LABEL && predicted != ColumnarPredictions.NO_LABEL
+          && Arrays.asList(splits).contains(predictions.getSplit(row))) {
+        ++counts[gold][predicted];
+      }
+    }
+    return counts;
+  }
+
+  private static void assertConfusion(ConfusionMatrix actual, long[][] expected) {
+    for (int gold = 0; gold < NUM_LABELS; gold++) {
+      for (int predicted = 0; predicted < NUM_LABELS; predicted++) {
+        assertThat(actual.getEntry(gold, predicted)).isEqualTo(expected[gold][predicted]);
+      }
+    }
+  }
+
+  @Test
+  public void testAgreesWithAccuracyComputer() {
+    ColumnarPredictions predictions = randomPredictions();
+    StreamingEvaluator evaluator = new StreamingEvaluator(labels());
+    for (int row = 0; row < predictions.size(); row++) {
+      evaluator.accept(predictions.getSplit(row), predictions.getGoldLabel(row), predictions.getPredictedLabel(row));
+    }
+    assertSameAccuracy(evaluator.getOverallAccuracy(), new AccuracyComputer().compute(predictions));
+    assertConfusion(evaluator.getConfusionMatrix(Split.LABELED, Split.UNLABELED),
+        expectedConfusion(predictions, Split.LABELED, Split.UNLABELED));
+    assertConfusion(evaluator.getConfusionMatrix(Split.HELDOUT), expectedConfusion(predictions, Split.HELDOUT));
+  }
+
+  @Test
+  public void testRecordRoundTrip() throws IOException {
+    ColumnarPredictions predictions = randomPredictions();
+    StreamingEvaluator evaluator = new StreamingEvaluator(labels());
+    evaluator.readFrom(new ByteArrayInputStream(writeRecords(predictions)));
+    assertSameAccuracy(evaluator.getOverallAccuracy(), new AccuracyComputer().compute(predictions));
+    assertConfusion(evaluator.getConfusionMatrix(Split.values()), expectedConfusion(predictions, Split.values()));
+  }
+
+  @Test
+  public void testMergeOfShards() throws IOException {
+    ColumnarPredictions predictions = randomPredictions();
+    byte[] records = writeRecords(predictions);
+    // a record is a split byte and two ints
+    int middle = (predictions.size() / 2) * 9;
+    StreamingEvaluator first = new StreamingEvaluator(labels());
+    first.readFrom(new ByteArrayInputStream(records, 0, middle));
+    StreamingEvaluator second = new StreamingEvaluator(labels());
+    second.readFrom(new ByteArrayInputStream(records, middle, records.length - middle));
+    first.merge(second);
+    assertSameAccuracy(first.getOverallAccuracy(), new AccuracyComputer().compute(predictions));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedRecord() throws IOException {
+    byte[] records = writeRecords(randomPredictions());
+    new StreamingEvaluator(labels()).readFrom(new ByteArrayInputStream(records, 0, records.length - 3));
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnknownSplitInRecord() throws IOException {
+    byte[] records = writeRecords(randomPredictions());
+    records[0] = (byte) Split.values().length;
+    new StreamingEvaluator(labels()).readFrom(new ByteArrayInputStream(records));
+  }
+
+  @Test
+  public void testTsv() throws IOException {
+    StreamingEvaluator evaluator = new StreamingEvaluator(labels());
+    evaluator.readTsv(new StringReader(
+        "0\t1\t1\n"
+        + "\n"
+        + "0\t2\t0\n"
+        + "1\t-1\t2\n"
+        + "1\t0\t-1\n"
+        + "2\t2\t2 \n"));
+    OverallAccuracy accuracy = evaluator.getOverallAccuracy();
+    assertThat(accuracy.getLabeledAccuracy().getCorrectCount()).isEqualTo(1);
+    assertThat(accuracy.getLabeledAccuracy().getTotalCount()).isEqualTo(2);
+    assertThat(accuracy.getUnlabeledAccuracy().getTotalCount()).isEqualTo(0);
+    assertThat(accuracy.getTestAccuracy().getCorrectCount()).isEqualTo(1);
+    assertThat(accuracy.getTestAccuracy().getTotalCount()).isEqualTo(1);
+    assertThat(evaluator.getConfusionMatrix(Split.LABELED).getEntry(2, 0)).isEqualTo(1);
+  }
+
+  @Test(expected = IOException.class)
+  public void testTsvMissingField() throws IOException {
+    new StreamingEvaluator(labels()).readTsv(new StringReader("0\t1\t1\n0\t1\n"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTsvNonNumericField() throws IOException {
+    new StreamingEvaluator(labels()).readTsv(new StringReader("0\tb\t1\n"));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTsvUnknownSplit() throws IOException {
+    new StreamingEvaluator(labels()).readTsv(new StringReader("3\t1\t1\n"));
+  }
+
+}
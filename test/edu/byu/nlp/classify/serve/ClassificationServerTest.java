@@ -0,0 +1,84 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.serve;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import edu.byu.nlp.classify.Classifier;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Round trips through {@link ClassificationServer} and {@link ClassificationClient}.
+ */
+public class ClassificationServerTest {
+
+  /**
+   * Labels a vector with its first index minus one (so -1 is a possible label) and fails on
+   * index 13.
+   */
+  private static final Classifier CLASSIFIER = new Classifier() {
+    @Override
+    public int classify(SparseFeatureVector s) {
+      int index = s.sparseEntries().iterator().next().getIndex();
+      if (index == 13) {
+        throw new IllegalArgumentException("malformed document");
+      }
+      return index - 1;
+    }
+
+    @Override
+    public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+      throw new UnsupportedOperationException();
+    }
+  };
+
+  private static BasicSparseFeatureVector vector(int index) {
+    return new BasicSparseFeatureVector(new int[] {index}, new double[] {1.0});
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    ClassificationService service = new ClassificationService(CLASSIFIER, 4, 1, TimeUnit.MILLISECONDS, 1);
+    ClassificationServer server = new ClassificationServer(service, 0);
+    ClassificationClient client = new ClassificationClient(server.getPort());
+    try {
+      assertThat(client.classify(vector(5))).isEqualTo(4);
+      // -1 is an ordinary label, not an error
+      assertThat(client.classify(vector(0))).isEqualTo(-1);
+      try {
+        client.classify(vector(13));
+        fail("expected an IOException");
+      } catch (IOException e) {
+        assertThat(e.getMessage().contains("malformed document")).isTrue();
+      }
+      // the connection is still in sync after an error
+      assertThat(client.classify(vector(8))).isEqualTo(7);
+    } finally {
+      client.close();
+      server.close();
+      service.close();
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.serve;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+
+/**
+ * Unit tests for {@link ClassificationService}.
+ */
+public class ClassificationServiceTest {
+
+  @Test
+  public void testRequestsAreBatched() throws Exception {
+    final AtomicInteger largestBatch = new AtomicInteger();
+    // "classifies" each vector by its first index
+    BatchClassifier classifier = new BatchClassifier() {
+      @Override
+      public void classifyAll(List<? extends SparseFeatureVector> vectors, int[] labels) {
+        int largest = largestBatch.get();
+        while (vectors.size() > largest && !largestBatch.compareAndSet(largest, vectors.size())) {
+          largest = largestBatch.get();
+        }
+        for (int i = 0; i < vectors.size(); i++) {
+          labels[i] = firstIndex(vectors.get(i));
+        }
+      }
+    };
+
+    ClassificationService service = new ClassificationService(classifier, 8, 50, TimeUnit.MILLISECONDS, 2);
+    try {
+      List<ListenableFuture<Integer>> futures = Lists.newArrayList();
+      for (int i = 0; i < 100; i++) {
+        futures.add(service.submit(vector(i)));
+      }
+      for (int i = 0; i < 100; i++) {
+        assertThat(futures.get(i).get().intValue()).isEqualTo(i);
+      }
+      assertThat(service.getNumRequests()).isEqualTo(100);
+      assertThat(largestBatch.get()).isLessThanOrEqualTo(8);
+      // the requests were queued faster than the batches could time out
+      assertThat(service.getNumBatches()).isLessThan(100);
+    } finally {
+      service.close();
+    }
+  }
+
+  private static int firstIndex(SparseFeatureVector vector) {
+    return vector.sparseEntries().iterator().next().getIndex();
+  }
+
+  private static BasicSparseFeatureVector vector(int index) {
+    return new BasicSparseFeatureVector(new int[] {index}, new double[] {1.0});
+  }
+
+  @Test
+  public void testFailureIsIsolatedToTheFailingRequest() throws Exception {
+    // fails the whole batch if it contains index 13
+    BatchClassifier classifier = new BatchClassifier() {
+      @Override
+      public void classifyAll(List<? extends SparseFeatureVector> vectors, int[] labels) {
+        for (int i = 0; i < vectors.size(); i++) {
+          labels[i] = firstIndex(vectors.get(i));
+          if (labels[i] == 13) {
+            throw new IllegalArgumentException("malformed document");
+          }
+        }
+      }
+    };
+
+    ClassificationService service = new ClassificationService(classifier, 32, 50, TimeUnit.MILLISECONDS, 1);
+    try {
+      List<ListenableFuture<Integer>> futures = Lists.newArrayList();
+      for (int i = 0; i < 20; i++) {
+        futures.add(service.submit(vector(i)));
+      }
+      for (int i = 0; i < 20; i++) {
+        if (i == 13) {
+          try {
+            futures.get(i).get();
+            fail("expected an ExecutionException");
+          } catch (ExecutionException e) {
+            assertThat(e.getCause() instanceof IllegalArgumentException).isTrue();
+          }
+        } else {
+          assertThat(futures.get(i).get().intValue()).isEqualTo(i);
+        }
+      }
+    } finally {
+      service.close();
+    }
+  }
+
+  @Test
+  public void testErrorClosesTheService() throws Exception {
+    BatchClassifier classifier = new BatchClassifier() {
+      @Override
+      public void classifyAll(List<? extends SparseFeatureVector> vectors, int[] labels) {
+        throw new AssertionError("simulated");
+      }
+    };
+
+    ClassificationService service = new ClassificationService(classifier, 4, 1, TimeUnit.MILLISECONDS, 1);
+    try {
+      service.submit(vector(0)).get();
+      fail("expected an ExecutionException");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause() instanceof AssertionError).isTrue();
+    }
+    assertThat(service.isClosed()).isTrue();
+    // later requests are cancelled rather than left waiting forever
+    assertThat(service.submit(vector(1)).isCancelled()).isTrue();
+    service.close();
+  }
+
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.serve;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.byu.nlp.classify.Classifier;
+import edu.byu.nlp.classify.LinearClassifier;
+import edu.byu.nlp.classify.OffHeapWeightMatrix;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+
+/**
+ * Unit tests for {@link ModelRegistry}.
+ */
+public class ModelRegistryTest {
+
+  private static Classifier constant(final int label) {
+    return new Classifier() {
+      @Override
+      public int classify(SparseFeatureVector s) {
+        return label;
+      }
+
+      @Override
+      public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  private static Closeable counter(final AtomicInteger closed) {
+    return new Closeable() {
+      @Override
+      public void close() {
+        closed.incrementAndGet();
+      }
+    };
+  }
+
+  @Test
+  public void testSwapWaitsForInFlightLeases() {
+    ModelRegistry<Classifier> registry = new ModelRegistry<Classifier>();
+    AtomicInteger firstClosed = new AtomicInteger();
+    AtomicInteger secondClosed = new AtomicInteger();
+
+    assertThat(registry.publish("m", constant(1), counter(firstClosed))).isEqualTo(1);
+    ModelRegistry.Lease<Classifier> inFlight = registry.acquire("m");
+
+    assertThat(registry.publish("m", constant(2), counter(secondClosed))).isEqualTo(2);
+    assertThat(registry.getVersion("m")).isEqualTo(2);
+    assertThat(registry.classify("m", null)).isEqualTo(2);
+
+    // the old version stays usable (and unreclaimed) until its lease is closed
+    assertThat(inFlight.getVersion()).isEqualTo(1);
+    assertThat(inFlight.get().classify(null)).isEqualTo(1);
+    assertThat(firstClosed.get()).isEqualTo(0);
+    inFlight.close();
+    inFlight.close();
+    assertThat(firstClosed.get()).isEqualTo(1);
+
+    registry.close();
+    assertThat(secondClosed.get()).isEqualTo(1);
+    assertThat(registry.getNames()).isEmpty();
+  }
+
+  @Test
+  public void testVersionsStayMonotonicAcrossRemove() {
+    ModelRegistry<Classifier> registry = new ModelRegistry<Classifier>();
+    assertThat(registry.publish("m", constant(1))).isEqualTo(1);
+    assertThat(registry.publish("m", constant(2))).isEqualTo(2);
+    assertThat(registry.remove("m")).isTrue();
+    assertThat(registry.remove("m")).isFalse();
+    assertThat(registry.getVersion("m")).isEqualTo(0);
+    assertThat(registry.getNames()).isEmpty();
+    try {
+      registry.acquire("m");
+      fail("expected an IllegalArgumentException");
+    } catch (IllegalArgumentException expected) {
+      // removed
+    }
+
+    assertThat(registry.publish("m", constant(3))).isEqualTo(3);
+    assertThat(registry.classify("m", null)).isEqualTo(3);
+    registry.close();
+  }
+
+  @Test
+  public void testReclaimClosesOnlyPublishedResources() {
+    ModelRegistry<LinearClassifier> registry = new ModelRegistry<LinearClassifier>();
+    OffHeapWeightMatrix weights = OffHeapWeightMatrix.allocate(2, 3);
+    weights.set(1, 2, 4.0);
+    LinearClassifier classifier = new LinearClassifier(new double[2], weights);
+
+    // the weights are shared with a classifier the registry does not own
+    registry.publish("m", classifier);
+    registry.remove("m");
+    assertThat(weights.get(1, 2)).isEqualTo(4.0);
+
+    AtomicInteger closed = new AtomicInteger();
+    registry.publish("m", classifier, counter(closed));
+    registry.close();
+    assertThat(closed.get()).isEqualTo(1);
+    assertThat(weights.get(1, 2)).isEqualTo(4.0);
+    weights.close();
+  }
+
+}
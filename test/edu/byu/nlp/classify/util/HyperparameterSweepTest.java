@@ -0,0 +1,194 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.util;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import edu.byu.nlp.classify.Classifier;
+import edu.byu.nlp.classify.ClassifierLearner;
+import edu.byu.nlp.classify.util.HyperparameterSweep.LearnerFactory;
+import edu.byu.nlp.classify.util.HyperparameterSweep.ResultTable;
+import edu.byu.nlp.classify.util.HyperparameterSweep.SearchSpace;
+import edu.byu.nlp.classify.util.HyperparameterSweep.TrialResult;
+import edu.byu.nlp.data.streams.IndexerCalculator;
+import edu.byu.nlp.data.types.Dataset;
+import edu.byu.nlp.data.types.DatasetInstance;
+import edu.byu.nlp.data.types.SparseFeatureVector;
+import edu.byu.nlp.dataset.BasicDataset;
+import edu.byu.nlp.dataset.BasicDatasetInstance;
+import edu.byu.nlp.dataset.BasicSparseFeatureVector;
+import edu.byu.nlp.util.Indexer;
+
+/**
+ * Unit tests for {@link HyperparameterSweep}.
+ */
+public class HyperparameterSweepTest {
+
+  /**
+   * Five instances labeled 1, 1, 0, 1, 2.
+   */
+  private static Dataset dataset() {
+    Indexer<String> labelIndexer = new Indexer<String>();
+    for (int l = 0; l < 3; l++) {
+      labelIndexer.add("" + l);
+    }
+    Indexer<String> instanceIdIndexer = new Indexer<String>();
+    List<DatasetInstance> instances = Lists.newArrayList();
+    int[] labels = {1, 1, 0, 1, 2};
+    for (int i = 0; i < labels.length; i++) {
+      instanceIdIndexer.add("" + i);
+      instances.add(new BasicDatasetInstance(new BasicSparseFeatureVector(new int[]{0}, new double[]{1.}),
+          labels[i], i, "0", labelIndexer));
+    }
+    return new BasicDataset("", instances, Sets.newHashSet(), new IndexerCalculator<>(
+        new Indexer<String>(), labelIndexer, instanceIdIndexer, new Indexer<String>()));
+  }
+
+  private static SearchSpace searchSpace() {
+    return new SearchSpace()
+        .with("label", 0, 1, 2)
+        .with("failure", "none", "runtime", "assertion");
+  }
+
+  /**
+   * Learns a classifier that always predicts config's "label", or throws as config's
+   * "failure" says.
+   */
+  private static final LearnerFactory CONSTANT_LEARNERS = new LearnerFactory() {
+    @Override
+    public ClassifierLearner learnerFor(final Map<String, Object> config) {
+      return new ClassifierLearner() {
+        @Override
+        public Classifier learnFrom(Dataset data) {
+          Object failure = config.get("failure");
+          if ("runtime".equals(failure)) {
+            throw new IllegalStateException("simulated failure");
+          }
+          if ("assertion".equals(failure)) {
+            throw new AssertionError("simulated failure");
+          }
+          if ("vm".equals(failure)) {
+            throw new OutOfMemoryError("simulated failure");
+          }
+          return constantClassifier((Integer) config.get("label"));
+        }
+      };
+    }
+  };
+
+  private static Classifier constantClassifier(final int label) {
+    return new Classifier() {
+      @Override
+      public int classify(SparseFeatureVector s) {
+        return label;
+      }
+
+      @Override
+      public List<Integer> classifyNBest(int n, SparseFeatureVector s) {
+        return Arrays.asList(label);
+      }
+    };
+  }
+
+  @Test
+  public void testGrid() {
+    List<Map<String, Object>> configs = searchSpace().grid();
+    assertThat(configs).hasSize(9);
+    assertThat(Sets.newHashSet(configs).size()).isEqualTo(9);
+    // the last dimension varies fastest
+    assertThat(configs.get(0).get("label")).isEqualTo(0);
+    assertThat(configs.get(0).get("failure")).isEqualTo("none");
+    assertThat(configs.get(1).get("label")).isEqualTo(0);
+    assertThat(configs.get(1).get("failure")).isEqualTo("runtime");
+    assertThat(configs.get(8).get("label")).isEqualTo(2);
+    assertThat(configs.get(8).get("failure")).isEqualTo("assertion");
+  }
+
+  @Test
+  public void testRandom() {
+    List<Map<String, Object>> configs = searchSpace().random(50, new SplittableRandomGenerator(3));
+    assertThat(configs).hasSize(50);
+    for (Map<String, Object> config : configs) {
+      assertThat(Lists.newArrayList(config.keySet())).isEqualTo(Arrays.asList("label", "failure"));
+      assertThat(Arrays.asList(0, 1, 2).contains(config.get("label"))).isTrue();
+      assertThat(Arrays.asList("none", "runtime", "assertion").contains(config.get("failure"))).isTrue();
+    }
+    // the same seed yields the same configurations
+    assertThat(searchSpace().random(50, new SplittableRandomGenerator(3))).isEqualTo(configs);
+  }
+
+  @Test
+  public void testRunRecordsFailuresAndFindsBest() {
+    Dataset data = dataset();
+    List<Map<String, Object>> configs = searchSpace().grid();
+    HyperparameterSweep sweep = new HyperparameterSweep(CONSTANT_LEARNERS, HyperparameterSweep.heldoutAccuracy(data), 4);
+    ResultTable results = sweep.run(data, configs);
+
+    assertThat(results.getResults()).hasSize(configs.size());
+    double[] expectedAccuracy = {0.2, 0.6, 0.2};
+    for (int i = 0; i < configs.size(); i++) {
+      TrialResult result = results.getResults().get(i);
+      assertThat(result.getConfig()).isEqualTo(configs.get(i));
+      Object failure = result.getConfig().get("failure");
+      if ("none".equals(failure)) {
+        assertThat(result.failed()).isFalse();
+        assertThat(result.getScore()).isEqualTo(expectedAccuracy[(Integer) result.getConfig().get("label")], delta(1e-12));
+      } else {
+        assertThat(result.failed()).isTrue();
+        assertThat(Double.isNaN(result.getScore())).isTrue();
+        assertThat(result.getFailure()).isInstanceOf(
+            "runtime".equals(failure) ? IllegalStateException.class : AssertionError.class);
+      }
+    }
+
+    TrialResult best = results.best();
+    assertThat(best.getConfig().get("label")).isEqualTo(1);
+    assertThat(best.getConfig().get("failure")).isEqualTo("none");
+    assertThat(results.csvHeader()).isEqualTo("label, failure, score, training_millis, scoring_millis");
+  }
+
+  @Test
+  public void testBestIsNullWhenEveryTrialFails() {
+    Dataset data = dataset();
+    List<Map<String, Object>> configs = new SearchSpace()
+        .with("label", 0, 1)
+        .with("failure", "runtime", "assertion").grid();
+    ResultTable results = new HyperparameterSweep(CONSTANT_LEARNERS, HyperparameterSweep.heldoutAccuracy(data), 2)
+        .run(data, configs);
+    assertThat(results.getResults()).hasSize(4);
+    assertThat(results.best()).isNull();
+  }
+
+  @Test(expected = OutOfMemoryError.class)
+  public void testVirtualMachineErrorAbortsSweep() {
+    Dataset data = dataset();
+    List<Map<String, Object>> configs = new SearchSpace()
+        .with("label", 0)
+        .with("failure", "none", "vm").grid();
+    new HyperparameterSweep(CONSTANT_LEARNERS, HyperparameterSweep.heldoutAccuracy(data), 2).run(data, configs);
+  }
+
+}
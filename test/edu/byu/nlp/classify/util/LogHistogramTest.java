@@ -0,0 +1,55 @@
+/**
+ * Copyright 2015 Brigham Young University
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package edu.byu.nlp.classify.util;
+
+import static org.fest.assertions.Assertions.assertThat;
+import static org.fest.assertions.Delta.delta;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link LogHistogram}.
+ */
+public class LogHistogramTest {
+
+  @Test
+  public void testBucketBoundaries() {
+    for (int b = 0; b < LogHistogram.NUM_BUCKETS; b++) {
+      assertThat(LogHistogram.bucketOf(LogHistogram.lowerBound(b))).isEqualTo(b);
+      if (b > 0) {
+        assertThat(LogHistogram.bucketOf(LogHistogram.lowerBound(b) - 1)).isEqualTo(b - 1);
+      }
+    }
+    assertThat(LogHistogram.bucketOf(Long.MAX_VALUE)).isEqualTo(LogHistogram.NUM_BUCKETS - 1);
+  }
+
+  @Test
+  public void testQuantiles() {
+    LogHistogram histogram = new LogHistogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(1000L * i);
+    }
+    LogHistogram.Snapshot snapshot = histogram.snapshot();
+    assertThat(snapshot.getCount()).isEqualTo(1000);
+    assertThat(snapshot.getMax()).isEqualTo(1000000);
+    assertThat(snapshot.getMean()).isEqualTo(500500.0, delta(1e-9));
+    // within the 12.5% resolution of the buckets
+    assertThat((double) snapshot.getValueAtQuantile(0.5)).isEqualTo(500000.0, delta(62500.0));
+    assertThat((double) snapshot.getValueAtQuantile(0.99)).isEqualTo(990000.0, delta(123750.0));
+    assertThat(snapshot.getValueAtQuantile(1.0)).isEqualTo(1000000);
+  }
+
+}